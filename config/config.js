@@ -28,11 +28,31 @@ App.State.config = {
     "rls": {
       "enabled": false,
       "tenantIdColumn": "tenant_id",
-      "adminFlagColumn": "is_admin"
+      "adminFlagColumn": "is_admin",
+      "mode": "java"
+    },
+    "features": {
+      "archive": false,
+      "conditionalGet": false,
+      "streaming": false,
+      "readReplica": false,
+      "insertCoalescing": false,
+      "changedSince": false,
+      "admissionControl": false,
+      "warmUp": false,
+      "binaryFormat": false,
+      "parallelExport": false,
+      "readOnlyList": false,
+      "queryBudget": false
     }
   },
   "sql": {
-    "includeCountMethod": true
+    "includeCountMethod": true,
+    "useArrayParams": false,
+    "useReadReplica": false,
+    "useTenantSession": false,
+    "useWarmUp": false,
+    "useReadOnly": false
   },
   "commonColumns": {
     "id": "id",
@@ -59,6 +59,8 @@ const RootComponent = {
     const convertedFormats = ref([]);
     // RLS オプション
     const convertedRlsOptions = ref(null);
+    // 追加生成オプション
+    const convertedFeatures = ref(null);
     // データが存在するかどうか
     const hasData = computed(() => App.State.parsedTables.length > 0);
 
@@ -71,6 +73,7 @@ const RootComponent = {
         conversionResults.value = null;
         convertedFormats.value = [];
         convertedRlsOptions.value = null;
+        convertedFeatures.value = null;
         return;
       }
 
@@ -86,6 +89,7 @@ const RootComponent = {
             conversionResults.value = null;
             convertedFormats.value = [];
             convertedRlsOptions.value = null;
+            convertedFeatures.value = null;
             // alert('JSONファイルを読み込みました。');
             Toast.success('JSONデータを読み込みました');
             currentMode.value = 'preview';
@@ -116,6 +120,7 @@ const RootComponent = {
           conversionResults.value = null;
           convertedFormats.value = [];
           convertedRlsOptions.value = null;
+          convertedFeatures.value = null;
 
           Toast.success('データを読み込みました');
           currentMode.value = 'preview';
@@ -124,31 +129,30 @@ const RootComponent = {
     };
 
     // 変換ハンドラ
-    const handleConvert = ({ formats, rls }) => {
+    const handleConvert = async ({ formats, rls, features }) => {
       if (App.State.parsedTables.length === 0) {
         Toast.warning('データを入力してください。');
         return;
       }
+      if (formats.includes('ddl-migration') && App.State.migration.baselineTables.length === 0) {
+        Toast.warning('差分 Evolution には変更前のテーブル定義を読み込んでください。');
+        return;
+      }
 
-      const results = {};
-      formats.forEach(format => {
-        switch (format) {
-          case 'ddl': results[format] = App.Converters.Ddl.generateDDL(App.State.parsedTables); break;
-          case 'ddl-play': results[format] = App.Converters.Ddl.generatePlayEvolution(App.State.parsedTables); break;
-          case 'typescript': results[format] = App.Converters.Typescript.generateTypeScript(App.State.parsedTables); break;
-          case 'zod-schema': results[format] = App.Converters.Zod.generateZodSchema(App.State.parsedTables); break;
-          case 'zod-type': results[format] = App.Converters.Zod.generateZodType(App.State.parsedTables); break;
-          case 'java-model': results[format] = App.Converters.JavaModel.generateJavaModel(App.State.parsedTables, rls); break;
-          case 'java-repo': results[format] = App.Converters.JavaRepo.generateJavaRepo(App.State.parsedTables, rls); break;
-          case 'java-service': results[format] = App.Converters.JavaService.generateJavaService(App.State.parsedTables, rls); break;
-          case 'java-controller': results[format] = App.Converters.JavaController.generateJavaController(App.State.parsedTables, rls); break;
-          case 'vscode-snippets': results[format] = App.Converters.VscodeSnippets.generateVscodeSnippets(App.State.parsedTables); break;
-        }
-      });
+      let results;
+      try {
+        // テーブル単位のキャッシュと Web Worker による生成 (変更のないテーブルは再生成しない)
+        results = await App.Core.Generator.generate(App.State.parsedTables, formats, rls, features);
+      } catch (e) {
+        console.error(e);
+        Toast.error('変換に失敗しました: ' + e.message);
+        return;
+      }
 
       conversionResults.value = results;
       convertedFormats.value = formats;
       convertedRlsOptions.value = rls;
+      convertedFeatures.value = features;
       Toast.success('変換が完了しました');
     };
 
@@ -159,7 +163,7 @@ const RootComponent = {
         return;
       }
 
-      App.Core.Zipper.generateZip(App.State.parsedTables, convertedFormats.value, convertedRlsOptions.value).then(content => {
+      App.Core.Zipper.generateZip(App.State.parsedTables, convertedFormats.value, convertedRlsOptions.value, convertedFeatures.value).then(content => {
         const now = (d => { d.setHours(d.getHours() + 9); return d.toISOString().slice(0, 19).replace('T', '-').replace(/:/g, '') })(new Date())
         downloadFile(content, `table-definitions-${now}.zip`);
       });
@@ -251,6 +255,21 @@ const loadConfig = async () => {
     if (App.State.config.sql && App.State.config.sql.includeCountMethod !== undefined) {
       App.State.sql.includeCountMethod = App.State.config.sql.includeCountMethod;
     }
+    if (App.State.config.sql && App.State.config.sql.useArrayParams !== undefined) {
+      App.State.sql.useArrayParams = App.State.config.sql.useArrayParams;
+    }
+    if (App.State.config.sql && App.State.config.sql.useReadReplica !== undefined) {
+      App.State.sql.useReadReplica = App.State.config.sql.useReadReplica;
+    }
+    if (App.State.config.sql && App.State.config.sql.useTenantSession !== undefined) {
+      App.State.sql.useTenantSession = App.State.config.sql.useTenantSession;
+    }
+    if (App.State.config.sql && App.State.config.sql.useWarmUp !== undefined) {
+      App.State.sql.useWarmUp = App.State.config.sql.useWarmUp;
+    }
+    if (App.State.config.sql && App.State.config.sql.useReadOnly !== undefined) {
+      App.State.sql.useReadOnly = App.State.config.sql.useReadOnly;
+    }
     return;
   }
 
@@ -16,20 +16,40 @@ const ConfigEditor = {
       { id: 'idx2', label: 'Idx2' },
       { id: 'idx3', label: 'Idx3' },
       { id: 'idx4', label: 'Idx4' },
-      { id: 'idx5', label: 'Idx5' }
+      { id: 'idx5', label: 'Idx5' },
+      { id: 'search', label: '全文検索 (Search)' }
     ];
 
     // エクスポート可能な全フォーマット
     const availableExportFormats = [
       { id: 'ddl', label: 'DDL (SQL)' },
       { id: 'ddl-play', label: 'DDL (Play Framework Evolution)' },
+      { id: 'ddl-migration', label: 'DDL オンライン移行 (差分 Evolution)' },
       { id: 'typescript', label: 'TypeScript (Type Definition)' },
       { id: 'zod-schema', label: 'Zod Schema' },
       { id: 'zod-type', label: 'Zod Type' },
       { id: 'java-model', label: 'Java (EBean Model)' },
       { id: 'java-repo', label: 'Java (EBean Repository)' },
+      { id: 'java-repo-reactive', label: 'Java (R2DBC Reactive Repository)' },
       { id: 'java-service', label: 'Java (Service)' },
-      { id: 'java-controller', label: 'Java (Controller)' }
+      { id: 'java-controller', label: 'Java (Controller)' },
+      { id: 'java-datagen', label: 'Java (Synthetic Data Generator)' }
+    ];
+
+    // 追加生成オプション
+    const availableFeatures = [
+      { id: 'archive', label: '論理削除データのアーカイブジョブ' },
+      { id: 'conditionalGet', label: '条件付きGET (ETag / 304 Not Modified)' },
+      { id: 'streaming', label: '一覧のストリーミング出力 (JSON / NDJSON)' },
+      { id: 'readReplica', label: '参照系のリードレプリカ振り分け' },
+      { id: 'insertCoalescing', label: '単一行 insert のまとめ書き (write-behind バッチ)' },
+      { id: 'changedSince', label: '差分同期 API (changedSince)' },
+      { id: 'admissionControl', label: '同時実行制御 (admissionControl)' },
+      { id: 'warmUp', label: '起動時ウォームアップ (warmUp)' },
+      { id: 'binaryFormat', label: 'バイナリ応答 Smile / CBOR (binaryFormat)' },
+      { id: 'parallelExport', label: '並列エクスポート (parallelExport)' },
+      { id: 'readOnlyList', label: '読み取り専用の一覧 (readOnlyList)' },
+      { id: 'queryBudget', label: 'クエリ数の回帰テスト (queryBudget)' }
     ];
 
     // --- Global Settings (テーマ & フォントサイズ) ---
@@ -60,6 +80,14 @@ const ConfigEditor = {
         return App.State.config.commonColumns;
     });
 
+    // 追加生成オプション (古い設定ファイルでは未定義の場合がある)
+    const exportFeatures = Vue.computed(() => {
+        if (!App.State.config.export.features) {
+            App.State.config.export.features = {};
+        }
+        return App.State.config.export.features;
+    });
+
     // 設定コードの生成
     const generateConfigCode = () => {
       if (!App.State.config) return '';
@@ -85,6 +113,8 @@ const ConfigEditor = {
       availableExportFormats,
       globalSettings,
       commonCols,
+      availableFeatures,
+      exportFeatures,
       copyToClipboard,
       generateConfigCode
     };
@@ -150,6 +180,26 @@ const ConfigEditor = {
               <input type="checkbox" v-model="AppState.config.sql.includeCountMethod">
               Countメソッド (count(*)) を生成する
             </label>
+            <label>
+              <input type="checkbox" v-model="AppState.config.sql.useArrayParams">
+              IN (:param) を = ANY(:param) の配列パラメータで生成する
+            </label>
+            <label>
+              <input type="checkbox" v-model="AppState.config.sql.useReadReplica">
+              検索をリードレプリカへ振り分ける (DatabaseRouter を使用)
+            </label>
+            <label>
+              <input type="checkbox" v-model="AppState.config.sql.useTenantSession">
+              ネイティブRLSのテナント設定を行う (TenantSession を使用)
+            </label>
+            <label>
+              <input type="checkbox" v-model="AppState.config.sql.useWarmUp">
+              起動時ウォームアップの対象にする (WarmUpTarget を実装)
+            </label>
+            <label>
+              <input type="checkbox" v-model="AppState.config.sql.useReadOnly">
+              モデルを読み取り専用で取得する (setUnmodifiable)
+            </label>
           </article>
         </div>
 
@@ -229,6 +279,15 @@ const ConfigEditor = {
             </div>
           </article>
 
+          <!-- 追加生成オプション -->
+          <article>
+            <header><strong>追加生成オプション (初期値)</strong></header>
+            <label v-for="feat in availableFeatures" :key="feat.id" style="display: block; margin-bottom: 0.5rem;">
+              <input type="checkbox" v-model="exportFeatures[feat.id]">
+              {{ feat.label }}
+            </label>
+          </article>
+
           <!-- RLS設定 -->
           <article>
             <header>
@@ -246,6 +305,13 @@ const ConfigEditor = {
                 管理者フラグカラム名
                 <input type="text" v-model="AppState.config.export.rls.adminFlagColumn">
               </label>
+              <label>
+                RLS方式
+                <select v-model="AppState.config.export.rls.mode">
+                  <option value="java">Java (リポジトリでテナント条件を付与)</option>
+                  <option value="native">PostgreSQL ネイティブ (ポリシー + セッション設定)</option>
+                </select>
+              </label>
             </div>
           </article>
         </div>
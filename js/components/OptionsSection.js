@@ -12,6 +12,21 @@ const OptionsSection = {
             </label>
           </fieldset>
         </details>
+        <details v-if="selectedFormats.includes('ddl-migration')" open>
+          <summary>オンライン移行 (差分 Evolution) オプション</summary>
+          <fieldset>
+            <label>
+              変更前 (適用済み) のテーブル定義 (TSV または JSON)
+              <input type="file" @change="handleBaselineFileChange">
+            </label>
+            <textarea rows="4" v-model="baselineText" @change="loadBaseline" placeholder="変更前の定義を貼り付け"></textarea>
+            <small>{{ baselineSummary }}</small>
+            <label>
+              最初の Evolution 番号
+              <input type="number" min="1" v-model.number="migration.startRevision">
+            </label>
+          </fieldset>
+        </details>
         <details>
           <summary>Java RLS (Row-Level Security) オプション</summary>
           <fieldset>
@@ -28,9 +43,26 @@ const OptionsSection = {
                 管理者フラグカラム名
                 <input type="text" v-model="rls.adminFlagColumn">
               </label>
+              <label>
+                RLS方式
+                <select v-model="rls.mode">
+                  <option value="java">Java (リポジトリでテナント条件を付与)</option>
+                  <option value="native">PostgreSQL ネイティブ (ポリシー + セッション設定)</option>
+                </select>
+              </label>
             </div>
           </fieldset>
         </details>
+        <details>
+          <summary>追加生成オプション</summary>
+          <fieldset>
+            <label v-for="opt in featureOptions" :key="opt.value">
+              <input type="checkbox" v-model="features[opt.value]" :disabled="isUnavailable(opt)">
+              {{ opt.label }}
+              <small v-if="isUnavailable(opt)">(ネイティブRLSでは生成されません)</small>
+            </label>
+          </fieldset>
+        </details>
       </section>
       <footer><button @click="handleConvert" style="width: 100%;">変換実行</button></footer>
     </article>
@@ -50,14 +82,17 @@ const OptionsSection = {
     const formatOptions = [
       { value: 'ddl', label: 'DDL (PostgreSQL)' },
       { value: 'ddl-play', label: 'DDL (PlayFramework)' },
+      { value: 'ddl-migration', label: 'DDL オンライン移行 (差分 Evolution)' },
       { value: 'typescript', label: 'TypeScript type' },
       { value: 'zod-schema', label: 'Zod Schema' },
       { value: 'zod-type', label: 'TypeScript type from Zod' },
       { value: 'java-model', label: 'Java (EBean) model' },
       { value: 'java-repo', label: 'Java repository' },
+      { value: 'java-repo-reactive', label: 'Java reactive repository (R2DBC)' },
       { value: 'java-service', label: 'Java service' },
       { value: 'java-controller', label: 'Java controller' },
-      { value: 'vscode-snippets', label: 'VS Code Snippets' }
+      { value: 'vscode-snippets', label: 'VS Code Snippets' },
+      { value: 'java-datagen', label: 'Java data generator (performance test)' }
     ];
 
     // RLS (Row-Level Security) オプション
@@ -65,14 +100,70 @@ const OptionsSection = {
     const rls = Vue.reactive({
       enabled: rlsConfig.enabled !== undefined ? rlsConfig.enabled : false,
       tenantIdColumn: rlsConfig.tenantIdColumn || 'tenant_id',
-      adminFlagColumn: rlsConfig.adminFlagColumn || 'is_admin'
+      adminFlagColumn: rlsConfig.adminFlagColumn || 'is_admin',
+      mode: rlsConfig.mode || 'java'
     });
 
+    // 追加生成オプション (既定では全て無効)
+    const featureOptions = [
+      { value: 'archive', label: '論理削除データのアーカイブジョブ' },
+      { value: 'conditionalGet', label: '条件付きGET (ETag / 304 Not Modified)' },
+      { value: 'streaming', label: '一覧のストリーミング出力 (JSON / NDJSON)' },
+      { value: 'readReplica', label: '参照系のリードレプリカ振り分け', nativeRls: false },
+      { value: 'insertCoalescing', label: '単一行 insert のまとめ書き (write-behind バッチ)', nativeRls: false },
+      { value: 'changedSince', label: '差分同期 API (changedSince)' },
+      { value: 'admissionControl', label: '同時実行制御 (admissionControl)' },
+      { value: 'warmUp', label: '起動時ウォームアップ (warmUp)' },
+      { value: 'binaryFormat', label: 'バイナリ応答 Smile / CBOR (binaryFormat)' },
+      { value: 'parallelExport', label: '並列エクスポート (parallelExport)' },
+      { value: 'readOnlyList', label: '読み取り専用の一覧 (readOnlyList)' },
+      { value: 'queryBudget', label: 'クエリ数の回帰テスト (queryBudget)' }
+    ];
+    // ネイティブRLSではテナント設定をプライマリのトランザクションに行うため、リポジトリが使わない機能
+    const isUnavailable = (opt) => opt.nativeRls === false && App.Utils.TableFeatures.isNativeRls(rls);
+    const featuresConfig = (App.State.config && App.State.config.export && App.State.config.export.features) || {};
+    const features = Vue.reactive(Object.fromEntries(
+      featureOptions.map(opt => [opt.value, featuresConfig[opt.value] === true])
+    ));
+
+    // オンライン移行 (差分 Evolution) の変更前の定義
+    const migration = App.State.migration;
+    const baselineText = Vue.ref('');
+    const baselineSummary = Vue.computed(() => migration.baselineTables.length > 0
+      ? `${migration.baselineTables.length} テーブルを読み込みました`
+      : '未読み込み');
+
+    const loadBaseline = () => {
+      try {
+        migration.baselineTables = App.Core.Parser.parseDefinitionText(baselineText.value);
+      } catch (e) {
+        console.error(e);
+        Toast.error('変更前の定義を読み込めませんでした: ' + e.message);
+      }
+    };
+
+    const handleBaselineFileChange = (e) => {
+      const file = e.target.files[0];
+      if (!file) return;
+
+      const reader = new FileReader();
+      reader.onload = (e) => {
+        baselineText.value = e.target.result;
+        loadBaseline();
+      };
+      reader.onerror = (e) => {
+        console.error('File read error:', e);
+        Toast.error('ファイルの読み込みに失敗しました。');
+      };
+      reader.readAsText(file);
+    };
+
     // 変換実行
     const handleConvert = () => {
       emit('convert', {
         formats: selectedFormats.value,
-        rls: { ...rls }
+        rls: { ...rls },
+        features: { ...features }
       });
     };
 
@@ -80,6 +171,14 @@ const OptionsSection = {
       selectedFormats,
       formatOptions,
       rls,
+      featureOptions,
+      features,
+      isUnavailable,
+      migration,
+      baselineText,
+      baselineSummary,
+      loadBaseline,
+      handleBaselineFileChange,
       handleConvert
     };
   }
@@ -37,6 +37,26 @@ const SqlBuilder = {
                    <input type="checkbox" v-model="sql.includeCountMethod">
                    件数取得 (count) メソッドも生成する
                  </label>
+                 <label>
+                   <input type="checkbox" v-model="sql.useArrayParams">
+                   IN (:param) を = ANY(:param) の配列パラメータで生成する
+                 </label>
+                 <label>
+                   <input type="checkbox" v-model="sql.useReadReplica">
+                   検索をリードレプリカへ振り分ける (DatabaseRouter を使用)
+                 </label>
+                 <label>
+                   <input type="checkbox" v-model="sql.useTenantSession">
+                   ネイティブRLSのテナント設定を行う (TenantSession を使用)
+                 </label>
+                 <label>
+                   <input type="checkbox" v-model="sql.useWarmUp">
+                   起動時ウォームアップの対象にする (WarmUpTarget を実装)
+                 </label>
+                 <label>
+                   <input type="checkbox" v-model="sql.useReadOnly">
+                   モデルを読み取り専用で取得する (setUnmodifiable)
+                 </label>
                </div>
              </div>
            </div>
@@ -9,6 +9,10 @@ const SqlFilters = {
             placeholder="例: t0.id > 100" 
             style="field-sizing: content; flex-grow:1; height: auto; min-height: 2rem; resize: vertical; padding: 0.25rem; margin: 0;">
          </textarea>
+         <label title="パラメータが未指定 (null・空のリスト) の場合はこの条件を適用しない" style="white-space: nowrap; margin: 0;">
+           <input type="checkbox" :checked="optionalFilters[index]" @change="updateOptional(index, $event.target.checked)">
+           任意
+         </label>
          <button class="outline contrast btn-sm btn-danger" @click="removeFilter(index)" title="削除"><i class="bi bi-x-lg"></i></button>
       </div>
       <button @click="addFilter" class="secondary outline btn-sm" style="margin-top: 0.5rem; width: 100%;"><i class="bi bi-plus-lg"></i> 条件を追加</button>
@@ -17,18 +21,25 @@ const SqlFilters = {
   setup() {
     // 絞り込み条件
     const filters = Vue.computed(() => App.State.sql.filters);
+    // 任意条件のフラグ
+    const optionalFilters = Vue.computed(() => App.State.sql.optionalFilters);
 
     const addFilter = () => App.Core.SqlLogic.addFilter();
     const removeFilter = (index) => App.Core.SqlLogic.removeFilter(index);
     const updateFilter = (index, value) => {
       App.State.sql.filters[index] = value;
     };
+    const updateOptional = (index, value) => {
+      App.State.sql.optionalFilters[index] = value;
+    };
 
     return {
       filters,
+      optionalFilters,
       addFilter,
       removeFilter,
-      updateFilter
+      updateFilter,
+      updateOptional
     };
   }
 };
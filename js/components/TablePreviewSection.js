@@ -39,7 +39,8 @@ const TablePreviewSection = {
       { key: 'idx2', label: 'Idx2', defaultVisibility: false },
       { key: 'idx3', label: 'Idx3', defaultVisibility: false },
       { key: 'idx4', label: 'Idx4', defaultVisibility: false },
-      { key: 'idx5', label: 'Idx5', defaultVisibility: false }
+      { key: 'idx5', label: 'Idx5', defaultVisibility: false },
+      { key: 'search', label: '全文検索', defaultVisibility: false }
     ];
 
     // 表示するカラム
@@ -180,7 +181,8 @@ const TablePreviewSection = {
             idx2: col.idx2,
             idx3: col.idx3,
             idx4: col.idx4,
-            idx5: col.idx5
+            idx5: col.idx5,
+            search: col.search
           });
         });
       });
@@ -224,7 +226,8 @@ const TablePreviewSection = {
           idx2: row.idx2 || '',
           idx3: row.idx3 || '',
           idx4: row.idx4 || '',
-          idx5: row.idx5 || ''
+          idx5: row.idx5 || '',
+          search: row.search || ''
         });
       });
 
@@ -244,7 +247,8 @@ const TablePreviewSection = {
           'Column Name', 'Column Name (JP)', 
           'PK/FK', 'Type', 'Length', 'Constraint', 
           'Default', 'Description', 
-          'Idx1', 'Idx2', 'Idx3', 'Idx4', 'Idx5'
+          'Idx1', 'Idx2', 'Idx3', 'Idx4', 'Idx5',
+          'Search'
         ],
         columns: [
           { data: 'tableName', type: 'text' },
@@ -261,7 +265,8 @@ const TablePreviewSection = {
           { data: 'idx2', type: 'text' },
           { data: 'idx3', type: 'text' },
           { data: 'idx4', type: 'text' },
-          { data: 'idx5', type: 'text' }
+          { data: 'idx5', type: 'text' },
+          { data: 'search', type: 'text' }
         ],
         fixedColumnsLeft: 1,
         rowHeaders: true,
@@ -375,7 +380,8 @@ const TablePreviewSection = {
               'Idx2': col.idx2,
               'Idx3': col.idx3,
               'Idx4': col.idx4,
-              'Idx5': col.idx5
+              'Idx5': col.idx5,
+              'Search': col.search
             });
           });
         });
@@ -0,0 +1,762 @@
+// Initialize Namespace
+window.App = window.App || {};
+App.Converters = App.Converters || {};
+
+App.Converters.DataGenerator = {
+  /**
+   * 性能試験用の合成データ生成ツール (Java) 生成
+   */
+  generateDataGenerator(tables, rlsOptions) {
+    const ordered = this.sortByReference(tables);
+    const nativeRls = App.Utils.TableFeatures.isNativeRls(rlsOptions);
+    const bypassSetting = App.Utils.TableFeatures.rlsBypassSetting;
+    const content = `
+package datagen;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 性能試験用の合成データ生成ツール (テーブル定義書から生成)
+ * NOT NULL・UNIQUE・主キー・外部キーを満たす行を、外部キーの参照順 (親テーブルが先) に生成します。
+ * 依存ライブラリは不要で、直接投入する場合のみ PostgreSQL JDBC ドライバをクラスパスに追加します。
+ * <pre>
+ * # COPY 形式で出力 (out/load.sql を psql で実行)
+ * java datagen/DataGenerator.java --rows=1000000 --out=out
+ * cd out &amp;&amp; psql -d mydb -f load.sql
+ *
+ * # JDBC のバッチ INSERT で直接投入
+ * java -cp postgresql.jar datagen/DataGenerator.java --rows=1000000 \\
+ *     --jdbc-url="jdbc:postgresql://localhost/mydb?reWriteBatchedInserts=true" --user=app --password=secret
+ * </pre>
+ * オプション:
+ * <ul>
+ *   <li>--rows=N: 全テーブル共通の件数 (既定: 10000)</li>
+ *   <li>--rows.テーブル名=N: テーブルごとの件数 (複合主キーのテーブルは組み合わせ数が上限)</li>
+ *   <li>--cardinality=N / --cardinality.テーブル名.カラム名=N: 一意でないカラムの値の種類数 (既定: 100)</li>
+ *   <li>--skew=S: 外部キーの参照先と値の偏り (Zipf 分布の指数。0 で一様、既定: 1.0)</li>
+ *   <li>--null-ratio=R: NULL 可のカラムを NULL にする割合 (既定: 0.1)</li>
+ *   <li>--tenants=N / --tenant-skew=S: テナント数とテナントごとの行数の偏り (既定: 10 / 1.0)</li>
+ *   <li>--tenant-block=N: 同じテナントが続く行数 (既定: 100)。子テーブルは同じテナントの親行を参照します</li>
+ *   <li>--seed=N: 乱数のシード (既定: 42)</li>
+ *   <li>--out=DIR: COPY 形式の出力先 (既定: datagen-out)</li>
+ *   <li>--jdbc-url=URL --user=USER --password=PASS: 指定時は COPY 形式ではなく直接投入</li>
+ *   <li>--batch-size=N: 直接投入の 1 バッチ・1 トランザクションの行数 (既定: 5000)</li>
+ * </ul>
+${nativeRls ? ` * ネイティブRLS (FORCE ROW LEVEL SECURITY) のテーブルは、直接投入では ${bypassSetting} を on にして全テナントの行を書き込み、
+ * load.sql ではテーブルごとに NO FORCE にした同じトランザクション内で COPY します (テーブル所有者で実行してください)。
+` : ''} */
+public final class DataGenerator {
+
+    /** テナントIDカラムを持つテーブルにネイティブRLSのポリシーがあるかどうか */
+    private static final boolean NATIVE_RLS = ${nativeRls};
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet",
+        "kilo", "lima", "mike", "november", "oscar", "papa", "quebec", "romeo", "sierra", "tango"
+    };
+
+    private DataGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Tenants tenants = new Tenants(options.getInt("tenants", 10), options.getDouble("tenant-skew", 1.0), options.getLong("seed", 42));
+        List<Table> tables = tables(options, tenants);
+
+        long startedAt = System.nanoTime();
+        try (Sink sink = options.has("jdbc-url") ? new JdbcSink(options) : new CopySink(Paths.get(options.get("out", "datagen-out")))) {
+            for (Table table : tables) {
+                long tableStartedAt = System.nanoTime();
+                table.writeTo(sink);
+                System.out.printf("%s: %,d rows in %,d ms%n", table.name, table.rows, (System.nanoTime() - tableStartedAt) / 1_000_000);
+            }
+        }
+        System.out.printf("total: %,d ms%n", (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    /**
+     * テーブル定義 (外部キーの参照順)
+     */
+    private static List<Table> tables(Options options, Tenants tenants) {
+${this.generateTableDefinitions(ordered, rlsOptions)}
+    }
+
+    // ---------------------------------------------------------------------
+    // 分布
+    // ---------------------------------------------------------------------
+
+    /**
+     * [0, n) の値を、指数 skew の Zipf 分布 (の連続近似) で返します。小さい値ほど選ばれやすく、skew = 0 で一様です。
+     */
+    static long zipf(SplittableRandom random, long n, double skew) {
+        if (n <= 1) {
+            return 0;
+        }
+        double u = random.nextDouble();
+        if (skew <= 0) {
+            return (long) (u * n);
+        }
+        double x;
+        if (Math.abs(skew - 1.0) < 1e-9) {
+            x = Math.pow(n + 1, u);
+        } else {
+            double a = 1 - skew;
+            x = Math.pow((Math.pow(n + 1, a) - 1) * u + 1, 1 / a);
+        }
+        return Math.min(n - 1, Math.max(0, (long) x - 1));
+    }
+
+    /**
+     * 順位を [0, n) に散らします (よく選ばれる値が小さい ID に固まらないように)。
+     */
+    static long scatter(long rank, long n) {
+        return n % 2654435761L == 0 ? rank : Math.floorMod(rank * 2654435761L, n);
+    }
+
+    /**
+     * テナントごとの行数の比率 (Zipf 分布)
+     */
+    static final class Tenants {
+        final int count;
+        private final double[] cumulative;
+        private final long seed;
+
+        Tenants(int count, double skew, long seed) {
+            this.count = Math.max(1, count);
+            this.seed = seed;
+            this.cumulative = new double[this.count];
+            double total = 0;
+            for (int i = 0; i < this.count; i++) {
+                total += 1 / Math.pow(i + 1, Math.max(0, skew));
+                cumulative[i] = total;
+            }
+            for (int i = 0; i < this.count; i++) {
+                cumulative[i] /= total;
+            }
+        }
+
+        int pick(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(count - 1, index >= 0 ? index : -index - 1);
+        }
+
+        /**
+         * テーブルの行ブロックごとにテナントを割り当てます。
+         */
+        int[] assignBlocks(String table, long blocks) {
+            SplittableRandom random = new SplittableRandom(seed ^ table.hashCode());
+            int[] assigned = new int[(int) blocks];
+            for (int i = 0; i < assigned.length; i++) {
+                assigned[i] = pick(random);
+            }
+            return assigned;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // テーブルとカラム
+    // ---------------------------------------------------------------------
+
+    /** 生成中の行 */
+    static final class Row {
+        long id;
+        long key;
+        int tenant = -1;
+        SplittableRandom random;
+    }
+
+    /** 1カラムの値の生成 (null は NULL) */
+    interface Generator {
+        String next(Row row);
+    }
+
+    static final class Column {
+        final String name;
+        final String sqlType;
+        final Generator generator;
+
+        Column(String name, String sqlType, Generator generator) {
+            this.name = name;
+            this.sqlType = sqlType;
+            this.generator = generator;
+        }
+    }
+
+    /**
+     * テーブルの生成定義
+     * 行は ID (1 始まりの連番) 順に生成し、主キー・一意カラムは ID から、その他は乱数から値を決めます。
+     */
+    static final class Table {
+        final String name;
+        final Options options;
+        final Tenants tenants;
+        final List<Column> columns = new ArrayList<>();
+        final List<String> serialColumns = new ArrayList<>();
+        long rows;
+        private final long requestedRows;
+        private final long blockSize;
+        private final double skew;
+        private final double nullRatio;
+        private long keySpace = 1;
+        private boolean hasTenant;
+        private int[] blockTenants;
+        private int[][] tenantBlocks;
+
+        Table(String name, Options options, Tenants tenants) {
+            this.name = name;
+            this.options = options;
+            this.tenants = tenants;
+            this.requestedRows = options.getLong("rows." + name, options.getLong("rows", 10000));
+            this.rows = requestedRows;
+            this.blockSize = Math.max(1, options.getLong("tenant-block", 100));
+            this.skew = options.getDouble("skew", 1.0);
+            this.nullRatio = options.getDouble("null-ratio", 0.1);
+        }
+
+        private Table add(String column, String sqlType, boolean nullable, Generator generator) {
+            columns.add(new Column(column, sqlType, nullable
+                ? row -> row.random.nextDouble() < nullRatio ? null : generator.next(row)
+                : generator));
+            return this;
+        }
+
+        private long cardinality(String column) {
+            return Math.max(1, options.getLong("cardinality." + name + "." + column, options.getLong("cardinality", 100)));
+        }
+
+        /** 連番の主キー (投入後にシーケンスを進めます) */
+        Table serial(String column, String sqlType) {
+            serialColumns.add(column);
+            return add(column, sqlType, false, row -> String.valueOf(row.id));
+        }
+
+        /**
+         * 複合主キーの一部 (size 種類の値を持つ桁として、全カラムの組み合わせが行ごとに異なるようにします)
+         * 組み合わせ数を超える件数は指定できないため、件数は組み合わせ数で頭打ちになります。
+         */
+        Table keyPart(String column, String sqlType, long size, KeyValue value) {
+            long divisor = keySpace;
+            long radix = Math.max(1, size);
+            keySpace = keySpace > Long.MAX_VALUE / radix ? Long.MAX_VALUE : keySpace * radix;
+            rows = Math.min(requestedRows, keySpace);
+            return add(column, sqlType, false, row -> value.at((row.key / divisor) % radix));
+        }
+
+        /** 複合主キーの外部キー部分 */
+        Table keyReference(String column, String sqlType, Table parent) {
+            return keyPart(column, sqlType, parent.rows, index -> String.valueOf(index + 1));
+        }
+
+        /** 複合主キーのその他の部分 (cardinality 種類) */
+        Table keyValue(String column, String sqlType, String kind, int length) {
+            return keyPart(column, sqlType, cardinality(column), index -> uniqueValue(kind, column, index + 1, length));
+        }
+
+        /** 一意カラム (ID から決まる値) */
+        Table unique(String column, String sqlType, String kind, int length) {
+            return add(column, sqlType, false, row -> uniqueValue(kind, column, row.id, length));
+        }
+
+        /** テナントIDカラム (tenant-block 行ごとに割り当て) */
+        Table tenant(String column, String sqlType, boolean numeric) {
+            hasTenant = true;
+            return add(column, sqlType, false, row -> numeric ? String.valueOf(row.tenant + 1) : "tenant-" + (row.tenant + 1));
+        }
+
+        /** 件数の確定後 (生成開始時) に、行ブロックごとのテナントを決めます */
+        private void assignTenants() {
+            long blocks = (rows + blockSize - 1) / blockSize;
+            blockTenants = tenants.assignBlocks(name, blocks);
+            List<List<Integer>> byTenant = new ArrayList<>();
+            for (int t = 0; t < tenants.count; t++) {
+                byTenant.add(new ArrayList<>());
+            }
+            for (int b = 0; b < blockTenants.length; b++) {
+                byTenant.get(blockTenants[b]).add(b);
+            }
+            tenantBlocks = byTenant.stream().map(list -> list.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+        }
+
+        /**
+         * 外部キー (親テーブルの ID を偏りを付けて参照)
+         * 親子ともテナントIDを持つ場合は、同じテナントの親行を参照します。
+         */
+        Table reference(String column, String sqlType, Table parent, boolean nullable) {
+            return add(column, sqlType, nullable, row -> String.valueOf(parent.pickId(row, skew)));
+        }
+
+        Table text(String column, int length, boolean nullable) {
+            long cardinality = cardinality(column);
+            return add(column, "text", nullable, row -> truncate(column + "-" + (scatter(zipf(row.random, cardinality, skew), cardinality) + 1), length));
+        }
+
+        Table longText(String column, boolean nullable) {
+            return add(column, "text", nullable, row -> {
+                int words = 5 + row.random.nextInt(30);
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < words; i++) {
+                    text.append(i == 0 ? "" : " ").append(WORDS[(int) zipf(row.random, WORDS.length, skew)]);
+                }
+                return text.toString();
+            });
+        }
+
+        Table number(String column, String sqlType, long max, boolean nullable) {
+            long cardinality = Math.min(max, cardinality(column));
+            return add(column, sqlType, nullable, row -> String.valueOf(scatter(zipf(row.random, cardinality, skew), cardinality)));
+        }
+
+        Table decimal(String column, int precision, int scale, boolean nullable) {
+            double max = Math.min(Math.pow(10, Math.max(1, precision - scale)) - 1, 1_000_000);
+            return add(column, "numeric", nullable, row ->
+                java.math.BigDecimal.valueOf(row.random.nextDouble() * max).setScale(scale, java.math.RoundingMode.DOWN).toPlainString());
+        }
+
+        Table bool(String column, String defaultValue, boolean nullable) {
+            // 既定値があれば 8 割をその値にする
+            double trueRatio = "true".equalsIgnoreCase(defaultValue) ? 0.8 : "false".equalsIgnoreCase(defaultValue) ? 0.2 : 0.5;
+            return add(column, "boolean", nullable, row -> row.random.nextDouble() < trueRatio ? "true" : "false");
+        }
+
+        Table timestamp(String column, boolean nullable) {
+            return add(column, "timestamp", nullable, row -> BASE_TIME.plusSeconds(row.random.nextLong(5L * 365 * 24 * 3600)).format(TIMESTAMP_FORMAT));
+        }
+
+        Table date(String column, boolean nullable) {
+            return add(column, "date", nullable, row -> BASE_TIME.toLocalDate().plusDays(row.random.nextInt(5 * 365)).toString());
+        }
+
+        Table time(String column, boolean nullable) {
+            return add(column, "time", nullable, row -> LocalTime.ofSecondOfDay(row.random.nextInt(24 * 3600)).toString());
+        }
+
+        Table uuid(String column, boolean nullable) {
+            return add(column, "uuid", nullable, row -> new UUID(row.random.nextLong(), row.random.nextLong()).toString());
+        }
+
+        Table constant(String column, String sqlType, String value, boolean nullable) {
+            return add(column, sqlType, nullable, row -> value);
+        }
+
+        /**
+         * この表の ID を 1 つ選びます。
+         */
+        long pickId(Row child, double skew) {
+            if (child.tenant >= 0 && tenantBlocks != null && tenantBlocks[child.tenant].length > 0) {
+                int[] blocks = tenantBlocks[child.tenant];
+                long block = blocks[(int) scatter(zipf(child.random, blocks.length, skew), blocks.length)];
+                long size = Math.min(blockSize, rows - block * blockSize);
+                return block * blockSize + child.random.nextLong(size) + 1;
+            }
+            return scatter(zipf(child.random, rows, skew), rows) + 1;
+        }
+
+        void writeTo(Sink sink) throws Exception {
+            if (hasTenant) {
+                assignTenants();
+            }
+            sink.begin(this);
+            Row row = new Row();
+            row.random = new SplittableRandom(options.getLong("seed", 42) ^ name.hashCode());
+            String[] values = new String[columns.size()];
+            for (long id = 1; id <= rows; id++) {
+                row.id = id;
+                // 複合主キーの組み合わせは、先頭の桁だけが変わらないよう散らして割り当てる
+                row.key = scatter(id - 1, keySpace);
+                row.tenant = blockTenants != null ? blockTenants[(int) ((id - 1) / blockSize)] : -1;
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = columns.get(i).generator.next(row);
+                }
+                sink.row(values);
+            }
+            sink.end(this);
+        }
+    }
+
+    /** 複合主キーの桁の値 */
+    interface KeyValue {
+        String at(long index);
+    }
+
+    static String uniqueValue(String kind, String column, long id, int length) {
+        switch (kind) {
+            case "number":
+                return String.valueOf(id);
+            case "date":
+                return BASE_TIME.toLocalDate().plusDays(id).toString();
+            case "timestamp":
+                return BASE_TIME.plusSeconds(id).format(TIMESTAMP_FORMAT);
+            case "uuid":
+                return new UUID(0, id).toString();
+            case "email":
+                return truncateUnique("user" + id + "@example.com", Long.toString(id, 36), length);
+            default:
+                return truncateUnique(column + "-" + id, Long.toString(id, 36), length);
+        }
+    }
+
+    static String truncate(String value, int length) {
+        return length > 0 && value.length() > length ? value.substring(0, length) : value;
+    }
+
+    /** 長さに収まらない場合は短い一意な表現にします */
+    static String truncateUnique(String value, String shortValue, int length) {
+        return length <= 0 || value.length() <= length ? value : truncate(shortValue, length);
+    }
+
+    // ---------------------------------------------------------------------
+    // 出力先
+    // ---------------------------------------------------------------------
+
+    interface Sink extends AutoCloseable {
+        void begin(Table table) throws Exception;
+
+        void row(String[] values) throws Exception;
+
+        void end(Table table) throws Exception;
+
+        @Override
+        void close() throws IOException, SQLException;
+    }
+
+    /**
+     * PostgreSQL の COPY (text 形式) ファイルと、それを順に取り込む load.sql を出力します。
+     */
+    static final class CopySink implements Sink {
+        private final Path dir;
+        private final Writer script;
+        private Writer writer;
+        private int sequence;
+
+        CopySink(Path dir) throws IOException {
+            this.dir = dir;
+            Files.createDirectories(dir);
+            this.script = Files.newBufferedWriter(dir.resolve("load.sql"), StandardCharsets.UTF_8);
+            script.write("\\\\set ON_ERROR_STOP on\\n");
+            if (NATIVE_RLS) {
+                // COPY FROM は RLS が適用されるテーブルに使えないため、テーブル所有者で一時的に NO FORCE にする
+                script.write("-- ネイティブRLSのテーブルを含むため、テーブル所有者で実行してください\\n");
+            }
+        }
+
+        @Override
+        public void begin(Table table) throws IOException {
+            String file = String.format("%02d_%s.tsv", ++sequence, table.name);
+            writer = new BufferedWriter(Files.newBufferedWriter(dir.resolve(file), StandardCharsets.UTF_8), 1 << 16);
+            String columns = table.columns.stream().map(c -> c.name).collect(Collectors.joining(", "));
+            if (NATIVE_RLS && table.hasTenant) {
+                // 失敗した場合もロールバックで FORCE に戻るよう、同じトランザクション内で切り替える
+                script.write("BEGIN;\\n");
+                script.write("ALTER TABLE " + table.name + " NO FORCE ROW LEVEL SECURITY;\\n");
+            }
+            script.write("\\\\copy " + table.name + " (" + columns + ") FROM '" + file + "'\\n");
+        }
+
+        @Override
+        public void row(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write('\\t');
+                }
+                writer.write(values[i] == null ? "\\\\N" : escape(values[i]));
+            }
+            writer.write('\\n');
+        }
+
+        @Override
+        public void end(Table table) throws IOException {
+            writer.close();
+            if (NATIVE_RLS && table.hasTenant) {
+                script.write("ALTER TABLE " + table.name + " FORCE ROW LEVEL SECURITY;\\n");
+                script.write("COMMIT;\\n");
+            }
+            for (String column : table.serialColumns) {
+                script.write("SELECT setval(pg_get_serial_sequence('" + table.name + "', '" + column + "'), " + Math.max(1, table.rows) + ");\\n");
+            }
+            script.write("ANALYZE " + table.name + ";\\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            script.close();
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf('\\\\') < 0 && value.indexOf('\\t') < 0 && value.indexOf('\\n') < 0 && value.indexOf('\\r') < 0) {
+                return value;
+            }
+            return value.replace("\\\\", "\\\\\\\\").replace("\\t", "\\\\t").replace("\\n", "\\\\n").replace("\\r", "\\\\r");
+        }
+    }
+
+    /**
+     * JDBC のバッチ INSERT で直接投入します (batch-size 行ごとにコミット)。
+     * PostgreSQL JDBC では reWriteBatchedInserts=true を付けると複数行 INSERT にまとめられます。
+     * ネイティブRLSの場合は、セッションの ${bypassSetting} を on にしてポリシーの WITH CHECK を通します。
+     */
+    static final class JdbcSink implements Sink {
+        private final Connection connection;
+        private final int batchSize;
+        private PreparedStatement statement;
+        private int pending;
+
+        JdbcSink(Options options) throws SQLException {
+            this.connection = DriverManager.getConnection(options.get("jdbc-url", null), options.get("user", null), options.get("password", null));
+            if (NATIVE_RLS) {
+                try (Statement st = connection.createStatement()) {
+                    st.execute("SELECT set_config('${bypassSetting}', 'on', false)");
+                }
+            }
+            this.connection.setAutoCommit(false);
+            this.batchSize = options.getInt("batch-size", 5000);
+        }
+
+        @Override
+        public void begin(Table table) throws SQLException {
+            String columns = table.columns.stream().map(c -> c.name).collect(Collectors.joining(", "));
+            // 値は文字列で渡し、SQL 側で各カラムの型へ変換する
+            String placeholders = table.columns.stream().map(c -> "CAST(? AS " + c.sqlType + ")").collect(Collectors.joining(", "));
+            statement = connection.prepareStatement("INSERT INTO " + table.name + " (" + columns + ") VALUES (" + placeholders + ")");
+        }
+
+        @Override
+        public void row(String[] values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                statement.setString(i + 1, values[i]);
+            }
+            statement.addBatch();
+            if (++pending >= batchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public void end(Table table) throws SQLException {
+            flush();
+            statement.close();
+            try (Statement st = connection.createStatement()) {
+                for (String column : table.serialColumns) {
+                    st.execute("SELECT setval(pg_get_serial_sequence('" + table.name + "', '" + column + "'), " + Math.max(1, table.rows) + ")");
+                }
+                st.execute("ANALYZE " + table.name);
+            }
+            connection.commit();
+        }
+
+        private void flush() throws SQLException {
+            if (pending > 0) {
+                statement.executeBatch();
+                connection.commit();
+                pending = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            connection.close();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // オプション
+    // ---------------------------------------------------------------------
+
+    static final class Options {
+        private final Map<String, String> values = new HashMap<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    options.values.put(arg.substring(2), "true");
+                } else {
+                    options.values.put(arg.substring(2, eq), arg.substring(eq + 1));
+                }
+            }
+            return options;
+        }
+
+        boolean has(String key) {
+            return values.containsKey(key);
+        }
+
+        String get(String key, String defaultValue) {
+            return values.getOrDefault(key, defaultValue);
+        }
+
+        int getInt(String key, int defaultValue) {
+            return has(key) ? Integer.parseInt(values.get(key)) : defaultValue;
+        }
+
+        long getLong(String key, long defaultValue) {
+            return has(key) ? Long.parseLong(values.get(key)) : defaultValue;
+        }
+
+        double getDouble(String key, double defaultValue) {
+            return has(key) ? Double.parseDouble(values.get(key)) : defaultValue;
+        }
+    }
+}
+`;
+    return [{ path: 'datagen/DataGenerator.java', content: content.trim() }];
+  },
+
+  /**
+   * 外部キーの参照先が先になるようテーブルを並べ替える (循環する場合は定義順のまま後ろに置く)
+   */
+  sortByReference(tables) {
+    const parents = new Map(tables.map(table => [table, new Set(
+      table.columns
+        .filter(col => col.pkfk && col.pkfk.includes('FK'))
+        .map(col => App.Utils.TableFeatures.findReferencedTable(col, tables))
+        .filter(parent => parent && parent !== table)
+    )]));
+    const ordered = [];
+    const remaining = [...tables];
+    while (remaining.length > 0) {
+      const index = remaining.findIndex(table => [...parents.get(table)].every(parent => ordered.includes(parent)));
+      ordered.push(...remaining.splice(index >= 0 ? index : 0, 1));
+    }
+    return ordered;
+  },
+
+  /**
+   * テーブルごとのカラム生成定義 (Table のビルダー呼び出し) を生成する
+   */
+  generateTableDefinitions(tables, rlsOptions) {
+    const varName = table => toCamelCase(table.tableName);
+    let code = '';
+    tables.forEach(table => {
+      const keyColumns = table.columns.filter(col => col.pkfk && col.pkfk.includes('PK'));
+      code += `        Table ${varName(table)} = new Table("${table.tableName}", options, tenants)`;
+      table.columns.forEach(col => {
+        code += `\n            .${this.generateColumnDefinition(table, col, tables, keyColumns.length > 1, rlsOptions, varName)}`;
+      });
+      code += `;\n`;
+    });
+    code += `        return List.of(${tables.map(varName).join(', ')});`;
+    return code;
+  },
+
+  /**
+   * 1カラムの生成定義を返す
+   */
+  generateColumnDefinition(table, col, tables, compositeKey, rlsOptions, varName) {
+    const name = col.colName;
+    const type = (col.type || '').toLowerCase();
+    const length = parseInt(col.length, 10) || 0;
+    const isKey = !!(col.pkfk && col.pkfk.includes('PK'));
+    const isUnique = !!((col.constraint && col.constraint.includes('U')) || (col.pkfk && col.pkfk.includes('AK')));
+    const nullable = !isKey && !(col.constraint && col.constraint.includes('NN'));
+    const sqlType = this.toSqlType(type);
+    const parent = col.pkfk && col.pkfk.includes('FK') ? App.Utils.TableFeatures.findReferencedTable(col, tables) : null;
+
+    if (rlsOptions && rlsOptions.enabled && name === rlsOptions.tenantIdColumn) {
+      return `tenant("${name}", "${sqlType}", ${['text', 'uuid'].includes(sqlType) ? 'false' : 'true'})`;
+    }
+    if (isKey && compositeKey) {
+      return parent
+        ? `keyReference("${name}", "${sqlType}", ${varName(parent)})`
+        : `keyValue("${name}", "${sqlType}", "${this.toUniqueKind(col, type)}", ${length})`;
+    }
+    if (isKey) {
+      return ['serial', 'bigserial', 'smallserial'].includes(type)
+        ? `serial("${name}", "${sqlType}")`
+        : `unique("${name}", "${sqlType}", "${this.toUniqueKind(col, type)}", ${length})`;
+    }
+    if (parent) {
+      return `reference("${name}", "${sqlType}", ${varName(parent)}, ${nullable})`;
+    }
+    if (isUnique) {
+      return `unique("${name}", "${sqlType}", "${this.toUniqueKind(col, type)}", ${length})`;
+    }
+
+    switch (type) {
+      case 'varchar':
+      case 'char':
+        return `text("${name}", ${length}, ${nullable})`;
+      case 'text':
+        return `longText("${name}", ${nullable})`;
+      case 'smallint':
+      case 'smallserial':
+        return `number("${name}", "${sqlType}", Short.MAX_VALUE, ${nullable})`;
+      case 'integer':
+      case 'serial':
+        return `number("${name}", "${sqlType}", Integer.MAX_VALUE, ${nullable})`;
+      case 'bigint':
+      case 'bigserial':
+        return `number("${name}", "${sqlType}", Long.MAX_VALUE, ${nullable})`;
+      case 'numeric':
+      case 'decimal': {
+        const parts = String(col.length || '').replace(/[()]/g, '').split(',');
+        const precision = parseInt(parts[0], 10) || 10;
+        const scale = parseInt(parts[1], 10) || 0;
+        return `decimal("${name}", ${precision}, ${scale}, ${nullable})`;
+      }
+      case 'boolean':
+        return `bool("${name}", "${String(col.default || '').toLowerCase()}", ${nullable})`;
+      case 'timestamp':
+      case 'timestamptz':
+        return `timestamp("${name}", ${nullable})`;
+      case 'date':
+        return `date("${name}", ${nullable})`;
+      case 'time':
+        return `time("${name}", ${nullable})`;
+      case 'uuid':
+        return `uuid("${name}", ${nullable})`;
+      case 'json':
+      case 'jsonb':
+        return `constant("${name}", "${sqlType}", "{}", ${nullable})`;
+      default:
+        return nullable ? `constant("${name}", "${sqlType}", null, true)` : `constant("${name}", "${sqlType}", "0", false)`;
+    }
+  },
+
+  /**
+   * JDBC 投入時に文字列から変換する SQL の型
+   */
+  toSqlType(type) {
+    const aliases = { serial: 'integer', bigserial: 'bigint', smallserial: 'smallint', varchar: 'text', char: 'text', decimal: 'numeric' };
+    return aliases[type] || type || 'text';
+  },
+
+  /**
+   * 一意な値の種類 (DataGenerator.uniqueValue の kind)
+   */
+  toUniqueKind(col, type) {
+    if (['smallint', 'integer', 'bigint', 'serial', 'bigserial', 'smallserial', 'numeric', 'decimal'].includes(type)) return 'number';
+    if (['date', 'timestamp', 'timestamptz', 'uuid'].includes(type)) return type === 'timestamptz' ? 'timestamp' : type;
+    return col.colName.includes('email') ? 'email' : 'text';
+  }
+};
+
+// Backward compat
+window.generateDataGenerator = function(tables, rlsOptions) { return App.Converters.DataGenerator.generateDataGenerator(tables, rlsOptions); };
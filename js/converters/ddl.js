@@ -6,7 +6,7 @@ App.Converters.Ddl = {
   /**
    * DDL (PostgreSQL) 生成
    */
-  generateDDL(tables) {
+  generateDDL(tables, rlsOptions, features) {
     let ddl = '';
     tables.forEach(table => {
       const tableName = table.tableName;
@@ -44,6 +44,12 @@ App.Converters.Ddl = {
         return def;
       });
 
+      // 全文検索用の生成カラム
+      const searchVectorDef = this.getSearchVectorDef(table);
+      if (searchVectorDef) {
+        columnDefs.push(searchVectorDef);
+      }
+
       ddl += columnDefs.join(',\n');
 
       // 主キー
@@ -70,9 +76,25 @@ App.Converters.Ddl = {
       Object.keys(indexes).forEach(idxKey => {
         const index = indexes[idxKey];
         const indexName = `${tableName}_${idxKey.toLowerCase()}`;
-        const indexColumns = index.map(i => i.colName).join(', ');
+        const indexColumns = this.withTenantPrefix(table, rlsOptions, index.map(i => i.colName)).join(', ');
         ddl += `CREATE INDEX ${indexName} ON ${tableName} (${indexColumns});\n`;
       });
+      if (searchVectorDef) {
+        ddl += this.generateSearchIndex(table);
+      }
+      if (App.Utils.TableFeatures.isEnabled(features, 'changedSince') && App.Utils.TableFeatures.isChangeTrackable(table)) {
+        ddl += this.generateChangedSinceIndex(table, rlsOptions);
+      }
+
+      // ネイティブRLSのポリシー
+      if (App.Utils.TableFeatures.isNativeRls(rlsOptions) && App.Utils.TableFeatures.hasTenantColumn(table, rlsOptions)) {
+        ddl += '\n' + this.generateRlsPolicy(table, rlsOptions);
+      }
+
+      // アーカイブテーブル (更新日時・論理削除フラグの無いテーブルは対象外)
+      if (App.Utils.TableFeatures.isEnabled(features, 'archive') && App.Utils.TableFeatures.isArchivable(table)) {
+        ddl += '\n' + this.generateArchiveTable(table, true);
+      }
       ddl += '\n-- --------------------------------------------------\n\n';
     });
 
@@ -83,7 +105,7 @@ App.Converters.Ddl = {
    * DDL (PlayFramework Evolution) 生成
    * 1.sql のような形式で !Ups と !Downs を生成する
    */
-  generatePlayEvolution(tables) {
+  generatePlayEvolution(tables, rlsOptions, features) {
     let ups = '# --- !Ups\n\n';
     let downs = '# --- !Downs\n\n';
 
@@ -123,6 +145,12 @@ App.Converters.Ddl = {
         return def;
       });
 
+      // 全文検索用の生成カラム
+      const searchVectorDef = this.getSearchVectorDef(table);
+      if (searchVectorDef) {
+        columnDefs.push(searchVectorDef);
+      }
+
       ups += columnDefs.join(',\n');
 
       // 主キー
@@ -149,12 +177,29 @@ App.Converters.Ddl = {
       Object.keys(indexes).forEach(idxKey => {
         const index = indexes[idxKey];
         const indexName = `${tableName}_${idxKey.toLowerCase()}`;
-        const indexColumns = index.map(i => i.colName).join(', ');
+        const indexColumns = this.withTenantPrefix(table, rlsOptions, index.map(i => i.colName)).join(', ');
         ups += `CREATE INDEX ${indexName} ON ${tableName} (${indexColumns});\n`;
       });
+      if (searchVectorDef) {
+        ups += this.generateSearchIndex(table);
+      }
+      if (App.Utils.TableFeatures.isEnabled(features, 'changedSince') && App.Utils.TableFeatures.isChangeTrackable(table)) {
+        ups += this.generateChangedSinceIndex(table, rlsOptions);
+      }
+
+      // ネイティブRLSのポリシー
+      if (App.Utils.TableFeatures.isNativeRls(rlsOptions) && App.Utils.TableFeatures.hasTenantColumn(table, rlsOptions)) {
+        ups += '\n' + this.generateRlsPolicy(table, rlsOptions);
+      }
 
       ups += '\n';
 
+      // アーカイブテーブル (更新日時・論理削除フラグの無いテーブルは対象外)
+      if (App.Utils.TableFeatures.isEnabled(features, 'archive') && App.Utils.TableFeatures.isArchivable(table)) {
+        ups += this.generateArchiveTable(table, false);
+        downs += `DROP TABLE IF EXISTS ${tableName}_archive;\n`;
+      }
+
       // --- !Downs ---
       downs += `DROP TABLE IF EXISTS ${tableName};\n`;
     });
@@ -162,6 +207,113 @@ App.Converters.Ddl = {
     return ups + downs;
   },
 
+  /**
+   * 全文検索対象カラムから tsvector の生成カラム定義を作成 (対象カラムが無ければ null)
+   */
+  getSearchVectorDef(table) {
+    const searchColumns = App.Utils.TableFeatures.getSearchColumns(table);
+    if (searchColumns.length === 0) return null;
+
+    const searchConfig = App.Utils.TableFeatures.searchConfig;
+    const textTypes = ['varchar', 'char', 'text'];
+    const parts = searchColumns.map(col => {
+      const source = textTypes.includes(col.type) ? col.colName : `${col.colName}::text`;
+      return `setweight(to_tsvector('${searchConfig}', coalesce(${source}, '')), '${col.weight}')`;
+    });
+    return `    ${App.Utils.TableFeatures.searchVectorColumn} TSVECTOR GENERATED ALWAYS AS (\n        ${parts.join(' ||\n        ')}\n    ) STORED`;
+  },
+
+  /**
+   * 全文検索用の GIN インデックス
+   */
+  generateSearchIndex(table) {
+    const column = App.Utils.TableFeatures.searchVectorColumn;
+    return `CREATE INDEX ${table.tableName}_${column} ON ${table.tableName} USING GIN (${column});\n`;
+  },
+
+  /**
+   * 差分同期 (更新日時, ID のキーセット走査) 用のインデックス
+   * RLS 対象のテーブルはテナントで絞り込んでから走査するため、テナントIDを先頭に置く
+   */
+  generateChangedSinceIndex(table, rlsOptions) {
+    const config = App.Utils.TableFeatures.getCommonColumns();
+    const columns = this.withTenantPrefix(table, rlsOptions, [config.updated_at, config.id]);
+    return `CREATE INDEX ${table.tableName}_changed_since ON ${table.tableName} (${columns.join(', ')});\n`;
+  },
+
+  /**
+   * RLS 対象テーブルのインデックスカラムの先頭にテナントIDを置く
+   * どのクエリもテナントで絞り込まれるため、テナントを先頭にしないとインデックスが効きにくい
+   */
+  withTenantPrefix(table, rlsOptions, columns) {
+    if (!App.Utils.TableFeatures.hasTenantColumn(table, rlsOptions)) return columns;
+    const tenantCol = rlsOptions.tenantIdColumn;
+    return [tenantCol].concat(columns.filter(c => c !== tenantCol));
+  },
+
+  /**
+   * ネイティブRLSのポリシー DDL 生成
+   * テナントIDはセッション設定 (トランザクション単位で set_config) から取得し、
+   * 未設定の場合はどの行にも一致しない (フェイルクローズ)。管理者は bypass 設定で全行を参照できる。
+   */
+  generateRlsPolicy(table, rlsOptions) {
+    const tableName = table.tableName;
+    const tenantCol = table.columns.find(c => c.colName === rlsOptions.tenantIdColumn);
+    const tenantSetting = App.Utils.TableFeatures.rlsTenantSetting;
+    const bypassSetting = App.Utils.TableFeatures.rlsBypassSetting;
+    // 文字列以外のテナントIDは設定値をカラムの型へキャストし、カラム側のインデックスを使えるようにする
+    const textTypes = ['varchar', 'char', 'text'];
+    const castType = ({ smallserial: 'smallint', serial: 'integer', bigserial: 'bigint' }[tenantCol.type] || tenantCol.type).toUpperCase();
+    const currentTenant = textTypes.includes(tenantCol.type)
+      ? `current_setting('${tenantSetting}', true)`
+      : `NULLIF(current_setting('${tenantSetting}', true), '')::${castType}`;
+    const condition = `current_setting('${bypassSetting}', true) = 'on' OR ${tenantCol.colName} = ${currentTenant}`;
+
+    let ddl = `ALTER TABLE ${tableName} ENABLE ROW LEVEL SECURITY;\n`;
+    ddl += `ALTER TABLE ${tableName} FORCE ROW LEVEL SECURITY;\n`;
+    ddl += `CREATE POLICY ${tableName}_tenant_isolation ON ${tableName}\n`;
+    ddl += `    USING (${condition})\n`;
+    ddl += `    WITH CHECK (${condition});\n`;
+    return ddl;
+  },
+
+  /**
+   * 論理削除済みデータの退避先となるアーカイブテーブルの DDL 生成
+   * 制約・デフォルト値は持たせず、元テーブルの行をそのまま受け入れる
+   */
+  generateArchiveTable(table, withDrop) {
+    const config = App.Utils.TableFeatures.getCommonColumns();
+    const tableName = table.tableName;
+    const archiveName = `${tableName}_archive`;
+    const columns = App.Utils.TableFeatures.getPhysicalColumns(table, config);
+    let ddl = '';
+
+    if (withDrop) {
+      ddl += `DROP TABLE IF EXISTS ${archiveName};\n\n`;
+    }
+
+    ddl += `CREATE TABLE ${archiveName} (\n`;
+    ddl += columns.map(col => {
+      const serialTypes = { bigserial: 'BIGINT', serial: 'INTEGER', smallserial: 'SMALLINT' };
+      if (serialTypes[col.type]) return `    ${col.colName} ${serialTypes[col.type]}`;
+      if ((col.type === 'varchar' || col.type === 'char') && col.length) return `    ${col.colName} ${col.type.toUpperCase()}(${col.length})`;
+      return `    ${col.colName} ${col.type.toUpperCase()}`;
+    }).join(',\n');
+    ddl += `,\n    archived_at TIMESTAMP NOT NULL DEFAULT now()`;
+    ddl += `,\n    PRIMARY KEY (${config.id})`;
+    ddl += '\n);\n\n';
+
+    ddl += `COMMENT ON TABLE ${archiveName} IS '${table.tableNameJP}（アーカイブ）';\n`;
+    ddl += `COMMENT ON COLUMN ${archiveName}.archived_at IS 'アーカイブ日時';\n`;
+    ddl += `CREATE INDEX ${archiveName}_archived_at ON ${archiveName} (archived_at);\n`;
+
+    // 移送バッチが論理削除済みの行だけを (更新日時, ID) 順に辿れるよう部分インデックスを張る
+    const deletedLiteral = App.Utils.TableFeatures.softDeletedLiteral(config);
+    ddl += `CREATE INDEX ${tableName}_archive_candidates ON ${tableName} (${config.updated_at}, ${config.id}) WHERE ${config.is_deleted.name} = ${deletedLiteral};\n`;
+
+    return ddl;
+  },
+
   /**
    * テーブルのカラム定義からインデックス情報を再構築するヘルパー
    */
@@ -198,5 +350,5 @@ App.Converters.Ddl = {
 // Note: We need to bind `this` if we just alias the function and it calls `this.getIndexes`.
 // However, `this` in generateDDL will be global object if called as generateDDL().
 // So we must wrap it.
-window.generateDDL = function(tables) { return App.Converters.Ddl.generateDDL(tables); };
-window.generatePlayEvolution = function(tables) { return App.Converters.Ddl.generatePlayEvolution(tables); };
+window.generateDDL = function(tables, rlsOptions, features) { return App.Converters.Ddl.generateDDL(tables, rlsOptions, features); };
+window.generatePlayEvolution = function(tables, rlsOptions, features) { return App.Converters.Ddl.generatePlayEvolution(tables, rlsOptions, features); };
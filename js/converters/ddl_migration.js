@@ -0,0 +1,488 @@
+// Initialize Namespace
+window.App = window.App || {};
+App.Converters = App.Converters || {};
+
+/**
+ * 変更前のテーブル定義との差分から、稼働中のテーブルを止めずに適用できる
+ * PlayFramework Evolution を段階 (拡張 → 埋め戻し → インデックス → 検証 → 縮退) ごとに生成する
+ * インデックスは CREATE INDEX CONCURRENTLY、NOT NULL は NOT VALID の CHECK 制約を経由し、
+ * 長時間の ACCESS EXCLUSIVE ロックやテーブルの書き換えを避ける
+ */
+App.Converters.DdlMigration = {
+  /** 埋め戻しの 1 バッチあたりの行数 */
+  batchSize: 5000,
+
+  /** 埋め戻しのバッチ間の待ち時間 (秒) */
+  batchSleep: 0.05,
+
+  /** ロックを取る段階のロック待ちの上限 (待ち続けて後続のクエリを詰まらせないため) */
+  lockTimeout: '5s',
+
+  /** 行ごとに値が変わる (既存行への一括付与ができない) デフォルト値の関数 */
+  volatileFunctions: ['random', 'gen_random_uuid', 'uuid_generate_v1', 'uuid_generate_v4', 'clock_timestamp', 'timeofday', 'nextval'],
+
+  /** 段階の定義 (この順に Evolution の番号を振る) */
+  stages: [
+    {
+      key: 'expand',
+      title: '拡張',
+      lock: true,
+      description: 'テーブル・列を追加します。既存の行を書き換えない操作のみで、ロック待ちは lock_timeout で打ち切ります。'
+    },
+    {
+      key: 'backfill',
+      title: '埋め戻し',
+      lock: false,
+      description: '既存の行を小さなバッチで更新し、バッチごとにコミットします (play.evolutions.autocommit = true が必要です)。'
+    },
+    {
+      key: 'index',
+      title: 'インデックス',
+      lock: false,
+      description: 'CREATE INDEX CONCURRENTLY で書き込みを止めずに作成します (トランザクション外で実行するため autocommit が必要です)。'
+    },
+    {
+      key: 'validate',
+      title: '検証',
+      lock: true,
+      description: 'NOT VALID で追加した制約を検証し、NOT NULL・一意制約へ切り替えます。'
+    },
+    {
+      key: 'contract',
+      title: '縮退',
+      lock: true,
+      description: '新しいアプリケーションへ切り替えた後に、不要になったテーブル・列・インデックスを削除します。'
+    }
+  ],
+
+  /**
+   * オンライン移行用の Evolution 生成
+   * @param previousTables 変更前のテーブル定義 (適用済みのスキーマ)
+   * @param currentTables 変更後のテーブル定義
+   * @param startRevision 最初のファイルの番号 (1.sql は ddl-play の初期スキーマ)
+   * @return 空でない段階ごとの evolutions/N.sql
+   */
+  generateMigration(previousTables, currentTables, rlsOptions, features, startRevision = 2) {
+    const stages = {};
+    this.stages.forEach(stage => { stages[stage.key] = { ups: [], downs: [] }; });
+
+    const previousByName = {};
+    (previousTables || []).forEach(table => { previousByName[table.tableName] = table; });
+    const currentNames = currentTables.map(table => table.tableName);
+
+    // 追加されたテーブルは ddl-play と同じ定義で作成する (まだ誰も参照していないためロックの影響はない)
+    const addedTables = currentTables.filter(table => !previousByName[table.tableName]);
+    if (addedTables.length > 0) {
+      const evolution = App.Converters.Ddl.generatePlayEvolution(addedTables, rlsOptions, features);
+      const [ups, downs] = evolution.split('# --- !Downs\n\n');
+      stages.expand.ups.push(ups.replace('# --- !Ups\n\n', '').trim() + '\n');
+      stages.expand.downs.push(downs.trim() + '\n');
+    }
+
+    currentTables
+      .filter(table => previousByName[table.tableName])
+      .forEach(table => this.diffTable(stages, previousByName[table.tableName], table, rlsOptions, features));
+
+    // 削除されたテーブルは最後に削除する (Downs で構造は戻るがデータは戻らない)
+    (previousTables || [])
+      .filter(table => !currentNames.includes(table.tableName))
+      .forEach(table => {
+        stages.contract.ups.push(`DROP TABLE IF EXISTS ${table.tableName};\n`);
+        const evolution = App.Converters.Ddl.generatePlayEvolution([table], rlsOptions, {});
+        const ups = evolution.split('# --- !Downs\n\n')[0].replace('# --- !Ups\n\n', '').trim();
+        stages.contract.downs.push(`-- ${table.tableName} の構造のみを戻します (削除したデータは戻りません)\n${ups}\n`);
+      });
+
+    return this.renderStages(stages, startRevision);
+  },
+
+  /**
+   * 既存テーブルの差分を各段階へ振り分ける
+   */
+  diffTable(stages, previous, current, rlsOptions, features) {
+    const tableName = current.tableName;
+    const previousColumns = {};
+    previous.columns.forEach(col => { previousColumns[col.colName] = col; });
+    const currentColumns = {};
+    current.columns.forEach(col => { currentColumns[col.colName] = col; });
+    const backfills = [];
+    // アーカイブテーブルは変更前のテーブルがアーカイブ対象だった場合だけ存在する
+    const archiveEnabled = App.Utils.TableFeatures.isEnabled(features, 'archive');
+    const archived = archiveEnabled && App.Utils.TableFeatures.isArchivable(previous);
+    if (archiveEnabled && !archived && App.Utils.TableFeatures.isArchivable(current)) {
+      stages.expand.ups.push(`-- [要確認] ${tableName} に更新日時・論理削除フラグの列が揃い、アーカイブの対象になりました。\n-- ${tableName}_archive テーブルと移送用のインデックスを作成してください (ddl-play の定義を参照)。\n`);
+    }
+
+    if ((previous.tableNameJP || '') !== (current.tableNameJP || '')) {
+      stages.expand.ups.push(`COMMENT ON TABLE ${tableName} IS '${current.tableNameJP}';\n`);
+      stages.expand.downs.push(`COMMENT ON TABLE ${tableName} IS '${previous.tableNameJP}';\n`);
+    }
+
+    current.columns.forEach(col => {
+      const before = previousColumns[col.colName];
+      if (before) {
+        this.diffColumn(stages, backfills, current, before, col);
+      } else {
+        this.addColumn(stages, backfills, current, col, archived);
+      }
+    });
+
+    previous.columns
+      .filter(col => !currentColumns[col.colName])
+      .forEach(col => {
+        stages.contract.ups.push(`ALTER TABLE ${tableName} DROP COLUMN IF EXISTS ${col.colName};\n`);
+        stages.contract.downs.push(`-- ${tableName}.${col.colName} の列のみを戻します (削除したデータは戻りません)\nALTER TABLE ${tableName} ADD COLUMN IF NOT EXISTS ${col.colName} ${this.columnType(col)};\n`);
+      });
+
+    if (backfills.length > 0) {
+      stages.backfill.ups.push(this.generateBackfill(current, backfills, rlsOptions));
+    }
+
+    // 主キー・全文検索の生成カラムはテーブルの書き換えが必要なため自動では生成しない
+    const pkOf = table => table.columns.filter(c => c.pkfk === 'PK').map(c => c.colName).join(', ');
+    if (pkOf(previous) !== pkOf(current)) {
+      stages.expand.ups.push(`-- [要確認] ${tableName} の主キーが (${pkOf(previous)}) から (${pkOf(current)}) に変わりました。\n-- 主キーの変更はテーブル全体をロックするため、一意インデックスを CONCURRENTLY で作成してから\n-- ALTER TABLE ... ADD PRIMARY KEY USING INDEX で切り替えてください。\n`);
+    }
+    const searchOf = table => App.Utils.TableFeatures.getSearchColumns(table).map(c => `${c.colName}:${c.weight}`).join(',');
+    if (searchOf(previous) !== searchOf(current)) {
+      stages.expand.ups.push(`-- [要確認] ${tableName} の全文検索の対象カラムが変わりました。\n-- 生成カラム (${App.Utils.TableFeatures.searchVectorColumn}) の再定義はテーブルを書き換えるため、新しい列を追加して埋め戻してから切り替えてください。\n`);
+    }
+
+    this.diffAlternateKey(stages, previous, current);
+    this.diffIndexes(stages, previous, current, rlsOptions);
+
+    // テナントIDの列が追加されたテーブルは、NOT NULL の検証後にポリシーを有効にする
+    if (App.Utils.TableFeatures.isNativeRls(rlsOptions)
+      && App.Utils.TableFeatures.hasTenantColumn(current, rlsOptions)
+      && !App.Utils.TableFeatures.hasTenantColumn(previous, rlsOptions)) {
+      stages.validate.ups.push(App.Converters.Ddl.generateRlsPolicy(current, rlsOptions));
+      stages.validate.downs.push(`DROP POLICY IF EXISTS ${tableName}_tenant_isolation ON ${tableName};\nALTER TABLE ${tableName} NO FORCE ROW LEVEL SECURITY;\nALTER TABLE ${tableName} DISABLE ROW LEVEL SECURITY;\n`);
+    }
+  },
+
+  /**
+   * 列の追加
+   * 固定のデフォルト値はメタデータのみの変更 (PostgreSQL 11 以降) のため、そのまま NOT NULL 付きで追加する
+   * 行ごとに変わるデフォルト値は NULL 可で追加してから埋め戻し、NOT VALID の CHECK 制約を経由して NOT NULL にする
+   */
+  addColumn(stages, backfills, table, col, archived) {
+    const tableName = table.tableName;
+    const notNull = this.hasConstraint(col, 'NN');
+    const serialType = { smallserial: 'SMALLINT', serial: 'INTEGER', bigserial: 'BIGINT' }[col.type];
+    let ddl = '';
+
+    if (serialType) {
+      const sequence = `${tableName}_${col.colName}_seq`;
+      ddl += `CREATE SEQUENCE IF NOT EXISTS ${sequence};\n`;
+      ddl += `ALTER TABLE ${tableName} ADD COLUMN ${col.colName} ${serialType};\n`;
+      ddl += `ALTER SEQUENCE ${sequence} OWNED BY ${tableName}.${col.colName};\n`;
+      ddl += `ALTER TABLE ${tableName} ALTER COLUMN ${col.colName} SET DEFAULT nextval('${sequence}');\n`;
+      backfills.push({ colName: col.colName, value: `nextval('${sequence}')` });
+    } else if (col.default && this.isVolatile(col.default)) {
+      ddl += `ALTER TABLE ${tableName} ADD COLUMN ${col.colName} ${this.columnType(col)};\n`;
+      ddl += `ALTER TABLE ${tableName} ALTER COLUMN ${col.colName} SET DEFAULT ${col.default};\n`;
+      backfills.push({ colName: col.colName, value: col.default });
+    } else if (col.default) {
+      ddl += `ALTER TABLE ${tableName} ADD COLUMN ${col.colName} ${this.columnType(col)}${notNull ? ' NOT NULL' : ''} DEFAULT ${col.default};\n`;
+    } else {
+      ddl += `ALTER TABLE ${tableName} ADD COLUMN ${col.colName} ${this.columnType(col)};\n`;
+      if (notNull) {
+        ddl += `-- [要確認] ${tableName}.${col.colName} は NOT NULL ですがデフォルト値が無いため、NULL 可で追加しています。\n-- 既存の行を埋めた後に NOT NULL を設定してください。\n`;
+      }
+    }
+
+    ddl += `COMMENT ON COLUMN ${tableName}.${col.colName} IS '${col.colNameJP}';\n`;
+
+    if (archived) {
+      ddl += `ALTER TABLE ${tableName}_archive ADD COLUMN IF NOT EXISTS ${col.colName} ${serialType || this.columnType(col)};\n`;
+      stages.expand.downs.push(`ALTER TABLE ${tableName}_archive DROP COLUMN IF EXISTS ${col.colName};\n`);
+    }
+
+    stages.expand.ups.push(ddl);
+    stages.expand.downs.push(`ALTER TABLE ${tableName} DROP COLUMN IF EXISTS ${col.colName};\n`
+      + (serialType ? `DROP SEQUENCE IF EXISTS ${tableName}_${col.colName}_seq;\n` : ''));
+
+    if (notNull && (serialType || (col.default && this.isVolatile(col.default)))) {
+      this.addNotNull(stages, tableName, col.colName);
+    }
+
+    if (this.hasConstraint(col, 'U')) {
+      this.addUnique(stages, tableName, col.colName);
+    }
+  },
+
+  /**
+   * 既存の列の変更
+   */
+  diffColumn(stages, backfills, table, before, after) {
+    const tableName = table.tableName;
+    const column = `${tableName}.${after.colName}`;
+
+    // 型の変更 (書き換えを伴わない拡張のみ自動で生成する)
+    const beforeType = this.columnType(before);
+    const afterType = this.columnType(after);
+    if (beforeType !== afterType) {
+      if (this.isSafeTypeChange(before, after)) {
+        stages.expand.ups.push(`ALTER TABLE ${tableName} ALTER COLUMN ${after.colName} TYPE ${afterType};\n`);
+        stages.expand.downs.push(`ALTER TABLE ${tableName} ALTER COLUMN ${after.colName} TYPE ${beforeType};\n`);
+      } else {
+        stages.expand.ups.push(`-- [要確認] ${column} の型が ${beforeType} から ${afterType} に変わりました。\n-- テーブル全体の書き換えになるため、新しい列を追加して埋め戻し、アプリケーションを切り替えてから古い列を削除してください。\n`);
+      }
+    }
+
+    // デフォルト値
+    if ((before.default || '') !== (after.default || '')) {
+      stages.expand.ups.push(after.default
+        ? `ALTER TABLE ${tableName} ALTER COLUMN ${after.colName} SET DEFAULT ${after.default};\n`
+        : `ALTER TABLE ${tableName} ALTER COLUMN ${after.colName} DROP DEFAULT;\n`);
+      stages.expand.downs.push(before.default
+        ? `ALTER TABLE ${tableName} ALTER COLUMN ${after.colName} SET DEFAULT ${before.default};\n`
+        : `ALTER TABLE ${tableName} ALTER COLUMN ${after.colName} DROP DEFAULT;\n`);
+    }
+
+    // NOT NULL
+    const beforeNotNull = this.hasConstraint(before, 'NN');
+    const afterNotNull = this.hasConstraint(after, 'NN');
+    if (afterNotNull && !beforeNotNull) {
+      if (after.default) {
+        backfills.push({ colName: after.colName, value: after.default });
+      } else {
+        stages.validate.ups.push(`-- [要確認] ${column} にデフォルト値が無いため、NULL の行が残っていると次の VALIDATE が失敗します。\n`);
+      }
+      this.addNotNull(stages, tableName, after.colName);
+    } else if (beforeNotNull && !afterNotNull) {
+      stages.expand.ups.push(`ALTER TABLE ${tableName} ALTER COLUMN ${after.colName} DROP NOT NULL;\n`);
+      stages.expand.downs.push(`ALTER TABLE ${tableName} ALTER COLUMN ${after.colName} SET NOT NULL;\n`);
+    }
+
+    // 一意制約
+    const beforeUnique = this.hasConstraint(before, 'U');
+    const afterUnique = this.hasConstraint(after, 'U');
+    if (afterUnique && !beforeUnique) {
+      this.addUnique(stages, tableName, after.colName);
+    } else if (beforeUnique && !afterUnique) {
+      stages.contract.ups.push(`ALTER TABLE ${tableName} DROP CONSTRAINT IF EXISTS ${tableName}_${after.colName}_key;\n`);
+      stages.contract.downs.push(`ALTER TABLE ${tableName} ADD CONSTRAINT ${tableName}_${after.colName}_key UNIQUE (${after.colName});\n`);
+    }
+
+    // コメント
+    if ((before.colNameJP || '') !== (after.colNameJP || '')) {
+      stages.expand.ups.push(`COMMENT ON COLUMN ${column} IS '${after.colNameJP}';\n`);
+      stages.expand.downs.push(`COMMENT ON COLUMN ${column} IS '${before.colNameJP}';\n`);
+    }
+  },
+
+  /**
+   * NOT NULL の付与
+   * SET NOT NULL を直接実行すると全行の走査中に ACCESS EXCLUSIVE ロックを持ち続けるため、
+   * NOT VALID の CHECK 制約を追加 → VALIDATE (SHARE UPDATE EXCLUSIVE) → SET NOT NULL (検証済みの制約で走査を省略) の順に行う
+   */
+  addNotNull(stages, tableName, colName) {
+    const constraint = `${tableName}_${colName}_not_null`;
+    stages.expand.ups.push(`ALTER TABLE ${tableName} ADD CONSTRAINT ${constraint} CHECK (${colName} IS NOT NULL) NOT VALID;\n`);
+    stages.expand.downs.push(`ALTER TABLE ${tableName} DROP CONSTRAINT IF EXISTS ${constraint};\n`);
+    stages.validate.ups.push(`ALTER TABLE ${tableName} VALIDATE CONSTRAINT ${constraint};\nALTER TABLE ${tableName} ALTER COLUMN ${colName} SET NOT NULL;\nALTER TABLE ${tableName} DROP CONSTRAINT ${constraint};\n`);
+    stages.validate.downs.push(`ALTER TABLE ${tableName} ALTER COLUMN ${colName} DROP NOT NULL;\n`);
+  },
+
+  /**
+   * 列の一意制約の付与 (一意インデックスを CONCURRENTLY で作成してから制約に昇格する)
+   */
+  addUnique(stages, tableName, colName) {
+    const constraint = `${tableName}_${colName}_key`;
+    stages.index.ups.push(this.createIndexConcurrently(`${constraint}_new`, tableName, colName, true));
+    stages.index.downs.push(`DROP INDEX CONCURRENTLY IF EXISTS ${constraint}_new;\n`);
+    stages.validate.ups.push(`ALTER TABLE ${tableName} ADD CONSTRAINT ${constraint} UNIQUE USING INDEX ${constraint}_new;\n`);
+    stages.validate.downs.push(`ALTER TABLE ${tableName} DROP CONSTRAINT IF EXISTS ${constraint};\n`);
+  },
+
+  /**
+   * 代替キー (テーブル名_ak) の差分
+   */
+  diffAlternateKey(stages, previous, current) {
+    const tableName = current.tableName;
+    const constraint = `${tableName}_ak`;
+    const beforeColumns = previous.columns.filter(c => c.pkfk === 'AK').map(c => c.colName).join(', ');
+    const afterColumns = current.columns.filter(c => c.pkfk === 'AK').map(c => c.colName).join(', ');
+    if (beforeColumns === afterColumns) return;
+
+    const restore = beforeColumns
+      ? `ALTER TABLE ${tableName} DROP CONSTRAINT IF EXISTS ${constraint}, ADD CONSTRAINT ${constraint} UNIQUE (${beforeColumns});\n`
+      : `ALTER TABLE ${tableName} DROP CONSTRAINT IF EXISTS ${constraint};\n`;
+    if (afterColumns) {
+      stages.index.ups.push(this.createIndexConcurrently(`${constraint}_new`, tableName, afterColumns, true));
+      stages.index.downs.push(`DROP INDEX CONCURRENTLY IF EXISTS ${constraint}_new;\n`);
+      stages.validate.ups.push(`ALTER TABLE ${tableName} DROP CONSTRAINT IF EXISTS ${constraint}, ADD CONSTRAINT ${constraint} UNIQUE USING INDEX ${constraint}_new;\n`);
+      stages.validate.downs.push(restore);
+    } else {
+      stages.contract.ups.push(`ALTER TABLE ${tableName} DROP CONSTRAINT IF EXISTS ${constraint};\n`);
+      stages.contract.downs.push(restore);
+    }
+  },
+
+  /**
+   * インデックス (Idx1 ~ Idx5) の差分
+   * 変更されたインデックスは別名で作成してから入れ替え、インデックスが無い時間を作らない
+   */
+  diffIndexes(stages, previous, current, rlsOptions) {
+    const tableName = current.tableName;
+    const indexColumns = table => {
+      const result = {};
+      const indexes = App.Converters.Ddl.getIndexes(table);
+      Object.keys(indexes).forEach(idxKey => {
+        const columns = indexes[idxKey].map(i => i.colName);
+        result[`${tableName}_${idxKey.toLowerCase()}`] = App.Converters.Ddl.withTenantPrefix(table, rlsOptions, columns).join(', ');
+      });
+      return result;
+    };
+    const before = indexColumns(previous);
+    const after = indexColumns(current);
+
+    Object.keys(after).forEach(indexName => {
+      if (!before[indexName]) {
+        stages.index.ups.push(this.createIndexConcurrently(indexName, tableName, after[indexName], false));
+        stages.index.downs.push(`DROP INDEX CONCURRENTLY IF EXISTS ${indexName};\n`);
+      } else if (before[indexName] !== after[indexName]) {
+        stages.index.ups.push(this.replaceIndexConcurrently(indexName, tableName, after[indexName]));
+        stages.index.downs.push(this.replaceIndexConcurrently(indexName, tableName, before[indexName]));
+      }
+    });
+
+    // 削除されたインデックスは、古いアプリケーションが使わなくなってから削除する
+    Object.keys(before)
+      .filter(indexName => !after[indexName])
+      .forEach(indexName => {
+        stages.contract.ups.push(`DROP INDEX CONCURRENTLY IF EXISTS ${indexName};\n`);
+        stages.contract.downs.push(this.createIndexConcurrently(indexName, tableName, before[indexName], false));
+      });
+  },
+
+  /**
+   * CREATE INDEX CONCURRENTLY
+   * 失敗すると INVALID なインデックスが残るため、再実行できるよう先に削除しておく
+   */
+  createIndexConcurrently(indexName, tableName, columns, unique) {
+    return `DROP INDEX CONCURRENTLY IF EXISTS ${indexName};\nCREATE ${unique ? 'UNIQUE ' : ''}INDEX CONCURRENTLY ${indexName} ON ${tableName} (${columns});\n`;
+  },
+
+  /**
+   * 別名で作成したインデックスと入れ替える
+   */
+  replaceIndexConcurrently(indexName, tableName, columns) {
+    return this.createIndexConcurrently(`${indexName}_new`, tableName, columns, false)
+      + `DROP INDEX CONCURRENTLY IF EXISTS ${indexName};\n`
+      + `ALTER INDEX ${indexName}_new RENAME TO ${indexName};\n`;
+  },
+
+  /**
+   * 既存行の埋め戻し (DO ブロック)
+   * 一度の UPDATE で全行を書き換えると長いトランザクションと大量の WAL が発生するため、
+   * 数値の単一主キーがあれば範囲で、無ければ対象行を LIMIT で区切り、バッチごとにコミットする
+   * Play の Evolution は ; で文を分割するため、ブロック内の ; は ;; でエスケープする
+   * ネイティブRLSではテナント未設定の UPDATE が0件になるため、セッションで RLS のバイパスを有効にしてから実行する
+   */
+  generateBackfill(table, backfills, rlsOptions) {
+    const tableName = table.tableName;
+    const assignments = backfills.map(b => `${b.colName} = COALESCE(${b.colName}, ${b.value})`).join(', ');
+    const condition = backfills.map(b => `${b.colName} IS NULL`).join(' OR ');
+    const pkColumns = table.columns.filter(c => c.pkfk === 'PK');
+    const numericTypes = ['smallint', 'integer', 'int', 'bigint', 'smallserial', 'serial', 'bigserial'];
+    // COMMIT 後も有効なよう、トランザクションローカルではなくセッションに設定する
+    const bypassRls = App.Utils.TableFeatures.isNativeRls(rlsOptions)
+      ? `    PERFORM set_config('${App.Utils.TableFeatures.rlsBypassSetting}', 'on', false);;\n`
+      : '';
+
+    let ddl = `--\n-- ${table.tableNameJP || tableName}\n--\n`;
+    ddl += 'DO $$\nDECLARE\n';
+    ddl += `    batch_size CONSTANT BIGINT := ${this.batchSize};;\n`;
+    if (pkColumns.length === 1 && numericTypes.includes(pkColumns[0].type)) {
+      const id = pkColumns[0].colName;
+      ddl += '    last_id BIGINT;;\n';
+      ddl += '    max_id BIGINT;;\n';
+      ddl += 'BEGIN\n';
+      ddl += bypassRls;
+      ddl += `    SELECT coalesce(min(${id}), 0) - 1, coalesce(max(${id}), 0) INTO last_id, max_id FROM ${tableName};;\n`;
+      ddl += '    WHILE last_id < max_id LOOP\n';
+      ddl += `        UPDATE ${tableName} SET ${assignments}\n`;
+      ddl += `            WHERE ${id} > last_id AND ${id} <= last_id + batch_size AND (${condition});;\n`;
+      ddl += '        last_id := last_id + batch_size;;\n';
+    } else {
+      const key = pkColumns.length > 0 ? `(${pkColumns.map(c => c.colName).join(', ')})` : 'ctid';
+      const keySelect = pkColumns.length > 0 ? pkColumns.map(c => c.colName).join(', ') : 'ctid';
+      ddl += '    updated BIGINT;;\n';
+      ddl += 'BEGIN\n';
+      ddl += bypassRls;
+      ddl += '    LOOP\n';
+      ddl += `        UPDATE ${tableName} SET ${assignments}\n`;
+      ddl += `            WHERE ${key} IN (SELECT ${keySelect} FROM ${tableName} WHERE ${condition} LIMIT batch_size);;\n`;
+      ddl += '        GET DIAGNOSTICS updated = ROW_COUNT;;\n';
+      ddl += '        EXIT WHEN updated = 0;;\n';
+    }
+    ddl += '        COMMIT;;\n';
+    ddl += `        PERFORM pg_sleep(${this.batchSleep});;\n`;
+    ddl += '    END LOOP;;\n';
+    ddl += 'END\n$$;\n';
+    return ddl;
+  },
+
+  /**
+   * 空でない段階を連番の Evolution ファイルにする (Downs は逆順に戻す)
+   */
+  renderStages(stages, startRevision) {
+    const active = this.stages.filter(stage => stages[stage.key].ups.length > 0 || stages[stage.key].downs.length > 0);
+    return active.map((stage, i) => {
+      const { ups, downs } = stages[stage.key];
+      const wrap = statements => {
+        if (statements.length === 0) return '';
+        const body = statements.join('\n');
+        return stage.lock
+          ? `SET lock_timeout = '${this.lockTimeout}';\n\n${body}\nRESET lock_timeout;\n`
+          : body;
+      };
+
+      let content = `# オンライン移行 ${i + 1}/${active.length}: ${stage.title}\n`;
+      content += `# ${stage.description}\n`;
+      content += '# 段階ごとにアプリケーションをデプロイできるよう、ファイルを分けています。\n\n';
+      content += '# --- !Ups\n\n';
+      content += wrap(ups);
+      content += '\n# --- !Downs\n\n';
+      content += wrap(downs.slice().reverse());
+      return { path: `evolutions/${Number(startRevision) + i}.sql`, content };
+    });
+  },
+
+  /**
+   * 行ごとに値が変わるデフォルト値かどうか
+   */
+  isVolatile(defaultValue) {
+    const value = String(defaultValue).toLowerCase();
+    return this.volatileFunctions.some(fn => value.includes(`${fn}(`));
+  },
+
+  /**
+   * テーブルを書き換えずに変更できる型かどうか (文字列の桁数の拡張と text への変更)
+   */
+  isSafeTypeChange(before, after) {
+    if (before.type !== 'varchar') return false;
+    if (after.type === 'text') return true;
+    if (after.type !== 'varchar') return false;
+    if (!after.length) return true;
+    return !!before.length && parseInt(after.length, 10) >= parseInt(before.length, 10);
+  },
+
+  hasConstraint(col, name) {
+    return !!(col.constraint && col.constraint.includes(name));
+  },
+
+  /**
+   * カラムの型 (ddl と同じ表記)
+   */
+  columnType(col) {
+    if (col.type === 'varchar' && col.length) return `VARCHAR(${col.length})`;
+    if (col.type === 'char' && col.length) return `CHAR(${col.length})`;
+    return col.type.toUpperCase();
+  }
+};
+
+// Backward compat
+window.generateMigration = function(previousTables, currentTables, rlsOptions, features, startRevision) { return App.Converters.DdlMigration.generateMigration(previousTables, currentTables, rlsOptions, features, startRevision); };
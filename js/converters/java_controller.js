@@ -6,8 +6,211 @@ App.Converters.JavaController = {
   /**
    * Javaコントローラークラス生成
    */
-  generateJavaController(tables) {
+  generateJavaController(tables, rlsOptions, features) {
     const files = [];
+    const conditionalGetEnabled = App.Utils.TableFeatures.isEnabled(features, 'conditionalGet');
+    const streamingEnabled = App.Utils.TableFeatures.isEnabled(features, 'streaming');
+    const changedSinceEnabled = App.Utils.TableFeatures.isEnabled(features, 'changedSince');
+    const archiveEnabled = App.Utils.TableFeatures.isEnabled(features, 'archive');
+    const admissionEnabled = App.Utils.TableFeatures.isEnabled(features, 'admissionControl');
+    const warmUpEnabled = App.Utils.TableFeatures.isEnabled(features, 'warmUp');
+    const binaryEnabled = App.Utils.TableFeatures.isEnabled(features, 'binaryFormat');
+    const parallelExportEnabled = App.Utils.TableFeatures.isEnabled(features, 'parallelExport');
+    // ネイティブRLSではリポジトリがレプリカを使わないため、読み取り一貫性のトークンも扱わない
+    const readYourWritesEnabled = App.Utils.TableFeatures.isEnabled(features, 'readReplica') && !App.Utils.TableFeatures.isNativeRls(rlsOptions);
+    const updatedAtGetter = `get${toPascalCase(App.Utils.TableFeatures.getCommonColumns().updated_at)}`;
+
+    if (conditionalGetEnabled) {
+      const conditionalRequestsContent = `
+package libraries;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * 条件付きGET (ETag / Last-Modified / 304 Not Modified) のヘルパー
+ */
+public final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * 1件取得用の ETag を ID と更新日時から生成します。
+     * @param id 主キー
+     * @param updatedAt 更新日時
+     * @return ETag
+     */
+    public static String entityTag(Object id, Instant updatedAt) {
+        return "\\"" + id + "-" + updatedAt.toEpochMilli() + "\\"";
+    }
+
+    /**
+     * 一覧用の弱い ETag を、取得したページの総件数と各行の ID・更新日時から生成します。
+     * 一覧の取得とは別に版を問い合わせないため、条件付きGETでも SQL は件数とページの取得だけです。
+     * その代わり 304 の場合も件数・ページの取得と JsonNode への変換は行われ、省けるのは本文のエンコードと転送だけです。
+     * (版を先に問い合わせれば 304 の場合はページを読まずに済みますが、変更がある場合や ETag の無い要求では SQL が1本増えます。)
+     * @param page 一覧の結果 ({"total":..,"data":[...]})
+     * @param idField 行の ID のプロパティ名
+     * @param updatedAtField 行の更新日時のプロパティ名
+     * @return ETag
+     */
+    public static String listTag(JsonNode page, String idField, String updatedAtField) {
+        StringBuilder version = new StringBuilder().append(page.path("total").asText());
+        for (JsonNode row : page.path("data")) {
+            version.append('|').append(row.path(idField).asText()).append(':').append(row.path(updatedAtField).asText());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(version.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 12; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return "W/\\"" + hex + "\\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * クライアントのキャッシュが最新であれば true を返します。
+     * If-None-Match があればそれを (弱い比較で) 優先し、無ければ If-Modified-Since を比較します。
+     * @param request リクエスト
+     * @param etag 現在の ETag
+     * @param lastModified 現在の更新日時 (不明な場合は null)
+     * @return 304 を返してよい場合 true
+     */
+    public static boolean isNotModified(Http.Request request, String etag, Instant lastModified) {
+        Optional<String> ifNoneMatch = request.header(Http.HeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch.isPresent()) {
+            String current = opaqueTag(etag);
+            return Arrays.stream(ifNoneMatch.get().split(","))
+                .map(String::trim)
+                .anyMatch(tag -> tag.equals("*") || opaqueTag(tag).equals(current));
+        }
+
+        Optional<String> ifModifiedSince = request.header(Http.HeaderNames.IF_MODIFIED_SINCE);
+        if (ifModifiedSince.isPresent() && lastModified != null) {
+            try {
+                Instant since = ZonedDateTime.parse(ifModifiedSince.get(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * レスポンスに検証子ヘッダを付与します。
+     * 共有キャッシュに載せず、毎回再検証させるため Cache-Control は private, no-cache とします。
+     * @param result レスポンス
+     * @param etag ETag
+     * @param lastModified 更新日時 (付与しない場合は null)
+     * @return ヘッダ付与後のレスポンス
+     */
+    public static Result withValidators(Result result, String etag, Instant lastModified) {
+        Result withHeaders = result
+            .withHeader(Http.HeaderNames.ETAG, etag)
+            .withHeader(Http.HeaderNames.CACHE_CONTROL, "private, no-cache");
+        if (lastModified != null) {
+            withHeaders = withHeaders.withHeader(Http.HeaderNames.LAST_MODIFIED,
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified.atZone(ZoneOffset.UTC)));
+        }
+        return withHeaders;
+    }
+
+    /**
+     * 304 Not Modified のレスポンスを返します。
+     * @param etag ETag
+     * @param lastModified 更新日時 (付与しない場合は null)
+     * @return 304 レスポンス
+     */
+    public static Result notModified(String etag, Instant lastModified) {
+        return withValidators(Results.status(Http.Status.NOT_MODIFIED), etag, lastModified);
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
+`;
+      files.push({ path: 'libraries/ConditionalRequests.java', content: conditionalRequestsContent.trim() });
+    }
+
+    if (binaryEnabled) {
+      files.push({ path: 'libraries/ContentNegotiation.java', content: this.generateContentNegotiation() });
+    }
+
+    if (admissionEnabled) {
+      files.push({ path: 'libraries/AdaptiveLimiter.java', content: this.generateAdaptiveLimiter() });
+      files.push({ path: 'libraries/AdmissionController.java', content: this.generateAdmissionController() });
+      files.push({ path: 'controllers/actions/AdmissionControlled.java', content: this.generateAdmissionControlled() });
+      files.push({ path: 'controllers/actions/AdmissionControlAction.java', content: this.generateAdmissionControlAction(rlsOptions) });
+    }
+
+    if (readYourWritesEnabled) {
+      files.push({ path: 'controllers/actions/ReadYourWrites.java', content: this.generateReadYourWrites() });
+      files.push({ path: 'controllers/actions/ReadYourWritesAction.java', content: this.generateReadYourWritesAction() });
+    }
+
+    if (warmUpEnabled) {
+      const readinessControllerContent = `
+package controllers.api;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jobs.WarmUp;
+import play.libs.Json;
+import play.mvc.Controller;
+import play.mvc.Result;
+
+import javax.inject.Inject;
+
+/**
+ * 起動状態 (readiness) のコントローラー
+ * ロードバランサーや readinessProbe から参照し、起動時ウォームアップが終わるまでトラフィックを受けないようにします。
+ * (例: GET /ready controllers.api.ReadinessController.ready)
+ */
+public class ReadinessController extends Controller {
+
+    private final WarmUp warmUp;
+
+    @Inject
+    public ReadinessController(WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * ウォームアップが完了していれば 200 と所要時間、未完了であれば 503 を返します。
+     * @return 起動状態
+     */
+    public Result ready() {
+        ObjectNode json = Json.newObject();
+        if (!warmUp.isReady()) {
+            json.put("status", "warming-up");
+            return status(SERVICE_UNAVAILABLE, json);
+        }
+        json.put("status", "ready");
+        json.put("warmUpMillis", warmUp.getElapsed().toMillis());
+        return ok(json);
+    }
+}
+`;
+      files.push({ path: 'controllers/api/ReadinessController.java', content: readinessControllerContent.trim() });
+    }
 
     tables.forEach(table => {
       const modelName = toPascalCase(table.tableName);
@@ -18,29 +221,74 @@ App.Converters.JavaController = {
       const pkColumn = table.columns.find(c => c.pkfk === 'PK') || { colName: 'id', type: 'bigint' };
       const pkName = toCamelCase(pkColumn.colName);
       const pkType = pkColumn.type.toLowerCase().includes('big') ? 'Long' : 'Integer';
-
+      const hasSearch = App.Utils.TableFeatures.getSearchColumns(table).length > 0;
+      // 更新日時の無いテーブルは差分同期の対象外。アーカイブ対象のテーブルは保持期間より前からの再開に 410 を返す
+      const tableChanges = changedSinceEnabled && App.Utils.TableFeatures.isChangeTrackable(table);
+      const archivedChanges = tableChanges && archiveEnabled && App.Utils.TableFeatures.isArchivable(table);
+      // クラスに付けると CSV 入出力が CRUD と重い処理の両方の許可を取るため、メソッド単位で付与する
+      const crudAdmission = admissionEnabled ? `    @AdmissionControlled\n` : '';
+      const heavyAdmission = admissionEnabled ? `    @AdmissionControlled(AdmissionControlled.HEAVY)\n` : '';
+      // チャンク転送は DB の処理が本文の送信中に行われるため、送信完了まで許可を保持する
+      const streamAdmission = admissionEnabled ? `    @AdmissionControlled(streamed = true)\n` : '';
+      const streamBody = source => admissionEnabled ? `AdmissionControlAction.holdUntilComplete(request, ${source})` : source;
+      // バイナリ応答が有効な場合、参照系は Accept に応じて JSON / Smile / CBOR で返す
+      const okResult = binaryEnabled ? 'ContentNegotiation.ok(request, result)' : 'ok(result)';
+      const okModel = binaryEnabled ? 'ContentNegotiation.ok(request, m)' : 'ok(Json.toJson(m))';
 
       let classContent = `package controllers.api;\n\n`;
       classContent += `import com.fasterxml.jackson.databind.JsonNode;\n`;
       classContent += `import com.fasterxml.jackson.databind.node.ObjectNode;\n`;
+      if (admissionEnabled && streamingEnabled) {
+        classContent += `import controllers.actions.AdmissionControlAction;\n`;
+      }
+      if (admissionEnabled) {
+        classContent += `import controllers.actions.AdmissionControlled;\n`;
+      }
       classContent += `import controllers.actions.Authenticated;\n`;
+      if (readYourWritesEnabled) {
+        classContent += `import controllers.actions.ReadYourWrites;\n`;
+      }
       classContent += `import libraries.CsvImportHandler;\n`;
+      if (conditionalGetEnabled) {
+        classContent += `import libraries.ConditionalRequests;\n`;
+      }
+      if (binaryEnabled) {
+        classContent += `import libraries.ContentNegotiation;\n`;
+      }
+      if (streamingEnabled) {
+        classContent += `import libraries.JsonStreams;\n`;
+      }
+      if (parallelExportEnabled) {
+        classContent += `import libraries.ParallelExport;\n`;
+      }
       classContent += `import models.${modelName};\n`;
       classContent += `import play.libs.Json;\n`;
       classContent += `import play.mvc.Controller;\n`;
       classContent += `import play.mvc.Http;\n`;
       classContent += `import play.mvc.Result;\n`;
       classContent += `import services.${serviceName};\n`;
+      if (archivedChanges) {
+        classContent += `import services.ResyncRequiredException;\n`;
+      }
       classContent += `import libraries.CsvResult;\n`;
       classContent += `import com.fasterxml.jackson.databind.ObjectMapper;\n`;
       classContent += `import java.util.Map;\n`;
       classContent += `import java.util.stream.Collectors;\n`;
       classContent += `import java.util.concurrent.CompletionStage;\n`;
+      if (tableChanges) {
+        classContent += `import java.util.concurrent.CompletableFuture;\n`;
+      }
+      if (tableChanges) {
+        classContent += `import java.time.format.DateTimeParseException;\n`;
+      }
       classContent += `import javax.inject.Inject;\n`;
       classContent += `import java.time.Instant;\n\n`;
 
       classContent += `/**\n * ${table.tableNameJP} のコントローラー\n */\n`;
       classContent += `@Authenticated\n`;
+      if (readYourWritesEnabled) {
+        classContent += `@ReadYourWrites\n`;
+      }
       classContent += `public class ${controllerName} extends Controller {\n\n`;
       classContent += `    private final ${serviceName} ${serviceVar};\n\n`;
       classContent += `    @Inject\n`;
@@ -50,6 +298,7 @@ App.Converters.JavaController = {
 
       // find
       classContent += `    /**\n     * ${table.tableNameJP} を検索します。\n     * @param request リクエスト\n     * @return 検索結果\n     */\n`;
+      classContent += crudAdmission;
       classContent += `    public CompletionStage<Result> find(Http.Request request) {\n`;
       classContent += `        int offset = request.queryString("offset").map(Integer::parseInt).orElse(0);\n`;
       classContent += `        int limit = request.queryString("limit").map(Integer::parseInt).orElse(Integer.MAX_VALUE);\n`;
@@ -59,20 +308,131 @@ App.Converters.JavaController = {
       classContent += `        params.remove("limit");\n`;
       classContent += `        ObjectMapper mapper = new ObjectMapper();\n`;
       classContent += `        ${modelName} filter = mapper.convertValue(params, ${modelName}.class);\n`;
-      classContent += `        return ${serviceVar}.find(filter, offset, limit).thenApply(result -> ok(result));\n`;
+      if (conditionalGetEnabled) {
+        // ページの内容 (総件数と各行の ID・更新日時) が変わっていなければ本文を返さず 304 を返す (ページの取得は省かない)
+        const listTag = `ConditionalRequests.listTag(result, "${pkName}", "${toCamelCase(App.Utils.TableFeatures.getCommonColumns().updated_at)}")`;
+        classContent += `        return ${serviceVar}.find(filter, offset, limit).thenApply(result -> {\n`;
+        if (binaryEnabled) {
+          classContent += `            String etag = ContentNegotiation.negotiate(request).tag(${listTag});\n`;
+        } else {
+          classContent += `            String etag = ${listTag};\n`;
+        }
+        classContent += `            if (ConditionalRequests.isNotModified(request, etag, null)) {\n`;
+        classContent += `                return ConditionalRequests.notModified(etag, null);\n`;
+        classContent += `            }\n`;
+        classContent += `            return ConditionalRequests.withValidators(${okResult}, etag, null);\n`;
+        classContent += `        });\n`;
+      } else {
+        classContent += `        return ${serviceVar}.find(filter, offset, limit).thenApply(result -> ${okResult});\n`;
+      }
       classContent += `    }\n\n`;
 
+      // search
+      if (hasSearch) {
+        classContent += `    /**\n     * ${table.tableNameJP} を全文検索します。\n     * @param request リクエスト (q: 検索語, limit: 最大件数 1~100, 省略時 20)\n     * @return 検索結果\n     */\n`;
+        classContent += crudAdmission;
+        classContent += `    public CompletionStage<Result> search(Http.Request request) {\n`;
+        classContent += `        String q = request.queryString("q").orElse("");\n`;
+        classContent += `        int limit = Math.max(1, Math.min(100, request.queryString("limit").map(Integer::parseInt).orElse(20)));\n`;
+        classContent += `        return ${serviceVar}.search(q, limit).thenApply(result -> ${okResult});\n`;
+        classContent += `    }\n\n`;
+      }
+
+      // changes
+      if (tableChanges) {
+        classContent += `    /**\n     * 指定日時以降に変更された ${table.tableNameJP} を差分同期用に返します。\n     * @param request リクエスト (since: ISO-8601 日時, cursor: 前回の nextCursor, limit: 最大件数 1~1000, 省略時 100)\n     * @return 変更のあった行と次回の取得開始位置${archivedChanges ? ' (開始位置がアーカイブの保持期間より前の場合は 410 Gone。全件を取得し直してください)' : ''}\n     */\n`;
+        classContent += crudAdmission;
+        classContent += `    public CompletionStage<Result> changes(Http.Request request) {\n`;
+        classContent += `        int limit = Math.max(1, Math.min(1000, request.queryString("limit").map(Integer::parseInt).orElse(100)));\n`;
+        classContent += `        try {\n`;
+        classContent += `            Instant since = request.queryString("since").map(Instant::parse).orElse(null);\n`;
+        classContent += `            String cursor = request.queryString("cursor").orElse(null);\n`;
+        classContent += `            return ${serviceVar}.findChangedSince(since, cursor, limit).thenApply(result -> ${okResult});\n`;
+        if (archivedChanges) {
+          classContent += `        } catch (ResyncRequiredException e) {\n`;
+          classContent += `            return CompletableFuture.completedFuture(status(GONE, e.getMessage()));\n`;
+        }
+        classContent += `        } catch (DateTimeParseException | IllegalArgumentException e) {\n`;
+        classContent += `            return CompletableFuture.completedFuture(badRequest(e.getMessage()));\n`;
+        classContent += `        }\n`;
+        classContent += `    }\n\n`;
+      }
+
+      // findStream / findNdjson
+      if (streamingEnabled) {
+        const streamFormats = binaryEnabled ? ' (Accept に応じて JSON / Smile / CBOR)' : '';
+        classContent += `    /**\n     * ${table.tableNameJP} を検索し、{"total":..,"data":[...]} をチャンク転送で逐次返します${streamFormats}。\n     * @param request リクエスト\n     * @return 検索結果\n     */\n`;
+        classContent += streamAdmission;
+        classContent += `    public Result findStream(Http.Request request) {\n`;
+        classContent += `        int offset = request.queryString("offset").map(Integer::parseInt).orElse(0);\n`;
+        classContent += `        int limit = request.queryString("limit").map(Integer::parseInt).orElse(Integer.MAX_VALUE);\n`;
+        classContent += `        ${modelName} filter = toFilter(request);\n`;
+        if (binaryEnabled) {
+          classContent += `        ContentNegotiation.Format format = ContentNegotiation.negotiate(request);\n`;
+          classContent += `        return ok().chunked(${streamBody(`JsonStreams.source(out -> ${serviceVar}.writePage(filter, offset, limit, format.mapper(), out))`)})\n`;
+          classContent += `            .as(format.mimeType())\n`;
+          classContent += `            .withHeader(Http.HeaderNames.VARY, Http.HeaderNames.ACCEPT);\n`;
+        } else {
+          classContent += `        return ok().chunked(${streamBody(`JsonStreams.source(out -> ${serviceVar}.writeJson(filter, offset, limit, out))`)})\n`;
+          classContent += `            .as(Http.MimeTypes.JSON);\n`;
+        }
+        classContent += `    }\n\n`;
+
+        classContent += `    /**\n     * ${table.tableNameJP} を検索し、1行1件の NDJSON をチャンク転送で逐次返します。\n     * @param request リクエスト\n     * @return 検索結果\n     */\n`;
+        classContent += streamAdmission;
+        classContent += `    public Result findNdjson(Http.Request request) {\n`;
+        classContent += `        int offset = request.queryString("offset").map(Integer::parseInt).orElse(0);\n`;
+        classContent += `        int limit = request.queryString("limit").map(Integer::parseInt).orElse(Integer.MAX_VALUE);\n`;
+        classContent += `        ${modelName} filter = toFilter(request);\n`;
+        classContent += `        return ok().chunked(${streamBody(`JsonStreams.source(out -> ${serviceVar}.writeNdjson(filter, offset, limit, out))`)})\n`;
+        classContent += `            .as("application/x-ndjson");\n`;
+        classContent += `    }\n\n`;
+
+        classContent += `    /**\n     * クエリ文字列 (offset, limit を除く) から検索条件を作成します。\n     * @param request リクエスト\n     * @return 検索条件\n     */\n`;
+        classContent += `    private ${modelName} toFilter(Http.Request request) {\n`;
+        classContent += `        Map<String, String> params = request.queryString().entrySet().stream()\n`;
+        classContent += `            .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue()[0]));\n`;
+        classContent += `        params.remove("offset");\n`;
+        classContent += `        params.remove("limit");\n`;
+        classContent += `        ObjectMapper mapper = new ObjectMapper();\n`;
+        classContent += `        return mapper.convertValue(params, ${modelName}.class);\n`;
+        classContent += `    }\n\n`;
+      }
+
       // findById
       classContent += `    /**\n     * IDで ${table.tableNameJP} を検索します。\n     * @param request リクエスト\n     * @param ${pkName} ID\n     * @return 検索結果\n     */\n`;
+      classContent += crudAdmission;
       classContent += `    public CompletionStage<Result> findById(Http.Request request, ${pkType} ${pkName}) {\n`;
-      classContent += `        return ${serviceVar}.findById(${pkName}).thenApply(${modelVar}Opt ->\n`;
-      classContent += `            ${modelVar}Opt.map(m -> ok(Json.toJson(m)))\n`;
-      classContent += `                .orElse(notFound())\n`;
-      classContent += `        );\n`;
+      if (conditionalGetEnabled) {
+        classContent += `        return ${serviceVar}.findById(${pkName}).thenApply(${modelVar}Opt ->\n`;
+        classContent += `            ${modelVar}Opt.map(m -> {\n`;
+        classContent += `                if (m.${updatedAtGetter}() == null) {\n`;
+        classContent += `                    return ${okModel};\n`;
+        classContent += `                }\n`;
+        if (binaryEnabled) {
+          // 強い ETag は表現ごとに異なる必要があるため、形式ごとに区別する
+          classContent += `                String etag = ContentNegotiation.negotiate(request).tag(ConditionalRequests.entityTag(${pkName}, m.${updatedAtGetter}()));\n`;
+        } else {
+          classContent += `                String etag = ConditionalRequests.entityTag(${pkName}, m.${updatedAtGetter}());\n`;
+        }
+        classContent += `                if (ConditionalRequests.isNotModified(request, etag, m.${updatedAtGetter}())) {\n`;
+        classContent += `                    return ConditionalRequests.notModified(etag, m.${updatedAtGetter}());\n`;
+        classContent += `                }\n`;
+        classContent += `                return ConditionalRequests.withValidators(${okModel}, etag, m.${updatedAtGetter}());\n`;
+        classContent += `            })\n`;
+        classContent += `                .orElse(notFound())\n`;
+        classContent += `        );\n`;
+      } else {
+        classContent += `        return ${serviceVar}.findById(${pkName}).thenApply(${modelVar}Opt ->\n`;
+        classContent += `            ${modelVar}Opt.map(m -> ${okModel})\n`;
+        classContent += `                .orElse(notFound())\n`;
+        classContent += `        );\n`;
+      }
       classContent += `    }\n\n`;
 
       // create
       classContent += `    /**\n     * ${table.tableNameJP} を新規登録します。\n     * @param request リクエスト\n     * @return 登録結果\n     */\n`;
+      classContent += crudAdmission;
       classContent += `    public CompletionStage<Result> create(Http.Request request) {\n`;
       classContent += `        JsonNode json = request.body().asJson();\n`;
       classContent += `        ${modelName} ${modelVar} = Json.fromJson(json, ${modelName}.class);\n`;
@@ -83,6 +443,7 @@ App.Converters.JavaController = {
 
       // update
       classContent += `    /**\n     * ${table.tableNameJP} を更新します。\n     * @param request リクエスト\n     * @param ${pkName} ID\n     * @return 更新結果\n     */\n`;
+      classContent += crudAdmission;
       classContent += `    public CompletionStage<Result> update(Http.Request request, ${pkType} ${pkName}) {\n`;
       classContent += `        JsonNode json = request.body().asJson();\n`;
       classContent += `        ${modelName} ${modelVar} = Json.fromJson(json, ${modelName}.class);\n`;
@@ -93,12 +454,14 @@ App.Converters.JavaController = {
 
       // delete
       classContent += `    /**\n     * ${table.tableNameJP} を削除します。\n     * @param request リクエスト\n     * @param ${pkName} ID\n     * @param updatedAt 更新日時\n     * @return 削除結果\n     */\n`;
+      classContent += crudAdmission;
       classContent += `    public CompletionStage<Result> delete(Http.Request request, ${pkType} ${pkName}, String updatedAt) {\n`;
       classContent += `        return ${serviceVar}.delete(${pkName}, Instant.parse(updatedAt)).thenApply(result -> ok());\n`;
       classContent += `    }\n\n`;
 
       // exportCsv
       classContent += `    /**\n     * ${table.tableNameJP} をCSVエクスポートします。\n     * @param request リクエスト\n     * @return CSVファイル\n     */\n`;
+      classContent += heavyAdmission;
       classContent += `    public CompletionStage<Result> exportCsv(Http.Request request) {\n`;
       classContent += `        Map<String, String> params = request.queryString().entrySet().stream()\n`;
       classContent += `            .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue()[0]));\n`;
@@ -109,8 +472,30 @@ App.Converters.JavaController = {
       classContent += `        );\n`;
       classContent += `    }\n\n`;
 
+      // exportCsvParallel
+      if (parallelExportEnabled) {
+        classContent += `    /**\n     * ${table.tableNameJP} を ID の範囲ごとに並列に読み出して CSV エクスポートします (大量データ向け)。\n     * @param request リクエスト (parts: 分割数, gzip: true で gzip 圧縮, archive: true で範囲ごとのファイルを ZIP にまとめる)\n     * @return エクスポートファイル\n     */\n`;
+        classContent += heavyAdmission;
+        classContent += `    public CompletionStage<Result> exportCsvParallel(Http.Request request) {\n`;
+        classContent += `        Map<String, String> params = request.queryString().entrySet().stream()\n`;
+        classContent += `            .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue()[0]));\n`;
+        classContent += `        String parts = params.remove("parts");\n`;
+        classContent += `        boolean gzip = Boolean.parseBoolean(params.remove("gzip"));\n`;
+        classContent += `        boolean archive = Boolean.parseBoolean(params.remove("archive"));\n`;
+        classContent += `        ObjectMapper mapper = new ObjectMapper();\n`;
+        classContent += `        ${modelName} filter = mapper.convertValue(params, ${modelName}.class);\n`;
+        classContent += `        ParallelExport.Options options = new ParallelExport.Options(parts != null ? Integer.parseInt(parts) : 0, gzip, archive);\n`;
+        classContent += `        return ${serviceVar}.exportCsvParallel(filter, options).thenApply(output ->\n`;
+        classContent += `            ok(output.getFile())\n`;
+        classContent += `                .as(output.getContentType())\n`;
+        classContent += `                .withHeader(Http.HeaderNames.CONTENT_DISPOSITION, "attachment; filename=\\"" + output.getFileName() + "\\"")\n`;
+        classContent += `        );\n`;
+        classContent += `    }\n\n`;
+      }
+
       // importCsv
       classContent += `    /**\n     * ${table.tableNameJP} をCSVインポートします。\n     * @param request リクエスト\n     * @return インポート結果\n     */\n`;
+      classContent += heavyAdmission;
       classContent += `    public CompletionStage<Result> importCsv(Http.Request request) {\n`;
       classContent += `        return CsvImportHandler.handle(request, file ->\n`;
       classContent += `            ${serviceVar}.importCsv(file).thenApply(result -> {\n`;
@@ -128,6 +513,715 @@ App.Converters.JavaController = {
     });
 
     return files;
+  },
+
+  /**
+   * Accept ヘッダによる応答形式 (JSON / Smile / CBOR) の切り替え
+   */
+  generateContentNegotiation() {
+    return `
+package libraries;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import play.api.http.MediaRange;
+import play.libs.Json;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+
+/**
+ * Accept ヘッダによる応答形式の切り替え
+ * サービス間通信向けに、JSON と同じデータ構造のままバイナリ形式 (Smile / CBOR) で返し、
+ * 応答サイズとシリアライズ・パースの CPU を削減します。Accept が無い・一致しない場合は JSON です。
+ * jackson-dataformat-smile / jackson-dataformat-cbor (Play の Jackson と同じバージョン) が必要です。
+ */
+public final class ContentNegotiation {
+
+    /** Smile の MIME タイプ */
+    public static final String SMILE = "application/x-jackson-smile";
+    /** CBOR の MIME タイプ */
+    public static final String CBOR = "application/cbor";
+
+    private ContentNegotiation() {
+    }
+
+    /**
+     * 応答形式
+     * バイナリ形式の ObjectMapper は Play の設定 (モジュール・日時形式など) を引き継いで作成します。
+     */
+    public enum Format {
+        JSON(Http.MimeTypes.JSON, "", Json::mapper),
+        SMILE(ContentNegotiation.SMILE, "-smile", () -> Json.mapper().copyWith(new SmileFactory())),
+        CBOR(ContentNegotiation.CBOR, "-cbor", () -> Json.mapper().copyWith(new CBORFactory()));
+
+        private final String mimeType;
+        private final String tagSuffix;
+        private final Supplier<ObjectMapper> factory;
+        private volatile ObjectMapper mapper;
+
+        Format(String mimeType, String tagSuffix, Supplier<ObjectMapper> factory) {
+            this.mimeType = mimeType;
+            this.tagSuffix = tagSuffix;
+            this.factory = factory;
+        }
+
+        /**
+         * MIME タイプを返します。
+         * @return MIME タイプ
+         */
+        public String mimeType() {
+            return mimeType;
+        }
+
+        /**
+         * この形式で読み書きする ObjectMapper を返します。
+         * Play が起動時に Json.mapper() を差し替えるため、初回の利用時に作成します。
+         * @return ObjectMapper
+         */
+        public ObjectMapper mapper() {
+            if (this == JSON) {
+                return Json.mapper();
+            }
+            ObjectMapper current = mapper;
+            if (current == null) {
+                current = factory.get();
+                mapper = current;
+            }
+            return current;
+        }
+
+        /**
+         * ETag を形式ごとに区別します (同じデータでも表現が異なるため)。
+         * @param etag JSON の ETag
+         * @return この形式の ETag
+         */
+        public String tag(String etag) {
+            if (tagSuffix.isEmpty()) {
+                return etag;
+            }
+            return etag.substring(0, etag.length() - 1) + tagSuffix + "\\"";
+        }
+    }
+
+    /**
+     * Accept ヘッダの優先度順に、対応する形式を選びます。
+     * @param request リクエスト
+     * @return 応答形式 (該当が無い場合は JSON)
+     */
+    public static Format negotiate(Http.Request request) {
+        for (MediaRange range : request.acceptedTypes()) {
+            for (Format format : Format.values()) {
+                if (range.accepts(format.mimeType())) {
+                    return format;
+                }
+            }
+        }
+        return Format.JSON;
+    }
+
+    /**
+     * 200 OK をリクエストの Accept に応じた形式で返します。
+     * @param request リクエスト
+     * @param value 応答内容 (JsonNode または Bean)
+     * @return レスポンス
+     */
+    public static Result ok(Http.Request request, Object value) {
+        Format format = negotiate(request);
+        Result result;
+        if (format == Format.JSON) {
+            result = Results.ok(value instanceof JsonNode ? (JsonNode) value : Json.toJson(value));
+        } else {
+            try {
+                result = Results.ok(format.mapper().writeValueAsBytes(value)).as(format.mimeType());
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result.withHeader(Http.HeaderNames.VARY, Http.HeaderNames.ACCEPT);
+    }
+}
+`.trim();
+  },
+
+  /**
+   * 応答時間に応じて同時実行数を増減させるリミッター (テナント単位の公平キュー付き)
+   */
+  generateAdaptiveLimiter() {
+    return `
+package libraries;
+
+import play.mvc.Http;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 応答時間に応じて同時実行数の上限を増減させるリミッター (AIMD)
+ * 直近の応答時間の移動平均が、長い期間の移動平均 (基準) × latency-tolerance を超えた場合やエラーの場合は
+ * 上限を一定割合で下げ、それ以外で上限まで使われていれば上限を少しずつ上げます。
+ * 下げるのは、前回下げた時点の同時実行数分のリクエストが完了するまで (1 ウィンドウ) に 1 回だけです。
+ * 個々の遅いリクエストや、下げる前に受け付けた分の応答で上限が下がり続けることはありません。
+ * 上限を超えたリクエストはテナントごとのキューで待機し、テナント間は順番に払い出すため、
+ * 1テナントの大量リクエストが他テナントの待ち時間を押し上げません。
+ * キューが満杯、または queue-timeout を過ぎても払い出されないリクエストは {@link Rejected} で失敗します。
+ */
+public class AdaptiveLimiter {
+
+    /** 上限を下げるときの倍率 */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /** 直近の応答時間の移動平均の係数 (およそ 20 サンプル) */
+    private static final double SHORT_RTT_ALPHA = 2.0 / (20 + 1);
+
+    /** 基準の応答時間の移動平均の係数 (およそ 1000 サンプル、DB 負荷の変化にゆっくり追従する) */
+    private static final double LONG_RTT_ALPHA = 2.0 / (1000 + 1);
+
+    /** 基準が安定するまで、応答時間では上限を下げないサンプル数 */
+    private static final int WARM_UP_SAMPLES = 20;
+
+    /**
+     * 受付を拒否したことを表す例外
+     */
+    public static class Rejected extends RuntimeException {
+        private final int status;
+
+        public Rejected(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+
+        /**
+         * @return 返却する HTTP ステータス (429 または 503)
+         */
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * 同時実行の許可
+     * 処理の完了後に必ず 1 回 {@link #release(boolean)} を呼び出してください。
+     */
+    public final class Permit {
+        private final long startedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        /**
+         * 許可を返却し、応答時間を上限の調整に反映します。
+         * @param success 正常に処理できた場合 true (5xx・例外は false)
+         */
+        public void release(boolean success) {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveLimiter.this.release(System.nanoTime() - startedAt, success);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        final String tenant;
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+        ScheduledFuture<?> timeout;
+
+        Waiter(String tenant) {
+            this.tenant = tenant;
+        }
+    }
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final int maxQueuePerTenant;
+    private final long queueTimeoutMillis;
+    private final double latencyTolerance;
+    private final ScheduledExecutorService scheduler;
+
+    /** テナント → 待機キュー (先頭のテナントから払い出し、払い出し後は末尾へ回す) */
+    private final LinkedHashMap<String, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double shortRttNanos;
+    private double longRttNanos;
+    private long rttSamples;
+    /** 前回上限を下げてから完了したリクエスト数 */
+    private long releasedSinceBackoff;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueue, int maxQueuePerTenant,
+                           Duration queueTimeout, double latencyTolerance, ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = maxQueue;
+        this.maxQueuePerTenant = maxQueuePerTenant;
+        this.queueTimeoutMillis = queueTimeout.toMillis();
+        this.latencyTolerance = latencyTolerance;
+        this.scheduler = scheduler;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * 同時実行の許可を取得します。
+     * 空きがあれば即座に、無ければテナントのキューで待機してから完了します。
+     * @param tenant テナントID
+     * @return 許可 (拒否された場合は {@link Rejected} で失敗)
+     */
+    public CompletionStage<Permit> acquire(String tenant) {
+        Waiter waiter;
+        synchronized (this) {
+            if (queued == 0 && inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            ArrayDeque<Waiter> queue = queues.get(tenant);
+            if (queue != null && queue.size() >= maxQueuePerTenant) {
+                return CompletableFuture.failedFuture(new Rejected(Http.Status.TOO_MANY_REQUESTS,
+                    name + ": too many queued requests for tenant"));
+            }
+            if (queued >= maxQueue) {
+                return CompletableFuture.failedFuture(new Rejected(Http.Status.SERVICE_UNAVAILABLE,
+                    name + ": queue is full"));
+            }
+            waiter = new Waiter(tenant);
+            queues.computeIfAbsent(tenant, key -> new ArrayDeque<>()).add(waiter);
+            queued++;
+            waiter.timeout = scheduler.schedule(() -> expire(waiter), queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return waiter.future;
+    }
+
+    /**
+     * 現在の同時実行数の上限を返します。
+     * @return 上限
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            ArrayDeque<Waiter> queue = queues.get(waiter.tenant);
+            if (queue == null || !queue.remove(waiter)) {
+                return;
+            }
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(waiter.tenant);
+            }
+        }
+        waiter.future.completeExceptionally(new Rejected(Http.Status.SERVICE_UNAVAILABLE,
+            name + ": queue timeout exceeded"));
+    }
+
+    private void release(long rttNanos, boolean success) {
+        List<Waiter> ready;
+        synchronized (this) {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            releasedSinceBackoff++;
+            if (++rttSamples == 1) {
+                shortRttNanos = rttNanos;
+                longRttNanos = rttNanos;
+            } else {
+                shortRttNanos += SHORT_RTT_ALPHA * (rttNanos - shortRttNanos);
+                longRttNanos += LONG_RTT_ALPHA * (rttNanos - longRttNanos);
+            }
+            boolean congested = !success
+                || (rttSamples > WARM_UP_SAMPLES && shortRttNanos > longRttNanos * latencyTolerance);
+            if (congested) {
+                // 前回下げた後のウィンドウが一巡するまでは、下げる前の負荷による応答で重ねて下げない
+                if (releasedSinceBackoff >= (int) limit) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                    releasedSinceBackoff = 0;
+                }
+            } else if (saturated) {
+                // 上限いっぱいまで使われている間だけ、1往復あたり 1 ずつ増やす
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            ready = dispatch();
+        }
+        for (Waiter waiter : ready) {
+            waiter.timeout.cancel(false);
+            waiter.future.complete(new Permit());
+        }
+    }
+
+    /**
+     * 空きの分だけ、テナントを順番に回りながら待機中のリクエストを取り出します。
+     */
+    private List<Waiter> dispatch() {
+        List<Waiter> ready = new ArrayList<>();
+        while (queued > 0 && inFlight < (int) limit) {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> it = queues.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Waiter>> head = it.next();
+            it.remove();
+            ArrayDeque<Waiter> queue = head.getValue();
+            ready.add(queue.poll());
+            if (!queue.isEmpty()) {
+                queues.put(head.getKey(), queue);
+            }
+            queued--;
+            inFlight++;
+        }
+        return ready;
+    }
+}
+`.trim();
+  },
+
+  /**
+   * プールごとのリミッターを保持するシングルトン
+   */
+  generateAdmissionController() {
+    return `
+package libraries;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * 受付制御 (同時実行数の制限と待機キュー) のリミッターを保持するレジストリ
+ * crud プールはルートごと、heavy プール (CSV 入出力) は全ルートで 1 つのリミッターを共有し、
+ * 重い処理が CRUD の同時実行枠を使い切らないようにします。
+ * application.conf の admission.crud / admission.heavy で設定します。
+ */
+@Singleton
+public class AdmissionController {
+
+    /** CRUD 用のプール名 */
+    public static final String CRUD = "crud";
+
+    /** CSV 入出力など重い処理用のプール名 */
+    public static final String HEAVY = "heavy";
+
+    private static final Config DEFAULTS = ConfigFactory.parseString(
+        "crud.initial-limit = 20\\n"
+        + "crud.min-limit = 4\\n"
+        + "crud.max-limit = 200\\n"
+        + "crud.queue-timeout = 500ms\\n"
+        + "crud.max-queue = 500\\n"
+        + "crud.max-queue-per-tenant = 50\\n"
+        + "crud.latency-tolerance = 2.0\\n"
+        + "heavy.initial-limit = 2\\n"
+        + "heavy.min-limit = 1\\n"
+        + "heavy.max-limit = 4\\n"
+        + "heavy.queue-timeout = 2s\\n"
+        + "heavy.max-queue = 20\\n"
+        + "heavy.max-queue-per-tenant = 2\\n"
+        + "heavy.latency-tolerance = 2.0\\n");
+
+    private final Config settings;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+    @Inject
+    public AdmissionController(Config config, ApplicationLifecycle lifecycle) {
+        this.settings = config.hasPath("admission")
+            ? config.getConfig("admission").withFallback(DEFAULTS)
+            : DEFAULTS;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "admission-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        lifecycle.addStopHook(() -> {
+            scheduler.shutdownNow();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * 同時実行の許可を取得します。
+     * @param pool プール名 ({@link #CRUD} または {@link #HEAVY})
+     * @param route ルート (コントローラー.メソッド)
+     * @param tenant テナントID
+     * @return 許可 (拒否された場合は {@link AdaptiveLimiter.Rejected} で失敗)
+     */
+    public CompletionStage<AdaptiveLimiter.Permit> acquire(String pool, String route, String tenant) {
+        String key = HEAVY.equals(pool) ? pool : pool + ":" + route;
+        return limiters.computeIfAbsent(key, name -> {
+            Config pooled = settings.getConfig(pool);
+            return new AdaptiveLimiter(
+                name,
+                pooled.getInt("initial-limit"),
+                pooled.getInt("min-limit"),
+                pooled.getInt("max-limit"),
+                pooled.getInt("max-queue"),
+                pooled.getInt("max-queue-per-tenant"),
+                pooled.getDuration("queue-timeout"),
+                pooled.getDouble("latency-tolerance"),
+                scheduler);
+        }).acquire(tenant);
+    }
+}
+`.trim();
+  },
+
+  /**
+   * 読み取り一貫性 (自分の書き込みを読める) を適用するアノテーション
+   */
+  generateReadYourWrites() {
+    return `
+package controllers.actions;
+
+import play.mvc.With;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * リードレプリカ利用時に、呼び出し元が自分の書き込みを読めるようにします。
+ */
+@With(ReadYourWritesAction.class)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadYourWrites {
+}
+`.trim();
+  },
+
+  /**
+   * 読み取り一貫性のアクション
+   */
+  generateReadYourWritesAction() {
+    return `
+package controllers.actions;
+
+import play.mvc.Action;
+import play.mvc.Http;
+import play.mvc.Result;
+import repository.DatabaseRouter;
+import repository.ReadConsistency;
+
+import javax.inject.Inject;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * リクエストの書き込み位置のトークン (Cookie または X-Read-After ヘッダ) から {@link ReadConsistency} を作り、
+ * アクションの処理中に設定します。書き込みがあった場合は、新しい位置を同じ Cookie とヘッダで返します。
+ * トークンは呼び出し元ごとに持つため、他の利用者の書き込みで参照先がプライマリに寄ることはなく、
+ * 別のノードに振り分けられた次のリクエストでも有効です。
+ */
+public class ReadYourWritesAction extends Action<ReadYourWrites> {
+
+    public static final String COOKIE_NAME = "read-after";
+    public static final String HEADER_NAME = "X-Read-After";
+
+    private final DatabaseRouter databaseRouter;
+
+    @Inject
+    public ReadYourWritesAction(DatabaseRouter databaseRouter) {
+        this.databaseRouter = databaseRouter;
+    }
+
+    @Override
+    public CompletionStage<Result> call(Http.Request request) {
+        String token = request.header(HEADER_NAME)
+            .orElseGet(() -> request.getCookie(COOKIE_NAME).map(Http.Cookie::value).orElse(null));
+        ReadConsistency consistency = new ReadConsistency(token);
+        return ReadConsistency.callWith(consistency, () -> delegate.call(request))
+            .thenApply(result -> {
+                String written = consistency.responseToken();
+                if (written == null) {
+                    return result;
+                }
+                return result
+                    .withHeader(HEADER_NAME, written)
+                    .withCookies(Http.Cookie.builder(COOKIE_NAME, written)
+                        .withMaxAge(databaseRouter.tokenMaxAge())
+                        .withHttpOnly(true)
+                        .withSameSite(Http.Cookie.SameSite.LAX)
+                        .build());
+            });
+    }
+}
+`.trim();
+  },
+
+  /**
+   * 受付制御を適用するアノテーション
+   */
+  generateAdmissionControlled() {
+    return `
+package controllers.actions;
+
+import play.mvc.With;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * アクションに受付制御 (同時実行数の制限と待機キュー) を適用します。
+ */
+@With(AdmissionControlAction.class)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdmissionControlled {
+
+    /** CSV 入出力など重い処理用のプール名 */
+    String HEAVY = "heavy";
+
+    /**
+     * @return プール名 (既定: crud)
+     */
+    String value() default "crud";
+
+    /**
+     * チャンク転送の応答では、アクションが返った時点ではまだ DB の処理が終わっていません。
+     * true の場合は許可を返却せずにリクエスト属性 {@link AdmissionControlAction#PERMIT} で渡すため、
+     * アクションは本文を {@link AdmissionControlAction#holdUntilComplete} で包み、送信の完了まで許可を保持してください。
+     * @return チャンク転送の応答を返すアクションの場合 true
+     */
+    boolean streamed() default false;
+}
+`.trim();
+  },
+
+  /**
+   * 受付制御のアクション
+   */
+  generateAdmissionControlAction(rlsOptions) {
+    const rlsEnabled = !!(rlsOptions && rlsOptions.enabled);
+    return `
+package controllers.actions;
+
+import libraries.AdaptiveLimiter;
+import libraries.AdmissionController;
+${rlsEnabled ? 'import models.SessionInfo;\n' : ''}import org.apache.pekko.stream.javadsl.Source;
+import play.libs.typedmap.TypedKey;
+import play.mvc.Action;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+import play.routing.Router;
+
+import javax.inject.Inject;
+${rlsEnabled ? 'import javax.inject.Provider;\n' : ''}import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * 同時実行数の上限に空きがあるまで待機してからアクションを実行します。
+ * 待機できない場合は 429 (テナントのキューが満杯) または 503 (全体のキューが満杯・待機時間超過) を
+ * Retry-After 付きで即座に返し、DB に到達する前に負荷を落とします。
+ */
+public class AdmissionControlAction extends Action<AdmissionControlled> {
+
+    /** streamed のアクションに渡す許可 */
+    public static final TypedKey<AdaptiveLimiter.Permit> PERMIT = TypedKey.create("admissionPermit");
+
+    private final AdmissionController admissionController;
+${rlsEnabled ? '    private final Provider<SessionInfo> sessionInfo;\n' : ''}
+    @Inject
+    public AdmissionControlAction(AdmissionController admissionController${rlsEnabled ? ', Provider<SessionInfo> sessionInfo' : ''}) {
+        this.admissionController = admissionController;
+${rlsEnabled ? '        this.sessionInfo = sessionInfo;\n' : ''}    }
+
+    @Override
+    public CompletionStage<Result> call(Http.Request request) {
+        return admissionController.acquire(configuration.value(), route(request), tenant())
+            .handle((permit, error) -> {
+                if (error != null) {
+                    return CompletableFuture.completedFuture(reject(error));
+                }
+                return run(request, permit);
+            })
+            .thenCompose(Function.identity());
+    }
+
+    /**
+     * 本文の送信が終わる (完了・失敗・切断) まで、リクエストの許可を保持します。
+     * 許可の無いリクエスト (streamed でないアクション) では本文をそのまま返します。
+     * @param request リクエスト
+     * @param body レスポンスボディ
+     * @param <T> 要素の型
+     * @return 完了時に許可を返却するレスポンスボディ
+     */
+    public static <T> Source<T, ?> holdUntilComplete(Http.Request request, Source<T, ?> body) {
+        return request.attrs().getOptional(PERMIT)
+            .<Source<T, ?>>map(permit -> body.watchTermination((materialized, done) -> {
+                done.whenComplete((result, error) -> permit.release(error == null));
+                return materialized;
+            }))
+            .orElse(body);
+    }
+
+    private CompletionStage<Result> run(Http.Request request, AdaptiveLimiter.Permit permit) {
+        boolean streamed = configuration.streamed();
+        CompletionStage<Result> result;
+        try {
+            result = delegate.call(streamed ? request.addAttr(PERMIT, permit) : request);
+        } catch (RuntimeException e) {
+            permit.release(false);
+            throw e;
+        }
+        return result.whenComplete((r, error) -> {
+            // streamed の場合、正常な応答の許可は本文の送信完了時に返却される
+            if (error != null || r.status() >= 500 || !streamed) {
+                permit.release(error == null && r.status() < 500);
+            }
+        });
+    }
+
+    private Result reject(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (!(cause instanceof AdaptiveLimiter.Rejected)) {
+            throw new CompletionException(cause);
+        }
+        return Results.status(((AdaptiveLimiter.Rejected) cause).getStatus(), cause.getMessage())
+            .withHeader(Http.HeaderNames.RETRY_AFTER, "1");
+    }
+
+    private String route(Http.Request request) {
+        return request.attrs().getOptional(Router.Attrs.HANDLER_DEF)
+            .map(def -> def.controller() + "." + def.method())
+            .orElse(request.method() + " " + request.path());
+    }
+
+    private String tenant() {
+${rlsEnabled
+  ? `        SessionInfo info = sessionInfo.get();
+        return info != null && info.getTenantId() != null ? String.valueOf(info.getTenantId()) : "default";`
+  : `        return "default";`}
+    }
+}
+`.trim();
   }
 };
 
@@ -6,7 +6,7 @@ App.Converters.JavaRepo = {
   /**
    * Javaリポジトリクラス生成
    */
-  generateJavaRepo(tables, rlsOptions) {
+  generateJavaRepo(tables, rlsOptions, features) {
     const config = (App.State.config && App.State.config.commonColumns) ? App.State.config.commonColumns : {
       id: 'id',
       is_deleted: { name: 'is_deleted', type: 'boolean', valTrue: true, valFalse: false },
@@ -32,6 +32,22 @@ App.Converters.JavaRepo = {
       config.updated_by
     ]);
     const files = [];
+    const archiveEnabled = App.Utils.TableFeatures.isEnabled(features, 'archive');
+    const streamingEnabled = App.Utils.TableFeatures.isEnabled(features, 'streaming');
+    const replicaEnabled = App.Utils.TableFeatures.isEnabled(features, 'readReplica');
+    const coalescingEnabled = App.Utils.TableFeatures.isEnabled(features, 'insertCoalescing');
+    const nativeRls = App.Utils.TableFeatures.isNativeRls(rlsOptions);
+    // ネイティブRLSではテナント設定をプライマリのトランザクションに行うため、
+    // レプリカへの参照振り分けと (テナントが混在する) insert のまとめ書きは行わない
+    const tableReplica = replicaEnabled && !nativeRls;
+    const tableCoalescing = coalescingEnabled && !nativeRls;
+    const changedSinceEnabled = App.Utils.TableFeatures.isEnabled(features, 'changedSince');
+    const warmUpEnabled = App.Utils.TableFeatures.isEnabled(features, 'warmUp');
+    const parallelExportEnabled = App.Utils.TableFeatures.isEnabled(features, 'parallelExport');
+    // 一覧は変更不可のモデルで返し、変更検知・遅延ロードの準備を省く
+    const readOnlyListEnabled = App.Utils.TableFeatures.isEnabled(features, 'readOnlyList');
+    const readOnlyNote = readOnlyListEnabled ? `\n     * 返却するモデルは読み取り専用です (変更検知・遅延ロードを行わないため、更新には findById を使用してください)。` : '';
+    const unmodifiable = readOnlyListEnabled ? `                .setUnmodifiable(true)\n` : '';
 
     const exceptionContent = `
 package repository;
@@ -47,20 +63,230 @@ public class OptimisticLockingFailureException extends RuntimeException {
 `;
     files.push({ path: 'repository/OptimisticLockingFailureException.java', content: exceptionContent.trim() });
 
+    if (archiveEnabled) {
+      const archiveBatchResultContent = `
+package repository;
+
+import java.time.Instant;
+
+/**
+ * アーカイブ移送1バッチ分の結果
+ * 最終キー (更新日時, ID) は次バッチのキーセット開始位置として使用する
+ */
+public class ArchiveBatchResult {
+
+    /** 初回バッチの開始位置 */
+    public static final ArchiveBatchResult START = new ArchiveBatchResult(0, Instant.EPOCH, 0L);
+
+    private final int movedCount;
+    private final Instant lastUpdatedAt;
+    private final Long lastId;
+
+    public ArchiveBatchResult(int movedCount, Instant lastUpdatedAt, Long lastId) {
+        this.movedCount = movedCount;
+        this.lastUpdatedAt = lastUpdatedAt;
+        this.lastId = lastId;
+    }
+
+    public int getMovedCount() {
+        return movedCount;
+    }
+
+    public Instant getLastUpdatedAt() {
+        return lastUpdatedAt;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+}
+`;
+      files.push({ path: 'repository/ArchiveBatchResult.java', content: archiveBatchResultContent.trim() });
+    }
+
+    if (replicaEnabled) {
+      files.push({ path: 'repository/DatabaseRouter.java', content: this.generateDatabaseRouter() });
+      files.push({ path: 'repository/ReadConsistency.java', content: this.generateReadConsistency() });
+      files.push({ path: 'test/repository/DatabaseRouterTest.java', content: this.generateDatabaseRouterTest() });
+    }
+
+    if (changedSinceEnabled) {
+      const changeCursorContent = `
+package repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 差分同期の再開位置 (最後に返した行の更新日時と ID)
+ * クライアントには不透明な文字列 (Base64URL) として渡し、次回の取得で返してもらう
+ */
+public class ChangeCursor {
+
+    /**
+     * 差分同期で返す行の更新日時の遅延幅
+     * 更新日時はアプリケーションの時計で付与されるため、コミットが遅れたトランザクションの行は
+     * 後から小さい更新日時で現れます。現在時刻からこの幅より新しい行は返さず、カーソルがその手前を越えないようにします。
+     * 最長のトランザクション時間とアプリケーションサーバー間の時計のずれより大きくしてください。
+     */
+    public static final Duration SAFETY_LAG = Duration.ofSeconds(30);
+
+    private final Instant updatedAt;
+    private final Long id;
+
+    public ChangeCursor(Instant updatedAt, Long id) {
+        this.updatedAt = updatedAt;
+        this.id = id;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * 再開位置を文字列に変換します。
+     * @return カーソル文字列
+     */
+    public String encode() {
+        String raw = updatedAt + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * カーソル文字列を再開位置に変換します。
+     * @param cursor カーソル文字列
+     * @return 再開位置
+     * @throws IllegalArgumentException 不正なカーソルの場合
+     */
+    public static ChangeCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('_');
+            return new ChangeCursor(Instant.parse(raw.substring(0, separator)), Long.valueOf(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
+`;
+      files.push({ path: 'repository/ChangeCursor.java', content: changeCursorContent.trim() });
+
+      const changePageContent = `
+package repository;
+
+import java.util.List;
+
+/**
+ * 差分同期の1ページ分の結果
+ * @param <T> モデルの型
+ */
+public class ChangePage<T> {
+    private final List<T> rows;
+    private final ChangeCursor nextCursor;
+    private final boolean hasMore;
+
+    public ChangePage(List<T> rows, ChangeCursor nextCursor, boolean hasMore) {
+        this.rows = rows;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    /** 変更のあった行 (論理削除済みの行を含む) */
+    public List<T> getRows() {
+        return rows;
+    }
+
+    /** 次回の取得開始位置 (変更が無かった場合は渡されたカーソルのまま) */
+    public ChangeCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    /** 続きのページがあるかどうか */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
+`;
+      files.push({ path: 'repository/ChangePage.java', content: changePageContent.trim() });
+    }
+
+    if (coalescingEnabled) {
+      files.push({ path: 'repository/InsertCoalescer.java', content: this.generateInsertCoalescer() });
+      // ネイティブRLSではリポジトリがまとめ書きを使わないため、書き込み位置の記録も不要
+      files.push({ path: 'repository/InsertCoalescing.java', content: this.generateInsertCoalescing(replicaEnabled && !nativeRls) });
+      files.push({ path: 'test/repository/InsertCoalescerTest.java', content: this.generateInsertCoalescerTest() });
+    }
+
+    if (nativeRls) {
+      files.push({ path: 'repository/TenantSession.java', content: this.generateTenantSession() });
+    }
+
+    if (warmUpEnabled) {
+      const warmUpTargetContent = `
+package repository;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 起動時ウォームアップ (jobs.WarmUp) の対象
+ */
+public interface WarmUpTarget {
+
+    /**
+     * 代表的なクエリを合成パラメータで実行します。
+     * @return 完了
+     */
+    CompletionStage<Void> warmUp();
+}
+`;
+      files.push({ path: 'repository/WarmUpTarget.java', content: warmUpTargetContent.trim() });
+
+      const warmUpModuleContent = `
+package jobs;
+
+import com.google.inject.AbstractModule;
+
+/**
+ * 起動時ウォームアップ (WarmUp) をアプリケーション起動時に開始するモジュール
+ * application.conf に play.modules.enabled += "jobs.WarmUpModule" を追加してください。
+ */
+public class WarmUpModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+        bind(WarmUp.class).asEagerSingleton();
+    }
+}
+`;
+      files.push(...this.generateAggregateFiles(tables, features));
+      files.push({ path: 'jobs/WarmUpModule.java', content: warmUpModuleContent.trim() });
+    }
+
     if (rlsOptions && rlsOptions.enabled) {
       const baseRepoContent = `
 package repository;
 
 import io.ebean.DB;
-import io.ebean.ExpressionList;
+${replicaEnabled ? 'import io.ebean.Database;\n' : ''}import io.ebean.ExpressionList;
 import models.BaseModel;
 import models.RlsAware;
 import models.SessionInfo;
 import javax.inject.Inject;
-
+${nativeRls ? `import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+` : ''}
 /**
  * RLSフィルタリング機能を提供する基底リポジトリ
- * @param <T> モデルの型
+${nativeRls ? ` * ネイティブRLSモードでは、テナントの絞り込みはデータベースのポリシーが行います。
+` : ''} * @param <T> モデルの型
  */
 public abstract class BaseRepository<T extends BaseModel> {
 
@@ -75,18 +301,47 @@ public abstract class BaseRepository<T extends BaseModel> {
         this.beanType = beanType;
     }
 
+    /**
+     * 現在のセッションにテナントでの絞り込みが必要かどうかを返します。
+     * @return 管理者以外かつRLS対象のモデルであれば true
+     */
+    protected boolean rlsApplies() {
+        return sessionInfo != null && !sessionInfo.isAdmin() && RlsAware.class.isAssignableFrom(beanType);
+    }
+
     /**
      * RLSフィルタを適用した検索クエリを返します。
      * @return RLSフィルタ適用後の ExpressionList
      */
     protected ExpressionList<T> rlsFilter() {
-        ExpressionList<T> query = DB.find(beanType).where();
+${replicaEnabled ? `        return rlsFilter(DB.getDefault());
+    }
 
-        if (sessionInfo != null && !sessionInfo.isAdmin() && RlsAware.class.isAssignableFrom(beanType)) {
+    /**
+     * 指定したデータベース (プライマリ / レプリカ) に対して、RLSフィルタを適用した検索クエリを返します。
+     * @param database 検索先のデータベース
+     * @return RLSフィルタ適用後の ExpressionList
+     */
+    protected ExpressionList<T> rlsFilter(Database database) {
+        ExpressionList<T> query = database.find(beanType).where();
+` : `        ExpressionList<T> query = DB.find(beanType).where();
+`}${nativeRls ? '' : `
+        if (rlsApplies()) {
             query.eq("${toCamelCase(rlsOptions.tenantIdColumn)}", sessionInfo.getTenantId());
         }
-        return query;
-    }
+`}        return query;
+    }${nativeRls ? `
+
+    /**
+     * テナント設定を行ったトランザクション内で処理を非同期に実行します。
+     * 既にトランザクションがあればそれに参加し、テナント設定はトランザクションごとに1回だけ行います。
+     * @param work 処理
+     * @param executor 実行スレッド
+     * @return 処理結果
+     */
+    protected <R> CompletableFuture<R> supplyInTenant(Supplier<R> work, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> TenantSession.inTransaction(sessionInfo, work), executor);
+    }` : ''}
 }
 `;
       files.push({ path: 'repository/BaseRepository.java', content: baseRepoContent.trim() });
@@ -100,11 +355,40 @@ public abstract class BaseRepository<T extends BaseModel> {
       const akColumns = table.columns.filter(c => c.pkfk === 'AK');
       const hasTenantId = table.columns.some(c => c.colName === (rlsOptions && rlsOptions.tenantIdColumn));
       const extendsBaseRepo = rlsOptions && rlsOptions.enabled;
+      const hasSearch = App.Utils.TableFeatures.getSearchColumns(table).length > 0;
+      // 更新日時・論理削除フラグの無いテーブルはアーカイブの対象外
+      const tableArchive = archiveEnabled && App.Utils.TableFeatures.isArchivable(table);
+      // 更新日時の無いテーブルは差分同期の対象外
+      const tableChanges = changedSinceEnabled && App.Utils.TableFeatures.isChangeTrackable(table);
+      // 参照はレプリカ (更新直後はプライマリ)、更新はプライマリへ振り分ける
+      const readDb = tableReplica ? 'readDb()' : 'DB';
+      const writeDb = tableReplica ? 'databaseRouter.primary()' : 'DB';
+      const readQuery = extendsBaseRepo
+        ? (tableReplica ? 'rlsFilter(readDb())' : 'rlsFilter()')
+        : `${readDb}.find(${modelName}.class).where()`;
+      const markWritten = tableReplica ? `            databaseRouter.markWritten();\n` : '';
+      // リクエストの読み取り一貫性 (自分の書き込みの位置) を DB 用のスレッドへ引き継ぐ
+      const dbExecutor = tableReplica ? 'ReadConsistency.propagating(executionContext)' : 'executionContext';
 
 
       let classContent = `package repository;\n\n`;
       classContent += `import io.ebean.DB;\n`;
+      if (tableReplica) {
+        classContent += `import io.ebean.Database;\n`;
+      }
       classContent += `import io.ebean.ExpressionList;\n`;
+      if (hasSearch) {
+        classContent += `import io.ebean.Query;\n`;
+      }
+      if (tableArchive) {
+        classContent += `import io.ebean.SqlRow;\n`;
+      }
+      if (tableArchive || parallelExportEnabled) {
+        classContent += `import io.ebean.Transaction;\n`;
+      }
+      if (parallelExportEnabled) {
+        classContent += `import libraries.ParallelExport;\n`;
+      }
       classContent += `import models.${modelName};\n`;
       if (extendsBaseRepo) {
         classContent += `import models.SessionInfo;\n`;
@@ -114,35 +398,71 @@ public abstract class BaseRepository<T extends BaseModel> {
       classContent += `import java.time.Instant;\n`;
       classContent += `import java.util.List;\n`;
       classContent += `import java.util.Optional;\n`;
-      classContent += `import java.util.concurrent.CompletionStage;\n\n`;
+      classContent += `import java.util.concurrent.CompletionStage;\n`;
+      if (streamingEnabled || parallelExportEnabled) {
+        classContent += `import java.util.function.Consumer;\n`;
+      }
+      classContent += `\n`;
       classContent += `import static java.util.concurrent.CompletableFuture.supplyAsync;\n\n`;
 
       classContent += `/**\n * ${table.tableNameJP} のリポジトリ\n */\n`;
-      classContent += `public class ${repoName} ${extendsBaseRepo ? `extends BaseRepository<${modelName}>` : ''}{\n`;
+      if (warmUpEnabled) {
+        classContent += `public class ${repoName} ${extendsBaseRepo ? `extends BaseRepository<${modelName}> ` : ''}implements WarmUpTarget {\n`;
+      } else {
+        classContent += `public class ${repoName} ${extendsBaseRepo ? `extends BaseRepository<${modelName}>` : ''}{\n`;
+      }
 
+      if (tableCoalescing) {
+        classContent += `    private static final String TABLE_NAME = "${table.tableName}";\n\n`;
+      }
+      const extraFields = [];
+      if (tableReplica) {
+        extraFields.push(`    private final DatabaseRouter databaseRouter;\n`);
+      }
+      if (tableCoalescing) {
+        extraFields.push(`    private final InsertCoalescer<${modelName}> insertCoalescer;\n`);
+      }
       if (!extendsBaseRepo) {
-        classContent += `    private final DatabaseExecutionContext executionContext;\n\n`;
+        classContent += `    private final DatabaseExecutionContext executionContext;\n${extraFields.length > 0 ? '' : '\n'}`;
+      }
+      if (extraFields.length > 0) {
+        classContent += extraFields.join('') + `\n`;
       }
 
+      const routerParam = (tableReplica ? ', DatabaseRouter databaseRouter' : '')
+        + (tableCoalescing ? ', InsertCoalescing insertCoalescing' : '');
       classContent += `    @Inject\n`;
       if (extendsBaseRepo) {
-        classContent += `    public ${repoName}(DatabaseExecutionContext executionContext, SessionInfo sessionInfo) {\n`;
+        classContent += `    public ${repoName}(DatabaseExecutionContext executionContext, SessionInfo sessionInfo${routerParam}) {\n`;
         classContent += `        super(executionContext, sessionInfo, ${modelName}.class);\n`;
       } else {
-        classContent += `    public ${repoName}(DatabaseExecutionContext executionContext) {\n`;
+        classContent += `    public ${repoName}(DatabaseExecutionContext executionContext${routerParam}) {\n`;
         classContent += `        this.executionContext = executionContext;\n`;
       }
+      if (tableReplica) {
+        classContent += `        this.databaseRouter = databaseRouter;\n`;
+      }
+      if (tableCoalescing) {
+        classContent += `        this.insertCoalescer = insertCoalescing.forTable(TABLE_NAME, ${repoName}::copyForRetry);\n`;
+      }
       classContent += `    }\n\n`;
 
+      if (tableReplica) {
+        classContent += `    /**\n     * 参照先のデータベースを返します。呼び出し元の直前の書き込みをレプリカが未反映ならプライマリ、それ以外はレプリカです。\n     * @return 参照先のデータベース\n     */\n`;
+        classContent += `    private Database readDb() {\n`;
+        classContent += `        return databaseRouter.forRead();\n`;
+        classContent += `    }\n\n`;
+      }
+
       // findById
       classContent += `    /**\n     * IDで ${table.tableNameJP} を検索します（論理削除済みは除く）。\n     * @param id 主キー\n     * @return 検索結果\n     */\n`;
       classContent += `    public CompletionStage<Optional<${modelName}>> findById(Long id) {\n`;
       classContent += `        return supplyAsync(() -> {\n`;
-      classContent += `            ExpressionList<${modelName}> query = ${extendsBaseRepo ? 'rlsFilter()' : `DB.find(${modelName}.class).where()`};\n`;
+      classContent += `            ExpressionList<${modelName}> query = ${readQuery};\n`;
       classContent += `            return query.eq("${idProp}", id)\n`;
       classContent += `                .eq("${isDeletedProp}", ${isDeletedFalseVal})\n`;
       classContent += `                .findOneOrEmpty();\n`;
-      classContent += `        }, executionContext);\n`;
+      classContent += `        }, ${dbExecutor});\n`;
       classContent += `    }\n\n`;
 
       // findBy Unique Columns
@@ -159,11 +479,11 @@ public abstract class BaseRepository<T extends BaseModel> {
         classContent += `    /**\n     * ${col.colNameJP} で ${table.tableNameJP} を検索します（論理削除済みは除く）。\n     * @param ${colCamel} ${col.colNameJP}\n     * @return 検索結果\n     */\n`;
         classContent += `    public CompletionStage<Optional<${modelName}>> findBy${colPascal}(${colType} ${colCamel}) {\n`;
         classContent += `        return supplyAsync(() -> {\n`;
-        classContent += `            ExpressionList<${modelName}> query = ${extendsBaseRepo ? 'rlsFilter()' : `DB.find(${modelName}.class).where()`};\n`;
+        classContent += `            ExpressionList<${modelName}> query = ${readQuery};\n`;
         classContent += `            return query.eq("${colCamel}", ${colCamel})\n`;
         classContent += `                .eq("${isDeletedProp}", ${isDeletedFalseVal})\n`;
         classContent += `                .findOneOrEmpty();\n`;
-        classContent += `        }, executionContext);\n`;
+        classContent += `        }, ${dbExecutor});\n`;
         classContent += `    }\n\n`;
       });
 
@@ -174,24 +494,25 @@ public abstract class BaseRepository<T extends BaseModel> {
       classContent += `    }\n\n`;
 
       // findAll
-      classContent += `    /**\n     * 全ての ${table.tableNameJP} を取得します（論理削除済みは除く）。\n     * @return 全件リスト\n     */\n`;
+      classContent += `    /**\n     * 全ての ${table.tableNameJP} を取得します（論理削除済みは除く）。${readOnlyNote}\n     * @return 全件リスト\n     */\n`;
       classContent += `    public CompletionStage<List<${modelName}>> findAll(int offset, int limit) {\n`;
       classContent += `        return supplyAsync(() ->\n`;
-      classContent += `            ${extendsBaseRepo ? 'rlsFilter()' : `DB.find(${modelName}.class).where()`}\n`;
+      classContent += `            ${readQuery}\n`;
       classContent += `                .eq("${isDeletedProp}", ${isDeletedFalseVal})\n`;
       classContent += `                .setFirstRow(offset)\n`;
       classContent += `                .setMaxRows(limit)\n`;
+      classContent += unmodifiable;
       classContent += `                .findList()\n`;
-      classContent += `        , executionContext);\n`;
+      classContent += `        , ${dbExecutor});\n`;
       classContent += `    }\n\n`;
 
       classContent += `    /**\n     * 全ての ${table.tableNameJP} の件数を取得します（論理削除済みは除く）。\n     * @return 件数\n     */\n`;
       classContent += `    public CompletionStage<Integer> countAll() {\n`;
       classContent += `        return supplyAsync(() ->\n`;
-      classContent += `            ${extendsBaseRepo ? 'rlsFilter()' : `DB.find(${modelName}.class).where()`}\n`;
+      classContent += `            ${readQuery}\n`;
       classContent += `                .eq("${isDeletedProp}", ${isDeletedFalseVal})\n`;
       classContent += `                .findCount()\n`;
-      classContent += `        , executionContext);\n`;
+      classContent += `        , ${dbExecutor});\n`;
       classContent += `    }\n\n`;
 
       // find (with filter)
@@ -201,26 +522,110 @@ public abstract class BaseRepository<T extends BaseModel> {
       classContent += `    }\n\n`;
 
       // find (with filter)
-      classContent += `    /**\n     * ${table.tableNameJP} を検索します（論理削除済みは除く）。\n     * @param filter 検索条件\n     * @return 検索結果リスト\n     */\n`;
+      classContent += `    /**\n     * ${table.tableNameJP} を検索します（論理削除済みは除く）。${readOnlyNote}\n     * @param filter 検索条件\n     * @return 検索結果リスト\n     */\n`;
       classContent += `    public CompletionStage<List<${modelName}>> find(${modelName} filter, int offset, int limit) {\n`;
       classContent += `        return supplyAsync(() ->\n`;
       classContent += `            createQueryWithFilter(filter)\n`;
       classContent += `                .setFirstRow(offset)\n`;
       classContent += `                .setMaxRows(limit)\n`;
+      classContent += unmodifiable;
       classContent += `                .findList()\n`;
-      classContent += `        , executionContext);\n`;
+      classContent += `        , ${dbExecutor});\n`;
       classContent += `    }\n\n`;
 
       classContent += `    /**\n     * ${table.tableNameJP} の件数を検索条件に基づいて取得します（論理削除済みは除く）。\n     * @param filter 検索条件\n     * @return 件数\n     */\n`;
       classContent += `    public CompletionStage<Integer> count(${modelName} filter) {\n`;
       classContent += `        return supplyAsync(() ->\n`;
       classContent += `            createQueryWithFilter(filter).findCount()\n`;
-      classContent += `        , executionContext);\n`;
+      classContent += `        , ${dbExecutor});\n`;
       classContent += `    }\n\n`;
 
+      if (streamingEnabled) {
+        classContent += `    /**\n     * ${table.tableNameJP} を検索し、1件ずつ consumer に渡します（論理削除済みは除く）。\n     * 結果リストをメモリに保持しないため、大きなページのストリーミング出力に使用します。\n     * @param filter 検索条件\n     * @param offset 開始位置\n     * @param limit 最大件数\n     * @param consumer 1件ごとの処理\n     * @return 完了通知\n     */\n`;
+        classContent += `    public CompletionStage<Void> findEach(${modelName} filter, int offset, int limit, Consumer<${modelName}> consumer) {\n`;
+        classContent += `        return supplyAsync(() -> {\n`;
+        classContent += `            createQueryWithFilter(filter)\n`;
+        classContent += `                .setFirstRow(offset)\n`;
+        classContent += `                .setMaxRows(limit)\n`;
+        classContent += `                .setBufferFetchSizeHint(500)\n`;
+        classContent += unmodifiable;
+        classContent += `                .findEach(consumer);\n`;
+        classContent += `            return null;\n`;
+        classContent += `        }, ${dbExecutor});\n`;
+        classContent += `    }\n\n`;
+      }
+
+      if (parallelExportEnabled) {
+        const applyTenant = nativeRls ? `        TenantSession.apply(transaction, sessionInfo);\n` : '';
+        classContent += `    /**\n     * 並列エクスポート用に、検索条件に合う ${table.tableNameJP} の ID の範囲を分割する境界を求めます（論理削除済みは除く）。\n     * 指定したスナップショットのトランザクション内で同期的に実行します。\n     * @param filter 検索条件\n     * @param parts 分割数\n     * @param samplePercent 境界を決めるための標本の割合 (%)\n     * @param transaction スナップショットのトランザクション\n     * @return 先頭が最小 ID、末尾が最大 ID + 1 の境界 (該当行が無い場合は空)\n     */\n`;
+        classContent += `    public List<Long> findIdBoundaries(${modelName} filter, int parts, double samplePercent, Transaction transaction) {\n`;
+        classContent += applyTenant;
+        classContent += `        Long minId = createQueryWithFilter(filter).usingTransaction(transaction).select("min(${idProp})").findSingleAttribute();\n`;
+        classContent += `        if (minId == null) {\n`;
+        classContent += `            return List.of();\n`;
+        classContent += `        }\n`;
+        classContent += `        Long maxId = createQueryWithFilter(filter).usingTransaction(transaction).select("max(${idProp})").findSingleAttribute();\n`;
+        classContent += `        // TABLESAMPLE はページ単位の標本のため検索条件は付けず、ID の範囲だけを絞って分位点に使う\n`;
+        classContent += `        List<Long> sample = DB.sqlQuery("SELECT ${config.id} FROM ${table.tableName} TABLESAMPLE SYSTEM (CAST(:percent AS real)) WHERE ${config.id} BETWEEN :minId AND :maxId ORDER BY ${config.id}")\n`;
+        classContent += `            .usingTransaction(transaction)\n`;
+        classContent += `            .setParameter("percent", samplePercent)\n`;
+        classContent += `            .setParameter("minId", minId)\n`;
+        classContent += `            .setParameter("maxId", maxId)\n`;
+        classContent += `            .mapToScalar(Long.class)\n`;
+        classContent += `            .findList();\n`;
+        classContent += `        return ParallelExport.boundaries(minId, maxId, sample, parts);\n`;
+        classContent += `    }\n\n`;
+
+        classContent += `    /**\n     * ID が [fromId, toId) の範囲で検索条件に合う ${table.tableNameJP} を ID 順に1件ずつ consumer に渡します（論理削除済みは除く）。\n     * 指定したスナップショットのトランザクション内で、カーソルを使って同期的に読み出します。\n     * @param filter 検索条件\n     * @param fromId 範囲の開始 ID (この値を含む)\n     * @param toId 範囲の終了 ID (この値を含まない)\n     * @param fetchSize カーソルの取得件数\n     * @param transaction スナップショットのトランザクション\n     * @param consumer 1件ごとの処理\n     */\n`;
+        classContent += `    public void findRangeEach(${modelName} filter, long fromId, long toId, int fetchSize, Transaction transaction, Consumer<${modelName}> consumer) {\n`;
+        classContent += applyTenant;
+        classContent += `        createQueryWithFilter(filter)\n`;
+        classContent += `            .usingTransaction(transaction)\n`;
+        classContent += `            .ge("${idProp}", fromId)\n`;
+        classContent += `            .lt("${idProp}", toId)\n`;
+        classContent += `            .orderBy("${idProp} asc")\n`;
+        classContent += `            .setBufferFetchSizeHint(fetchSize)\n`;
+        classContent += `            .findEach(consumer);\n`;
+        classContent += `    }\n\n`;
+      }
+
+      if (tableChanges) {
+        classContent += `    /**\n     * 指定日時以降に登録・更新・論理削除された ${table.tableNameJP} を (更新日時, ID) 順に取得します。\n     * 論理削除済みの行も削除の通知 (tombstone) として返します。\n     * コミット待ちの行を読み飛ばさないよう、更新日時が現在時刻 - ChangeCursor.SAFETY_LAG より前の行だけを返します。\n${tableArchive ? `     * アーカイブ済みの論理削除は返せないため、保持期間より前からの再開は呼び出し側 (サービス) で拒否してください。\n` : ''}     * @param since この日時以降の変更を取得 (cursor 指定時は無視、null の場合は先頭から)\n     * @param cursor 前回の取得結果の nextCursor (初回は null)\n     * @param limit 最大件数\n     * @return 変更のあった行と次回の取得開始位置\n     */\n`;
+        classContent += `    public CompletionStage<ChangePage<${modelName}>> findChangedSince(Instant since, ChangeCursor cursor, int limit) {\n`;
+        classContent += `        return supplyAsync(() -> {\n`;
+        classContent += `            Instant horizon = Instant.now().minus(ChangeCursor.SAFETY_LAG);\n`;
+        classContent += `            ExpressionList<${modelName}> query = ${readQuery}.lt("${updatedAtProp}", horizon);\n`;
+        classContent += `            if (cursor != null) {\n`;
+        classContent += `                query.or()\n`;
+        classContent += `                    .gt("${updatedAtProp}", cursor.getUpdatedAt())\n`;
+        classContent += `                    .and()\n`;
+        classContent += `                        .eq("${updatedAtProp}", cursor.getUpdatedAt())\n`;
+        classContent += `                        .gt("${idProp}", cursor.getId())\n`;
+        classContent += `                    .endAnd()\n`;
+        classContent += `                .endOr();\n`;
+        classContent += `            } else if (since != null) {\n`;
+        classContent += `                query.ge("${updatedAtProp}", since);\n`;
+        classContent += `            }\n`;
+        classContent += `            List<${modelName}> rows = query\n`;
+        classContent += `                .orderBy("${updatedAtProp} asc, ${idProp} asc")\n`;
+        classContent += `                .setMaxRows(limit + 1)\n`;
+        classContent += `                .findList();\n\n`;
+        classContent += `            boolean hasMore = rows.size() > limit;\n`;
+        classContent += `            if (hasMore) {\n`;
+        classContent += `                rows = rows.subList(0, limit);\n`;
+        classContent += `            }\n`;
+        classContent += `            if (rows.isEmpty()) {\n`;
+        classContent += `                return new ChangePage<>(rows, cursor, false);\n`;
+        classContent += `            }\n`;
+        classContent += `            ${modelName} last = rows.get(rows.size() - 1);\n`;
+        classContent += `            return new ChangePage<>(rows, new ChangeCursor(last.get${toPascalCase(config.updated_at)}(), last.get${toPascalCase(config.id)}()), hasMore);\n`;
+        classContent += `        }, ${dbExecutor});\n`;
+        classContent += `    }\n\n`;
+      }
+
       classContent += `    /**\n     * 検索条件に基づいてクエリを構築します。\n     * @param filter 検索条件\n     * @return 構築されたクエリ\n     */\n`;
       classContent += `    private io.ebean.ExpressionList<${modelName}> createQueryWithFilter(${modelName} filter) {\n`;
-      classContent += `        io.ebean.ExpressionList<${modelName}> query = ${extendsBaseRepo ? 'rlsFilter()' : `DB.find(${modelName}.class).where()`}.eq("${isDeletedProp}", ${isDeletedFalseVal});\n\n`;
+      classContent += `        io.ebean.ExpressionList<${modelName}> query = ${readQuery}.eq("${isDeletedProp}", ${isDeletedFalseVal});\n\n`;
       table.columns.forEach(col => {
         if (!baseModelCols.has(col.colName)) {
           const colCamel = toCamelCase(col.colName);
@@ -239,21 +644,53 @@ public abstract class BaseRepository<T extends BaseModel> {
       classContent += `    }\n\n`;
 
       // insert
-      classContent += `    /**\n     * ${table.tableNameJP} を新規登録します。\n     * @param ${modelVar} 登録データ\n     * @return 登録後のデータ\n     */\n`;
-      classContent += `    public CompletionStage<${modelName}> insert(${modelName} ${modelVar}) {\n`;
-      classContent += `        return supplyAsync(() -> {\n`;
-      classContent += `            DB.insert(${modelVar});\n`;
-      classContent += `            return ${modelVar};\n`;
-      classContent += `        }, executionContext);\n`;
-      classContent += `    }\n\n`;
+      if (tableCoalescing) {
+        classContent += `    /**\n     * ${table.tableNameJP} を新規登録します。\n     * 同時に届いた登録はまとめて1トランザクションのバッチで書き込まれます。\n     * @param ${modelVar} 登録データ\n     * @return 登録後のデータ (採番済みの ID を含む)\n     */\n`;
+        classContent += `    public CompletionStage<${modelName}> insert(${modelName} ${modelVar}) {\n`;
+        if (tableReplica) {
+          // 書き込み位置はバッチごとに1回だけ取得され、まとめ役のスレッドから呼び出し元のリクエストへ記録される
+          classContent += `        ReadConsistency consistency = ReadConsistency.current();\n`;
+          classContent += `        return insertCoalescer.submit(${modelVar}, consistency != null ? consistency::recordWrite : null);\n`;
+        } else {
+          classContent += `        return insertCoalescer.submit(${modelVar});\n`;
+        }
+        classContent += `    }\n\n`;
+
+        // バッチ失敗時の再登録用コピー (採番済みの ID や永続化状態を持ち越さない)
+        classContent += `    /**\n     * まとめ書きのバッチが失敗した行を1件ずつ登録し直すため、入力値だけを写した新しいインスタンスを作ります。\n     * @param source 登録データ\n     * @return ID・作成日時・更新日時を持たないコピー\n     */\n`;
+        classContent += `    private static ${modelName} copyForRetry(${modelName} source) {\n`;
+        classContent += `        ${modelName} copy = new ${modelName}();\n`;
+        [config.is_deleted.name, config.created_by, config.updated_by].forEach(colName => {
+          const colPascal = toPascalCase(colName);
+          classContent += `        copy.set${colPascal}(source.get${colPascal}());\n`;
+        });
+        table.columns.forEach(col => {
+          if (!baseModelCols.has(col.colName)) {
+            const colPascal = toPascalCase(col.colName);
+            classContent += `        copy.set${colPascal}(source.get${colPascal}());\n`;
+          }
+        });
+        classContent += `        return copy;\n`;
+        classContent += `    }\n\n`;
+      } else {
+        classContent += `    /**\n     * ${table.tableNameJP} を新規登録します。\n     * @param ${modelVar} 登録データ\n     * @return 登録後のデータ\n     */\n`;
+        classContent += `    public CompletionStage<${modelName}> insert(${modelName} ${modelVar}) {\n`;
+        classContent += `        return supplyAsync(() -> {\n`;
+        classContent += `            ${writeDb}.insert(${modelVar});\n`;
+        classContent += markWritten;
+        classContent += `            return ${modelVar};\n`;
+        classContent += `        }, ${dbExecutor});\n`;
+        classContent += `    }\n\n`;
+      }
 
       // batchInsert
       classContent += `    /**\n     * ${table.tableNameJP} を一括で新規登録します。\n     * @param ${modelVar}s 登録データリスト\n     * @return 登録件数\n     */\n`;
       classContent += `    public CompletionStage<Integer> batchInsert(List<${modelName}> ${modelVar}s) {\n`;
       classContent += `        return supplyAsync(() -> {\n`;
-      classContent += `            DB.saveAll(${modelVar}s);\n`;
+      classContent += `            ${writeDb}.saveAll(${modelVar}s);\n`;
+      classContent += markWritten;
       classContent += `            return ${modelVar}s.size();\n`;
-      classContent += `        }, executionContext);\n`;
+      classContent += `        }, ${dbExecutor});\n`;
       classContent += `    }\n\n`;
 
       // update
@@ -261,7 +698,7 @@ public abstract class BaseRepository<T extends BaseModel> {
       classContent += `    public CompletionStage<${modelName}> update(Long id, ${modelName} newData, Instant updatedAt) {\n`;
       classContent += `        return supplyAsync(() -> {\n`;
       classContent += `            newData.set${toPascalCase(config.id)}(id);\n`;
-      classContent += `            int updatedRows = DB.update(${modelName}.class)\n`;
+      classContent += `            int updatedRows = ${writeDb}.update(${modelName}.class)\n`;
       classContent += `                .set("${updatedAtProp}", Instant.now())\n`;
       table.columns.forEach(col => {
         if (!baseModelCols.has(col.colName)) {
@@ -275,15 +712,16 @@ public abstract class BaseRepository<T extends BaseModel> {
       classContent += `            if (updatedRows == 0) {\n`;
       classContent += `                throw new OptimisticLockingFailureException("${modelName} not found with id: " + id + " and updatedAt: " + updatedAt);\n`;
       classContent += `            }\n`;
+      classContent += markWritten;
       classContent += `            return newData;\n`;
-      classContent += `        }, executionContext);\n`;
+      classContent += `        }, ${dbExecutor});\n`;
       classContent += `    }\n\n`;
 
       // delete (logical)
       classContent += `    /**\n     * ${table.tableNameJP} を論理削除します。\n     * @param id 主キー\n     * @param updatedAt タイムスタンプ\n     */\n`;
       classContent += `    public CompletionStage<Void> delete(Long id, Instant updatedAt) {\n`;
       classContent += `        return supplyAsync(() -> {\n`;
-      classContent += `            int updatedRows = DB.update(${modelName}.class)\n`;
+      classContent += `            int updatedRows = ${writeDb}.update(${modelName}.class)\n`;
       classContent += `                .set("${isDeletedProp}", ${isDeletedTrueVal})\n`;
       classContent += `                .set("${updatedAtProp}", Instant.now())\n`;
       classContent += `                .where().eq("${idProp}", id).eq("${updatedAtProp}", updatedAt)\n`;
@@ -291,15 +729,1319 @@ public abstract class BaseRepository<T extends BaseModel> {
       classContent += `            if (updatedRows == 0) {\n`;
       classContent += `                throw new OptimisticLockingFailureException("${modelName} not found with id: " + id + " and updatedAt: " + updatedAt);\n`;
       classContent += `            }\n`;
+      classContent += markWritten;
       classContent += `            return null;\n`;
-      classContent += `        }, executionContext);\n`;
+      classContent += `        }, ${dbExecutor});\n`;
       classContent += `    }\n`;
 
+      if (hasSearch) {
+        classContent += this.generateSearchMethod(table, config, extendsBaseRepo && hasTenantId ? rlsOptions.tenantIdColumn : null, readDb, dbExecutor);
+      }
+
+      if (warmUpEnabled) {
+        classContent += `\n    /**\n     * 起動時のウォームアップとして、ID検索・一覧・件数${hasSearch ? '・全文検索' : ''}を合成パラメータで実行します。\n     * @return 完了\n     */\n`;
+        classContent += `    @Override\n`;
+        classContent += `    public CompletionStage<Void> warmUp() {\n`;
+        classContent += `        ${modelName} filter = new ${modelName}();\n`;
+        classContent += `        CompletionStage<?> stage = findById(0L)\n`;
+        classContent += `            .thenCompose(r -> find(filter, 0, 20))\n`;
+        classContent += `            .thenCompose(r -> count(filter));\n`;
+        if (hasSearch) {
+          classContent += `        stage = stage.thenCompose(r -> search("warmup", 20));\n`;
+        }
+        classContent += `        return stage.thenApply(r -> null);\n`;
+        classContent += `    }\n`;
+      }
+
+      // ネイティブRLSでは全ての処理をテナント設定済みのトランザクション内で実行する
+      if (nativeRls) {
+        classContent = classContent.replace(/supplyAsync\(\(\) ->/g, 'supplyInTenant(() ->');
+        if (!tableArchive) {
+          classContent = classContent.replace(`import static java.util.concurrent.CompletableFuture.supplyAsync;\n\n`, '');
+        }
+      }
+
+      if (tableArchive) {
+        classContent += this.generateArchiveBatchMethod(table, config, nativeRls);
+      }
+
       classContent += `}\n`;
       files.push({ path: `repository/${repoName}.java`, content: classContent });
     });
 
     return files;
+  },
+
+  /**
+   * tsvector 生成カラムと GIN インデックスを使う全文検索メソッドを生成
+   * Ebean の orderBy ではバインド変数付きの ts_rank を指定できないためネイティブ SQL で組み立て、
+   * テナントの絞り込みは rlsFilter() と同じ判定 (rlsApplies) で付与する
+   */
+  generateSearchMethod(table, config, tenantIdColumn, readDb, dbExecutor = 'executionContext') {
+    const modelName = toPascalCase(table.tableName);
+    const tableName = table.tableName;
+    const idCol = config.id;
+    const vectorCol = App.Utils.TableFeatures.searchVectorColumn;
+    const tsQuery = `websearch_to_tsquery('${App.Utils.TableFeatures.searchConfig}', :q)`;
+    const columnList = App.Utils.TableFeatures.getPhysicalColumns(table, config).map(c => c.colName).join(', ');
+    const notDeleted = App.Utils.TableFeatures.notDeletedLiteral(config);
+
+    let content = `\n    /**\n     * ${table.tableNameJP} を全文検索します（論理削除済みは除く）。\n`;
+    content += `     * 検索語は Web 検索形式 ("フレーズ", OR, -除外) で解釈し、関連度の高い順に返します。\n`;
+    content += `     * @param q 検索語\n`;
+    content += `     * @param limit 最大件数\n`;
+    content += `     * @return 検索結果リスト\n     */\n`;
+    content += `    public CompletionStage<List<${modelName}>> search(String q, int limit) {\n`;
+    content += `        return supplyAsync(() -> {\n`;
+    content += `            String sql = """\n`;
+    content += `                SELECT ${columnList}\n`;
+    content += `                FROM ${tableName}\n`;
+    content += `                WHERE ${vectorCol} @@ ${tsQuery}\n`;
+    content += `                  AND ${config.is_deleted.name} = ${notDeleted}\n`;
+    content += `                """;\n`;
+    if (tenantIdColumn) {
+      content += `            if (rlsApplies()) {\n`;
+      content += `                sql += "  AND ${tenantIdColumn} = :tenantId\\n";\n`;
+      content += `            }\n`;
+    }
+    content += `            sql += "ORDER BY ts_rank(${vectorCol}, ${tsQuery}) DESC, ${idCol}\\n"\n`;
+    content += `                + "LIMIT :limit";\n\n`;
+    content += `            Query<${modelName}> query = ${readDb}.findNative(${modelName}.class, sql)\n`;
+    content += `                .setParameter("q", q)\n`;
+    content += `                .setParameter("limit", limit);\n`;
+    if (tenantIdColumn) {
+      content += `            if (rlsApplies()) {\n`;
+      content += `                query.setParameter("tenantId", sessionInfo.getTenantId());\n`;
+      content += `            }\n`;
+    }
+    content += `            return query.findList();\n`;
+    content += `        }, ${dbExecutor});\n`;
+    content += `    }\n`;
+    return content;
+  },
+
+  /**
+   * 論理削除済みデータをアーカイブテーブルへ1バッチ分移送するメソッドを生成
+   * RLS に関わらず全テナントが対象 (バッチジョブからの呼び出しを想定)
+   */
+  generateArchiveBatchMethod(table, config, nativeRls) {
+    const tableName = table.tableName;
+    const idCol = config.id;
+    const updatedAtCol = config.updated_at;
+    const columnList = App.Utils.TableFeatures.getPhysicalColumns(table, config).map(c => c.colName).join(', ');
+    const deletedLiteral = App.Utils.TableFeatures.softDeletedLiteral(config);
+
+    let content = `\n    /**\n     * 論理削除済みの ${table.tableNameJP} を1バッチ分アーカイブテーブルへ移送します。\n`;
+    content += `     * (更新日時, ID) のキーセット順に最大 batchSize 件をロックし、DELETE ... RETURNING の結果を ${tableName}_archive へ INSERT します。\n`;
+    content += `     * 他トランザクションがロック中の行は読み飛ばし、次回の実行で移送します。\n`;
+    content += `     * @param deletedBefore この日時より前に論理削除 (更新) された行を対象とする\n`;
+    content += `     * @param after 前回バッチの結果 (初回は ArchiveBatchResult.START)\n`;
+    content += `     * @param batchSize 1バッチの最大件数\n`;
+    content += `     * @return 移送件数と最終キー\n     */\n`;
+    content += `    public CompletionStage<ArchiveBatchResult> archiveDeletedBatch(Instant deletedBefore, ArchiveBatchResult after, int batchSize) {\n`;
+    content += `        String sql = """\n`;
+    content += `            WITH batch AS (\n`;
+    content += `                SELECT ${idCol} FROM ${tableName}\n`;
+    content += `                WHERE ${config.is_deleted.name} = ${deletedLiteral}\n`;
+    content += `                  AND ${updatedAtCol} < :deletedBefore\n`;
+    content += `                  AND (${updatedAtCol}, ${idCol}) > (:afterUpdatedAt, :afterId)\n`;
+    content += `                ORDER BY ${updatedAtCol}, ${idCol}\n`;
+    content += `                LIMIT :batchSize\n`;
+    content += `                FOR UPDATE SKIP LOCKED\n`;
+    content += `            ), moved AS (\n`;
+    content += `                DELETE FROM ${tableName}\n`;
+    content += `                WHERE ${idCol} IN (SELECT ${idCol} FROM batch)\n`;
+    content += `                RETURNING ${columnList}\n`;
+    content += `            ), archived AS (\n`;
+    content += `                INSERT INTO ${tableName}_archive (${columnList})\n`;
+    content += `                SELECT ${columnList} FROM moved\n`;
+    content += `                RETURNING ${updatedAtCol}, ${idCol}\n`;
+    content += `            )\n`;
+    content += `            SELECT count(*) OVER () AS moved_count, ${updatedAtCol} AS last_updated_at, ${idCol} AS last_id\n`;
+    content += `            FROM archived\n`;
+    content += `            ORDER BY ${updatedAtCol} DESC, ${idCol} DESC\n`;
+    content += `            LIMIT 1\n`;
+    content += `            """;\n\n`;
+    content += `        return supplyAsync(() -> {\n`;
+    content += `            try (Transaction transaction = DB.beginTransaction()) {\n`;
+    content += `                // ロック待ちで業務トランザクションを長時間止めないよう、待ち時間を制限する\n`;
+    content += `                DB.sqlUpdate("SET LOCAL lock_timeout = '2s'").execute();\n`;
+    if (nativeRls) {
+      content += `                TenantSession.bypass(transaction);\n`;
+    }
+    content += `                SqlRow row = DB.sqlQuery(sql)\n`;
+    content += `                    .setParameter("deletedBefore", deletedBefore)\n`;
+    content += `                    .setParameter("afterUpdatedAt", after.getLastUpdatedAt())\n`;
+    content += `                    .setParameter("afterId", after.getLastId())\n`;
+    content += `                    .setParameter("batchSize", batchSize)\n`;
+    content += `                    .findOne();\n`;
+    content += `                transaction.commit();\n\n`;
+    content += `                if (row == null) {\n`;
+    content += `                    return new ArchiveBatchResult(0, after.getLastUpdatedAt(), after.getLastId());\n`;
+    content += `                }\n`;
+    content += `                return new ArchiveBatchResult(\n`;
+    content += `                    row.getLong("moved_count").intValue(),\n`;
+    content += `                    row.getTimestamp("last_updated_at").toInstant(),\n`;
+    content += `                    row.getLong("last_id"));\n`;
+    content += `            }\n`;
+    content += `        }, executionContext);\n`;
+    content += `    }\n`;
+    return content;
+  },
+
+  /**
+   * 全テーブルを列挙するファイル (テーブル単位の生成をまとめても作れないため、スキーマ全体から生成する)
+   * @param {Array} tables Parsed tables
+   * @param {Object} features Optional generation features
+   * @returns {Array} ファイルの配列
+   */
+  generateAggregateFiles(tables, features) {
+    const files = [];
+    if (App.Utils.TableFeatures.isEnabled(features, 'warmUp')) {
+      files.push({ path: 'jobs/WarmUp.java', content: this.generateWarmUp(tables, App.Utils.TableFeatures.isEnabled(features, 'readReplica')) });
+    }
+    return files;
+  },
+
+  /**
+   * 起動時ウォームアップ (代表的なクエリ・コネクションの事前準備)
+   */
+  generateWarmUp(tables, replicaEnabled) {
+    const imports = tables
+      .map(table => `import repository.${toPascalCase(table.tableName)}Repository;\n`)
+      .join('');
+    const entries = tables
+      .map(table => `        Map.entry("${table.tableName}", ${toPascalCase(table.tableName)}Repository.class)`)
+      .join(',\n');
+    return `
+package jobs;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.ebean.DB;
+import io.ebean.Database;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.inject.ApplicationLifecycle;
+import play.inject.Injector;
+${imports}import repository.WarmUpTarget;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 起動直後の遅延 (JIT・Ebean のクエリプラン・コネクションプール・PostgreSQL のプリペアドステートメントが未準備) を
+ * 抑えるため、アプリケーション起動時に各リポジトリの代表的なクエリを合成パラメータで実行するウォームアップ
+ * WarmUpModule で起動時に開始し、完了するまで ReadinessController (GET /ready) は 503 を返します。
+ * application.conf の warm-up で設定します。
+ * <ul>
+ *   <li>enabled: 無効にすると即座に ready になります</li>
+ *   <li>connections / databases: 事前に開くコネクション数と、対象の Ebean データベース名</li>
+ *   <li>iterations: 各リポジトリの実行回数 (PostgreSQL JDBC は同じ SQL を 5 回実行するとサーバー側プリペアドステートメントに切り替えます)</li>
+ *   <li>targets: 追加で実行する WarmUpTarget のクラス名 (SQL Builder で生成したリポジトリなど)</li>
+ *   <li>timeout: 全体の上限時間 (超過した場合も ready にします)</li>
+ * </ul>
+ */
+@Singleton
+public class WarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(WarmUp.class);
+
+    private static final Config DEFAULTS = ConfigFactory.parseString(
+        "enabled = true\\n"
+        + "connections = 10\\n"
+        + "databases = [${replicaEnabled ? 'default, replica' : 'default'}]\\n"
+        + "iterations = 5\\n"
+        + "targets = []\\n"
+        + "timeout = 60s\\n");
+
+    /** テーブル名 → リポジトリ */
+    private static final Map<String, Class<? extends WarmUpTarget>> REPOSITORIES = Map.ofEntries(
+${entries}
+    );
+
+    private final Injector injector;
+    private final Config settings;
+    private volatile boolean ready;
+    private volatile Duration elapsed;
+
+    @Inject
+    public WarmUp(Injector injector, Config config, ApplicationLifecycle lifecycle) {
+        this.injector = injector;
+        this.settings = config.hasPath("warm-up")
+            ? config.getConfig("warm-up").withFallback(DEFAULTS)
+            : DEFAULTS;
+
+        if (!settings.getBoolean("enabled")) {
+            this.elapsed = Duration.ZERO;
+            this.ready = true;
+            return;
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::run);
+        executor.shutdown();
+        lifecycle.addStopHook(() -> {
+            executor.shutdownNow();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * ウォームアップが完了したかどうか
+     * @return 完了していれば true
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * ウォームアップの所要時間を返します。
+     * @return 所要時間 (未完了の場合は null)
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    private void run() {
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + settings.getDuration("timeout").toNanos();
+        try {
+            openConnections(settings.getStringList("databases"), settings.getInt("connections"));
+            logger.info("warm-up: connections opened in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+
+            int iterations = settings.getInt("iterations");
+            for (Map.Entry<String, Class<? extends WarmUpTarget>> entry : REPOSITORIES.entrySet()) {
+                warmUp(entry.getKey(), entry.getValue(), iterations, deadline);
+            }
+            for (String className : settings.getStringList("targets")) {
+                try {
+                    warmUp(className, Class.forName(className).asSubclass(WarmUpTarget.class), iterations, deadline);
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    logger.warn("warm-up: {} is not a WarmUpTarget", className, e);
+                }
+            }
+        } finally {
+            elapsed = Duration.ofNanos(System.nanoTime() - startedAt);
+            ready = true;
+            logger.info("warm-up: finished in {} ms", elapsed.toMillis());
+        }
+    }
+
+    /**
+     * コネクションを同時に開いてから返却し、プールにコネクションを用意しておきます。
+     */
+    private void openConnections(List<String> databases, int count) {
+        for (String name : databases) {
+            Database database = "default".equals(name) ? DB.getDefault() : DB.byName(name);
+            List<Connection> connections = new ArrayList<>();
+            try {
+                for (int i = 0; i < count; i++) {
+                    connections.add(database.dataSource().getConnection());
+                }
+            } catch (SQLException | RuntimeException e) {
+                logger.warn("warm-up: could not open connections for {}", name, e);
+            } finally {
+                for (Connection connection : connections) {
+                    try {
+                        connection.close();
+                    } catch (SQLException e) {
+                        logger.debug("warm-up: failed to close connection", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 対象の代表的なクエリを iterations 回実行します。失敗しても起動は継続します。
+     */
+    private void warmUp(String name, Class<? extends WarmUpTarget> type, int iterations, long deadline) {
+        long startedAt = System.nanoTime();
+        try {
+            WarmUpTarget target = injector.instanceOf(type);
+            for (int i = 0; i < iterations; i++) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                target.warmUp().toCompletableFuture().get(remaining, TimeUnit.NANOSECONDS);
+            }
+            logger.debug("warm-up: {} in {} ms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        } catch (TimeoutException e) {
+            logger.warn("warm-up: timed out at {}", name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("warm-up: {} failed", name, e);
+        }
+    }
+}
+`.trim();
+  },
+
+  /**
+   * ネイティブRLS用に、トランザクションへテナントのセッション設定を行うヘルパーを生成
+   */
+  generateTenantSession() {
+    const tenantSetting = App.Utils.TableFeatures.rlsTenantSetting;
+    const bypassSetting = App.Utils.TableFeatures.rlsBypassSetting;
+    return `
+package repository;
+
+import io.ebean.DB;
+import io.ebean.Transaction;
+import models.SessionInfo;
+
+import java.util.function.Supplier;
+
+/**
+ * PostgreSQL ネイティブRLSのセッション設定 (${tenantSetting} / ${bypassSetting}) を行うヘルパー
+ * 設定は set_config(..., true) でトランザクション内に限定するため、コネクションプールへ戻った後に残りません。
+ * テナント未設定のトランザクションはポリシーによりどの行も参照・更新できません。
+ */
+public final class TenantSession {
+
+    /** テナントIDのセッション設定名 */
+    public static final String TENANT_SETTING = "${tenantSetting}";
+
+    /** 全テナント参照 (管理者・バッチ) のセッション設定名 */
+    public static final String BYPASS_SETTING = "${bypassSetting}";
+
+    private static final String APPLIED_KEY = TenantSession.class.getName();
+
+    private TenantSession() {
+    }
+
+    /**
+     * テナント設定を行ったトランザクション内で処理を実行します。
+     * 既にトランザクションがあればそれに参加し、設定済みであれば再設定しません。
+     * @param sessionInfo セッション情報
+     * @param work 処理
+     * @return 処理結果
+     */
+    public static <R> R inTransaction(SessionInfo sessionInfo, Supplier<R> work) {
+        Transaction current = DB.currentTransaction();
+        if (current != null) {
+            apply(current, sessionInfo);
+            return work.get();
+        }
+        try (Transaction transaction = DB.beginTransaction()) {
+            apply(transaction, sessionInfo);
+            R result = work.get();
+            transaction.commit();
+            return result;
+        }
+    }
+
+    /**
+     * トランザクションにセッション情報のテナントを設定します。
+     * @param transaction トランザクション
+     * @param sessionInfo セッション情報 (管理者の場合は全テナントを参照可能)
+     */
+    public static void apply(Transaction transaction, SessionInfo sessionInfo) {
+        boolean admin = sessionInfo != null && sessionInfo.isAdmin();
+        String tenantId = sessionInfo != null && sessionInfo.getTenantId() != null ? sessionInfo.getTenantId() : "";
+        set(transaction, tenantId, admin);
+    }
+
+    /**
+     * トランザクションで全テナントを参照できるようにします (バッチジョブ用)。
+     * @param transaction トランザクション
+     */
+    public static void bypass(Transaction transaction) {
+        set(transaction, "", true);
+    }
+
+    private static void set(Transaction transaction, String tenantId, boolean bypass) {
+        String key = (bypass ? "*" : "") + tenantId;
+        if (key.equals(transaction.getUserObject(APPLIED_KEY))) {
+            return;
+        }
+        DB.sqlQuery("SELECT set_config(:tenantSetting, :tenantId, true), set_config(:bypassSetting, :bypass, true)")
+            .usingTransaction(transaction)
+            .setParameter("tenantSetting", TENANT_SETTING)
+            .setParameter("tenantId", tenantId)
+            .setParameter("bypassSetting", BYPASS_SETTING)
+            .setParameter("bypass", bypass ? "on" : "off")
+            .findOne();
+        transaction.putUserObject(APPLIED_KEY, key);
+    }
+}
+`.trim();
+  },
+
+  /**
+   * 参照系をリードレプリカ、更新系をプライマリへ振り分けるルーターを生成
+   * 呼び出し元ごとに直前の書き込みの WAL 位置を持ち、レプリカがそこまで反映するまではプライマリから参照する
+   */
+  generateDatabaseRouter() {
+    return `
+package repository;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.ebean.DB;
+import io.ebean.Database;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+
+/**
+ * 参照系クエリをリードレプリカ、更新系クエリをプライマリへ振り分けるルーター
+ * application.conf の db.replica.name にレプリカの Ebean データベース名 (既定: replica)、
+ * db.replica.token-max-age に書き込み位置のトークン (Cookie) の有効期間 (既定: 1m) を設定します。
+ * 自分の書き込みが読めることを保証するため、リクエストの {@link ReadConsistency} に書き込み位置
+ * (pg_current_wal_lsn) が記録されていて、レプリカの反映位置 (pg_last_wal_replay_lsn) がそこまで
+ * 進んでいない間だけプライマリから参照します。他の利用者の書き込みでは振り分けは変わりません。
+ */
+@Singleton
+public class DatabaseRouter {
+
+    private static final Config DEFAULTS = ConfigFactory.parseString(
+        "name = replica\\n"
+        + "token-max-age = 1m\\n");
+
+    private final Database primary;
+    private final Database replica;
+    private final Duration tokenMaxAge;
+
+    @Inject
+    public DatabaseRouter(Config config) {
+        Config settings = config.hasPath("db.replica")
+            ? config.getConfig("db.replica").withFallback(DEFAULTS)
+            : DEFAULTS;
+        this.primary = DB.getDefault();
+        this.replica = DB.byName(settings.getString("name"));
+        this.tokenMaxAge = settings.getDuration("token-max-age");
+    }
+
+    public DatabaseRouter(Database primary, Database replica) {
+        this.primary = primary;
+        this.replica = replica;
+        this.tokenMaxAge = DEFAULTS.getDuration("token-max-age");
+    }
+
+    /**
+     * 参照先のデータベースを返します。
+     * 現在のリクエストに書き込み位置があり、レプリカがまだ反映していなければプライマリ、それ以外はレプリカです。
+     * @return 参照先のデータベース
+     */
+    public Database forRead() {
+        ReadConsistency consistency = ReadConsistency.current();
+        if (consistency == null) {
+            return replica;
+        }
+        long required = consistency.requiredPosition();
+        if (required == 0) {
+            return replica;
+        }
+        Boolean caughtUp = consistency.replicaCaughtUp(required);
+        if (caughtUp == null) {
+            // レプリカでない (NULL を返す) 場合は反映済みとみなす
+            String replayed = replica.sqlQuery("SELECT CAST(pg_last_wal_replay_lsn() AS varchar)").mapToScalar(String.class).findOne();
+            caughtUp = replayed == null || ReadConsistency.parsePosition(replayed) >= required;
+            consistency.recordReplicaCheck(required, caughtUp);
+        }
+        return caughtUp ? replica : primary;
+    }
+
+    /**
+     * 更新先 (プライマリ) のデータベースを返します。
+     * @return プライマリデータベース
+     */
+    public Database primary() {
+        return primary;
+    }
+
+    /**
+     * 書き込み後のプライマリの WAL 位置を現在のリクエストに記録します (リクエスト外の書き込みでは何もしません)。
+     * 記録した位置は応答のトークンとして呼び出し元に返り、以降の参照はレプリカが追いつくまでプライマリになります。
+     */
+    public void markWritten() {
+        ReadConsistency consistency = ReadConsistency.current();
+        if (consistency == null) {
+            return;
+        }
+        long position = currentWritePosition();
+        if (position != 0) {
+            consistency.recordWrite(position);
+        }
+    }
+
+    /**
+     * プライマリの現在の WAL 位置を返します。
+     * @return WAL 位置 (取得できない場合は 0)
+     */
+    public long currentWritePosition() {
+        String position = primary.sqlQuery("SELECT CAST(pg_current_wal_lsn() AS varchar)").mapToScalar(String.class).findOne();
+        return position != null ? ReadConsistency.parsePosition(position) : 0;
+    }
+
+    /**
+     * 書き込み位置のトークンの有効期間を返します。
+     * @return 有効期間
+     */
+    public Duration tokenMaxAge() {
+        return tokenMaxAge;
+    }
+}
+`.trim();
+  },
+
+  /**
+   * リクエストごとの読み取り一貫性 (自分の書き込みの WAL 位置) を保持するクラスを生成
+   */
+  generateReadConsistency() {
+    return `
+package repository;
+
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 1リクエスト分の読み取り一貫性の状態
+ * 呼び出し元が前回の応答で受け取った書き込み位置 (トークン) と、このリクエストで書き込んだ位置を保持します。
+ * ReadYourWritesAction がリクエストの処理中だけ現在のスレッドに設定し、{@link #propagating(Executor)} で
+ * DB 用のスレッドへ引き継ぎます。トークンは Cookie / ヘッダで呼び出し元に返るため、別のノードでも有効です。
+ */
+public final class ReadConsistency {
+
+    private static final ThreadLocal<ReadConsistency> CURRENT = new ThreadLocal<>();
+
+    /** 呼び出し元が前回の応答で受け取った書き込み位置 (無ければ 0) */
+    private final long readAfter;
+    /** このリクエストで書き込んだ位置 (無ければ 0) */
+    private volatile long writtenAt;
+    /** 直近にレプリカの反映を確認した位置と結果 */
+    private volatile long checkedPosition;
+    private volatile boolean checkedCaughtUp;
+
+    /**
+     * @param token 呼び出し元から受け取ったトークン (pg_lsn の文字列表現、無い場合や不正な場合は null 可)
+     */
+    public ReadConsistency(String token) {
+        long position = 0;
+        if (token != null && !token.isBlank()) {
+            try {
+                position = parsePosition(token);
+            } catch (IllegalArgumentException e) {
+                position = 0;
+            }
+        }
+        this.readAfter = position;
+    }
+
+    /**
+     * 現在のスレッドで処理中のリクエストの状態を返します。
+     * @return 状態 (リクエスト外の場合は null)
+     */
+    public static ReadConsistency current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 指定の状態を現在のスレッドに設定して処理を実行します。
+     * @param consistency 状態
+     * @param action 処理
+     * @return 処理の結果
+     */
+    public static <T> T callWith(ReadConsistency consistency, Supplier<T> action) {
+        ReadConsistency previous = CURRENT.get();
+        CURRENT.set(consistency);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * 呼び出し時点の状態を、実行先のスレッドに引き継ぐ Executor を返します。
+     * @param executor 実行先
+     * @return 状態を引き継ぐ Executor (リクエスト外の場合は executor そのもの)
+     */
+    public static Executor propagating(Executor executor) {
+        ReadConsistency captured = CURRENT.get();
+        if (captured == null) {
+            return executor;
+        }
+        return task -> executor.execute(() -> callWith(captured, () -> {
+            task.run();
+            return null;
+        }));
+    }
+
+    private static void restore(ReadConsistency previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * レプリカから読む前に反映されている必要がある位置を返します。
+     * @return WAL 位置 (不要な場合は 0)
+     */
+    public long requiredPosition() {
+        return Math.max(readAfter, writtenAt);
+    }
+
+    /**
+     * 書き込んだ位置を記録します。
+     * @param position WAL 位置
+     */
+    public synchronized void recordWrite(long position) {
+        if (position > writtenAt) {
+            writtenAt = position;
+        }
+    }
+
+    /**
+     * 指定位置についてレプリカの反映を確認済みであれば、その結果を返します。
+     * @param position WAL 位置
+     * @return 反映済みなら true、未反映なら false、未確認なら null
+     */
+    public Boolean replicaCaughtUp(long position) {
+        return checkedPosition == position ? checkedCaughtUp : null;
+    }
+
+    /**
+     * レプリカの反映の確認結果を記録します (同じリクエスト内で繰り返し問い合わせないため)。
+     * @param position WAL 位置
+     * @param caughtUp 反映済みか
+     */
+    public synchronized void recordReplicaCheck(long position, boolean caughtUp) {
+        checkedCaughtUp = caughtUp;
+        checkedPosition = position;
+    }
+
+    /**
+     * 応答で呼び出し元に返すトークンを返します。
+     * @return このリクエストで書き込んだ場合は位置の文字列、それ以外は null
+     */
+    public String responseToken() {
+        return writtenAt == 0 ? null : formatPosition(requiredPosition());
+    }
+
+    /**
+     * pg_lsn の文字列表現 (例: 16/B374D848) を数値に変換します。
+     * @param lsn 文字列表現
+     * @return WAL 位置
+     */
+    public static long parsePosition(String lsn) {
+        int slash = lsn.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("invalid LSN: " + lsn);
+        }
+        try {
+            return (Long.parseLong(lsn.substring(0, slash).trim(), 16) << 32) | Long.parseLong(lsn.substring(slash + 1).trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid LSN: " + lsn, e);
+        }
+    }
+
+    /**
+     * WAL 位置を pg_lsn の文字列表現に変換します。
+     * @param position WAL 位置
+     * @return 文字列表現
+     */
+    public static String formatPosition(long position) {
+        return Long.toHexString(position >>> 32).toUpperCase() + "/" + Long.toHexString(position & 0xFFFFFFFFL).toUpperCase();
+    }
+}
+`.trim();
+  },
+
+  /**
+   * 単一行の insert を短時間バッファし、まとめて1トランザクションのバッチで書き込むクラスを生成
+   */
+  generateInsertCoalescer() {
+    return `
+package repository;
+
+import io.ebean.Database;
+import io.ebean.Transaction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 単一行の insert をまとめて書き込む write-behind バッファ
+ * 最初の1件が届いてから maxDelay 経過するか maxBatchSize 件に達した時点で、
+ * 溜まった行を1トランザクションの JDBC バッチで登録します。
+ * バッチが失敗した場合は、失敗したバッチの採番結果を持ち越さないよう copyForRetry で作り直した行を
+ * 1件ずつ登録し直し、各呼び出し元へ個別の結果 (成功 / 例外) を返します。
+ * キューが満杯のとき、submit は呼び出し元のスレッドを待たせずに RejectedExecutionException で失敗します (バックプレッシャー)。
+ * writePosition を指定すると、コミット後の書き込み位置をバッチごとに1回だけ取得して各呼び出し元へ通知します。
+ * @param <T> モデルの型
+ */
+public class InsertCoalescer<T> implements AutoCloseable {
+
+    private final String name;
+    private final Database database;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final UnaryOperator<T> copyForRetry;
+    private final LongSupplier writePosition;
+    private final BlockingQueue<Pending<T>> queue;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+
+    /**
+     * @param name テーブル名 (ログ・スレッド名用)
+     * @param database 書き込み先のデータベース
+     * @param maxBatchSize 1バッチの最大件数
+     * @param maxDelay 最初の1件が届いてから書き込むまでの最大待ち時間
+     * @param queueCapacity 書き込み待ちの最大件数
+     * @param copyForRetry 登録データから入力値だけを写した新しいインスタンスを作る関数
+     * @param writePosition コミット後の書き込み位置を返す関数 (記録しない場合は null)
+     */
+    public InsertCoalescer(String name, Database database, int maxBatchSize, Duration maxDelay, int queueCapacity,
+                           UnaryOperator<T> copyForRetry, LongSupplier writePosition) {
+        this.name = name;
+        this.database = database;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.copyForRetry = copyForRetry;
+        this.writePosition = writePosition;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::run, name + "-insert-coalescer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 登録を予約します。
+     * @param bean 登録データ
+     * @return 登録後のデータ (採番済みの ID を含む)。失敗時はこの行の例外で完了します。
+     */
+    public CompletionStage<T> submit(T bean) {
+        return submit(bean, null);
+    }
+
+    /**
+     * 登録を予約し、コミット後の書き込み位置を通知します。
+     * @param bean 登録データ
+     * @param onWritten 書き込み位置の通知先 (まとめ役のスレッドで、結果の完了前に呼ばれます。不要なら null)
+     * @return 登録後のデータ (採番済みの ID を含む)。失敗時はこの行の例外で完了します。
+     */
+    public CompletionStage<T> submit(T bean, LongConsumer onWritten) {
+        Pending<T> pending = new Pending<>(bean, onWritten);
+        if (!running) {
+            pending.future.completeExceptionally(new RejectedExecutionException(name + " insert coalescer is closed"));
+        } else if (!queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException(name + " insert queue is full"));
+        }
+        return pending.future;
+    }
+
+    /**
+     * これまでに書き込んだバッチ数 (= コミット数) を返します。
+     */
+    public long getFlushedBatches() {
+        return flushedBatches.get();
+    }
+
+    /**
+     * これまでに書き込んだ行数を返します。
+     */
+    public long getFlushedRows() {
+        return flushedRows.get();
+    }
+
+    /**
+     * 新規の受付を止め、キューに残っている行を書き込んでから終了します。
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Pending<T>> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                running = false;
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending<T>> batch) {
+        try (Transaction transaction = database.beginTransaction()) {
+            transaction.setBatchMode(true);
+            transaction.setBatchSize(batch.size());
+            transaction.setGetGeneratedKeys(true);
+            for (Pending<T> pending : batch) {
+                database.insert(pending.bean, transaction);
+            }
+            transaction.commit();
+        } catch (RuntimeException batchError) {
+            // どの行が原因か分からないため、1件ずつ登録し直して各呼び出し元へ個別に結果を返す
+            // 失敗したバッチで採番された ID や永続化状態が残っているため、元のインスタンスは使わない
+            List<Pending<T>> inserted = new ArrayList<>(batch.size());
+            for (Pending<T> pending : batch) {
+                try {
+                    T retry = copyForRetry.apply(pending.bean);
+                    database.insert(retry);
+                    flushedBatches.incrementAndGet();
+                    flushedRows.incrementAndGet();
+                    pending.result = retry;
+                    inserted.add(pending);
+                } catch (RuntimeException rowError) {
+                    pending.future.completeExceptionally(rowError);
+                }
+            }
+            complete(inserted);
+            return;
+        }
+        flushedBatches.incrementAndGet();
+        flushedRows.addAndGet(batch.size());
+        batch.forEach(pending -> pending.result = pending.bean);
+        complete(batch);
+    }
+
+    /**
+     * 書き込み位置を (必要な呼び出し元がいれば) 1回だけ取得して通知し、登録結果を返します。
+     */
+    private void complete(List<Pending<T>> inserted) {
+        long position = 0;
+        if (writePosition != null && inserted.stream().anyMatch(pending -> pending.onWritten != null)) {
+            try {
+                position = writePosition.getAsLong();
+            } catch (RuntimeException e) {
+                // 登録は完了しているため、位置が取れなくても結果は返す (読み取りはレプリカのままになる)
+            }
+        }
+        for (Pending<T> pending : inserted) {
+            if (position != 0 && pending.onWritten != null) {
+                pending.onWritten.accept(position);
+            }
+            pending.future.complete(pending.result);
+        }
+    }
+
+    private static final class Pending<T> {
+        private final T bean;
+        private final LongConsumer onWritten;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+
+        private Pending(T bean, LongConsumer onWritten) {
+            this.bean = bean;
+            this.onWritten = onWritten;
+        }
+    }
+}
+`.trim();
+  },
+
+  /**
+   * テーブルごとの InsertCoalescer を設定から生成・保持するシングルトンを生成
+   */
+  generateInsertCoalescing(tracksWrites) {
+    return `
+package repository;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+${tracksWrites ? '' : 'import io.ebean.DB;\n'}import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * テーブルごとの InsertCoalescer を保持するレジストリ
+ * リポジトリはリクエストごとに生成されるため、バッファはこのシングルトンで共有します。
+ * application.conf の db.insert-coalescing で設定し、テーブル単位の上書きは
+ * db.insert-coalescing.tables.<テーブル名> に記述します。
+ * アプリケーション停止時は、キューに残っている行を書き込んでから終了します。${tracksWrites ? `
+ * 書き込みはプライマリへ行い、バッチごとの書き込み位置を {@link DatabaseRouter} から取得します。` : ''}
+ */
+@Singleton
+public class InsertCoalescing {
+
+    private static final Config DEFAULTS = ConfigFactory.parseString(
+        "max-batch-size = 200\\n"
+        + "max-delay = 5ms\\n"
+        + "queue-capacity = 10000\\n");
+
+    private final Config settings;${tracksWrites ? `
+    private final DatabaseRouter databaseRouter;` : ''}
+    private final Map<String, InsertCoalescer<?>> coalescers = new ConcurrentHashMap<>();
+
+    @Inject
+    public InsertCoalescing(Config config, ApplicationLifecycle lifecycle${tracksWrites ? ', DatabaseRouter databaseRouter' : ''}) {${tracksWrites ? `
+        this.databaseRouter = databaseRouter;` : ''}
+        this.settings = config.hasPath("db.insert-coalescing")
+            ? config.getConfig("db.insert-coalescing").withFallback(DEFAULTS)
+            : DEFAULTS;
+        lifecycle.addStopHook(() -> {
+            coalescers.values().forEach(InsertCoalescer::close);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * テーブルの InsertCoalescer を返します (初回呼び出し時に作成)。
+     * @param tableName テーブル名
+     * @param copyForRetry バッチ失敗時に1件ずつ登録し直すためのコピー関数
+     * @return InsertCoalescer
+     */
+    @SuppressWarnings("unchecked")
+    public <T> InsertCoalescer<T> forTable(String tableName, UnaryOperator<T> copyForRetry) {
+        return (InsertCoalescer<T>) coalescers.computeIfAbsent(tableName, name -> {
+            String path = "tables.\\"" + name + "\\"";
+            Config table = settings.hasPath(path) ? settings.getConfig(path).withFallback(settings) : settings;
+            return new InsertCoalescer<>(
+                name,
+                ${tracksWrites ? 'databaseRouter.primary()' : 'DB.getDefault()'},
+                table.getInt("max-batch-size"),
+                table.getDuration("max-delay"),
+                table.getInt("queue-capacity"),
+                copyForRetry,
+                ${tracksWrites ? 'databaseRouter::currentWritePosition' : 'null'});
+        });
+    }
+}
+`.trim();
+  },
+
+  /**
+   * InsertCoalescer のテスト (Database をモックし、バッチ失敗時の登録し直しと書き込み位置の通知を確認)
+   */
+  generateInsertCoalescerTest() {
+    return `
+package repository;
+
+import io.ebean.Database;
+import io.ebean.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InsertCoalescer のテスト
+ * テストの依存関係に org.mockito:mockito-core が必要です。
+ */
+public class InsertCoalescerTest {
+
+    /** テスト用の行 (id は登録時に採番される) */
+    static final class Row {
+        Long id;
+        final String name;
+
+        Row(String name) {
+            this.name = name;
+        }
+    }
+
+    private final AtomicLong sequence = new AtomicLong();
+    private Database database;
+    private Transaction transaction;
+    private InsertCoalescer<Row> coalescer;
+
+    @BeforeEach
+    void setUp() {
+        database = Mockito.mock(Database.class);
+        transaction = Mockito.mock(Transaction.class);
+        Mockito.when(database.beginTransaction()).thenReturn(transaction);
+        // バッチ内の登録・1件ずつの登録とも、呼ばれた時点で ID を採番する
+        Mockito.doAnswer(invocation -> {
+            ((Row) invocation.getArgument(0)).id = sequence.incrementAndGet();
+            return null;
+        }).when(database).insert(Mockito.any(), Mockito.eq(transaction));
+        Mockito.doAnswer(invocation -> {
+            Row row = invocation.getArgument(0);
+            if (row.name.startsWith("bad")) {
+                throw new IllegalStateException("duplicate " + row.name);
+            }
+            row.id = sequence.incrementAndGet();
+            return null;
+        }).when(database).insert(Mockito.any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (coalescer != null) {
+            coalescer.close();
+        }
+    }
+
+    private InsertCoalescer<Row> create(int maxBatchSize, Runnable onPosition) {
+        return new InsertCoalescer<>("rows", database, maxBatchSize, Duration.ofSeconds(5), 100,
+            row -> new Row(row.name),
+            () -> {
+                onPosition.run();
+                return 0x200;
+            });
+    }
+
+    @Test
+    void recordsWritePositionOncePerBatch() {
+        AtomicInteger positionQueries = new AtomicInteger();
+        coalescer = create(3, positionQueries::incrementAndGet);
+        List<Long> notified = new CopyOnWriteArrayList<>();
+
+        List<CompletableFuture<Row>> results = List.of(
+            coalescer.submit(new Row("a"), notified::add).toCompletableFuture(),
+            coalescer.submit(new Row("b"), notified::add).toCompletableFuture(),
+            coalescer.submit(new Row("c"), notified::add).toCompletableFuture());
+        results.forEach(CompletableFuture::join);
+
+        assertEquals(1, coalescer.getFlushedBatches());
+        assertEquals(1, positionQueries.get());
+        assertEquals(List.of(0x200L, 0x200L, 0x200L), notified);
+    }
+
+    @Test
+    void retriesFailedBatchRowByRowWithFreshInstances() {
+        Mockito.doThrow(new IllegalStateException("batch failed")).when(transaction).commit();
+        coalescer = create(2, () -> { });
+        Row good = new Row("good");
+        Row bad = new Row("bad");
+
+        CompletableFuture<Row> goodResult = coalescer.submit(good).toCompletableFuture();
+        CompletableFuture<Row> badResult = coalescer.submit(bad).toCompletableFuture();
+
+        Row inserted = goodResult.join();
+        // 失敗したバッチで採番された ID を持ち越さず、新しいインスタンスで登録し直す
+        assertNotSame(good, inserted);
+        assertEquals("good", inserted.name);
+        assertNotEquals(good.id, inserted.id);
+        Mockito.verify(database, Mockito.never()).insert(good);
+        CompletionException error = assertThrows(CompletionException.class, badResult::join);
+        assertEquals("duplicate bad", error.getCause().getMessage());
+    }
+}
+`.trim();
+  },
+
+  /**
+   * DatabaseRouter のテスト (プライマリ / レプリカを別々の組み込み H2 で用意)
+   */
+  generateDatabaseRouterTest() {
+    return `
+package repository;
+
+import io.ebean.Database;
+import io.ebean.DatabaseFactory;
+import io.ebean.config.DatabaseConfig;
+import io.ebean.datasource.DataSourceConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DatabaseRouter のテスト (組み込み H2 をプライマリ・レプリカの2つ用意)
+ * H2 には WAL 位置の関数が無いため、テストで値を切り替えられる関数を登録する
+ */
+public class DatabaseRouterTest {
+
+    private static volatile String primaryPosition;
+    private static volatile String replicaPosition;
+
+    private static Database primary;
+    private static Database replica;
+
+    /** プライマリの pg_current_wal_lsn() */
+    public static String primaryPosition() {
+        return primaryPosition;
+    }
+
+    /** レプリカの pg_last_wal_replay_lsn() */
+    public static String replicaPosition() {
+        return replicaPosition;
+    }
+
+    @BeforeAll
+    static void setUp() {
+        primary = createDatabase("primary");
+        replica = createDatabase("replica");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        primary.shutdown();
+        replica.shutdown();
+    }
+
+    @BeforeEach
+    void resetPositions() {
+        primaryPosition = "0/100";
+        replicaPosition = "0/100";
+    }
+
+    private static Database createDatabase(String name) {
+        DataSourceConfig dataSource = new DataSourceConfig();
+        dataSource.setUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+
+        DatabaseConfig config = new DatabaseConfig();
+        config.setName(name);
+        config.setDataSourceConfig(dataSource);
+        config.setRegister(false);
+        config.setDefaultServer(false);
+        Database database = DatabaseFactory.create(config);
+
+        database.sqlUpdate("CREATE TABLE probe (name VARCHAR(20))").execute();
+        database.sqlUpdate("INSERT INTO probe (name) VALUES (:name)").setParameter("name", name).execute();
+        database.sqlUpdate("CREATE ALIAS pg_current_wal_lsn FOR 'repository.DatabaseRouterTest.primaryPosition'").execute();
+        database.sqlUpdate("CREATE ALIAS pg_last_wal_replay_lsn FOR 'repository.DatabaseRouterTest.replicaPosition'").execute();
+        return database;
+    }
+
+    private static String probe(Database database) {
+        return database.sqlQuery("SELECT name FROM probe").mapToScalar(String.class).findOne();
+    }
+
+    @Test
+    void readsGoToReplicaAndWritesGoToPrimary() {
+        DatabaseRouter router = new DatabaseRouter(primary, replica);
+
+        assertEquals("replica", probe(router.forRead()));
+        assertEquals("primary", probe(router.primary()));
+    }
+
+    @Test
+    void readsStickToPrimaryUntilReplicaReplaysOwnWrite() {
+        DatabaseRouter router = new DatabaseRouter(primary, replica);
+        ReadConsistency writer = new ReadConsistency(null);
+
+        primaryPosition = "0/200";
+        ReadConsistency.callWith(writer, () -> {
+            router.markWritten();
+            assertEquals("primary", probe(router.forRead()));
+            return null;
+        });
+        assertEquals("0/200", writer.responseToken());
+
+        // 次のリクエストはトークンを持ち帰る。レプリカが追いつけばレプリカから読む
+        ReadConsistency lagging = new ReadConsistency(writer.responseToken());
+        assertEquals("primary", ReadConsistency.callWith(lagging, () -> probe(router.forRead())));
+        replicaPosition = "0/200";
+        ReadConsistency caughtUp = new ReadConsistency(writer.responseToken());
+        assertEquals("replica", ReadConsistency.callWith(caughtUp, () -> probe(router.forRead())));
+    }
+
+    @Test
+    void writesByOtherCallersDoNotAffectRouting() {
+        DatabaseRouter router = new DatabaseRouter(primary, replica);
+
+        primaryPosition = "0/300";
+        ReadConsistency.callWith(new ReadConsistency(null), () -> {
+            router.markWritten();
+            return null;
+        });
+
+        assertEquals("replica", ReadConsistency.callWith(new ReadConsistency(null), () -> probe(router.forRead())));
+        assertEquals("replica", probe(router.forRead()));
+    }
+
+    @Test
+    void tokenIsPropagatedToExecutorThreads() throws Exception {
+        DatabaseRouter router = new DatabaseRouter(primary, replica);
+        ReadConsistency lagging = new ReadConsistency("0/400");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            String target = ReadConsistency.callWith(lagging, () ->
+                CompletableFuture.supplyAsync(() -> probe(router.forRead()), ReadConsistency.propagating(executor))
+            ).get();
+            assertEquals("primary", target);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void invalidTokenIsIgnored() {
+        assertEquals(0, new ReadConsistency("not-a-position").requiredPosition());
+        assertEquals(0x1_0000_0010L, ReadConsistency.parsePosition("1/10"));
+        assertEquals("1/10", ReadConsistency.formatPosition(0x1_0000_0010L));
+    }
+}
+`.trim();
   }
 };
 
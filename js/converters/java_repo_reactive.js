@@ -0,0 +1,447 @@
+// Initialize Namespace
+window.App = window.App || {};
+App.Converters = App.Converters || {};
+
+App.Converters.JavaRepoReactive = {
+  /**
+   * Javaリアクティブリポジトリクラス生成 (R2DBC)
+   * JavaRepo と同じメソッド構成・論理削除条件・RLS条件を持ち、スレッドをブロックしない
+   */
+  generateJavaRepoReactive(tables, rlsOptions) {
+    const config = (App.State.config && App.State.config.commonColumns) ? App.State.config.commonColumns : {
+      id: 'id',
+      is_deleted: { name: 'is_deleted', type: 'boolean', valTrue: true, valFalse: false },
+      created_at: 'created_at',
+      created_by: 'created_by',
+      updated_at: 'updated_at',
+      updated_by: 'updated_by'
+    };
+
+    const isDeletedJavaType = config.is_deleted.type === 'string' ? 'String' : 'Boolean';
+    const isDeletedTrueVal = config.is_deleted.type === 'string' ? `"${config.is_deleted.valTrue}"` : 'true';
+    const isDeletedFalseVal = config.is_deleted.type === 'string' ? `"${config.is_deleted.valFalse}"` : 'false';
+
+    // BaseModel に定義される共通カラム
+    const baseModelColumns = [
+      { colName: config.id, javaType: 'Long' },
+      { colName: config.is_deleted.name, javaType: isDeletedJavaType },
+      { colName: config.created_at, javaType: 'java.time.Instant' },
+      { colName: config.created_by, javaType: 'String' },
+      { colName: config.updated_at, javaType: 'java.time.Instant' },
+      { colName: config.updated_by, javaType: 'String' }
+    ];
+    const baseModelCols = new Set(baseModelColumns.map(c => c.colName));
+    const rlsEnabled = !!(rlsOptions && rlsOptions.enabled);
+    const nativeRls = App.Utils.TableFeatures.isNativeRls(rlsOptions);
+    const files = [];
+
+    const baseRepoContent = `
+package repository.reactive;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Statement;
+${rlsEnabled ? 'import models.SessionInfo;\n' : ''}import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * R2DBC を使用するリアクティブリポジトリの基底クラス
+ * コネクションは購読ごとに取得し、完了・エラー・キャンセル時に必ず返却します。
+ */
+public abstract class ReactiveBaseRepository {
+
+    protected final ConnectionFactory connectionFactory;
+${rlsEnabled ? '    protected final SessionInfo sessionInfo;\n' : ''}
+    protected ReactiveBaseRepository(ConnectionFactory connectionFactory${rlsEnabled ? ', SessionInfo sessionInfo' : ''}) {
+        this.connectionFactory = connectionFactory;
+${rlsEnabled ? '        this.sessionInfo = sessionInfo;\n' : ''}    }
+
+${nativeRls ? `    /**
+     * コネクションを取得し、テナント設定を行ったトランザクション内で処理を実行します。
+     * ネイティブRLSのテナント設定はトランザクション単位のため、参照もトランザクション内で行います。
+     */
+    protected <R> Flux<R> withConnection(Function<Connection, Publisher<R>> action) {
+        return Flux.usingWhen(connectionFactory.create(),
+            connection -> Mono.from(connection.beginTransaction())
+                .then(applyTenant(connection))
+                .thenMany(action.apply(connection))
+                .concatWith(Mono.from(connection.commitTransaction()).then(Mono.<R>empty()))
+                .onErrorResume(e -> Mono.from(connection.rollbackTransaction()).then(Mono.error(e))),
+            Connection::close);
+    }
+
+    /**
+     * テナント設定を行ったトランザクション内で処理を実行します。
+     */
+    protected <R> Mono<R> inTransaction(Function<Connection, Mono<R>> action) {
+        return Mono.usingWhen(connectionFactory.create(),
+            connection -> Mono.from(connection.beginTransaction())
+                .then(applyTenant(connection))
+                .then(action.apply(connection))` : `    /**
+     * コネクションを取得して処理を実行し、完了後にコネクションを閉じます。
+     */
+    protected <R> Flux<R> withConnection(Function<Connection, Publisher<R>> action) {
+        return Flux.usingWhen(connectionFactory.create(), action, Connection::close);
+    }
+
+    /**
+     * トランザクション内で処理を実行します。
+     */
+    protected <R> Mono<R> inTransaction(Function<Connection, Mono<R>> action) {
+        return Mono.usingWhen(connectionFactory.create(),
+            connection -> Mono.from(connection.beginTransaction())
+                .then(action.apply(connection))`}
+                .flatMap(result -> Mono.from(connection.commitTransaction()).thenReturn(result))
+                .onErrorResume(e -> Mono.from(connection.rollbackTransaction()).then(Mono.error(e))),
+            Connection::close);
+    }
+
+    /**
+     * 位置パラメータ ($1, $2, ...) をバインドします。null は型付きでバインドします。
+     */
+    protected static Statement bindAll(Statement statement, List<Object> values, List<Class<?>> types) {
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == null) {
+                statement.bindNull(i, types.get(i));
+            } else {
+                statement.bind(i, values.get(i));
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * LIKE 検索用に特殊文字をエスケープし、部分一致パターンにします。
+     */
+    protected static String containsPattern(String value) {
+        return "%" + value.replace("\\\\", "\\\\\\\\").replace("%", "\\\\%").replace("_", "\\\\_") + "%";
+    }
+${nativeRls ? `
+    /**
+     * ネイティブRLSのセッション設定 (${App.Utils.TableFeatures.rlsTenantSetting} / ${App.Utils.TableFeatures.rlsBypassSetting}) をトランザクションに行います。
+     */
+    private Mono<Void> applyTenant(Connection connection) {
+        boolean admin = sessionInfo != null && sessionInfo.isAdmin();
+        String tenantId = sessionInfo != null && sessionInfo.getTenantId() != null ? sessionInfo.getTenantId() : "";
+        return Flux.from(connection.createStatement("SELECT set_config('${App.Utils.TableFeatures.rlsTenantSetting}', $1, true), set_config('${App.Utils.TableFeatures.rlsBypassSetting}', $2, true)")
+                .bind(0, tenantId)
+                .bind(1, admin ? "on" : "off")
+                .execute())
+            .flatMap(result -> result.getRowsUpdated())
+            .then();
+    }
+` : rlsEnabled ? `
+    /**
+     * RLSのテナント条件を適用するかどうかを返します。
+     */
+    protected boolean rlsApplies() {
+        return sessionInfo != null && !sessionInfo.isAdmin();
+    }
+` : ''}}
+`;
+    files.push({ path: 'repository/reactive/ReactiveBaseRepository.java', content: baseRepoContent.trim() });
+
+    tables.forEach(table => {
+      const modelName = toPascalCase(table.tableName);
+      const repoName = `${modelName}ReactiveRepository`;
+      const modelVar = toCamelCase(modelName);
+      const hasTenantId = rlsEnabled && table.columns.some(c => c.colName === rlsOptions.tenantIdColumn);
+
+      // SELECT / INSERT 対象のカラム (共通カラム + テーブル固有カラム)
+      const ownColumns = table.columns
+        .filter(c => !baseModelCols.has(c.colName))
+        .map(c => ({ colName: c.colName, javaType: mapPostgresToJavaType(c.type, c.length) }));
+      const allColumns = [...baseModelColumns, ...ownColumns];
+      const insertColumns = allColumns.filter(c => c.colName !== config.id);
+      const selectList = allColumns.map(c => c.colName).join(', ');
+
+      const notDeleted = `${config.is_deleted.name} = ${config.is_deleted.type === 'string' ? `'${config.is_deleted.valFalse}'` : 'false'}`;
+      // ネイティブRLSではテナントの絞り込みをデータベースのポリシーに任せる
+      const tenantCol = hasTenantId && !nativeRls ? rlsOptions.tenantIdColumn : null;
+
+      let classContent = `package repository.reactive;\n\n`;
+      classContent += `import io.r2dbc.spi.ConnectionFactory;\n`;
+      classContent += `import io.r2dbc.spi.Row;\n`;
+      classContent += `import models.${modelName};\n`;
+      if (rlsEnabled) {
+        classContent += `import models.SessionInfo;\n`;
+      }
+      classContent += `import org.reactivestreams.Publisher;\n`;
+      classContent += `import reactor.core.publisher.Flux;\n`;
+      classContent += `import reactor.core.publisher.Mono;\n`;
+      classContent += `import repository.OptimisticLockingFailureException;\n\n`;
+      classContent += `import javax.inject.Inject;\n`;
+      classContent += `import java.time.Instant;\n`;
+      classContent += `import java.util.ArrayList;\n`;
+      classContent += `import java.util.List;\n`;
+      classContent += `import java.util.Optional;\n`;
+      classContent += `import java.util.concurrent.CompletionStage;\n\n`;
+
+      classContent += `/**\n * ${table.tableNameJP} のリアクティブリポジトリ (R2DBC)\n */\n`;
+      classContent += `public class ${repoName} extends ReactiveBaseRepository {\n\n`;
+      classContent += `    private static final String SELECT_COLUMNS = "${selectList}";\n\n`;
+
+      classContent += `    @Inject\n`;
+      classContent += `    public ${repoName}(ConnectionFactory connectionFactory${rlsEnabled ? ', SessionInfo sessionInfo' : ''}) {\n`;
+      classContent += `        super(connectionFactory${rlsEnabled ? ', sessionInfo' : ''});\n`;
+      classContent += `    }\n\n`;
+
+      // findById
+      classContent += `    /**\n     * IDで ${table.tableNameJP} を検索します（論理削除済みは除く）。\n     * @param id 主キー\n     * @return 検索結果\n     */\n`;
+      classContent += `    public CompletionStage<Optional<${modelName}>> findById(Long id) {\n`;
+      classContent += `        List<String> conditions = new ArrayList<>(List.of("${config.id} = $1", "${notDeleted}"));\n`;
+      classContent += `        List<Object> values = new ArrayList<>(List.of(id));\n`;
+      classContent += `        List<Class<?>> types = new ArrayList<>(List.of(Long.class));\n`;
+      if (tenantCol) {
+        classContent += `        applyRls(conditions, values, types);\n`;
+      }
+      classContent += `        String sql = "SELECT " + SELECT_COLUMNS + " FROM ${table.tableName} WHERE " + String.join(" AND ", conditions);\n`;
+      classContent += `        return withConnection(connection -> Flux.from(bindAll(connection.createStatement(sql), values, types).execute())\n`;
+      classContent += `                .flatMap(result -> result.map((row, meta) -> toModel(row))))\n`;
+      classContent += `            .next()\n`;
+      classContent += `            .map(Optional::of)\n`;
+      classContent += `            .defaultIfEmpty(Optional.empty())\n`;
+      classContent += `            .toFuture();\n`;
+      classContent += `    }\n\n`;
+
+      // findAll
+      classContent += `    /**\n     * 全ての ${table.tableNameJP} を取得します（論理削除済みは除く）。\n     * @return 全件のストリーム\n     */\n`;
+      classContent += `    public Publisher<${modelName}> findAll(int offset, int limit) {\n`;
+      classContent += `        return find(new ${modelName}(), offset, limit);\n`;
+      classContent += `    }\n\n`;
+
+      // find
+      classContent += `    /**\n     * ${table.tableNameJP} を検索します（論理削除済みは除く）。\n     * 結果は1行ずつ発行されるため、全件をメモリに保持しません。\n     * @param filter 検索条件\n     * @return 検索結果のストリーム\n     */\n`;
+      classContent += `    public Publisher<${modelName}> find(${modelName} filter, int offset, int limit) {\n`;
+      classContent += `        List<Object> values = new ArrayList<>();\n`;
+      classContent += `        List<Class<?>> types = new ArrayList<>();\n`;
+      classContent += `        String where = createWhereWithFilter(filter, values, types);\n`;
+      classContent += `        values.add(limit);\n`;
+      classContent += `        types.add(Integer.class);\n`;
+      classContent += `        values.add(offset);\n`;
+      classContent += `        types.add(Integer.class);\n`;
+      classContent += `        String sql = "SELECT " + SELECT_COLUMNS + " FROM ${table.tableName} WHERE " + where\n`;
+      classContent += `            + " ORDER BY ${config.id} LIMIT $" + (values.size() - 1) + " OFFSET $" + values.size();\n`;
+      classContent += `        return withConnection(connection -> Flux.from(bindAll(connection.createStatement(sql), values, types).execute())\n`;
+      classContent += `            .flatMap(result -> result.map((row, meta) -> toModel(row))));\n`;
+      classContent += `    }\n\n`;
+
+      // count
+      classContent += `    /**\n     * ${table.tableNameJP} の件数を検索条件に基づいて取得します（論理削除済みは除く）。\n     * @param filter 検索条件\n     * @return 件数\n     */\n`;
+      classContent += `    public CompletionStage<Long> count(${modelName} filter) {\n`;
+      classContent += `        List<Object> values = new ArrayList<>();\n`;
+      classContent += `        List<Class<?>> types = new ArrayList<>();\n`;
+      classContent += `        String sql = "SELECT count(*) AS cnt FROM ${table.tableName} WHERE " + createWhereWithFilter(filter, values, types);\n`;
+      classContent += `        return withConnection(connection -> Flux.from(bindAll(connection.createStatement(sql), values, types).execute())\n`;
+      classContent += `                .flatMap(result -> result.map((row, meta) -> row.get("cnt", Long.class))))\n`;
+      classContent += `            .next()\n`;
+      classContent += `            .toFuture();\n`;
+      classContent += `    }\n\n`;
+
+      // insert
+      classContent += `    /**\n     * ${table.tableNameJP} を新規登録します。\n     * @param ${modelVar} 登録データ\n     * @return 登録後のデータ\n     */\n`;
+      classContent += `    public CompletionStage<${modelName}> insert(${modelName} ${modelVar}) {\n`;
+      classContent += `        Instant now = Instant.now();\n`;
+      classContent += `        ${modelVar}.set${toPascalCase(config.created_at)}(now);\n`;
+      classContent += `        ${modelVar}.set${toPascalCase(config.updated_at)}(now);\n`;
+      classContent += `        if (${modelVar}.get${toPascalCase(config.is_deleted.name)}() == null) {\n`;
+      classContent += `            ${modelVar}.set${toPascalCase(config.is_deleted.name)}(${isDeletedFalseVal});\n`;
+      classContent += `        }\n`;
+      classContent += `        String sql = "INSERT INTO ${table.tableName} (${insertColumns.map(c => c.colName).join(', ')}) VALUES (${insertColumns.map((c, i) => `$${i + 1}`).join(', ')})";\n`;
+      classContent += `        List<Object> values = new ArrayList<>();\n`;
+      insertColumns.forEach(c => {
+        classContent += `        values.add(${modelVar}.get${toPascalCase(c.colName)}());\n`;
+      });
+      classContent += `        List<Class<?>> types = List.of(${insertColumns.map(c => `${c.javaType}.class`).join(', ')});\n`;
+      classContent += `        return inTransaction(connection -> Mono.from(bindAll(connection.createStatement(sql), values, types)\n`;
+      classContent += `                .returnGeneratedValues("${config.id}").execute())\n`;
+      classContent += `            .flatMap(result -> Mono.from(result.map((row, meta) -> row.get("${config.id}", Long.class)))))\n`;
+      classContent += `            .map(id -> {\n`;
+      classContent += `                ${modelVar}.set${toPascalCase(config.id)}(id);\n`;
+      classContent += `                return ${modelVar};\n`;
+      classContent += `            })\n`;
+      classContent += `            .toFuture();\n`;
+      classContent += `    }\n\n`;
+
+      // update
+      const updateColumns = ownColumns;
+      classContent += `    /**\n     * ${table.tableNameJP} を更新します。\n     * @param id 主キー\n     * @param newData 更新データ\n     * @param updatedAt タイムスタンプ\n     * @return 更新後のデータ\n     */\n`;
+      classContent += `    public CompletionStage<${modelName}> update(Long id, ${modelName} newData, Instant updatedAt) {\n`;
+      classContent += `        newData.set${toPascalCase(config.id)}(id);\n`;
+      const setList = [`${config.updated_at} = $1`, ...updateColumns.map((c, i) => `${c.colName} = $${i + 2}`)];
+      const idPos = updateColumns.length + 2;
+      classContent += `        String sql = "UPDATE ${table.tableName} SET ${setList.join(', ')} WHERE ${config.id} = $${idPos} AND ${config.updated_at} = $${idPos + 1}";\n`;
+      classContent += `        List<Object> values = new ArrayList<>();\n`;
+      classContent += `        values.add(Instant.now());\n`;
+      updateColumns.forEach(c => {
+        classContent += `        values.add(newData.get${toPascalCase(c.colName)}());\n`;
+      });
+      classContent += `        values.add(id);\n`;
+      classContent += `        values.add(updatedAt);\n`;
+      classContent += `        List<Class<?>> types = List.of(${['java.time.Instant', ...updateColumns.map(c => c.javaType), 'Long', 'java.time.Instant'].map(t => `${t}.class`).join(', ')});\n`;
+      classContent += `        return inTransaction(connection -> Mono.from(bindAll(connection.createStatement(sql), values, types).execute())\n`;
+      classContent += `            .flatMap(result -> Mono.from(result.getRowsUpdated())))\n`;
+      classContent += `            .map(updatedRows -> {\n`;
+      classContent += `                if (updatedRows.longValue() == 0) {\n`;
+      classContent += `                    throw new OptimisticLockingFailureException("${modelName} not found with id: " + id + " and updatedAt: " + updatedAt);\n`;
+      classContent += `                }\n`;
+      classContent += `                return newData;\n`;
+      classContent += `            })\n`;
+      classContent += `            .toFuture();\n`;
+      classContent += `    }\n\n`;
+
+      // delete (logical)
+      classContent += `    /**\n     * ${table.tableNameJP} を論理削除します。\n     * @param id 主キー\n     * @param updatedAt タイムスタンプ\n     */\n`;
+      classContent += `    public CompletionStage<Void> delete(Long id, Instant updatedAt) {\n`;
+      classContent += `        String sql = "UPDATE ${table.tableName} SET ${config.is_deleted.name} = $1, ${config.updated_at} = $2 WHERE ${config.id} = $3 AND ${config.updated_at} = $4";\n`;
+      classContent += `        List<Object> values = List.of(${isDeletedTrueVal}, Instant.now(), id, updatedAt);\n`;
+      classContent += `        List<Class<?>> types = List.of(${isDeletedJavaType}.class, Instant.class, Long.class, Instant.class);\n`;
+      classContent += `        return inTransaction(connection -> Mono.from(bindAll(connection.createStatement(sql), values, types).execute())\n`;
+      classContent += `            .flatMap(result -> Mono.from(result.getRowsUpdated())))\n`;
+      classContent += `            .<Void>handle((updatedRows, sink) -> {\n`;
+      classContent += `                if (updatedRows.longValue() == 0) {\n`;
+      classContent += `                    sink.error(new OptimisticLockingFailureException("${modelName} not found with id: " + id + " and updatedAt: " + updatedAt));\n`;
+      classContent += `                } else {\n`;
+      classContent += `                    sink.complete();\n`;
+      classContent += `                }\n`;
+      classContent += `            })\n`;
+      classContent += `            .toFuture();\n`;
+      classContent += `    }\n\n`;
+
+      // createWhereWithFilter
+      classContent += `    /**\n     * 検索条件に基づいて WHERE 句を構築し、バインド値を values / types に追加します。\n     * @param filter 検索条件\n     * @return WHERE 句 (WHERE キーワードを除く)\n     */\n`;
+      classContent += `    private String createWhereWithFilter(${modelName} filter, List<Object> values, List<Class<?>> types) {\n`;
+      classContent += `        List<String> conditions = new ArrayList<>();\n`;
+      classContent += `        conditions.add("${notDeleted}");\n`;
+      if (tenantCol) {
+        classContent += `        applyRls(conditions, values, types);\n`;
+      }
+      ownColumns.forEach(c => {
+        const getter = `filter.get${toPascalCase(c.colName)}()`;
+        classContent += `        if (${getter} != null) {\n`;
+        if (c.javaType === 'String') {
+          classContent += `            values.add(containsPattern(${getter}));\n`;
+          classContent += `            types.add(String.class);\n`;
+          classContent += `            conditions.add("${c.colName} LIKE $" + values.size());\n`;
+        } else {
+          classContent += `            values.add(${getter});\n`;
+          classContent += `            types.add(${c.javaType}.class);\n`;
+          classContent += `            conditions.add("${c.colName} = $" + values.size());\n`;
+        }
+        classContent += `        }\n`;
+      });
+      classContent += `        return String.join(" AND ", conditions);\n`;
+      classContent += `    }\n\n`;
+
+      if (tenantCol) {
+        classContent += `    /**\n     * RLSのテナント条件を追加します（BaseRepository.rlsFilter() と同じ条件）。\n     */\n`;
+        classContent += `    private void applyRls(List<String> conditions, List<Object> values, List<Class<?>> types) {\n`;
+        classContent += `        if (rlsApplies()) {\n`;
+        classContent += `            values.add(sessionInfo.getTenantId());\n`;
+        classContent += `            types.add(String.class);\n`;
+        classContent += `            conditions.add("${tenantCol} = $" + values.size());\n`;
+        classContent += `        }\n`;
+        classContent += `    }\n\n`;
+      }
+
+      // toModel
+      classContent += `    /**\n     * 行データをモデルに変換します。\n     */\n`;
+      classContent += `    private static ${modelName} toModel(Row row) {\n`;
+      classContent += `        ${modelName} model = new ${modelName}();\n`;
+      allColumns.forEach(c => {
+        classContent += `        model.set${toPascalCase(c.colName)}(row.get("${c.colName}", ${c.javaType}.class));\n`;
+      });
+      classContent += `        return model;\n`;
+      classContent += `    }\n`;
+
+      classContent += `}\n`;
+      files.push({ path: `repository/reactive/${repoName}.java`, content: classContent });
+
+      files.push({ path: `test/repository/reactive/${repoName}Test.java`, content: this.generateReactiveRepoTest(table, modelName, repoName, allColumns, config, rlsEnabled, nativeRls) });
+    });
+
+    return files;
+  },
+
+  /**
+   * 組み込みデータベース (H2 / r2dbc-h2) に対して実行するリポジトリのテストを生成
+   */
+  generateReactiveRepoTest(table, modelName, repoName, allColumns, config, rlsEnabled, nativeRls) {
+    const h2Type = (javaType) => {
+      if (javaType === 'Long') return 'BIGINT';
+      if (javaType === 'Integer') return 'INTEGER';
+      if (javaType === 'Boolean') return 'BOOLEAN';
+      if (javaType === 'java.time.Instant') return 'TIMESTAMP WITH TIME ZONE';
+      if (javaType === 'java.time.LocalTime') return 'TIME';
+      if (javaType === 'java.math.BigDecimal') return 'NUMERIC';
+      if (javaType === 'byte[]') return 'VARBINARY';
+      return 'VARCHAR';
+    };
+    const columnDdl = allColumns.map(c => c.colName === config.id
+      ? `${c.colName} BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY`
+      : `${c.colName} ${h2Type(c.javaType)}`).join(', ');
+
+    let content = `package repository.reactive;\n\n`;
+    content += `import io.r2dbc.h2.H2ConnectionFactory;\n`;
+    content += `import io.r2dbc.spi.Connection;\n`;
+    content += `import models.${modelName};\n`;
+    if (rlsEnabled) {
+      content += `import models.SessionInfo;\n`;
+    }
+    content += `import org.junit.jupiter.api.BeforeEach;\n`;
+    content += `import org.junit.jupiter.api.Test;\n`;
+    content += `import reactor.core.publisher.Flux;\n`;
+    content += `import reactor.core.publisher.Mono;\n\n`;
+    content += `import java.util.List;\n`;
+    content += `import java.util.Optional;\n`;
+    content += `import java.util.UUID;\n\n`;
+    content += `import static org.junit.jupiter.api.Assertions.*;\n\n`;
+
+    content += `/**\n * ${table.tableNameJP} のリアクティブリポジトリのテスト (組み込み H2 / r2dbc-h2)\n */\n`;
+    content += `class ${repoName}Test {\n\n`;
+    content += `    private H2ConnectionFactory connectionFactory;\n`;
+    content += `    private ${repoName} repository;\n\n`;
+
+    content += `    @BeforeEach\n`;
+    content += `    void setUp() {\n`;
+    content += `        connectionFactory = H2ConnectionFactory.inMemory("test-" + UUID.randomUUID());\n`;
+    content += `        Mono.usingWhen(connectionFactory.create(),\n`;
+    content += `            connection -> Mono.from(connection.createStatement("CREATE TABLE ${table.tableName} (${columnDdl})").execute())\n`;
+    content += `                .flatMap(result -> Mono.from(result.getRowsUpdated())),\n`;
+    content += `            Connection::close).block();\n`;
+    if (nativeRls) {
+      // H2 には set_config が無いため、テナント設定を受け流す関数を用意する
+      content += `        Mono.usingWhen(connectionFactory.create(),\n`;
+      content += `            connection -> Mono.from(connection.createStatement("CREATE ALIAS set_config AS 'String setConfig(String name, String value, boolean local) { return value; }'").execute())\n`;
+      content += `                .flatMap(result -> Mono.from(result.getRowsUpdated())),\n`;
+      content += `            Connection::close).block();\n`;
+    }
+    content += `        repository = new ${repoName}(connectionFactory${rlsEnabled ? ', new SessionInfo(true, null)' : ''});\n`;
+    content += `    }\n\n`;
+
+    content += `    @Test\n`;
+    content += `    void insertFindUpdateDelete() {\n`;
+    content += `        ${modelName} inserted = repository.insert(new ${modelName}()).toCompletableFuture().join();\n`;
+    content += `        assertNotNull(inserted.get${toPascalCase(config.id)}());\n\n`;
+    content += `        Optional<${modelName}> found = repository.findById(inserted.get${toPascalCase(config.id)}()).toCompletableFuture().join();\n`;
+    content += `        assertTrue(found.isPresent());\n`;
+    content += `        assertEquals(1L, repository.count(new ${modelName}()).toCompletableFuture().join());\n\n`;
+    content += `        List<${modelName}> page = Flux.from(repository.find(new ${modelName}(), 0, 10)).collectList().block();\n`;
+    content += `        assertEquals(1, page.size());\n\n`;
+    content += `        ${modelName} updated = repository.update(inserted.get${toPascalCase(config.id)}(), found.get(), found.get().get${toPascalCase(config.updated_at)}()).toCompletableFuture().join();\n`;
+    content += `        ${modelName} reloaded = repository.findById(updated.get${toPascalCase(config.id)}()).toCompletableFuture().join().orElseThrow();\n\n`;
+    content += `        repository.delete(reloaded.get${toPascalCase(config.id)}(), reloaded.get${toPascalCase(config.updated_at)}()).toCompletableFuture().join();\n`;
+    content += `        assertTrue(repository.findById(reloaded.get${toPascalCase(config.id)}()).toCompletableFuture().join().isEmpty());\n`;
+    content += `        assertEquals(0L, repository.count(new ${modelName}()).toCompletableFuture().join());\n`;
+    content += `    }\n`;
+    content += `}\n`;
+    return content;
+  }
+};
+
+// Backward compat
+window.generateJavaRepoReactive = function(tables, rlsOptions) { return App.Converters.JavaRepoReactive.generateJavaRepoReactive(tables, rlsOptions); };
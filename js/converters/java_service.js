@@ -6,7 +6,7 @@ App.Converters.JavaService = {
   /**
    * Javaサービスクラス生成
    */
-  generateJavaService(tables, rlsOptions) {
+  generateJavaService(tables, rlsOptions, features) {
     const config = (App.State.config && App.State.config.commonColumns) ? App.State.config.commonColumns : {
       id: 'id',
       is_deleted: { name: 'is_deleted', type: 'boolean', valTrue: true, valFalse: false },
@@ -20,6 +20,308 @@ App.Converters.JavaService = {
     const isDeletedCol = config.is_deleted.name;
 
     const files = [];
+    const archiveEnabled = App.Utils.TableFeatures.isEnabled(features, 'archive');
+    const streamingEnabled = App.Utils.TableFeatures.isEnabled(features, 'streaming');
+    const changedSinceEnabled = App.Utils.TableFeatures.isEnabled(features, 'changedSince');
+    const admissionEnabled = App.Utils.TableFeatures.isEnabled(features, 'admissionControl');
+    const binaryEnabled = App.Utils.TableFeatures.isEnabled(features, 'binaryFormat');
+    const parallelExportEnabled = App.Utils.TableFeatures.isEnabled(features, 'parallelExport');
+    const queryBudgetEnabled = App.Utils.TableFeatures.isEnabled(features, 'queryBudget');
+
+    if (parallelExportEnabled) {
+      files.push({ path: 'libraries/ParallelExport.java', content: this.generateParallelExport() });
+    }
+
+    if (queryBudgetEnabled) {
+      files.push({ path: 'test/libraries/QueryCounter.java', content: this.generateQueryCounter() });
+      files.push({ path: 'test/libraries/EmbeddedDatabase.java', content: this.generateEmbeddedDatabase(rlsOptions, features) });
+    }
+
+    if (admissionEnabled) {
+      const heavyExecutionContextContent = `
+package services;
+
+import org.apache.pekko.actor.ActorSystem;
+import play.libs.concurrent.CustomExecutionContext;
+
+import javax.inject.Inject;
+
+/**
+ * CSV 入出力など重い処理専用の実行コンテキスト
+ * DB 用のスレッドプールを使い切らないよう、application.conf に小さめの heavy.dispatcher を定義してください。
+ * (例: heavy.dispatcher { executor = "thread-pool-executor", throughput = 1, thread-pool-executor.fixed-pool-size = 2 })
+ */
+public class HeavyExecutionContext extends CustomExecutionContext {
+
+    @Inject
+    public HeavyExecutionContext(ActorSystem actorSystem) {
+        super(actorSystem, "heavy.dispatcher");
+    }
+}
+`;
+      files.push({ path: 'services/HeavyExecutionContext.java', content: heavyExecutionContextContent.trim() });
+    }
+
+    if (archiveEnabled) {
+      const archiveReportContent = `
+package services;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * アーカイブジョブ1回分の実行結果 (メトリクス)
+ */
+public class ArchiveReport {
+    private final String tableName;
+    private final Instant startedAt = Instant.now();
+    private Instant finishedAt;
+    private int batches;
+    private long movedRows;
+    private Duration totalBatchTime = Duration.ZERO;
+    private Duration maxBatchTime = Duration.ZERO;
+
+    public ArchiveReport(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * 1バッチ分の結果を記録します。
+     * @param movedCount 移送件数
+     * @param elapsed バッチの所要時間
+     */
+    public synchronized void record(int movedCount, Duration elapsed) {
+        batches++;
+        movedRows += movedCount;
+        totalBatchTime = totalBatchTime.plus(elapsed);
+        if (elapsed.compareTo(maxBatchTime) > 0) {
+            maxBatchTime = elapsed;
+        }
+    }
+
+    /**
+     * 実行終了を記録します。
+     * @return このレポート
+     */
+    public synchronized ArchiveReport finish() {
+        finishedAt = Instant.now();
+        return this;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public synchronized int getBatches() {
+        return batches;
+    }
+
+    public synchronized long getMovedRows() {
+        return movedRows;
+    }
+
+    public synchronized Duration getTotalBatchTime() {
+        return totalBatchTime;
+    }
+
+    public synchronized Duration getMaxBatchTime() {
+        return maxBatchTime;
+    }
+
+    public synchronized Duration getElapsed() {
+        return Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "archive " + tableName
+            + ": rows=" + movedRows
+            + ", batches=" + batches
+            + ", elapsedMs=" + getElapsed().toMillis()
+            + ", batchTotalMs=" + totalBatchTime.toMillis()
+            + ", batchMaxMs=" + maxBatchTime.toMillis();
+    }
+}
+`;
+      files.push({ path: 'services/ArchiveReport.java', content: archiveReportContent.trim() });
+      files.push({ path: 'services/ArchivePolicy.java', content: this.generateArchivePolicy() });
+    }
+
+    if (archiveEnabled && changedSinceEnabled) {
+      const resyncRequiredContent = `
+package services;
+
+/**
+ * 差分同期の開始位置がアーカイブの保持期間より前のため、論理削除を取りこぼす可能性があることを表す例外
+ * クライアントは差分ではなく全件を取得し直す必要があります (コントローラーは 410 Gone を返します)。
+ */
+public class ResyncRequiredException extends RuntimeException {
+    public ResyncRequiredException(String message) {
+        super(message);
+    }
+}
+`;
+      files.push({ path: 'services/ResyncRequiredException.java', content: resyncRequiredContent.trim() });
+    }
+
+    if (streamingEnabled) {
+      // バイナリ応答が有効な場合、同じページ構造を Smile / CBOR の ObjectMapper でも書き出せるようにする
+      const mapperImport = binaryEnabled ? 'import com.fasterxml.jackson.databind.ObjectMapper;\n' : '';
+      const writePageOverload = binaryEnabled ? `
+    /**
+     * {"total":..,"data":[...]} 形式で一覧を書き出します (JSON)。
+     * @param out 出力先
+     * @param total 総件数
+     * @param rows 行の供給元
+     * @return 完了通知
+     */
+    public static <T> CompletionStage<Void> writePage(OutputStream out, long total, RowSource<T> rows) {
+        return writePage(out, Json.mapper(), total, rows);
+    }
+` : '';
+      const writePageSignature = binaryEnabled
+        ? `     * 指定した ObjectMapper の形式 (JSON / Smile / CBOR) で {"total":..,"data":[...]} 構造の一覧を書き出します。
+     * @param out 出力先
+     * @param mapper 出力形式の ObjectMapper
+     * @param total 総件数
+     * @param rows 行の供給元
+     * @return 完了通知
+     */
+    public static <T> CompletionStage<Void> writePage(OutputStream out, ObjectMapper mapper, long total, RowSource<T> rows) {
+        JsonGenerator generator = createGenerator(mapper, out);`
+        : `     * {"total":..,"data":[...]} 形式で一覧を書き出します。
+     * @param out 出力先
+     * @param total 総件数
+     * @param rows 行の供給元
+     * @return 完了通知
+     */
+    public static <T> CompletionStage<Void> writePage(OutputStream out, long total, RowSource<T> rows) {
+        JsonGenerator generator = createGenerator(out);`;
+      const jsonStreamsContent = `
+package libraries;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+${mapperImport}import org.apache.pekko.NotUsed;
+import org.apache.pekko.stream.javadsl.Source;
+import org.apache.pekko.stream.javadsl.StreamConverters;
+import org.apache.pekko.util.ByteString;
+import play.libs.Json;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 一覧を JsonGenerator で逐次書き出し、チャンク転送するためのヘルパー
+ * Bean のリストや JSON ツリーを組み立てずに出力するため、大きなページでもメモリ使用量が一定に保たれる
+ */
+public final class JsonStreams {
+
+    private JsonStreams() {
+    }
+
+    /**
+     * 1件ずつ行を供給する処理
+     * @param <T> 行の型
+     */
+    @FunctionalInterface
+    public interface RowSource<T> {
+        CompletionStage<Void> forEach(Consumer<T> consumer);
+    }
+
+    /**
+     * 出力ストリームへの書き込み処理から、チャンク転送用の Source を作成します。
+     * 書き込み処理の完了 (失敗を含む) 時にストリームを閉じてレスポンスを終端します。
+     * @param writer 出力ストリームへの書き込み処理
+     * @return レスポンスボディ
+     */
+    public static Source<ByteString, ?> source(Function<OutputStream, CompletionStage<Void>> writer) {
+        return StreamConverters.asOutputStream().mapMaterializedValue(out -> {
+            writer.apply(out).whenComplete((result, error) -> closeQuietly(out));
+            return NotUsed.getInstance();
+        });
+    }
+${writePageOverload}
+    /**
+${writePageSignature}
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("total", total);
+            generator.writeArrayFieldStart("data");
+            // 先頭部分をすぐに送り出し、最初のバイトまでの時間を短くする
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows.forEach(row -> writeRow(generator, row, false)).thenRun(() -> {
+            try {
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 1行1件の NDJSON (application/x-ndjson) で一覧を書き出します。
+     * @param out 出力先
+     * @param rows 行の供給元
+     * @return 完了通知
+     */
+    public static <T> CompletionStage<Void> writeNdjson(OutputStream out, RowSource<T> rows) {
+        JsonGenerator generator = createGenerator(out);
+        generator.setRootValueSeparator(null);
+        return rows.forEach(row -> writeRow(generator, row, true)).thenRun(() -> {
+            try {
+                generator.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static JsonGenerator createGenerator(OutputStream out) {
+${binaryEnabled ? `        return createGenerator(Json.mapper(), out);
+    }
+
+    private static JsonGenerator createGenerator(ObjectMapper mapper, OutputStream out) {
+        try {
+            return mapper.getFactory().createGenerator(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }` : `        try {
+            return Json.mapper().getFactory().createGenerator(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }`}
+    }
+
+    private static void writeRow(JsonGenerator generator, Object row, boolean newline) {
+        try {
+            generator.writeObject(row);
+            if (newline) {
+                generator.writeRaw('\\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // クライアント切断時など、既に閉じられている場合は無視する
+        }
+    }
+}
+`;
+      files.push({ path: 'libraries/JsonStreams.java', content: jsonStreamsContent.trim() });
+    }
 
     tables.forEach(table => {
       const modelName = toPascalCase(table.tableName);
@@ -27,13 +329,32 @@ App.Converters.JavaService = {
       const repoName = `${modelName}Repository`;
       const repoVar = toCamelCase(repoName);
       const modelVar = toCamelCase(modelName);
+      const hasSearch = App.Utils.TableFeatures.getSearchColumns(table).length > 0;
+      // 更新日時・論理削除フラグの無いテーブルはアーカイブの対象外
+      const tableArchive = archiveEnabled && App.Utils.TableFeatures.isArchivable(table);
+      // 更新日時の無いテーブルは差分同期の対象外。アーカイブ対象なら保持期間より前からの差分同期を拒否する
+      const tableChanges = changedSinceEnabled && App.Utils.TableFeatures.isChangeTrackable(table);
+      const archivedChanges = tableChanges && tableArchive;
 
       let classContent = `package services;\n\n`;
       classContent += `import com.fasterxml.jackson.databind.node.ObjectNode;\n`;
+      if (archivedChanges) {
+        classContent += `import com.typesafe.config.Config;\n`;
+      }
       classContent += `import models.${modelName};\n`;
       classContent += `import play.libs.Json;\n`;
       classContent += `import repository.${repoName};\n`;
       classContent += `import libraries.CsvHelper;\n`;
+      if (parallelExportEnabled) {
+        classContent += `import libraries.ParallelExport;\n`;
+      }
+      if (streamingEnabled) {
+        if (binaryEnabled) {
+          classContent += `import com.fasterxml.jackson.databind.ObjectMapper;\n`;
+        }
+        classContent += `import libraries.JsonStreams;\n`;
+        classContent += `import java.io.OutputStream;\n`;
+      }
       classContent += `import java.io.File;\n`;
       classContent += `import java.io.IOException;\n`;
       classContent += `import java.io.PrintWriter;\n`;
@@ -51,17 +372,59 @@ App.Converters.JavaService = {
       classContent += `import java.util.HashMap;\n`;
       classContent += `import java.util.Optional;\n`;
       classContent += `import java.util.stream.Collectors;\n`;
+      if (tableArchive || hasSearch) {
+        classContent += `import java.util.concurrent.CompletableFuture;\n`;
+      }
+      if (tableArchive) {
+        classContent += `import java.time.Duration;\n`;
+        classContent += `import java.util.concurrent.Executor;\n`;
+        classContent += `import java.util.concurrent.TimeUnit;\n`;
+        classContent += `import org.slf4j.Logger;\n`;
+        classContent += `import org.slf4j.LoggerFactory;\n`;
+        classContent += `import repository.ArchiveBatchResult;\n`;
+      }
+      if (tableChanges) {
+        classContent += `import repository.ChangeCursor;\n`;
+      }
       classContent += `import javax.inject.Inject;\n`;
       classContent += `import static java.util.concurrent.CompletableFuture.supplyAsync;\n\n`;
 
 
       classContent += `/**\n * ${table.tableNameJP} のサービス\n */\n`;
       classContent += `public class ${serviceName} {\n`;
-      classContent += `    private final ${repoName} ${repoVar};\n\n`;
+      if (tableArchive) {
+        classContent += `    private static final Logger logger = LoggerFactory.getLogger(${serviceName}.class);\n\n`;
+      }
+      const dependencies = [{ type: repoName, name: repoVar }];
+      if (admissionEnabled) {
+        dependencies.push({ type: 'HeavyExecutionContext', name: 'heavyExecutionContext' });
+      }
+      if (parallelExportEnabled) {
+        dependencies.push({ type: 'ParallelExport', name: 'parallelExport' });
+      }
+      if (archivedChanges) {
+        dependencies.push({ type: 'Config', name: 'config' });
+      }
+      dependencies.forEach(d => {
+        if (d.name !== 'config') {
+          classContent += `    private final ${d.type} ${d.name};\n`;
+        }
+      });
+      if (archivedChanges) {
+        classContent += `    private final ArchivePolicy archivePolicy;\n`;
+      }
+      classContent += `\n`;
 
       classContent += `    @Inject\n`;
-      classContent += `    public ${serviceName}(${repoName} ${repoVar}) {\n`;
-      classContent += `        this.${repoVar} = ${repoVar};\n`;
+      classContent += `    public ${serviceName}(${dependencies.map(d => `${d.type} ${d.name}`).join(', ')}) {\n`;
+      dependencies.forEach(d => {
+        if (d.name !== 'config') {
+          classContent += `        this.${d.name} = ${d.name};\n`;
+        }
+      });
+      if (archivedChanges) {
+        classContent += `        this.archivePolicy = ArchivePolicy.of(config, "${table.tableName}");\n`;
+      }
       classContent += `    }\n\n`;
 
       classContent += `    /**\n     * データの整合性をチェックします。\n     * @param ${modelVar} データ\n     */\n`;
@@ -141,6 +504,71 @@ App.Converters.JavaService = {
       classContent += `        });\n`;
       classContent += `    }\n\n`;
 
+      // writeJson / writeNdjson
+      if (streamingEnabled) {
+        classContent += `    /**\n     * ${table.tableNameJP} を検索し、{"total":..,"data":[...]} 形式で出力ストリームへ直接書き出します。\n     * @param filter 検索条件\n     * @param offset 開始位置\n     * @param limit 最大件数\n     * @param out 出力先\n     * @return 完了通知\n     */\n`;
+        classContent += `    public CompletionStage<Void> writeJson(${modelName} filter, int offset, int limit, OutputStream out) {\n`;
+        if (binaryEnabled) {
+          classContent += `        return writePage(filter, offset, limit, Json.mapper(), out);\n`;
+          classContent += `    }\n\n`;
+
+          classContent += `    /**\n     * ${table.tableNameJP} を検索し、{"total":..,"data":[...]} 構造で指定の形式 (JSON / Smile / CBOR) のまま出力ストリームへ直接書き出します。\n     * @param filter 検索条件\n     * @param offset 開始位置\n     * @param limit 最大件数\n     * @param mapper 出力形式の ObjectMapper\n     * @param out 出力先\n     * @return 完了通知\n     */\n`;
+          classContent += `    public CompletionStage<Void> writePage(${modelName} filter, int offset, int limit, ObjectMapper mapper, OutputStream out) {\n`;
+          classContent += `        return ${repoVar}.count(filter).thenCompose(total ->\n`;
+          classContent += `            JsonStreams.<${modelName}>writePage(out, mapper, total, consumer -> ${repoVar}.findEach(filter, offset, limit, consumer))\n`;
+          classContent += `        );\n`;
+        } else {
+          classContent += `        return ${repoVar}.count(filter).thenCompose(total ->\n`;
+          classContent += `            JsonStreams.<${modelName}>writePage(out, total, consumer -> ${repoVar}.findEach(filter, offset, limit, consumer))\n`;
+          classContent += `        );\n`;
+        }
+        classContent += `    }\n\n`;
+
+        classContent += `    /**\n     * ${table.tableNameJP} を検索し、1行1件の NDJSON で出力ストリームへ直接書き出します。\n     * @param filter 検索条件\n     * @param offset 開始位置\n     * @param limit 最大件数\n     * @param out 出力先\n     * @return 完了通知\n     */\n`;
+        classContent += `    public CompletionStage<Void> writeNdjson(${modelName} filter, int offset, int limit, OutputStream out) {\n`;
+        classContent += `        return JsonStreams.<${modelName}>writeNdjson(out, consumer -> ${repoVar}.findEach(filter, offset, limit, consumer));\n`;
+        classContent += `    }\n\n`;
+      }
+
+      if (tableChanges) {
+        classContent += `    /**\n     * 指定日時以降に変更された ${table.tableNameJP} を差分同期用のJSONで取得します。\n     * 論理削除済みの行も ${toCamelCase(isDeletedCol)} 付きで返すため、クライアントは削除を反映できます。\n     * @param since この日時以降の変更を取得 (cursor 指定時は無視)\n     * @param cursor 前回の取得結果の nextCursor (初回は null)\n     * @param limit 最大件数\n     * @return JSON形式の結果 ({"data":[...],"nextCursor":..,"hasMore":..})\n     * @throws IllegalArgumentException 不正なカーソルの場合\n${archivedChanges ? `     * @throws ResyncRequiredException 開始位置がアーカイブの保持期間より前の場合 (アーカイブ済みの論理削除を返せないため、全件の再取得が必要)\n` : ''}     */\n`;
+        classContent += `    public CompletionStage<ObjectNode> findChangedSince(Instant since, String cursor, int limit) {\n`;
+        classContent += `        ChangeCursor after = cursor != null && !cursor.isBlank() ? ChangeCursor.decode(cursor) : null;\n`;
+        if (archivedChanges) {
+          classContent += `        Instant from = after != null ? after.getUpdatedAt() : since;\n`;
+          classContent += `        if (from != null && archivePolicy.mayHaveArchivedAfter(from)) {\n`;
+          classContent += `            throw new ResyncRequiredException("changes since " + from + " may include archived deletions of ${table.tableName}; fetch all rows again");\n`;
+          classContent += `        }\n`;
+        }
+        classContent += `        return ${repoVar}.findChangedSince(since, after, limit).thenApply(page -> {\n`;
+        classContent += `            ObjectNode result = Json.newObject();\n`;
+        classContent += `            result.set("data", Json.toJson(page.getRows()));\n`;
+        classContent += `            result.put("nextCursor", page.getNextCursor() != null ? page.getNextCursor().encode() : null);\n`;
+        classContent += `            result.put("hasMore", page.isHasMore());\n`;
+        classContent += `            return result;\n`;
+        classContent += `        });\n`;
+        classContent += `    }\n\n`;
+      }
+
+      // search
+      if (hasSearch) {
+        classContent += `    /**\n     * ${table.tableNameJP} を全文検索し、関連度順のリストをJSONで取得します。\n     * @param q 検索語\n     * @param limit 最大件数\n     * @return JSON形式の検索結果 (total は返却件数)\n     */\n`;
+        classContent += `    public CompletionStage<ObjectNode> search(String q, int limit) {\n`;
+        classContent += `        if (q == null || q.isBlank()) {\n`;
+        classContent += `            ObjectNode empty = Json.newObject();\n`;
+        classContent += `            empty.put("total", 0);\n`;
+        classContent += `            empty.set("data", Json.newArray());\n`;
+        classContent += `            return CompletableFuture.completedFuture(empty);\n`;
+        classContent += `        }\n`;
+        classContent += `        return ${repoVar}.search(q.trim(), limit).thenApply(data -> {\n`;
+        classContent += `            ObjectNode result = Json.newObject();\n`;
+        classContent += `            result.put("total", data.size());\n`;
+        classContent += `            result.set("data", Json.toJson(data));\n`;
+        classContent += `            return result;\n`;
+        classContent += `        });\n`;
+        classContent += `    }\n\n`;
+      }
+
       // findById
       classContent += `    /**\n     * IDで ${table.tableNameJP} を検索します。\n     * @param id 主キー\n     * @return 検索結果\n     */\n`;
       classContent += `    public CompletionStage<Optional<${modelName}>> findById(Long id) {\n`;
@@ -175,7 +603,8 @@ App.Converters.JavaService = {
 
       classContent += `    /**\n     * ${table.tableNameJP} のデータをCSVファイルとしてエクスポートします。\n     * @param filter 検索条件\n     * @return 生成されたCSVファイル\n     */\n`;
       classContent += `    public CompletionStage<File> exportCsv(${modelName} filter) {\n`;
-      classContent += `        return ${repoVar}.find(filter, 0, Integer.MAX_VALUE).thenApply(list -> {\n`;
+      // 受付制御が有効な場合、CSV の組み立ては重い処理用のスレッドプールで行う
+      classContent += `        return ${repoVar}.find(filter, 0, Integer.MAX_VALUE).${admissionEnabled ? 'thenApplyAsync' : 'thenApply'}(list -> {\n`;
       classContent += `            try {\n`;
       classContent += `                File file = Files.createTempFile("${table.tableName}_", ".csv").toFile();\n`;
       classContent += `                byte[] bom = new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};\n`;
@@ -196,9 +625,27 @@ App.Converters.JavaService = {
       classContent += `            } catch (IOException e) {\n`;
       classContent += `                throw new RuntimeException(e);\n`;
       classContent += `            }\n`;
-      classContent += `        });\n`;
+      classContent += admissionEnabled ? `        }, heavyExecutionContext);\n` : `        });\n`;
       classContent += `    }\n\n`;
 
+      if (parallelExportEnabled) {
+        classContent += `    /**\n     * ${table.tableNameJP} を ID の範囲に分割し、同一スナップショット上で並列に読み出して CSV エクスポートします。\n     * 大量データ向けで、列と書式は exportCsv と同じです。\n     * @param filter 検索条件\n     * @param options 出力形式 (分割数・gzip・ZIP)\n     * @return 出力結果\n     */\n`;
+        classContent += `    public CompletionStage<ParallelExport.Output> exportCsvParallel(${modelName} filter, ParallelExport.Options options) {\n`;
+        classContent += `        byte[] header = ("\\uFEFF" + String.format(\n`;
+        classContent += `            ${csvPlaceHolder}\n`;
+        classContent += `            ,${csvHeader.replace(/\n {24}/g, '\n            ')}\n`;
+        classContent += `        )).getBytes(StandardCharsets.UTF_8);\n`;
+        classContent += `        return parallelExport.export("${table.tableName}", options, header,\n`;
+        classContent += `            (transaction, parts, samplePercent) -> ${repoVar}.findIdBoundaries(filter, parts, samplePercent, transaction),\n`;
+        classContent += `            (transaction, fromId, toId, fetchSize, writer) -> ${repoVar}.findRangeEach(filter, fromId, toId, fetchSize, transaction, m ->\n`;
+        classContent += `                writer.printf(\n`;
+        classContent += `                    ${csvPlaceHolder}\n`;
+        classContent += `                    ,${csvRow.replace(/\n {28}/g, '\n                    ')}\n`;
+        classContent += `                )\n`;
+        classContent += `            ));\n`;
+        classContent += `    }\n\n`;
+      }
+
       const nonKeyColumnsForImport = table.columns.filter(c => c.pkfk !== 'PK' && c.colName !== idCol);
 
       classContent += `    /**\n     * CSVファイルから ${table.tableNameJP} のデータを取り込みます。\n     * @param csvFile 取り込むCSVファイル\n     * @return 取り込み件数\n     */\n`;
@@ -249,15 +696,1093 @@ App.Converters.JavaService = {
       classContent += `            } catch (IOException e) {\n`;
       classContent += `                throw new RuntimeException(e);\n`;
       classContent += `            }\n`;
-      classContent += `        });\n`;
+      classContent += admissionEnabled ? `        }, heavyExecutionContext);\n` : `        });\n`;
       classContent += `    }\n`;
 
+      if (tableArchive) {
+        classContent += `\n    /**\n     * 論理削除から retention 以上経過した ${table.tableNameJP} をアーカイブテーブルへ移送します。\n`;
+        classContent += `     * 小さなバッチを順に実行し、バッチ間は直前のバッチ所要時間以上 (最低 pause) 休止して\n`;
+        classContent += `     * 業務時間中でもロック競合やレプリケーション遅延を起こしにくくします。\n`;
+        classContent += `     * @param retention 論理削除後の保持期間\n`;
+        classContent += `     * @param batchSize 1バッチの最大件数\n`;
+        classContent += `     * @param pause バッチ間の最低休止時間\n`;
+        classContent += `     * @return 実行結果\n     */\n`;
+        classContent += `    public CompletionStage<ArchiveReport> archiveDeleted(Duration retention, int batchSize, Duration pause) {\n`;
+        classContent += `        Instant deletedBefore = Instant.now().minus(retention);\n`;
+        classContent += `        return archiveNextBatch(deletedBefore, ArchiveBatchResult.START, batchSize, pause, new ArchiveReport("${table.tableName}"));\n`;
+        classContent += `    }\n\n`;
+
+        classContent += `    private CompletionStage<ArchiveReport> archiveNextBatch(Instant deletedBefore, ArchiveBatchResult after, int batchSize, Duration pause, ArchiveReport report) {\n`;
+        classContent += `        long startedAt = System.nanoTime();\n`;
+        classContent += `        return ${repoVar}.archiveDeletedBatch(deletedBefore, after, batchSize).thenCompose(batch -> {\n`;
+        classContent += `            Duration elapsed = Duration.ofNanos(System.nanoTime() - startedAt);\n`;
+        classContent += `            report.record(batch.getMovedCount(), elapsed);\n`;
+        classContent += `            logger.debug("archive ${table.tableName}: batch rows={}, elapsedMs={}", batch.getMovedCount(), elapsed.toMillis());\n\n`;
+        classContent += `            if (batch.getMovedCount() < batchSize) {\n`;
+        classContent += `                return CompletableFuture.completedFuture(report.finish());\n`;
+        classContent += `            }\n`;
+        classContent += `            // DB の占有時間が実行時間の半分を超えないよう、直前のバッチと同じ時間以上休止する\n`;
+        classContent += `            long delayMillis = Math.max(pause.toMillis(), elapsed.toMillis());\n`;
+        classContent += `            Executor delayed = CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS);\n`;
+        classContent += `            return CompletableFuture.supplyAsync(() -> batch, delayed)\n`;
+        classContent += `                .thenCompose(next -> archiveNextBatch(deletedBefore, next, batchSize, pause, report));\n`;
+        classContent += `        });\n`;
+        classContent += `    }\n`;
+      }
+
       classContent += `}\n`;
 
       files.push({ path: `services/${serviceName}.java`, content: classContent });
+
+      if (tableArchive) {
+        files.push({ path: `jobs/${modelName}ArchiveJob.java`, content: this.generateArchiveJob(table, modelName, serviceName) });
+      }
+      if (queryBudgetEnabled) {
+        files.push({ path: `test/services/${serviceName}QueryBudgetTest.java`, content: this.generateQueryBudgetTest(table, modelName, serviceName, rlsOptions) });
+      }
     });
 
     return files;
+  },
+
+  /**
+   * クエリ数の回帰テスト用に、JDBC で実行された SQL・取得行数・DB 時間を記録するテスト支援クラス
+   */
+  generateQueryCounter() {
+    return `
+package libraries;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+
+/**
+ * テストで実行された SQL を記録するカウンター
+ * 組み込みデータベースの DataSource を wrap しておき、record で囲んだ処理が JDBC で実行した文・取得行数・DB 時間を集計します。
+ * Ebean の遅延ロードやバッチも JDBC の文として数えるため、一覧の N+1・余計な件数取得・ページングの抜けによる全件取得を
+ * 文の数と取得行数の上限で検出できます。上限を超えた場合は、実行された SQL の一覧を含む AssertionError になります。
+ */
+public final class QueryCounter {
+
+    /** 記録中の Recording (record の実行中のみ登録) */
+    private static final Set<Recording> ACTIVE = ConcurrentHashMap.newKeySet();
+
+    private QueryCounter() {
+    }
+
+    /**
+     * 処理の実行中に発行された SQL を記録します。
+     * @param action 計測する処理 (戻り値は使いません)
+     * @return 記録結果
+     * @throws Exception 処理が投げた例外
+     */
+    public static Recording record(Callable<?> action) throws Exception {
+        Recording recording = new Recording();
+        ACTIVE.add(recording);
+        try {
+            action.call();
+        } finally {
+            ACTIVE.remove(recording);
+        }
+        return recording;
+    }
+
+    /**
+     * DataSource から取得したコネクションで実行された文を記録するようにします。
+     * @param dataSource 元の DataSource
+     * @return 記録付きの DataSource
+     */
+    public static DataSource wrap(DataSource dataSource) {
+        return (DataSource) proxy(DataSource.class, (method, args) -> {
+            Object result = method.invoke(dataSource, args);
+            return result instanceof Connection ? connection((Connection) result) : result;
+        });
+    }
+
+    private static Connection connection(Connection connection) {
+        return (Connection) proxy(Connection.class, (method, args) -> {
+            Object result = method.invoke(connection, args);
+            if (!(result instanceof Statement)) {
+                return result;
+            }
+            // prepareStatement / prepareCall は SQL を先に受け取る
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            return statement((Statement) result, sql);
+        });
+    }
+
+    private static Statement statement(Statement statement, String preparedSql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+            : statement instanceof PreparedStatement ? PreparedStatement.class
+            : Statement.class;
+        Execution[] last = new Execution[1];
+        return (Statement) proxy(type, (method, args) -> {
+            String name = method.getName();
+            if ("getResultSet".equals(name)) {
+                ResultSet resultSet = (ResultSet) method.invoke(statement, args);
+                return resultSet != null && last[0] != null ? resultSet(resultSet, last[0]) : resultSet;
+            }
+            if (!name.startsWith("execute")) {
+                return method.invoke(statement, args);
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            Execution execution = new Execution(sql);
+            ACTIVE.forEach(recording -> recording.executions.add(execution));
+            last[0] = execution;
+            long startedAt = System.nanoTime();
+            try {
+                Object result = method.invoke(statement, args);
+                return result instanceof ResultSet ? resultSet((ResultSet) result, execution) : result;
+            } finally {
+                execution.nanos.addAndGet(System.nanoTime() - startedAt);
+            }
+        });
+    }
+
+    /**
+     * 取得行数と、行の読み込み (フェッチ) にかかった時間を記録します。
+     */
+    private static ResultSet resultSet(ResultSet resultSet, Execution execution) {
+        return (ResultSet) proxy(ResultSet.class, (method, args) -> {
+            if (!"next".equals(method.getName())) {
+                return method.invoke(resultSet, args);
+            }
+            long startedAt = System.nanoTime();
+            try {
+                boolean hasNext = (Boolean) method.invoke(resultSet, args);
+                if (hasNext) {
+                    execution.rows.incrementAndGet();
+                }
+                return hasNext;
+            } finally {
+                execution.nanos.addAndGet(System.nanoTime() - startedAt);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Interceptor {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    private static Object proxy(Class<?> type, Interceptor interceptor) {
+        return Proxy.newProxyInstance(QueryCounter.class.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            try {
+                return interceptor.invoke(method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    /**
+     * 1 回の文の実行
+     */
+    private static final class Execution {
+        private final String sql;
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        private Execution(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * record の記録結果
+     */
+    public static final class Recording {
+        private final List<Execution> executions = new CopyOnWriteArrayList<>();
+
+        private Recording() {
+        }
+
+        /**
+         * 実行された文の数
+         * @return 文の数
+         */
+        public int statementCount() {
+            return executions.size();
+        }
+
+        /**
+         * 結果セットから読み込んだ行数の合計
+         * @return 行数
+         */
+        public long rowCount() {
+            return executions.stream().mapToLong(e -> e.rows.get()).sum();
+        }
+
+        /**
+         * 文の実行と行の読み込みにかかった時間の合計
+         * @return DB 時間
+         */
+        public Duration elapsed() {
+            return Duration.ofNanos(executions.stream().mapToLong(e -> e.nanos.get()).sum());
+        }
+
+        /**
+         * 実行された SQL (実行順)
+         * @return SQL の一覧
+         */
+        public List<String> statements() {
+            return executions.stream().map(e -> e.sql).collect(Collectors.toList());
+        }
+
+        /**
+         * 文の数が上限以下であることを確認します。
+         * @param max 上限
+         * @return this
+         */
+        public Recording assertStatementsAtMost(int max) {
+            if (statementCount() > max) {
+                throw new AssertionError("expected at most " + max + " statements but was " + statementCount() + "\\n" + this);
+            }
+            return this;
+        }
+
+        /**
+         * 取得行数が上限以下であることを確認します。
+         * @param max 上限
+         * @return this
+         */
+        public Recording assertRowsAtMost(long max) {
+            if (rowCount() > max) {
+                throw new AssertionError("expected at most " + max + " rows but was " + rowCount() + "\\n" + this);
+            }
+            return this;
+        }
+
+        /**
+         * DB 時間が上限以下であることを確認します。
+         * @param max 上限
+         * @return this
+         */
+        public Recording assertElapsedAtMost(Duration max) {
+            if (elapsed().compareTo(max) > 0) {
+                throw new AssertionError("expected at most " + max.toMillis() + " ms in the database but was " + elapsed().toMillis() + " ms\\n" + this);
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(statementCount()).append(" statements, ")
+                .append(rowCount()).append(" rows, ")
+                .append(elapsed().toMillis()).append(" ms");
+            for (int i = 0; i < executions.size(); i++) {
+                Execution execution = executions.get(i);
+                builder.append("\\n  ").append(i + 1).append(". [")
+                    .append(execution.rows.get()).append(" rows, ")
+                    .append(Duration.ofNanos(execution.nanos.get()).toMillis()).append(" ms] ")
+                    .append(execution.sql);
+            }
+            return builder.toString();
+        }
+    }
+}
+`.trim();
+  },
+
+  /**
+   * クエリ数の回帰テスト用の組み込みデータベース (H2) と、サービスを組み立てる Injector
+   */
+  generateEmbeddedDatabase(rlsOptions, features) {
+    const rlsEnabled = !!(rlsOptions && rlsOptions.enabled);
+    const nativeRls = App.Utils.TableFeatures.isNativeRls(rlsOptions);
+    const replicaEnabled = App.Utils.TableFeatures.isEnabled(features, 'readReplica');
+    const heavyEnabled = App.Utils.TableFeatures.isEnabled(features, 'admissionControl');
+    const bindings = [
+      '                bind(Config.class).toInstance(ConfigFactory.load());',
+      '                bind(ApplicationLifecycle.class).toInstance(new DelegateApplicationLifecycle(new DefaultApplicationLifecycle()));',
+      '                bind(DatabaseExecutionContext.class).toInstance(direct(DatabaseExecutionContext.class));'
+    ];
+    if (heavyEnabled) {
+      bindings.push('                bind(HeavyExecutionContext.class).toInstance(direct(HeavyExecutionContext.class));');
+    }
+    if (replicaEnabled) {
+      bindings.push('                bind(DatabaseRouter.class).toInstance(new DatabaseRouter(database, database));');
+    }
+    if (rlsEnabled) {
+      bindings.push('                bind(SessionInfo.class).toInstance(new SessionInfo(true, null));');
+    }
+    const setConfigAlias = nativeRls ? `
+            // H2 には set_config が無いため、テナント設定を受け流す関数を用意する
+            database.sqlUpdate("CREATE ALIAS IF NOT EXISTS set_config AS 'String setConfig(String name, String value, boolean local) { return value; }'").execute();` : '';
+
+    return `
+package libraries;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.ebean.Database;
+import io.ebean.DatabaseFactory;
+import io.ebean.config.DatabaseConfig;
+import io.ebean.datasource.DataSourceConfig;
+import io.ebean.datasource.DataSourceFactory;
+${rlsEnabled ? 'import models.SessionInfo;\n' : ''}import org.mockito.Mockito;
+import play.api.inject.DefaultApplicationLifecycle;
+import play.inject.ApplicationLifecycle;
+import play.inject.DelegateApplicationLifecycle;
+import repository.DatabaseExecutionContext;
+${replicaEnabled ? 'import repository.DatabaseRouter;\n' : ''}${heavyEnabled ? 'import services.HeavyExecutionContext;\n' : ''}
+import java.util.concurrent.Executor;
+
+/**
+ * クエリ数の回帰テスト用の組み込みデータベース (H2 の PostgreSQL 互換モード)
+ * models パッケージのエンティティから Ebean がテーブルを作成し、既定の Database として登録します。
+ * DataSource を QueryCounter で wrap しているため、サービス・リポジトリが実行した SQL をそのまま数えられます。
+ * テストの依存関係に com.h2database:h2 と org.mockito:mockito-core が必要です。
+ */
+public final class EmbeddedDatabase {
+
+    private static Database database;
+
+    private EmbeddedDatabase() {
+    }
+
+    /**
+     * 組み込みデータベースを返します (最初の呼び出し時に作成し、JVM 内で共有します)。
+     * @return 既定の Database
+     */
+    public static synchronized Database get() {
+        if (database == null) {
+            DataSourceConfig dataSource = new DataSourceConfig();
+            dataSource.setUrl("jdbc:h2:mem:query-budget;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            dataSource.setPassword("");
+
+            DatabaseConfig config = new DatabaseConfig();
+            config.setName("default");
+            config.setDataSource(QueryCounter.wrap(DataSourceFactory.create("query-budget", dataSource)));
+            config.addPackage("models");
+            config.setDdlGenerate(true);
+            config.setDdlRun(true);
+            config.setDefaultServer(true);
+            config.setRegister(true);
+            database = DatabaseFactory.create(config);${setConfigAlias}
+        }
+        return database;
+    }
+
+    /**
+     * サービス・リポジトリを組み立てる Injector を返します。
+     * 実行コンテキストは呼び出し元のスレッドでそのまま実行するため、非同期の呼び出しも QueryCounter.record の中で完了します。
+     * @return Injector
+     */
+    public static Injector injector() {
+        Database database = get();
+        return Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+${bindings.join('\n')}
+            }
+        });
+    }
+
+    /**
+     * 渡された処理を呼び出し元のスレッドで実行する実行コンテキストを返します。
+     * @param type 実行コンテキストの型
+     * @return 実行コンテキスト
+     */
+    public static <T extends Executor> T direct(Class<T> type) {
+        T executor = Mockito.mock(type);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(Mockito.any(Runnable.class));
+        return executor;
+    }
+
+    /**
+     * 最大桁数に収まる合成の文字列 (連番の下位桁) を返します。
+     * @param i 連番
+     * @param maxLength 最大桁数
+     * @return 文字列
+     */
+    public static String text(int i, int maxLength) {
+        String value = String.valueOf(i);
+        return value.length() > maxLength ? value.substring(value.length() - maxLength) : value;
+    }
+}
+`.trim();
+  },
+
+  /**
+   * テーブルごとのクエリ数の回帰テスト (一覧・検索・ID検索の文の数・取得行数・DB 時間の上限)
+   */
+  generateQueryBudgetTest(table, modelName, serviceName, rlsOptions) {
+    const config = App.Utils.TableFeatures.getCommonColumns();
+    const baseModelCols = new Set([config.id, config.is_deleted.name, config.created_at, config.created_by, config.updated_at, config.updated_by]);
+    const modelVar = toCamelCase(modelName);
+    const nativeRls = App.Utils.TableFeatures.isNativeRls(rlsOptions);
+
+    // 合成データの値 (モデルの型と桁数に収まるもの。対応していない型は未設定のまま)
+    const seedValue = (col) => {
+      const javaType = mapPostgresToJavaType(col.type, col.length);
+      const n = ['numeric', 'decimal'].includes(col.type.toLowerCase()) ? '(i % 10)' : 'i';
+      const length = parseInt(col.length, 10);
+      switch (javaType) {
+        case 'String': return isNaN(length) ? 'String.valueOf(i)' : `EmbeddedDatabase.text(i, ${length})`;
+        case 'Long': return `(long) ${n}`;
+        case 'Integer': return n;
+        case 'Boolean': return 'i % 2 == 0';
+        case 'java.time.Instant': return 'java.time.Instant.now()';
+        case 'java.time.LocalTime': return 'java.time.LocalTime.NOON';
+        case 'java.math.BigDecimal': return `java.math.BigDecimal.valueOf(${n})`;
+        case 'byte[]': return 'new byte[] { (byte) i }';
+        default: return null;
+      }
+    };
+    const setters = table.columns
+      .filter(col => !baseModelCols.has(col.colName))
+      .map(col => ({ col, value: seedValue(col) }))
+      .filter(s => s.value !== null)
+      .map(s => `            ${modelVar}.set${toPascalCase(s.col.colName)}(${s.value});\n`)
+      .join('');
+
+    return `
+package services;
+
+import com.google.inject.Injector;
+import libraries.EmbeddedDatabase;
+import libraries.QueryCounter;
+import models.${modelName};
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ${table.tableNameJP} のサービスのクエリ数の回帰テスト (組み込み H2)
+ * 件数を増やしても実行される文の数が変わらないこと (遅延ロードの N+1 が無いこと) と、
+ * 文の数・取得行数 (ページングの抜けによる全件取得) ・DB 時間の上限を確認します。
+ * DB 時間の上限はシステムプロパティ queryBudget.maxDbTimeMillis で変更できます。
+ */
+class ${serviceName}QueryBudgetTest {
+
+    /** リポジトリの 1 呼び出しで実行される文の数${nativeRls ? ' (テナント設定の SELECT set_config を含む)' : ''} */
+    private static final int STATEMENTS_PER_CALL = ${nativeRls ? 2 : 1};
+    private static final int PAGE_SIZE = 50;
+    private static final int SEED_ROWS = PAGE_SIZE + 10;
+    private static final Duration MAX_DB_TIME = Duration.ofMillis(Long.getLong("queryBudget.maxDbTimeMillis", 1000));
+
+    private static ${serviceName} service;
+    private static Long seededId;
+
+    @BeforeAll
+    static void setUp() {
+        Injector injector = EmbeddedDatabase.injector();
+        List<${modelName}> rows = new ArrayList<>();
+        for (int i = 1; i <= SEED_ROWS; i++) {
+            ${modelName} ${modelVar} = new ${modelName}();
+${setters}            rows.add(${modelVar});
+        }
+        EmbeddedDatabase.get().saveAll(rows);
+        seededId = rows.get(0).get${toPascalCase(config.id)}();
+        service = injector.getInstance(${serviceName}.class);
+    }
+
+    @Test
+    void findExecutesCountAndOnePage() throws Exception {
+        QueryCounter.record(() -> service.find(0, PAGE_SIZE).toCompletableFuture().join())
+            .assertStatementsAtMost(2 * STATEMENTS_PER_CALL)
+            .assertRowsAtMost(PAGE_SIZE + 2 * STATEMENTS_PER_CALL)
+            .assertElapsedAtMost(MAX_DB_TIME);
+    }
+
+    @Test
+    void findWithFilterExecutesCountAndOnePage() throws Exception {
+        QueryCounter.record(() -> service.find(new ${modelName}(), 0, PAGE_SIZE).toCompletableFuture().join())
+            .assertStatementsAtMost(2 * STATEMENTS_PER_CALL)
+            .assertRowsAtMost(PAGE_SIZE + 2 * STATEMENTS_PER_CALL)
+            .assertElapsedAtMost(MAX_DB_TIME);
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithRows() throws Exception {
+        QueryCounter.Recording single = QueryCounter.record(() -> service.find(0, 1).toCompletableFuture().join());
+        QueryCounter.Recording page = QueryCounter.record(() -> service.find(0, PAGE_SIZE).toCompletableFuture().join());
+
+        assertEquals(single.statementCount(), page.statementCount(), page.toString());
+    }
+
+    @Test
+    void findByIdExecutesSingleLookup() throws Exception {
+        QueryCounter.record(() -> service.findById(seededId).toCompletableFuture().join())
+            .assertStatementsAtMost(STATEMENTS_PER_CALL)
+            .assertRowsAtMost(STATEMENTS_PER_CALL)
+            .assertElapsedAtMost(MAX_DB_TIME);
+    }
+}
+`.trim();
+  },
+
+  /**
+   * ID 範囲ごとの並列エクスポート (共有スナップショット・gzip・連結 / ZIP)
+   */
+  generateParallelExport() {
+    return `
+package libraries;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.ebean.DB;
+import io.ebean.Database;
+import io.ebean.Transaction;
+import io.ebean.annotation.TxIsolation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 大きなテーブルの並列エクスポート
+ * 検索条件に合う行の ID 範囲を分割し、エクスポートしたスナップショット (pg_export_snapshot) を
+ * 複数のコネクションで共有して範囲ごとに並列に読み出すため、全体として一貫した内容のまま CPU コア数に応じて高速化されます。
+ * 範囲ごとの出力 (必要に応じて gzip 圧縮) は順に連結して1ファイルにするか、ZIP アーカイブにまとめます。
+ * application.conf の parallel-export で設定します。
+ * <ul>
+ *   <li>threads: 同時に読み出すコネクション数 (0 の場合は CPU コア数。コネクションプールは threads + 1 以上にしてください)</li>
+ *   <li>parts: 既定の分割数 (0 の場合は threads の2倍)</li>
+ *   <li>fetch-size: 範囲ごとのカーソルの取得件数</li>
+ *   <li>sample-percent: 分割境界を決めるための TABLESAMPLE の割合 (%)。標本が少ない場合は最小・最大 ID の等分割</li>
+ *   <li>database: 読み出す Ebean データベース名</li>
+ * </ul>
+ */
+@Singleton
+public class ParallelExport {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelExport.class);
+
+    private static final Config DEFAULTS = ConfigFactory.parseString(
+        "threads = 0\\n"
+        + "parts = 0\\n"
+        + "fetch-size = 1000\\n"
+        + "sample-percent = 1.0\\n"
+        + "database = default\\n");
+
+    private static final Pattern SNAPSHOT_ID = Pattern.compile("[0-9A-Fa-f-]+");
+
+    private final ExecutorService workers;
+    private final ExecutorService coordinators;
+    private final int defaultParts;
+    private final int fetchSize;
+    private final double samplePercent;
+    private final String databaseName;
+
+    @Inject
+    public ParallelExport(Config config, ApplicationLifecycle lifecycle) {
+        Config settings = config.hasPath("parallel-export")
+            ? config.getConfig("parallel-export").withFallback(DEFAULTS)
+            : DEFAULTS;
+        int threads = settings.getInt("threads") > 0 ? settings.getInt("threads") : Runtime.getRuntime().availableProcessors();
+        this.defaultParts = settings.getInt("parts") > 0 ? settings.getInt("parts") : threads * 2;
+        this.fetchSize = settings.getInt("fetch-size");
+        this.samplePercent = settings.getDouble("sample-percent");
+        this.databaseName = settings.getString("database");
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "parallel-export-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // スナップショットを保持して完了を待つスレッドは、読み出しのスレッドとは分ける
+        this.coordinators = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "parallel-export-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lifecycle.addStopHook(() -> {
+            coordinators.shutdownNow();
+            workers.shutdownNow();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * スナップショット上で、分割境界の ID を昇順に返す処理
+     */
+    @FunctionalInterface
+    public interface Boundaries {
+        /**
+         * @param transaction スナップショットを保持するトランザクション
+         * @param parts 分割数
+         * @param samplePercent 境界を決めるための標本の割合 (%)
+         * @return 先頭が最小 ID、末尾が最大 ID + 1 の境界 (該当行が無い場合は空)
+         */
+        List<Long> find(Transaction transaction, int parts, double samplePercent);
+    }
+
+    /**
+     * スナップショット上で、ID 範囲 [fromId, toId) の行を ID 順に書き出す処理
+     */
+    @FunctionalInterface
+    public interface RangeWriter {
+        void write(Transaction transaction, long fromId, long toId, int fetchSize, PrintWriter writer);
+    }
+
+    /**
+     * 出力形式
+     */
+    public static final class Options {
+        private final int parts;
+        private final boolean gzip;
+        private final boolean archive;
+
+        /**
+         * @param parts 分割数 (0 以下の場合は既定値)
+         * @param gzip 範囲ごとの出力を gzip 圧縮する場合 true (連結しても有効な gzip になります)
+         * @param archive 範囲ごとのファイル (各ファイルにヘッダ付き) を ZIP にまとめる場合 true、順に連結して1ファイルにする場合 false
+         */
+        public Options(int parts, boolean gzip, boolean archive) {
+            this.parts = parts;
+            this.gzip = gzip;
+            this.archive = archive;
+        }
+
+        public int getParts() {
+            return parts;
+        }
+
+        public boolean isGzip() {
+            return gzip;
+        }
+
+        public boolean isArchive() {
+            return archive;
+        }
+    }
+
+    /**
+     * 出力結果
+     */
+    public static final class Output {
+        private final File file;
+        private final String fileName;
+        private final String contentType;
+
+        public Output(File file, String fileName, String contentType) {
+            this.file = file;
+            this.fileName = fileName;
+            this.contentType = contentType;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    /**
+     * 範囲ごとに並列に読み出してエクスポートします。
+     * @param name 出力ファイル名 (拡張子なし)
+     * @param options 出力形式
+     * @param header 先頭に付けるヘッダ (BOM・見出し行)
+     * @param boundaries 分割境界を求める処理
+     * @param rangeWriter 範囲を書き出す処理
+     * @return 出力結果
+     */
+    public CompletionStage<Output> export(String name, Options options, byte[] header, Boundaries boundaries, RangeWriter rangeWriter) {
+        int parts = options.getParts() > 0 ? options.getParts() : defaultParts;
+        return CompletableFuture.supplyAsync(() -> {
+            long startedAt = System.nanoTime();
+            Database database = "default".equals(databaseName) ? DB.getDefault() : DB.byName(databaseName);
+            List<Path> files = new ArrayList<>();
+            // 全ての範囲の読み出しが終わるまで、スナップショットを保持するトランザクションを開いておく
+            try (Transaction snapshot = database.beginTransaction(TxIsolation.REPEATABLE_READ)) {
+                snapshot.setReadOnly(true);
+                String snapshotId = database.sqlQuery("SELECT pg_export_snapshot()")
+                    .usingTransaction(snapshot)
+                    .mapToScalar(String.class)
+                    .findOne();
+                List<Long> bounds = boundaries.find(snapshot, parts, samplePercent);
+
+                List<CompletableFuture<Path>> futures = new ArrayList<>();
+                for (int i = 0; i + 1 < bounds.size(); i++) {
+                    int index = i;
+                    long fromId = bounds.get(i);
+                    long toId = bounds.get(i + 1);
+                    futures.add(CompletableFuture.supplyAsync(
+                        () -> writePart(database, snapshotId, name, index, fromId, toId, options, header, rangeWriter), workers));
+                }
+                try {
+                    for (CompletableFuture<Path> future : futures) {
+                        files.add(future.join());
+                    }
+                } catch (CompletionException e) {
+                    futures.forEach(future -> future.thenAccept(ParallelExport::deleteQuietly));
+                    throw e;
+                }
+            }
+
+            Output output = options.isArchive() ? archive(name, options, header, files) : concatenate(name, options, header, files);
+            logger.info("parallel export {}: parts={}, bytes={}, elapsedMs={}", name, files.size(), output.getFile().length(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            return output;
+        }, coordinators);
+    }
+
+    /**
+     * ID の範囲の分割境界を求めます。
+     * 標本 (ID 昇順) が分割数以上あればその分位点を、足りなければ最小・最大 ID の等分割を使います。
+     * @param minId 最小 ID
+     * @param maxId 最大 ID
+     * @param sample 標本の ID (昇順)
+     * @param parts 分割数
+     * @return 先頭が最小 ID、末尾が最大 ID + 1 の境界
+     */
+    public static List<Long> boundaries(long minId, long maxId, List<Long> sample, int parts) {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(minId);
+        long span = maxId - minId + 1;
+        for (int i = 1; i < parts; i++) {
+            long bound = sample.size() >= parts
+                ? sample.get((int) ((long) i * sample.size() / parts))
+                : minId + span / parts * i + Math.min(i, span % parts);
+            if (bound > bounds.get(bounds.size() - 1) && bound <= maxId) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(maxId + 1);
+        return bounds;
+    }
+
+    private Path writePart(Database database, String snapshotId, String name, int index, long fromId, long toId,
+                           Options options, byte[] header, RangeWriter rangeWriter) {
+        try (Transaction transaction = database.beginTransaction(TxIsolation.REPEATABLE_READ)) {
+            transaction.setReadOnly(true);
+            importSnapshot(transaction, snapshotId);
+            Path part = Files.createTempFile(name + "_part" + index + "_", options.isGzip() ? ".csv.gz" : ".csv");
+            try (OutputStream out = open(part, options.isGzip())) {
+                if (options.isArchive()) {
+                    out.write(header);
+                }
+                PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+                rangeWriter.write(transaction, fromId, toId, fetchSize, writer);
+                writer.flush();
+                if (writer.checkError()) {
+                    throw new IOException("failed to write " + part);
+                }
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(part);
+                throw e;
+            }
+            return part;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * トランザクションの最初の文として、コーディネーターのスナップショットを取り込みます。
+     */
+    private static void importSnapshot(Transaction transaction, String snapshotId) {
+        if (!SNAPSHOT_ID.matcher(snapshotId).matches()) {
+            throw new IllegalStateException("unexpected snapshot id: " + snapshotId);
+        }
+        try (Statement statement = transaction.connection().createStatement()) {
+            statement.execute("SET TRANSACTION SNAPSHOT '" + snapshotId + "'");
+        } catch (SQLException e) {
+            throw new IllegalStateException("failed to import snapshot " + snapshotId, e);
+        }
+    }
+
+    /**
+     * ヘッダと範囲ごとの出力を順に連結します (gzip の場合は複数メンバーの gzip になります)。
+     */
+    private static Output concatenate(String name, Options options, byte[] header, List<Path> files) {
+        String fileName = name + (options.isGzip() ? ".csv.gz" : ".csv");
+        try {
+            Path target = Files.createTempFile(name + "_", options.isGzip() ? ".csv.gz" : ".csv");
+            try (OutputStream out = Files.newOutputStream(target)) {
+                try (OutputStream headerOut = options.isGzip() ? new GZIPOutputStream(new NonClosingOutputStream(out)) : new NonClosingOutputStream(out)) {
+                    headerOut.write(header);
+                }
+                for (Path part : files) {
+                    Files.copy(part, out);
+                }
+            }
+            return new Output(target.toFile(), fileName, options.isGzip() ? "application/gzip" : "text/csv; charset=UTF-8");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            files.forEach(ParallelExport::deleteQuietly);
+        }
+    }
+
+    /**
+     * 範囲ごとの出力を ZIP にまとめます。
+     * 圧縮は範囲ごとに並列で行う (gzip) ため、ZIP 自体は無圧縮で格納します。
+     */
+    private static Output archive(String name, Options options, byte[] header, List<Path> files) {
+        try {
+            Path target = Files.createTempFile(name + "_", ".zip");
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(target))) {
+                zip.setLevel(Deflater.NO_COMPRESSION);
+                if (files.isEmpty()) {
+                    zip.putNextEntry(new ZipEntry(name + ".csv"));
+                    zip.write(header);
+                    zip.closeEntry();
+                }
+                for (int i = 0; i < files.size(); i++) {
+                    zip.putNextEntry(new ZipEntry(String.format("%s-%04d%s", name, i + 1, options.isGzip() ? ".csv.gz" : ".csv")));
+                    Files.copy(files.get(i), zip);
+                    zip.closeEntry();
+                }
+            }
+            return new Output(target.toFile(), name + ".zip", "application/zip");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            files.forEach(ParallelExport::deleteQuietly);
+        }
+    }
+
+    private static OutputStream open(Path path, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        return gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("failed to delete {}", path, e);
+        }
+    }
+
+    /**
+     * 閉じても下位のストリームを閉じない出力ストリーム (gzip メンバーの終端だけを書き出すため)
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
+`.trim();
+  },
+
+  /**
+   * テーブルごとのアーカイブ設定 (application.conf の archive.<table>) を読むクラスを生成
+   */
+  generateArchivePolicy() {
+    return `package services;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * テーブルごとのアーカイブ設定
+ * application.conf の archive.<table> で有効化・保持期間・バッチサイズ・休止時間・実行間隔を設定します。
+ */
+public class ArchivePolicy {
+    private static final Config DEFAULTS = ConfigFactory.parseString(
+        "enabled = false\\n"
+        + "retention = 90d\\n"
+        + "batch-size = 500\\n"
+        + "pause = 200ms\\n"
+        + "interval = 1h\\n");
+
+    private final boolean enabled;
+    private final Duration retention;
+    private final int batchSize;
+    private final Duration pause;
+    private final Duration interval;
+
+    private ArchivePolicy(Config settings) {
+        this.enabled = settings.getBoolean("enabled");
+        this.retention = settings.getDuration("retention");
+        this.batchSize = settings.getInt("batch-size");
+        this.pause = settings.getDuration("pause");
+        this.interval = settings.getDuration("interval");
+    }
+
+    /**
+     * 指定テーブルの設定を読み込みます。未設定の項目は既定値になります。
+     * @param config アプリケーション設定
+     * @param tableName テーブル名
+     * @return アーカイブ設定
+     */
+    public static ArchivePolicy of(Config config, String tableName) {
+        String path = "archive." + tableName;
+        return new ArchivePolicy(config.hasPath(path) ? config.getConfig(path).withFallback(DEFAULTS) : DEFAULTS);
+    }
+
+    /**
+     * 指定日時より後に更新された論理削除が、既にアーカイブへ移送されている可能性があるかを返します。
+     * @param from 差分同期の開始位置
+     * @return 保持期間より前の場合 true
+     */
+    public boolean mayHaveArchivedAfter(Instant from) {
+        return enabled && from.isBefore(Instant.now().minus(retention));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Duration getPause() {
+        return pause;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+}
+`;
+  },
+
+  /**
+   * 論理削除データのアーカイブを定期実行するジョブクラスを生成
+   */
+  generateArchiveJob(table, modelName, serviceName) {
+    const jobName = `${modelName}ArchiveJob`;
+    const serviceVar = toCamelCase(serviceName);
+    const configPath = `archive.${table.tableName}`;
+
+    return `package jobs;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import play.inject.ApplicationLifecycle;
+import services.ArchivePolicy;
+import services.ArchiveReport;
+import services.${serviceName};
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * ${table.tableNameJP} の論理削除データを定期的に ${table.tableName}_archive へ移送するジョブ
+ * Module で bind(${jobName}.class).asEagerSingleton() としてバインドしてください。
+ * application.conf の ${configPath} で有効化・保持期間・バッチサイズ・休止時間・実行間隔を設定します。
+ */
+@Singleton
+public class ${jobName} {
+    private static final Logger logger = LoggerFactory.getLogger(${jobName}.class);
+
+    private final ${serviceName} ${serviceVar};
+    private final ArchivePolicy policy;
+
+    @Inject
+    public ${jobName}(${serviceName} ${serviceVar}, Config config, ApplicationLifecycle lifecycle) {
+        this.${serviceVar} = ${serviceVar};
+        this.policy = ArchivePolicy.of(config, "${table.tableName}");
+
+        if (!policy.isEnabled()) {
+            return;
+        }
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "${table.tableName}-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = policy.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::run, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        lifecycle.addStopHook(() -> {
+            scheduler.shutdownNow();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * アーカイブを1回実行します。前回の実行が終わるまで次の実行は開始されません。
+     */
+    void run() {
+        try {
+            ArchiveReport report = ${serviceVar}.archiveDeleted(policy.getRetention(), policy.getBatchSize(), policy.getPause()).toCompletableFuture().join();
+            logger.info(report.toString());
+        } catch (Exception e) {
+            logger.error("archive ${table.tableName} failed", e);
+        }
+    }
+}
+`;
   }
 };
 
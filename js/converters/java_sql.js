@@ -52,7 +52,7 @@ function generateJavaSql(sqlState, parsedTables, selectClause, isSelectEdited) {
   } else {
     fullSqlForParams = buildSqlForDto(sqlState, selectClause);
   }
-  const parameters = analyzeParameters(fullSqlForParams);
+  const parameters = analyzeParameters(fullSqlForParams, sqlState, parsedTables);
 
   // 5. Repository生成
   const repoName = `${baseName}SqlRepository`;
@@ -165,9 +165,10 @@ function determineBaseName(sqlState, returnType) {
 
 /**
  * SQLからパラメータ変数を解析する
- * returns: { name: string, type: string, isDerived: boolean, derivedFrom: string | null }[]
+ * 比較対象のカラム定義がわかる場合は、その型を Java の型として採用する
+ * returns: { name: string, type: string, isDerived: boolean, derivedFrom: string | null, isList: boolean, elementType: string | null, pgArrayType: string | null, isDate: boolean }[]
  */
-function analyzeParameters(sql) {
+function analyzeParameters(sql, sqlState, parsedTables) {
   const matches = sql.match(/:([a-zA-Z0-9_]+)/g);
   if (!matches) return [];
 
@@ -176,11 +177,15 @@ function analyzeParameters(sql) {
   // 1. IN句で使用されている変数を検出する
   // 簡易的なRegex: "IN (:foo)" な形式
   // 注意: 空白文字の扱いや、カッコ内の空白などを考慮
-  const listVariables = new Set();
-  const inClauseRegex = /IN\s*\(\s*:([a-zA-Z0-9_]+)\s*\)/gi;
+  // 左辺が "t0.col" 形式であれば、カラム定義から要素の型を決定する
+  const listVariables = new Map();
+  const inClauseRegex = /(?:([a-zA-Z0-9_]+)\.([a-zA-Z0-9_]+)\s+)?\b(?:NOT\s+)?IN\s*\(\s*:([a-zA-Z0-9_]+)\s*\)/gi;
   let match;
   while ((match = inClauseRegex.exec(sql)) !== null) {
-    listVariables.add(match[1]);
+    const colDef = match[1] ? resolveColumnDef(match[1], match[2], sqlState, parsedTables) : null;
+    if (!listVariables.has(match[3]) || colDef) {
+      listVariables.set(match[3], colDef);
+    }
   }
 
   // Detect Integer variables (LIMIT/OFFSET)
@@ -190,26 +195,52 @@ function analyzeParameters(sql) {
     intVariables.add(match[1]);
   }
 
+  // 2. カラムと比較されている変数を検出する
+  // "t0.col = :foo", ":foo < t0.col", "t0.col BETWEEN :from AND :to" な形式
+  const comparedColumns = findComparedColumns(sql, sqlState, parsedTables);
+
   const parameters = [];
 
   // まず基本的な変数をリストアップ
   rawNames.forEach(name => {
     const isList = listVariables.has(name);
+    let type = 'String';
+    let elementType = null;
+    let pgArrayType = null;
+    let isDate = false;
+    if (isList) {
+      const colDef = listVariables.get(name);
+      isDate = !!colDef && isDateColumn(colDef);
+      elementType = colDef ? toJavaParameterType(colDef) : 'String';
+      pgArrayType = colDef ? toPgArrayElementType(colDef.type) : 'text';
+      type = `List<${elementType}>`;
+    } else if (intVariables.has(name)) {
+      type = 'Integer';
+    } else if (comparedColumns.has(name)) {
+      const compared = comparedColumns.get(name);
+      // LIKE のパターンは常に文字列
+      type = compared.isPattern ? 'String' : toJavaParameterType(compared.colDef);
+      isDate = !compared.isPattern && isDateColumn(compared.colDef);
+    }
     parameters.push({
       name: name,
-      type: isList ? 'List<String>' : 'String',
+      type: type,
       isDerived: false,
-      derivedFrom: null
+      derivedFrom: null,
+      isList: isList,
+      elementType: elementType,
+      pgArrayType: pgArrayType,
+      isDate: isDate
     });
   });
 
   // Derived (Size) 変数の判定と修正
-  // もし "fooSize" というパラメータがあり、かつ "foo" がList<String>として存在する場合、
+  // もし "fooSize" というパラメータがあり、かつ "foo" がListとして存在する場合、
   // "fooSize" は derivedFrom: "foo" とする
   parameters.forEach(param => {
     if (param.name.endsWith('Size')) {
       const contentName = param.name.substring(0, param.name.length - 4); // remove "Size"
-      const parentParam = parameters.find(p => p.name === contentName && p.type === 'List<String>');
+      const parentParam = parameters.find(p => p.name === contentName && p.isList);
       if (parentParam) {
         param.isDerived = true;
         param.derivedFrom = contentName;
@@ -221,6 +252,120 @@ function analyzeParameters(sql) {
   return parameters;
 }
 
+/**
+ * カラムと比較されているパラメータを検出し、パラメータ名 -> { colDef, isPattern } の Map を返す
+ */
+function findComparedColumns(sql, sqlState, parsedTables) {
+  const colRef = '([a-zA-Z0-9_]+)\\.([a-zA-Z0-9_]+)';
+  const op = '(<=|>=|<>|!=|=|<|>|(?:NOT\\s+)?I?LIKE|IS\\s+(?:NOT\\s+)?DISTINCT\\s+FROM)';
+  const patterns = [
+    { regex: new RegExp(`${colRef}\\s*${op}\\s*:([a-zA-Z0-9_]+)`, 'gi'), alias: 1, col: 2, op: 3, params: [4] },
+    { regex: new RegExp(`:([a-zA-Z0-9_]+)\\s*${op}\\s*${colRef}`, 'gi'), alias: 3, col: 4, op: 2, params: [1] },
+    { regex: new RegExp(`${colRef}\\s+(?:NOT\\s+)?BETWEEN\\s+:([a-zA-Z0-9_]+)\\s+AND\\s+:([a-zA-Z0-9_]+)`, 'gi'), alias: 1, col: 2, op: null, params: [3, 4] }
+  ];
+
+  const compared = new Map();
+  patterns.forEach(pattern => {
+    let match;
+    while ((match = pattern.regex.exec(sql)) !== null) {
+      const colDef = resolveColumnDef(match[pattern.alias], match[pattern.col], sqlState, parsedTables);
+      if (!colDef) continue;
+      const isPattern = pattern.op !== null && /LIKE/i.test(match[pattern.op]);
+      pattern.params.forEach(idx => {
+        if (!compared.has(match[idx])) {
+          compared.set(match[idx], { colDef, isPattern });
+        }
+      });
+    }
+  });
+  return compared;
+}
+
+/**
+ * カラム定義からバインドパラメータの Java の型を決定する
+ * クエリ文字列から変換できない型は String とする
+ */
+function toJavaParameterType(colDef) {
+  const javaType = mapPostgresToJavaType(colDef.type, colDef.length);
+  if (javaType === 'String' || javaParseMethodRef(javaType)) return javaType;
+  return 'String';
+}
+
+/**
+ * date 型のカラムかどうか (Java では Instant にマップされるが、クエリ文字列は日付のみで受け取る)
+ */
+function isDateColumn(colDef) {
+  return (colDef.type || '').toLowerCase() === 'date';
+}
+
+/**
+ * クエリ文字列をパラメータの型へ変換する式 (変換不要なら null)
+ * date 型は yyyy-MM-dd を UTC の 0 時として Instant にする
+ */
+function javaQueryParamParser(javaType, isDate) {
+  if (isDate && javaType === 'java.time.Instant') {
+    return 'value -> java.time.LocalDate.parse(value).atStartOfDay(java.time.ZoneOffset.UTC).toInstant()';
+  }
+  return javaParseMethodRef(javaType);
+}
+
+/**
+ * エイリアスとカラム名からカラム定義を取得する
+ */
+function resolveColumnDef(tableAlias, colName, sqlState, parsedTables) {
+  if (!sqlState || !parsedTables) return null;
+  const tableState = sqlState.selectedTables.find(t => t.alias === tableAlias);
+  if (!tableState) return null;
+  const tableDef = parsedTables.find(t => t.tableName === tableState.tableName);
+  if (!tableDef) return null;
+  return tableDef.columns.find(c => c.colName === colName) || null;
+}
+
+/**
+ * カラムの型から ANY(...) で使用する配列要素の型名を決定する
+ * char は長さ指定なしだと char(1) になるため bpchar を使用する
+ */
+function toPgArrayElementType(pgType) {
+  const type = (pgType || '').toLowerCase();
+  if (type === 'bigserial') return 'bigint';
+  if (type === 'serial') return 'integer';
+  if (type === 'char') return 'bpchar';
+  return type || 'text';
+}
+
+/**
+ * IN (:foo) を = ANY(CAST(:foo AS type[])) に書き換える
+ * リストの長さに関わらずSQL文字列が一定になるため、プリペアドステートメントと実行計画を再利用できる
+ */
+function rewriteInClausesToAny(sql, parameters) {
+  let rewritten = sql;
+  parameters.filter(p => p.isList).forEach(p => {
+    const arrayExpr = `CAST(:${p.name} AS ${p.pgArrayType}[])`;
+    rewritten = rewritten
+      .replace(new RegExp(`\\bNOT\\s+IN\\s*\\(\\s*:${p.name}\\s*\\)`, 'gi'), `<> ALL(${arrayExpr})`)
+      .replace(new RegExp(`\\bIN\\s*\\(\\s*:${p.name}\\s*\\)`, 'gi'), `= ANY(${arrayExpr})`);
+  });
+  // fooSize は配列の要素数で置き換える
+  parameters.filter(p => p.isDerived && p.derivedFrom).forEach(p => {
+    const parent = parameters.find(x => x.name === p.derivedFrom);
+    rewritten = rewritten.replace(new RegExp(`:${p.name}\\b`, 'g'), `cardinality(CAST(:${parent.name} AS ${parent.pgArrayType}[]))`);
+  });
+  return rewritten;
+}
+
+/**
+ * クエリ文字列の値を指定の型へ変換するメソッド参照を返す
+ */
+function javaParseMethodRef(javaType) {
+  if (javaType === 'Long') return 'Long::valueOf';
+  if (javaType === 'Integer') return 'Integer::valueOf';
+  if (javaType === 'Boolean') return 'Boolean::valueOf';
+  if (javaType === 'java.math.BigDecimal') return 'java.math.BigDecimal::new';
+  if (javaType === 'java.time.Instant') return 'java.time.Instant::parse';
+  if (javaType === 'java.time.LocalTime') return 'java.time.LocalTime::parse';
+  return null;
+}
+
 
 /**
  * DTOクラスの生成
@@ -266,162 +411,345 @@ function generateSqlRepository(repoName, modelDtoType, isModel, isSingleColumn,
   }
 
   // SQLの構築
-  let sql = "";
-  if (isModel) {
-    sql = buildSqlForModel(sqlState);
-  } else {
-    sql = buildSqlForDto(sqlState, selectClause);
-  }
+  const selectBody = isModel ? `${sqlState.selectedTables[0].alias}.*` : (selectClause || '*');
+  const searchQuery = buildRepositoryQuery(sqlState, selectBody, true, parameters);
 
   // メソッド引数: isDerived=trueのものは除外
   const signatureParams = parameters.filter(p => !p.isDerived);
   const methodArgs = signatureParams.map(p => `${p.type} ${p.name}`).join(', ');
 
+  const countQuery = sqlState.includeCountMethod ? buildRepositoryQuery(sqlState, 'count(*)', false, parameters) : null;
+  const isDynamic = searchQuery.optionalFilters.length > 0 || searchQuery.listFilters.length > 0;
+  // リードレプリカ利用時は、呼び出し元の直前の書き込みをレプリカが反映済みであればレプリカから読む
+  const useReadReplica = !!sqlState.useReadReplica;
+  // ネイティブRLS利用時は、テナント設定済みのトランザクション内で実行する (設定はプライマリに行うためレプリカは使わない)
+  const useTenantSession = !!sqlState.useTenantSession;
+  const db = useReadReplica && !useTenantSession ? `databaseRouter.forRead()` : 'DB';
+  // 読み取り一貫性 (呼び出し元の書き込み位置) を DB 用のスレッドへ引き継ぐ
+  const dbExecutor = db !== 'DB' ? 'ReadConsistency.propagating(executionContext)' : 'executionContext';
+  const asyncStart = useTenantSession ? `        return supplyAsync(() -> TenantSession.inTransaction(sessionInfo, () -> {\n` : `        return supplyAsync(() -> {\n`;
+  const asyncEnd = useTenantSession ? `        }), ${dbExecutor});\n` : `        }, ${dbExecutor});\n`;
+
   let content = `package repository;\n\n`;
   content += `import io.ebean.DB;\n`;
+  if (isDynamic) {
+    content += isModel || isSingleColumn ? `import io.ebean.Query;\n` : `import io.ebean.DtoQuery;\n`;
+  }
   if (!isModel) {
     content += `import io.ebean.SqlRow;\n`;
   }
   if (packageImport) {
     content += `import ${packageImport};\n`;
   }
+  if (useTenantSession) {
+    content += `import models.SessionInfo;\n`;
+  }
+  if (isDynamic) {
+    content += `import java.util.ArrayList;\n`;
+  }
   content += `import java.util.List;\n`;
+  if (searchQuery.requiredParams.length > 0) {
+    content += `import java.util.Objects;\n`;
+  }
   content += `import java.util.concurrent.CompletionStage;\n`;
   content += `import static java.util.concurrent.CompletableFuture.supplyAsync;\n`;
   content += `import javax.inject.Inject;\n\n`;
 
-  content += `public class ${repoName} {\n\n`;
+  const useWarmUp = !!sqlState.useWarmUp;
+  content += `public class ${repoName}${useWarmUp ? ' implements WarmUpTarget' : ''} {\n\n`;
 
-  content += `    private final DatabaseExecutionContext executionContext;\n\n`;
+  const useRouter = db !== 'DB';
+  content += `    private final DatabaseExecutionContext executionContext;\n${useRouter || useTenantSession ? '' : '\n'}`;
+  if (useRouter) {
+    content += `    private final DatabaseRouter databaseRouter;\n`;
+  }
+  if (useTenantSession) {
+    content += `    private final SessionInfo sessionInfo;\n`;
+  }
+  if (useRouter || useTenantSession) {
+    content += `\n`;
+  }
   content += `    @Inject\n`;
-  content += `    public ${repoName}(DatabaseExecutionContext executionContext) {\n`;
+  content += `    public ${repoName}(DatabaseExecutionContext executionContext${useRouter ? ', DatabaseRouter databaseRouter' : ''}${useTenantSession ? ', SessionInfo sessionInfo' : ''}) {\n`;
   content += `        this.executionContext = executionContext;\n`;
+  if (useRouter) {
+    content += `        this.databaseRouter = databaseRouter;\n`;
+  }
+  if (useTenantSession) {
+    content += `        this.sessionInfo = sessionInfo;\n`;
+  }
   content += `    }\n\n`;
 
   content += `    /**\n`;
   content += `     * ${modelDtoType} の検索結果を取得します。\n`;
+  if (searchQuery.optionalFilters.length > 0) {
+    content += `     * 任意の検索条件は、パラメータが null (リストは空) の場合 WHERE 句に含めません。\n`;
+  }
   content += `     * @return CompletionStage<List<${modelDtoType}>>\n`;
   content += `     */\n`;
   content += `    public CompletionStage<List<${modelDtoType}>> search(${methodArgs}) {\n`;
-  content += `        return supplyAsync(() -> {\n`;
+  content += buildRequireNonNull(searchQuery.requiredParams);
+  content += asyncStart;
 
-  content += `            String sql = """\n${sql}\n            """;\n\n`;
+  const finder = (isModel || isSingleColumn) ? 'findNative' : 'findDto';
+  const queryType = (isModel || isSingleColumn) ? `Query<${modelDtoType}>` : `DtoQuery<${modelDtoType}>`;
+  // モデルの検索は変更不可のモデルで返し、変更検知・遅延ロードの準備を省く (DTO・単一カラムは対象外)
+  const searchModifiers = isModel && sqlState.useReadOnly ? ['.setUnmodifiable(true)'] : [];
+  content += buildRepositoryQueryBody(searchQuery, `${db}.${finder}(${modelDtoType}.class, sql)`, queryType, 'findList', searchModifiers);
 
-  if (isModel || isSingleColumn) {
-    content += `            return DB.findNative(${modelDtoType}.class, sql)\n`;
-  } else {
-    content += `            return DB.findDto(${modelDtoType}.class, sql)\n`;
-  }
-
-  // パラメータ設定
-  parameters.forEach(p => {
-    if (p.isDerived && p.derivedFrom) {
-      // Derived parameter (e.g. fooSize -> foo.size())
-      content += `                .setParameter("${p.name}", ${p.derivedFrom}.size())\n`;
-    } else {
-      // Normal parameter
-      content += `                .setParameter("${p.name}", ${p.name} != null ? ${p.name} : "")\n`;
-    }
-  });
-
-  content += `                .findList();\n`;
-
-  content += `        }, executionContext);\n`;
+  content += asyncEnd;
   content += `    }\n`;
 
   // カウントメソッド (Optional)
-  if (sqlState.includeCountMethod) {
+  if (countQuery) {
     // LIMIT/OFFSETを除いたパラメータ
     const countSignatureParams = signatureParams.filter(p => !['limit', 'offset'].includes(p.name.toLowerCase()));
     const countMethodArgs = countSignatureParams.map(p => `${p.type} ${p.name}`).join(', ');
 
-    // Count SQLの構築
-    const countSql = buildCountSql(sqlState);
-
     content += `\n`;
     content += `    /**\n`;
     content += `     * 検索条件に一致する件数を取得します。\n`;
     content += `     * @return CompletionStage<Long>\n`;
     content += `     */\n`;
     content += `    public CompletionStage<Long> count(${countMethodArgs}) {\n`;
-    content += `        return supplyAsync(() -> {\n`;
-    content += `            String sql = """\n${countSql}\n            """;\n\n`;
+    content += buildRequireNonNull(countQuery.requiredParams);
+    content += asyncStart;
 
     // Ebean のバージョンや使用法によるが、Long の取得には findNative(Long.class, sql).findOne() または sqlQuery(sql).mapTo(Long.class).findOne() が使われる。
     // ここでは DB.findNative(Long.class, sql).findOne() を採用する（DB.findNativeがimportされている前提）
-    content += `            return DB.findNative(Long.class, sql)\n`;
+    content += buildRepositoryQueryBody(countQuery, `${db}.findNative(Long.class, sql)`, `Query<Long>`, 'findOne');
 
-    // パラメータ設定
-    parameters.forEach(p => {
-      // LIMIT/OFFSET は count では使用しない
-      if (['limit', 'offset'].includes(p.name.toLowerCase())) return;
-
-      if (p.isDerived && p.derivedFrom) {
-        content += `                .setParameter("${p.name}", ${p.derivedFrom}.size())\n`;
-      } else {
-        content += `                .setParameter("${p.name}", ${p.name} != null ? ${p.name} : "")\n`;
-      }
-    });
+    content += asyncEnd;
+    content += `    }\n`;
+  }
 
-    content += `                .findOne();\n`;
-    content += `        }, executionContext);\n`;
+  // ウォームアップ: 合成パラメータで検索 (と件数取得) を実行する
+  if (useWarmUp) {
+    const warmUpArgs = params => params.map(p => warmUpValue(p.type)).join(', ');
+    content += `\n`;
+    content += `    /**\n`;
+    content += `     * 起動時のウォームアップとして、合成パラメータで検索${countQuery ? '・件数取得' : ''}を実行します。\n`;
+    content += `     * application.conf の warm-up.targets に "repository.${repoName}" を追加してください。\n`;
+    content += `     * @return 完了\n`;
+    content += `     */\n`;
+    content += `    @Override\n`;
+    content += `    public CompletionStage<Void> warmUp() {\n`;
+    if (countQuery) {
+      const countSignatureParams = signatureParams.filter(p => !['limit', 'offset'].includes(p.name.toLowerCase()));
+      content += `        return search(${warmUpArgs(signatureParams)})\n`;
+      content += `            .thenCompose(r -> count(${warmUpArgs(countSignatureParams)}))\n`;
+      content += `            .thenApply(r -> null);\n`;
+    } else {
+      content += `        return search(${warmUpArgs(signatureParams)}).thenApply(r -> null);\n`;
+    }
     content += `    }\n`;
   }
 
   content += `}\n`;
 
+  if (countQuery && (countQuery.optionalFilters.length > 0 || countQuery.listFilters.length > 0) && !content.includes('import io.ebean.Query;')) {
+    content = content.replace(`import io.ebean.DB;\n`, `import io.ebean.DB;\nimport io.ebean.Query;\n`);
+  }
+
   return content;
 }
 
 /**
- * Model用にSQLを構築（SELECT t0.* とする）
+ * Repository で実行するクエリの構成要素を組み立てる
+ * WHERE 条件は必須とし、SQL Builder で任意にした条件 (sqlState.optionalFilters) のみ、パラメータが指定された場合に適用する
+ * 必須条件の IN (:foo) は、リストが空の場合に一致なし (NOT IN のみの条件は除外なし) として扱う
  */
-function buildSqlForModel(sqlState) {
-  let sql = '                SELECT\n';
-  // エイリアス付きのテーブル全カラム指定
-  // e.g. t0.*
-  const first = sqlState.selectedTables[0];
-  sql += `                    ${first.alias}.*`;
-
-  sql += '\n                FROM\n';
-  sql += `                    ${first.tableName} AS ${first.alias}`;
+function buildRepositoryQuery(sqlState, selectBody, includeTail, parameters) {
+  const useArrayParams = !!sqlState.useArrayParams;
+  const rewrite = (text) => useArrayParams ? rewriteInClausesToAny(text, parameters) : text;
+  const paramNames = (text) => [...new Set((text.match(/:([a-zA-Z0-9_]+)/g) || []).map(m => m.substring(1)))];
+  const findParams = (text) => paramNames(text).map(name => parameters.find(p => p.name === name)).filter(p => p);
+
+  const head = rewrite(buildSqlHead(sqlState, selectBody));
+  const tail = includeTail ? rewrite(buildSqlTail(sqlState)) : '';
+
+  const requiredFilters = [];
+  const listFilters = [];
+  const optionalFilters = [];
+  sqlState.filters.forEach((f, idx) => {
+    if (f.trim() === '') return;
+    const text = rewrite(f);
+    const used = findParams(f);
+    if (isOptionalFilter(sqlState, idx) && used.length > 0) {
+      // 任意条件の判定に使うのはシグネチャ上のパラメータ (fooSize などの派生パラメータは親で判定)
+      const guards = used
+        .map(p => p.isDerived ? parameters.find(x => x.name === p.derivedFrom) : p)
+        .filter((p, i, arr) => arr.indexOf(p) === i);
+      optionalFilters.push({ text, guards });
+      return;
+    }
+    // IN () は SQL の構文エラーになるため、空のリストは条件ごと置き換える
+    // (配列パラメータは空配列のまま正しく評価され、fooSize を参照する条件は空の場合を条件内で扱う)
+    const lists = useArrayParams ? [] : used.filter(p => p.isList && !used.some(x => x.derivedFrom === p.name));
+    if (lists.length > 0) {
+      const onlyNotIn = lists.every(p => !new RegExp(`(?<!NOT\\s+)\\bIN\\s*\\(\\s*:${p.name}\\s*\\)`, 'i').test(f));
+      listFilters.push({ text, lists, whenEmpty: onlyNotIn ? 'TRUE' : 'FALSE' });
+      return;
+    }
+    requiredFilters.push(text);
+  });
 
-  // Joins (Modelの場合は通常1テーブルだが、将来拡張のため)
-  sqlState.joins.forEach(join => {
-    const rightTbl = sqlState.selectedTables.find(t => t.alias === join.rightAlias);
-    const rightName = rightTbl ? rightTbl.tableName : '???';
-    sql += `\n                ${join.type} ${rightName} AS ${join.rightAlias} ON ${join.condition.replace(/\n/g, '\n                    ')}`;
+  // バインド対象のパラメータ
+  // 任意条件・空にできるリストの条件でのみ使用されるパラメータは、その条件が適用される場合のみバインドする
+  const alwaysNames = paramNames(head + '\n' + tail + '\n' + requiredFilters.join('\n'));
+  const bindings = [];
+  parameters.forEach(p => {
+    if (alwaysNames.includes(p.name)) {
+      bindings.push({ param: p, guard: null });
+      return;
+    }
+    const owners = [
+      ...listFilters.map(f => ({ text: f.text, guards: f.lists })),
+      ...optionalFilters
+    ].filter(f => paramNames(f.text).includes(p.name));
+    if (owners.length === 0) return;
+    const guards = [...new Set(owners.map(f => f.guards.map(javaPresenceCheck).join(' && ')))];
+    bindings.push({ param: p, guard: guards.length === 1 ? guards[0] : guards.map(g => `(${g})`).join(' || ') });
   });
 
-  const validFilters = sqlState.filters.filter(f => f.trim() !== '');
-  if (validFilters.length > 0) {
-    sql += '\n                WHERE\n';
-    sql += validFilters.map(f => `                    ${f}`).join(' AND\n');
-  }
+  // 省略できないパラメータ (リストは null を空として扱う)
+  const requiredNames = paramNames([head, tail, ...requiredFilters, ...listFilters.map(f => f.text)].join('\n'));
+  const requiredParams = parameters.filter(p => !p.isDerived && !p.isList && requiredNames.includes(p.name));
 
-  if (sqlState.sorts.length > 0) {
-    sql += '\n                ORDER BY\n';
-    sql += '                    ' + sqlState.sorts.map(s => `${s.alias}.${s.column} ${s.direction}`).join(',\n                    ');
-  }
+  return { head, tail, requiredFilters, listFilters, optionalFilters, bindings, requiredParams, useArrayParams };
+}
 
-  if (sqlState.limit && sqlState.limit.trim() !== '') {
-    sql += `\n                LIMIT ${sqlState.limit.trim()}`;
-  }
+/**
+ * SQL Builder で任意 (パラメータ未指定時は適用しない) にした WHERE 条件か
+ */
+function isOptionalFilter(sqlState, index) {
+  return !!(sqlState.optionalFilters && sqlState.optionalFilters[index]);
+}
 
-  if (sqlState.offset && sqlState.offset.trim() !== '') {
-    sql += `\n                OFFSET ${sqlState.offset.trim()}`;
+/**
+ * 指定が必須のパラメータ (null を受け付けない) を返す
+ */
+function findRequiredParameters(sqlState, parameters) {
+  return buildRepositoryQuery(sqlState, '*', true, parameters).requiredParams;
+}
+
+/**
+ * 必須パラメータの null チェックを生成する
+ */
+function buildRequireNonNull(params) {
+  return params.map(p => `        Objects.requireNonNull(${p.name}, "${p.name}");\n`).join('');
+}
+
+/**
+ * パラメータが指定されているかを判定する Java の式を返す
+ */
+function javaPresenceCheck(p) {
+  return p.isList ? `${p.name} != null && !${p.name}.isEmpty()` : `${p.name} != null`;
+}
+
+/**
+ * ウォームアップで使う合成パラメータの Java の式を返す
+ * LIMIT が全件にならないよう数値は 0 とし、リストなどは未指定 (null) とする
+ */
+function warmUpValue(javaType) {
+  if (javaType === 'Long') return '0L';
+  if (javaType === 'Integer') return '0';
+  if (javaType === 'Boolean') return 'false';
+  if (javaType === 'String') return '""';
+  if (javaType === 'java.math.BigDecimal') return 'java.math.BigDecimal.ZERO';
+  if (javaType === 'java.time.Instant') return 'java.time.Instant.EPOCH';
+  if (javaType === 'java.time.LocalTime') return 'java.time.LocalTime.MIDNIGHT';
+  return 'null';
+}
+
+/**
+ * Repository メソッドの本体 (SQL の組み立て、パラメータのバインド、実行) を生成する
+ */
+function buildRepositoryQueryBody(query, createExpr, queryType, terminal, modifiers = []) {
+  let content = '';
+
+  if (query.optionalFilters.length === 0 && query.listFilters.length === 0) {
+    // 任意条件・空にできるリストの条件がない場合は SQL 全体を固定文字列とする
+    const whereClause = buildWhereClause(query.requiredFilters);
+    content += `            String sql = """\n${query.head}${whereClause}${query.tail}\n            """;\n\n`;
+    content += `            return ${createExpr}\n`;
+    modifiers.forEach(m => {
+      content += `                ${m}\n`;
+    });
+    query.bindings.forEach(b => {
+      content += `                ${buildParameterBinding(b.param, query.useArrayParams)}\n`;
+    });
+    content += `                .${terminal}();\n`;
+    return content;
   }
 
-  return sql;
+  content += `            StringBuilder sqlBuilder = new StringBuilder("""\n${query.head}\n            """);\n`;
+  content += `            List<String> conditions = new ArrayList<>();\n`;
+  query.requiredFilters.forEach(f => {
+    content += `            conditions.add(${JSON.stringify(f)});\n`;
+  });
+  query.listFilters.forEach(f => {
+    content += `            conditions.add(${f.lists.map(javaPresenceCheck).join(' && ')} ? ${JSON.stringify(f.text)} : "${f.whenEmpty}");\n`;
+  });
+  query.optionalFilters.forEach(f => {
+    content += `            if (${f.guards.map(javaPresenceCheck).join(' && ')}) {\n`;
+    content += `                conditions.add(${JSON.stringify(f.text)});\n`;
+    content += `            }\n`;
+  });
+  content += `            if (!conditions.isEmpty()) {\n`;
+  content += `                sqlBuilder.append("    WHERE\\n        ")\n`;
+  content += `                    .append(String.join(" AND\\n        ", conditions))\n`;
+  content += `                    .append("\\n");\n`;
+  content += `            }\n`;
+  if (query.tail) {
+    content += `            sqlBuilder.append("""\n${query.tail.replace(/^\n/, '')}\n            """);\n`;
+  }
+  content += `            String sql = sqlBuilder.toString();\n\n`;
+
+  content += `            ${queryType} query = ${createExpr}${modifiers.join('')};\n`;
+  query.bindings.forEach((b, idx) => {
+    const prev = query.bindings[idx - 1];
+    const next = query.bindings[idx + 1];
+    const binding = `query${buildParameterBinding(b.param, query.useArrayParams)};`;
+    if (!b.guard) {
+      content += `            ${binding}\n`;
+      return;
+    }
+    // 同じ条件のバインドはまとめる
+    if (!prev || prev.guard !== b.guard) {
+      content += `            if (${b.guard}) {\n`;
+    }
+    content += `                ${binding}\n`;
+    if (!next || next.guard !== b.guard) {
+      content += `            }\n`;
+    }
+  });
+  content += `            return query.${terminal}();\n`;
+  return content;
 }
 
+/**
+ * パラメータのバインド処理を生成する
+ * null はそのまま null としてバインドする (空文字などの代替値は使用しない)
+ */
+function buildParameterBinding(p, useArrayParams) {
+  if (p.isDerived && p.derivedFrom) {
+    // Derived parameter (e.g. fooSize -> foo.size())
+    return `.setParameter("${p.name}", ${p.derivedFrom} != null ? ${p.derivedFrom}.size() : 0)`;
+  }
+  if (p.isList && useArrayParams) {
+    // 単一の配列パラメータとしてバインド (PostgreSQL の ARRAY 型)
+    return `.setArrayParameter("${p.name}", ${p.name} != null ? ${p.name} : List.of())`;
+  }
+  return `.setParameter("${p.name}", ${p.name})`;
+}
 
 /**
- * DTO用にSQLを構築（ユーザー指定のSELECT句を使用）
+ * SELECT ～ FROM ～ JOIN 部分のSQLを構築
  */
-function buildSqlForDto(sqlState, selectClause) {
+function buildSqlHead(sqlState, selectBody) {
   let sql = '                SELECT\n';
-  sql += '                    ' + (selectClause || '*').replace(/\n/g, '\n                    ');
+  sql += '                    ' + selectBody.replace(/\n/g, '\n                    ');
   sql += '\n                FROM\n';
 
   const first = sqlState.selectedTables[0];
@@ -433,11 +761,23 @@ function buildSqlForDto(sqlState, selectClause) {
     sql += `\n                ${join.type} ${rightName} AS ${join.rightAlias} ON ${join.condition.replace(/\n/g, '\n                    ')}`;
   });
 
-  const validFilters = sqlState.filters.filter(f => f.trim() !== '');
-  if (validFilters.length > 0) {
-    sql += '\n                WHERE\n';
-    sql += validFilters.map(f => `                    ${f}`).join(' AND\n');
-  }
+  return sql;
+}
+
+/**
+ * WHERE 句を構築
+ */
+function buildWhereClause(filters) {
+  const validFilters = filters.filter(f => f.trim() !== '');
+  if (validFilters.length === 0) return '';
+  return '\n                WHERE\n' + validFilters.map(f => `                    ${f}`).join(' AND\n');
+}
+
+/**
+ * ORDER BY / LIMIT / OFFSET 部分のSQLを構築
+ */
+function buildSqlTail(sqlState) {
+  let sql = '';
 
   if (sqlState.sorts.length > 0) {
     sql += '\n                ORDER BY\n';
@@ -456,32 +796,29 @@ function buildSqlForDto(sqlState, selectClause) {
 }
 
 /**
- * Count用のSQLを構築 (SELECT count(*) FROM ...)
+ * Model用にSQLを構築（SELECT t0.* とする）
  */
-function buildCountSql(sqlState) {
-  let sql = '                SELECT\n';
-  sql += '                    count(*)';
-
-  sql += '\n                FROM\n';
+function buildSqlForModel(sqlState) {
+  // エイリアス付きのテーブル全カラム指定
+  // e.g. t0.*
   const first = sqlState.selectedTables[0];
-  sql += `                    ${first.tableName} AS ${first.alias}`;
+  return buildSqlHead(sqlState, `${first.alias}.*`) + buildWhereClause(sqlState.filters) + buildSqlTail(sqlState);
+}
 
-  // Joins
-  sqlState.joins.forEach(join => {
-    const rightTbl = sqlState.selectedTables.find(t => t.alias === join.rightAlias);
-    const rightName = rightTbl ? rightTbl.tableName : '???';
-    sql += `\n                ${join.type} ${rightName} AS ${join.rightAlias} ON ${join.condition.replace(/\n/g, '\n                    ')}`;
-  });
 
-  const validFilters = sqlState.filters.filter(f => f.trim() !== '');
-  if (validFilters.length > 0) {
-    sql += '\n                WHERE\n';
-    sql += validFilters.map(f => `                    ${f}`).join(' AND\n');
-  }
+/**
+ * DTO用にSQLを構築（ユーザー指定のSELECT句を使用）
+ */
+function buildSqlForDto(sqlState, selectClause) {
+  return buildSqlHead(sqlState, selectClause || '*') + buildWhereClause(sqlState.filters) + buildSqlTail(sqlState);
+}
 
+/**
+ * Count用のSQLを構築 (SELECT count(*) FROM ...)
+ */
+function buildCountSql(sqlState) {
   // CountなのでORDER BY, LIMIT, OFFSETは含めない
-
-  return sql;
+  return buildSqlHead(sqlState, 'count(*)') + buildWhereClause(sqlState.filters);
 }
 
 /**
@@ -569,6 +906,11 @@ function generateSqlController(controllerName, serviceName, modelDtoType, baseNa
   const callArgs = signatureParams.map(p => p.name).join(', ');
 
   const includeCount = sqlState && sqlState.includeCountMethod;
+  const requiredParams = findRequiredParameters(sqlState, parameters);
+  // リードレプリカから読む場合は、呼び出し元の書き込み位置のトークンを受け取る
+  const readYourWrites = !!(sqlState && sqlState.useReadReplica && !sqlState.useTenantSession);
+  // 型付きのパラメータは変換できない値を 400 で返す
+  const parsedParams = signatureParams.filter(p => javaQueryParamParser(p.isList ? p.elementType : p.type, p.isDate));
 
   let content = `package controllers.api;\n\n`;
   content += `import services.${serviceName};\n`;
@@ -577,10 +919,22 @@ function generateSqlController(controllerName, serviceName, modelDtoType, baseNa
   content += `import play.mvc.Result;\n`;
   content += `import javax.inject.Inject;\n`;
   content += `import java.util.concurrent.CompletionStage;\n`;
+  if (requiredParams.length > 0 || parsedParams.length > 0) {
+    content += `import java.util.concurrent.CompletableFuture;\n`;
+  }
+  if (parsedParams.length > 0) {
+    content += `import java.time.format.DateTimeParseException;\n`;
+  }
   content += `import controllers.actions.Authenticated;\n`;
+  if (readYourWrites) {
+    content += `import controllers.actions.ReadYourWrites;\n`;
+  }
   content += `import java.util.List;\n\n`;
 
   content += `@Authenticated\n`;
+  if (readYourWrites) {
+    content += `@ReadYourWrites\n`;
+  }
   content += `public class ${controllerName} extends Controller {\n\n`;
   content += `    private final ${serviceName} service;\n`;
 
@@ -596,16 +950,50 @@ function generateSqlController(controllerName, serviceName, modelDtoType, baseNa
   content += `    public CompletionStage<Result> search(Http.Request request) {\n`;
 
   if (signatureParams.length > 0) {
-    signatureParams.forEach(p => {
-      if (p.type === 'List<String>') {
+    // 変換する値は try の外で宣言し、変換の失敗は 400 とする
+    const indent = parsedParams.length > 0 ? '            ' : '        ';
+    const declare = p => parsedParams.includes(p) ? '' : `${p.isList ? 'List<String>' : p.type} `;
+    parsedParams.forEach(p => {
+      content += `        ${p.type} ${p.name};\n`;
+    });
+    if (parsedParams.length > 0) {
+      content += `        try {\n`;
+    }
+    const parseLines = p => {
+      if (p.isList) {
         // 配列パラメータの取得 (Play framework: ?foo=1&foo=2 -> Map<String, String[]> get(key))
         // 注意: request.queryString() returns Map<String, String[]>
         // getOrDefaultなどで安全に取得する
-        content += `        List<String> ${p.name} = request.queryString().containsKey("${p.name}") ? java.util.Arrays.asList(request.queryString().get("${p.name}")) : java.util.Collections.emptyList();\n`;
-      } else {
-        content += `        String ${p.name} = request.queryString("${p.name}").orElse(null);\n`;
+        const parseRef = javaQueryParamParser(p.elementType, p.isDate);
+        if (parseRef) {
+          return `${indent}${declare(p)}${p.name} = request.queryString().containsKey("${p.name}") ? java.util.Arrays.stream(request.queryString().get("${p.name}")).map(${parseRef}).collect(java.util.stream.Collectors.toList()) : java.util.Collections.emptyList();\n`;
+        }
+        return `        ${declare(p)}${p.name} = request.queryString().containsKey("${p.name}") ? java.util.Arrays.asList(request.queryString().get("${p.name}")) : java.util.Collections.emptyList();\n`;
       }
+      const parseRef = javaQueryParamParser(p.type, p.isDate);
+      return `${parseRef ? indent : '        '}${declare(p)}${p.name} = request.queryString("${p.name}")${parseRef ? `.map(${parseRef})` : ''}.orElse(null);\n`;
+    };
+    parsedParams.forEach(p => {
+      content += parseLines(p);
     });
+    if (parsedParams.length > 0) {
+      content += `        } catch (IllegalArgumentException | DateTimeParseException e) {\n`;
+      content += `            return CompletableFuture.completedFuture(badRequest(e.getMessage()));\n`;
+      content += `        }\n`;
+    }
+    signatureParams.filter(p => !parsedParams.includes(p)).forEach(p => {
+      content += parseLines(p);
+    });
+    content += `\n`;
+  }
+
+  // 必須パラメータが無い場合は全件を返さず 400 とする
+  requiredParams.forEach(p => {
+    content += `        if (${p.name} == null) {\n`;
+    content += `            return CompletableFuture.completedFuture(badRequest("${p.name} is required"));\n`;
+    content += `        }\n`;
+  });
+  if (requiredParams.length > 0) {
     content += `\n`;
   }
 
@@ -0,0 +1,327 @@
+// Initialize Namespace
+window.App = window.App || {};
+App.Core = App.Core || {};
+
+/**
+ * 変換フォーマットごとのコード生成エンジン
+ * テーブル単位に分割できるフォーマットはテーブルごとに、それ以外はスキーマ全体を 1 単位として生成し、
+ * 単位ごとの出力をテーブル定義とオプションの内容ハッシュでキャッシュする (変更されたテーブルだけを再生成)。
+ * 全テーブルを列挙するファイルは、そのファイルだけをスキーマ全体から生成する単位として分ける。
+ * 生成は Web Worker (generator_worker.js) で並列に実行し、Worker を使えない環境 (file:// など) では
+ * メインスレッドで単位ごとに処理を譲りながら実行する。
+ */
+App.Core.Generator = {
+  /** Worker のスクリプト (index.html からの相対パス) */
+  workerScript: 'js/core/generator_worker.js',
+
+  /** 使われなくなったキャッシュを破棄するまでの生成回数 */
+  cacheGenerations: 3,
+
+  /** 1 回のメッセージで Worker に渡すテーブル単位の上限 */
+  maxBatchSize: 50,
+
+  /**
+   * フォーマットごとの変換処理
+   * perTable: テーブルごとに生成した結果をまとめてもスキーマ全体の生成と同じになるフォーマット
+   * aggregate: perTable のうち、テーブルをまたいで内容が変わるファイルだけをスキーマ全体から生成する処理
+   * usesMigration: オンライン移行の変更前の定義を参照するフォーマット
+   */
+  formats: {
+    'ddl': { perTable: false, run: (tables, ctx) => App.Converters.Ddl.generateDDL(tables, ctx.rls, ctx.features) },
+    'ddl-play': { perTable: false, run: (tables, ctx) => App.Converters.Ddl.generatePlayEvolution(tables, ctx.rls, ctx.features) },
+    'ddl-migration': {
+      perTable: false,
+      usesMigration: true,
+      run: (tables, ctx) => App.Converters.DdlMigration.generateMigration(ctx.migration.baselineTables, tables, ctx.rls, ctx.features, ctx.migration.startRevision)
+    },
+    'typescript': { perTable: false, run: (tables) => App.Converters.Typescript.generateTypeScript(tables) },
+    'zod-schema': { perTable: false, run: (tables) => App.Converters.Zod.generateZodSchema(tables) },
+    'zod-type': { perTable: false, run: (tables) => App.Converters.Zod.generateZodType(tables) },
+    'java-model': { perTable: true, run: (tables, ctx) => App.Converters.JavaModel.generateJavaModel(tables, ctx.rls, ctx.features) },
+    'java-repo': {
+      perTable: true,
+      aggregate: (tables, ctx) => App.Converters.JavaRepo.generateAggregateFiles(tables, ctx.features),
+      run: (tables, ctx) => App.Converters.JavaRepo.generateJavaRepo(tables, ctx.rls, ctx.features)
+    },
+    'java-repo-reactive': { perTable: true, run: (tables, ctx) => App.Converters.JavaRepoReactive.generateJavaRepoReactive(tables, ctx.rls, ctx.features) },
+    'java-service': { perTable: true, run: (tables, ctx) => App.Converters.JavaService.generateJavaService(tables, ctx.rls, ctx.features) },
+    'java-controller': { perTable: true, run: (tables, ctx) => App.Converters.JavaController.generateJavaController(tables, ctx.rls, ctx.features) },
+    'vscode-snippets': { perTable: false, run: (tables) => App.Converters.VscodeSnippets.generateVscodeSnippets(tables) },
+    'java-datagen': { perTable: false, run: (tables, ctx) => App.Converters.DataGenerator.generateDataGenerator(tables, ctx.rls) }
+  },
+
+  /** 単位のキー → { output, generation } */
+  cache: new Map(),
+
+  /** generate の呼び出し回数 (キャッシュの破棄に使用) */
+  generation: 0,
+
+  /** Worker のプール (未作成は null、使えない環境では空配列) */
+  workers: null,
+
+  /** 空き Worker を待っている単位のまとまり */
+  queue: [],
+
+  /** メッセージ ID の採番 */
+  nextMessageId: 0,
+
+  /**
+   * 選択されたフォーマットの変換結果を生成する
+   * @param {Array} tables Parsed tables
+   * @param {Array} formats List of formats to generate
+   * @param {Object} rlsOptions RLS options
+   * @param {Object} features Optional generation features
+   * @param {Function} onFormat フォーマットの生成が終わるたびに (format, output) で呼ばれる (省略可)
+   * @returns {Promise<Object>} フォーマット → 変換結果
+   */
+  async generate(tables, formats, rlsOptions, features, onFormat) {
+    this.generation++;
+    const rawTables = this.toRaw(tables);
+    const ctx = {
+      rls: this.toRaw(rlsOptions),
+      features: this.toRaw(features),
+      config: App.State ? this.toRaw(App.State.config) : null
+    };
+    const migration = App.State && App.State.migration ? this.toRaw(App.State.migration) : null;
+    const ctxHash = this.hash(JSON.stringify(ctx));
+    const migrationHash = this.hash(JSON.stringify(migration));
+    const tableHashes = rawTables.map(table => this.hash(JSON.stringify(table)));
+    const schemaHash = this.hash(tableHashes.join(','));
+
+    const results = {};
+    await Promise.all(formats.filter(format => this.formats[format]).map(async format => {
+      const spec = this.formats[format];
+      const formatCtx = spec.usesMigration ? { ...ctx, migration } : ctx;
+      const suffix = spec.usesMigration ? `${ctxHash}:${migrationHash}` : ctxHash;
+      const schemaUnit = { key: `${format}:${schemaHash}:${suffix}`, format, tables: rawTables };
+
+      let output;
+      if (spec.perTable && rawTables.length > 1) {
+        const units = rawTables.map((table, i) => ({ key: `${format}:${tableHashes[i]}:${suffix}`, format, tables: [table] }));
+        // 全テーブルを列挙するファイルは、そのファイルだけをスキーマ全体から生成する (テーブル単位のキャッシュはそのまま使う)
+        const aggregateUnit = spec.aggregate ? { key: `${format}:aggregate:${schemaHash}:${suffix}`, format, aggregate: true, tables: rawTables } : null;
+        await this.runUnits(aggregateUnit ? units.concat(aggregateUnit) : units, formatCtx);
+        output = this.mergeTableOutputs(units.map(unit => this.cache.get(unit.key).output));
+        const aggregateFiles = aggregateUnit ? this.cache.get(aggregateUnit.key).output : [];
+        const aggregatePaths = aggregateFiles.map(file => file.path);
+        if (output === null || output.conflicts.some(path => !aggregatePaths.includes(path))) {
+          // aggregate に無い、テーブルをまたいで内容が変わるファイルはスキーマ全体の生成から取る
+          await this.runUnits([schemaUnit], formatCtx);
+          const whole = this.cache.get(schemaUnit.key).output;
+          output = output === null ? whole : this.replaceFiles(output.files, whole, output.conflicts);
+        } else {
+          output = this.replaceFiles(output.files, aggregateFiles, aggregatePaths);
+        }
+      } else {
+        await this.runUnits([schemaUnit], formatCtx);
+        output = this.cache.get(schemaUnit.key).output;
+      }
+
+      results[format] = output;
+      if (onFormat) {
+        onFormat(format, output);
+      }
+    }));
+
+    this.pruneCache();
+    return results;
+  },
+
+  /**
+   * キャッシュに無い単位を生成してキャッシュに入れる
+   */
+  async runUnits(units, ctx) {
+    const missing = [];
+    units.forEach(unit => {
+      const cached = this.cache.get(unit.key);
+      if (cached) {
+        cached.generation = this.generation;
+      } else if (!missing.some(m => m.key === unit.key)) {
+        missing.push(unit);
+      }
+    });
+    if (missing.length === 0) return;
+
+    // Worker 数より十分多いまとまりに分け、処理の重いテーブルがあっても偏らないようにする
+    const parallelism = Math.max(1, this.getWorkers().length);
+    const batchSize = Math.max(1, Math.min(this.maxBatchSize, Math.ceil(missing.length / (parallelism * 4))));
+    const batches = [];
+    for (let i = 0; i < missing.length; i += batchSize) {
+      batches.push(missing.slice(i, i + batchSize));
+    }
+
+    const outputs = await Promise.all(batches.map(batch => this.runBatch(batch, ctx)));
+    outputs.forEach(batchOutputs => batchOutputs.forEach(result => {
+      this.cache.set(result.key, { output: result.output, generation: this.generation });
+    }));
+  },
+
+  /**
+   * 単位のまとまりを空いている Worker (無ければメインスレッド) で生成する
+   */
+  runBatch(units, ctx) {
+    const workers = this.getWorkers();
+    if (workers.length === 0) {
+      return this.runInline(units, ctx);
+    }
+    return new Promise((resolve, reject) => {
+      this.queue.push({ units, ctx, resolve, reject });
+      this.dispatch();
+    });
+  },
+
+  /**
+   * 待っているまとまりを空いている Worker に渡す
+   */
+  dispatch() {
+    const workers = this.workers || [];
+    if (workers.length === 0) {
+      // Worker が使えなくなった場合は残りをメインスレッドで処理する
+      this.queue.splice(0).forEach(job => this.runInline(job.units, job.ctx).then(job.resolve, job.reject));
+      return;
+    }
+    workers.filter(entry => !entry.job).forEach(entry => {
+      const job = this.queue.shift();
+      if (!job) return;
+      entry.job = job;
+      job.id = this.nextMessageId++;
+      entry.worker.postMessage({ id: job.id, ctx: job.ctx, units: job.units });
+    });
+  },
+
+  /**
+   * Worker のプールを返す (初回に作成。作成できない環境では空配列)
+   */
+  getWorkers() {
+    if (this.workers) return this.workers;
+    this.workers = [];
+    if (typeof Worker === 'undefined') return this.workers;
+
+    const count = Math.max(1, Math.min((navigator.hardwareConcurrency || 4) - 1, 8));
+    try {
+      for (let i = 0; i < count; i++) {
+        const entry = { worker: new Worker(this.workerScript), job: null };
+        entry.worker.onmessage = (e) => this.handleMessage(entry, e.data);
+        entry.worker.onerror = (e) => this.handleWorkerError(e);
+        this.workers.push(entry);
+      }
+    } catch (e) {
+      console.warn('Web Worker を使用できないため、メインスレッドで生成します', e);
+      this.disableWorkers();
+    }
+    return this.workers;
+  },
+
+  /**
+   * Worker からの生成結果
+   */
+  handleMessage(entry, data) {
+    const job = entry.job;
+    entry.job = null;
+    if (job && job.id === data.id) {
+      if (data.error) {
+        job.reject(new Error(data.error));
+      } else {
+        job.resolve(data.results);
+      }
+    }
+    this.dispatch();
+  },
+
+  /**
+   * Worker 自体のエラー (スクリプトを読み込めない等) の場合は、以降メインスレッドで生成する
+   */
+  handleWorkerError(e) {
+    console.warn('Web Worker でエラーが発生したため、メインスレッドで生成します', e);
+    const running = (this.workers || []).filter(entry => entry.job).map(entry => entry.job);
+    this.disableWorkers();
+    this.queue.unshift(...running);
+    this.dispatch();
+  },
+
+  disableWorkers() {
+    (this.workers || []).forEach(entry => entry.worker.terminate());
+    this.workers = [];
+  },
+
+  /**
+   * メインスレッドで生成する (画面の更新を止めないよう、まとまりごとに処理を譲る)
+   */
+  async runInline(units, ctx) {
+    await new Promise(resolve => setTimeout(resolve, 0));
+    return units.map(unit => ({ key: unit.key, output: this.runUnit(unit, ctx) }));
+  },
+
+  /**
+   * 1 単位の生成 (Worker とメインスレッドの共通処理)
+   */
+  runUnit(unit, ctx) {
+    const spec = this.formats[unit.format];
+    return unit.aggregate ? spec.aggregate(unit.tables, ctx) : spec.run(unit.tables, ctx);
+  },
+
+  /**
+   * テーブルごとの出力ファイルを 1 つにまとめる
+   * 同じパスで同じ内容のファイル (共通クラスなど) は 1 つにし、内容が異なるパスは conflicts として返す
+   * @returns {Object|null} { files, conflicts } (ファイル配列でない出力が含まれる場合は null)
+   */
+  mergeTableOutputs(outputs) {
+    if (!outputs.every(Array.isArray)) return null;
+    const files = [];
+    const indexByPath = new Map();
+    const conflicts = new Set();
+    outputs.forEach(output => output.forEach(file => {
+      const index = indexByPath.get(file.path);
+      if (index === undefined) {
+        indexByPath.set(file.path, files.length);
+        files.push(file);
+      } else if (files[index].content !== file.content) {
+        conflicts.add(file.path);
+      }
+    }));
+    return { files, conflicts: [...conflicts] };
+  },
+
+  /**
+   * 指定パスのファイルをスキーマ全体の生成結果で置き換える
+   */
+  replaceFiles(files, whole, paths) {
+    const wholeByPath = new Map(whole.map(file => [file.path, file]));
+    return files.map(file => (paths.includes(file.path) && wholeByPath.has(file.path)) ? wholeByPath.get(file.path) : file);
+  },
+
+  /**
+   * 直近の生成で使われなかったキャッシュを破棄する
+   */
+  pruneCache() {
+    const oldest = this.generation - this.cacheGenerations + 1;
+    this.cache.forEach((entry, key) => {
+      if (entry.generation < oldest) {
+        this.cache.delete(key);
+      }
+    });
+  },
+
+  /**
+   * 文字列の内容ハッシュ (cyrb53。キャッシュのキー用で暗号学的な強度は不要)
+   */
+  hash(text) {
+    let h1 = 0xdeadbeef;
+    let h2 = 0x41c6ce57;
+    for (let i = 0; i < text.length; i++) {
+      const ch = text.charCodeAt(i);
+      h1 = Math.imul(h1 ^ ch, 2654435761);
+      h2 = Math.imul(h2 ^ ch, 1597334677);
+    }
+    h1 = Math.imul(h1 ^ (h1 >>> 16), 2246822507) ^ Math.imul(h2 ^ (h2 >>> 13), 3266489909);
+    h2 = Math.imul(h2 ^ (h2 >>> 16), 2246822507) ^ Math.imul(h1 ^ (h1 >>> 13), 3266489909);
+    return (4294967296 * (2097151 & h2) + (h1 >>> 0)).toString(36);
+  },
+
+  /**
+   * Vue のリアクティブなプロキシを外す (プロキシ経由の読み取りは遅く、Worker にも渡せないため)
+   */
+  toRaw(value) {
+    return (typeof Vue !== 'undefined' && Vue.toRaw) ? Vue.toRaw(value) : value;
+  }
+};
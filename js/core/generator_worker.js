@@ -0,0 +1,36 @@
+/**
+ * コード生成の Web Worker (App.Core.Generator から起動される)
+ * 受け取った生成単位をメインスレッドと同じコンバータで変換し、結果を返す
+ */
+self.window = self;
+self.App = {};
+
+importScripts(
+  '../utils/common.js',
+  '../utils/type_mapper.js',
+  '../utils/table_features.js',
+  'generator.js',
+  '../converters/ddl.js',
+  '../converters/ddl_migration.js',
+  '../converters/typescript.js',
+  '../converters/zod.js',
+  '../converters/java_model.js',
+  '../converters/java_repo.js',
+  '../converters/java_repo_reactive.js',
+  '../converters/java_service.js',
+  '../converters/java_controller.js',
+  '../converters/vscode_snippets.js',
+  '../converters/data_generator.js'
+);
+
+self.onmessage = (e) => {
+  const { id, ctx, units } = e.data;
+  // コンバータは共通カラム等の設定を App.State から読む
+  App.State = { config: ctx.config, migration: ctx.migration || null };
+  try {
+    const results = units.map(unit => ({ key: unit.key, output: App.Core.Generator.runUnit(unit, ctx) }));
+    self.postMessage({ id, results });
+  } catch (err) {
+    self.postMessage({ id, error: err && err.message ? err.message : String(err) });
+  }
+};
@@ -40,7 +40,8 @@ App.Core.Parser = {
         idx2: row.Idx2,
         idx3: row.Idx3,
         idx4: row.Idx4,
-        idx5: row.Idx5
+        idx5: row.Idx5,
+        search: row.Search
       });
 
       // インデックスの収集
@@ -66,6 +67,28 @@ App.Core.Parser = {
     });
 
     return Object.values(tables);
+  },
+
+  /**
+   * テーブル定義のテキスト (JSON または TSV) を中間データ構造へ変換
+   * 差分 Evolution の変更前の定義など、画面の入力とは別に読み込む定義に使う
+   */
+  parseDefinitionText: function(text) {
+    const trimmed = (text || '').trim();
+    if (trimmed === '') return [];
+    if (trimmed.startsWith('[')) {
+      const jsonData = JSON.parse(trimmed);
+      if (!Array.isArray(jsonData) || (jsonData.length > 0 && !(jsonData[0] && jsonData[0].tableName))) {
+        throw new Error('テーブル定義の JSON ではありません');
+      }
+      return jsonData;
+    }
+
+    const results = Papa.parse(trimmed, { header: true, skipEmptyLines: true, delimiter: '\t' });
+    if (results.errors.length > 0) {
+      throw new Error(JSON.stringify(results.errors));
+    }
+    return this.transformToIntermediate(results.data);
   }
 };
 
@@ -153,6 +153,7 @@ App.Core.SqlLogic = {
 
   addFilter() {
     App.State.sql.filters.push('');
+    App.State.sql.optionalFilters.push(false);
   },
 
   updateFilter(index, value) {
@@ -161,6 +162,7 @@ App.Core.SqlLogic = {
 
   removeFilter(index) {
     App.State.sql.filters.splice(index, 1);
+    App.State.sql.optionalFilters.splice(index, 1);
   },
 
   addSort() {
@@ -20,6 +20,8 @@ App.State = Vue.reactive({
     joins: [],
     // フィルター
     filters: [],
+    // 任意条件のフラグ (filters と同じ並び。true の条件はパラメータ未指定時に適用しない)
+    optionalFilters: [],
     // ソート
     sorts: [],
     // LIMIT
@@ -27,7 +29,25 @@ App.State = Vue.reactive({
     // OFFSET
     offset: '',
     // カウントメソッドを生成するか
-    includeCountMethod: false
+    includeCountMethod: false,
+    // IN (:foo) を = ANY(:foo) の配列パラメータとして生成するか
+    useArrayParams: false,
+    // 検索をリードレプリカへ振り分けるか (DatabaseRouter を使用)
+    useReadReplica: false,
+    // ネイティブRLSのテナント設定 (TenantSession) をトランザクションに行うか
+    useTenantSession: false,
+    // 起動時ウォームアップ (WarmUpTarget) の対象にするか
+    useWarmUp: false,
+    // モデルの検索結果を読み取り専用 (unmodifiable) で返すか
+    useReadOnly: false
+  },
+
+  // オンライン移行 (差分 Evolution) の状態
+  migration: {
+    // 変更前 (適用済み) のテーブル定義
+    baselineTables: [],
+    // 最初に出力する Evolution の番号
+    startRevision: 2
   },
 
   // SQL Builder State のリセット
@@ -35,10 +55,16 @@ App.State = Vue.reactive({
     this.sql.selectedTables = [];
     this.sql.joins = [];
     this.sql.filters = [];
+    this.sql.optionalFilters = [];
     this.sql.sorts = [];
     this.sql.limit = '';
     this.sql.offset = '';
     this.sql.includeCountMethod = false;
+    this.sql.useArrayParams = false;
+    this.sql.useReadReplica = false;
+    this.sql.useTenantSession = false;
+    this.sql.useWarmUp = false;
+    this.sql.useReadOnly = false;
   }
 });
 
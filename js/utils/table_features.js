@@ -0,0 +1,141 @@
+// Initialize Namespace
+window.App = window.App || {};
+App.Utils = App.Utils || {};
+
+/**
+ * 追加生成オプション (アーカイブ等) で DDL と Java の双方が参照する共通ロジック
+ */
+App.Utils.TableFeatures = {
+  /** 全文検索用の生成カラム名 */
+  searchVectorColumn: 'search_vector',
+
+  /** 全文検索のテキスト検索設定 (日本語は分かち書きされないため simple を使用) */
+  searchConfig: 'simple',
+
+  /** ネイティブRLSでテナントIDを渡すセッション設定名 */
+  rlsTenantSetting: 'app.tenant_id',
+
+  /** ネイティブRLSで管理者 (全テナント参照) を示すセッション設定名 */
+  rlsBypassSetting: 'app.bypass_rls',
+
+  /**
+   * 共通カラム設定を取得 (未設定時はデフォルト)
+   */
+  getCommonColumns: function() {
+    return (App.State && App.State.config && App.State.config.commonColumns) ? App.State.config.commonColumns : {
+      id: 'id',
+      is_deleted: { name: 'is_deleted', type: 'boolean', valTrue: true, valFalse: false },
+      created_at: 'created_at',
+      created_by: 'created_by',
+      updated_at: 'updated_at',
+      updated_by: 'updated_by'
+    };
+  },
+
+  /**
+   * 指定された追加生成オプションが有効かどうか
+   */
+  isEnabled: function(features, name) {
+    return !!(features && features[name]);
+  },
+
+  /**
+   * PostgreSQL ネイティブの RLS (ポリシー + セッション設定) を使うかどうか
+   */
+  isNativeRls: function(rlsOptions) {
+    return !!(rlsOptions && rlsOptions.enabled && rlsOptions.mode === 'native');
+  },
+
+  /**
+   * テーブルがテナントIDカラムを持つ RLS 対象かどうか
+   */
+  hasTenantColumn: function(table, rlsOptions) {
+    return !!(rlsOptions && rlsOptions.enabled && (table.columns || []).some(c => c.colName === rlsOptions.tenantIdColumn));
+  },
+
+  /**
+   * テーブル定義に指定したカラムがすべてあるかどうか
+   */
+  hasColumns: function(table, names) {
+    return names.every(name => (table.columns || []).some(c => c.colName === name));
+  },
+
+  /**
+   * 論理削除データのアーカイブ対象にできるかどうか
+   * 移送は論理削除フラグの行を (更新日時, ID) 順に辿るため、それらのカラムが定義書にあるテーブルだけを対象にする
+   */
+  isArchivable: function(table) {
+    const config = App.Utils.TableFeatures.getCommonColumns();
+    return App.Utils.TableFeatures.hasColumns(table, [config.id, config.updated_at, config.is_deleted.name]);
+  },
+
+  /**
+   * 差分同期 (changedSince) の対象にできるかどうか
+   * (更新日時, ID) のキーセットで走査するため、それらのカラムが定義書にあるテーブルだけを対象にする
+   */
+  isChangeTrackable: function(table) {
+    const config = App.Utils.TableFeatures.getCommonColumns();
+    return App.Utils.TableFeatures.hasColumns(table, [config.id, config.updated_at]);
+  },
+
+  /**
+   * 外部キーカラムの参照先テーブルを推定する
+   * カラム名が <参照先>_id で、参照先のテーブル名が単数形または複数形 (s / es / y→ies) のものを探す
+   */
+  findReferencedTable: function(column, tables) {
+    const match = /^(.+)_id$/.exec(column.colName || '');
+    if (!match) return null;
+    const base = match[1];
+    const candidates = [base, base + 's', base + 'es', base.replace(/y$/, 'ies')];
+    return tables.find(t => candidates.includes(t.tableName)) || null;
+  },
+
+  /**
+   * 論理削除済みを表す SQL リテラル
+   */
+  softDeletedLiteral: function(config) {
+    return config.is_deleted.type === 'string' ? `'${config.is_deleted.valTrue}'` : 'true';
+  },
+
+  /**
+   * 論理削除されていないことを表す SQL リテラル
+   */
+  notDeletedLiteral: function(config) {
+    return config.is_deleted.type === 'string' ? `'${config.is_deleted.valFalse}'` : 'false';
+  },
+
+  /**
+   * 全文検索対象のカラム (Search 列に値があるもの) と重みを取得
+   * 重みは A~D を指定可能で、それ以外の値は D として扱う
+   */
+  getSearchColumns: function(table) {
+    return (table.columns || [])
+      .filter(col => col.search && String(col.search).trim() !== '')
+      .map(col => {
+        const weight = String(col.search).trim().toUpperCase();
+        return { colName: col.colName, type: col.type, weight: /^[A-D]$/.test(weight) ? weight : 'D' };
+      });
+  },
+
+  /**
+   * 実テーブルのカラム一覧 (定義書のカラム + BaseModel 由来で定義書に無い共通カラム)
+   * アーカイブテーブルはこの並びで作成し、移送 SQL も同じ並びを使う
+   */
+  getPhysicalColumns: function(table, config) {
+    const columns = table.columns.map(col => ({ colName: col.colName, colNameJP: col.colNameJP, type: col.type, length: col.length }));
+    const defined = new Set(columns.map(c => c.colName));
+    const isDeletedLength = String(Math.max(String(config.is_deleted.valTrue).length, String(config.is_deleted.valFalse).length));
+    const commonDefs = [
+      { colName: config.id, colNameJP: 'ID', type: 'bigint' },
+      { colName: config.is_deleted.name, colNameJP: '論理削除フラグ', type: config.is_deleted.type === 'string' ? 'varchar' : 'boolean', length: config.is_deleted.type === 'string' ? isDeletedLength : '' },
+      { colName: config.created_at, colNameJP: '作成日時', type: 'timestamp' },
+      { colName: config.created_by, colNameJP: '作成者ID', type: 'varchar', length: '255' },
+      { colName: config.updated_at, colNameJP: '更新日時', type: 'timestamp' },
+      { colName: config.updated_by, colNameJP: '更新者ID', type: 'varchar', length: '255' }
+    ];
+    commonDefs.forEach(def => {
+      if (!defined.has(def.colName)) columns.push(def);
+    });
+    return columns;
+  }
+};
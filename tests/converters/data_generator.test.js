@@ -0,0 +1,81 @@
+import { describe, it, expect } from 'vitest';
+import fs from 'fs';
+import path from 'path';
+
+// Converters register helpers on window, and read them back as bare globals.
+global.window = global;
+global.App = global.App || {};
+
+const loadScript = (relativePath) => {
+  const code = fs.readFileSync(path.resolve(__dirname, '../../js/', relativePath), 'utf8');
+  const vm = require('vm');
+  vm.runInThisContext(code);
+};
+
+loadScript('utils/common.js');
+loadScript('utils/table_features.js');
+loadScript('converters/data_generator.js');
+
+const tables = [
+  {
+    tableName: 'todo_categories',
+    columns: [
+      { colName: 'todo_id', pkfk: 'PK, FK', type: 'bigint', constraint: 'NN' },
+      { colName: 'category_id', pkfk: 'PK, FK', type: 'bigint', constraint: 'NN' }
+    ]
+  },
+  {
+    tableName: 'todos',
+    columns: [
+      { colName: 'id', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'title', type: 'varchar', length: '200', constraint: 'NN' },
+      { colName: 'user_id', pkfk: 'FK', type: 'bigint', constraint: 'NN' },
+      { colName: 'tenant_id', type: 'varchar', length: '36', constraint: 'NN' }
+    ]
+  },
+  {
+    tableName: 'categories',
+    columns: [
+      { colName: 'id', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'name', pkfk: 'AK', type: 'varchar', length: '100', constraint: 'NN, U' }
+    ]
+  },
+  {
+    tableName: 'users',
+    columns: [
+      { colName: 'id', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'email', type: 'varchar', length: '255', constraint: 'NN, U' },
+      { colName: 'due_date', type: 'date' }
+    ]
+  }
+];
+
+describe('generateDataGenerator', () => {
+  it('should define tables in foreign key dependency order', () => {
+    const java = generateDataGenerator(tables, null)[0].content;
+
+    expect(java).toContain('return List.of(categories, users, todos, todoCategories);');
+    expect(java).toContain('.reference("user_id", "bigint", users, false)');
+    expect(java).toContain('.unique("email", "text", "email", 255)');
+    expect(java).toContain('.date("due_date", true)');
+  });
+
+  it('should build composite keys from parents and tenant columns when RLS is enabled', () => {
+    const java = generateDataGenerator(tables, { enabled: true, tenantIdColumn: 'tenant_id' })[0].content;
+
+    expect(java).toContain('Table todoCategories = new Table("todo_categories", options, tenants)\n            .keyReference("todo_id", "bigint", todos)\n            .keyReference("category_id", "bigint", categories);');
+    expect(java).toContain('.tenant("tenant_id", "text", false)');
+    expect(generateDataGenerator(tables, null)[0].content).toContain('.text("tenant_id", 36, false)');
+  });
+
+  it('should bypass native RLS when loading rows', () => {
+    const java = generateDataGenerator(tables, { enabled: true, mode: 'native', tenantIdColumn: 'tenant_id' })[0].content;
+
+    expect(java).toContain('private static final boolean NATIVE_RLS = true;');
+    expect(java).toContain(`st.execute("SELECT set_config('app.bypass_rls', 'on', false)");`);
+    expect(java).toContain('script.write("ALTER TABLE " + table.name + " NO FORCE ROW LEVEL SECURITY;\\n");');
+    expect(java).toContain('script.write("ALTER TABLE " + table.name + " FORCE ROW LEVEL SECURITY;\\n");');
+    expect(generateDataGenerator(tables, { enabled: true, tenantIdColumn: 'tenant_id' })[0].content)
+      .toContain('private static final boolean NATIVE_RLS = false;');
+  });
+});
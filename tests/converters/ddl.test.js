@@ -0,0 +1,128 @@
+import { describe, it, expect } from 'vitest';
+import fs from 'fs';
+import path from 'path';
+
+// Converters register helpers on window, and read them back as bare globals.
+global.window = global;
+global.App = global.App || {};
+
+const loadScript = (relativePath) => {
+  const code = fs.readFileSync(path.resolve(__dirname, '../../js/', relativePath), 'utf8');
+  const vm = require('vm');
+  vm.runInThisContext(code);
+};
+
+loadScript('utils/common.js');
+loadScript('utils/table_features.js');
+loadScript('converters/ddl.js');
+
+const tables = [
+  {
+    tableName: 'todos',
+    tableNameJP: 'TODO',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'title', colNameJP: 'タイトル', type: 'varchar', length: '200', constraint: 'NN' },
+      { colName: 'updated_at', colNameJP: '更新日時', type: 'timestamp', constraint: 'NN', default: 'now()' },
+      { colName: 'is_deleted', colNameJP: '削除フラグ', type: 'boolean', constraint: 'NN', default: 'false' }
+    ]
+  }
+];
+
+const departments = {
+  tableName: 'departments',
+  tableNameJP: '部署',
+  columns: [
+    { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+    { colName: 'name', colNameJP: '部署名', type: 'varchar', length: '100', constraint: 'NN' }
+  ]
+};
+
+describe('generateDDL', () => {
+  it('should not emit archive tables unless the feature is enabled', () => {
+    const ddl = generateDDL(tables)[0].content;
+    const evolution = generatePlayEvolution(tables, null, {});
+
+    expect(ddl).not.toContain('todos_archive');
+    expect(evolution).not.toContain('todos_archive');
+  });
+
+  it('should emit an archive table with every physical column and a candidate index', () => {
+    const ddl = generateDDL(tables, null, { archive: true })[0].content;
+
+    expect(ddl).toContain('CREATE TABLE todos_archive (\n    id BIGINT,\n    title VARCHAR(200),\n    updated_at TIMESTAMP,\n    is_deleted BOOLEAN,');
+    expect(ddl).toContain('archived_at TIMESTAMP NOT NULL DEFAULT now(),\n    PRIMARY KEY (id)\n);');
+    expect(ddl).toContain('CREATE INDEX todos_archive_candidates ON todos (updated_at, id) WHERE is_deleted = true;');
+  });
+
+  it('should skip archive tables for tables without updated_at and is_deleted columns', () => {
+    const ddl = generateDDL([departments, ...tables], null, { archive: true })[0].content;
+    const evolution = generatePlayEvolution([departments, ...tables], null, { archive: true });
+
+    expect(ddl).not.toContain('departments_archive');
+    expect(evolution).not.toContain('departments_archive');
+    expect(ddl).toContain('CREATE INDEX todos_archive_candidates ON todos (updated_at, id) WHERE is_deleted = true;');
+  });
+
+  it('should skip the changed-since index for tables without an updated_at column', () => {
+    const ddl = generateDDL([departments, ...tables], null, { changedSince: true })[0].content;
+    const evolution = generatePlayEvolution([departments, ...tables], null, { changedSince: true });
+
+    expect(ddl).not.toContain('departments_changed_since');
+    expect(evolution).not.toContain('departments_changed_since');
+    expect(ddl).toContain('CREATE INDEX todos_changed_since ON todos (updated_at, id);');
+  });
+
+  it('should drop archive tables in the evolution downs', () => {
+    const evolution = generatePlayEvolution(tables, null, { archive: true });
+    const downs = evolution.split('# --- !Downs')[1];
+
+    expect(downs).toContain('DROP TABLE IF EXISTS todos_archive;\nDROP TABLE IF EXISTS todos;');
+  });
+
+  it('should emit a weighted tsvector generated column and GIN index for searchable columns', () => {
+    const searchable = [{
+      ...tables[0],
+      columns: tables[0].columns.map(col => col.colName === 'title' ? { ...col, search: 'a' } : col)
+        .concat([{ colName: 'priority', colNameJP: '優先度', type: 'integer', search: '1' }])
+    }];
+    const ddl = generateDDL(searchable)[0].content;
+
+    expect(ddl).toContain("search_vector TSVECTOR GENERATED ALWAYS AS (\n        setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||\n        setweight(to_tsvector('simple', coalesce(priority::text, '')), 'D')\n    ) STORED,\n    PRIMARY KEY (id)");
+    expect(ddl).toContain('CREATE INDEX todos_search_vector ON todos USING GIN (search_vector);');
+    expect(generateDDL(tables)[0].content).not.toContain('search_vector');
+  });
+
+  it('should emit a changed-since index led by the tenant column for RLS tables', () => {
+    const tenantTables = [{
+      ...tables[0],
+      columns: tables[0].columns.concat([{ colName: 'tenant_id', colNameJP: 'テナントID', type: 'varchar', length: '36' }])
+    }];
+    const rls = { enabled: true, tenantIdColumn: 'tenant_id' };
+
+    expect(generateDDL(tenantTables, rls, { changedSince: true })[0].content)
+      .toContain('CREATE INDEX todos_changed_since ON todos (tenant_id, updated_at, id);');
+    expect(generatePlayEvolution(tables, rls, { changedSince: true }))
+      .toContain('CREATE INDEX todos_changed_since ON todos (updated_at, id);');
+    expect(generateDDL(tenantTables, rls)[0].content).not.toContain('changed_since');
+  });
+
+  it('should lead IdxN indexes with the tenant column and emit policies in native RLS mode', () => {
+    const tenantTables = [{
+      ...tables[0],
+      columns: tables[0].columns
+        .map(col => col.colName === 'title' ? { ...col, idx1: '1' } : col)
+        .concat([{ colName: 'tenant_id', colNameJP: 'テナントID', type: 'bigint', idx1: '2' }])
+    }];
+    const javaRls = { enabled: true, tenantIdColumn: 'tenant_id' };
+    const nativeRls = { ...javaRls, mode: 'native' };
+
+    expect(generateDDL(tenantTables, javaRls)[0].content).toContain('CREATE INDEX todos_idx1 ON todos (tenant_id, title);');
+    expect(generateDDL(tenantTables, javaRls)[0].content).not.toContain('ROW LEVEL SECURITY');
+
+    const ddl = generatePlayEvolution(tenantTables, nativeRls, {});
+    expect(ddl).toContain('ALTER TABLE todos ENABLE ROW LEVEL SECURITY;\nALTER TABLE todos FORCE ROW LEVEL SECURITY;');
+    expect(ddl).toContain("USING (current_setting('app.bypass_rls', true) = 'on' OR tenant_id = NULLIF(current_setting('app.tenant_id', true), '')::BIGINT)");
+    expect(generateDDL(tables, nativeRls)[0].content).not.toContain('ROW LEVEL SECURITY');
+  });
+});
@@ -0,0 +1,114 @@
+import { describe, it, expect } from 'vitest';
+import fs from 'fs';
+import path from 'path';
+
+// Converters register helpers on window, and read them back as bare globals.
+global.window = global;
+global.App = global.App || {};
+
+const loadScript = (relativePath) => {
+  const code = fs.readFileSync(path.resolve(__dirname, '../../js/', relativePath), 'utf8');
+  const vm = require('vm');
+  vm.runInThisContext(code);
+};
+
+loadScript('utils/common.js');
+loadScript('utils/table_features.js');
+loadScript('converters/ddl.js');
+loadScript('converters/ddl_migration.js');
+
+const previousTables = [
+  {
+    tableName: 'users',
+    tableNameJP: 'ユーザー',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'user_name', colNameJP: 'ユーザー名', type: 'varchar', length: '50', idx1: '1' },
+      { colName: 'email', colNameJP: 'メール', type: 'varchar', length: '255' },
+      { colName: 'fax', colNameJP: 'FAX', type: 'varchar', length: '20' }
+    ]
+  }
+];
+
+const currentTables = [
+  {
+    tableName: 'users',
+    tableNameJP: 'ユーザー',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'user_name', colNameJP: 'ユーザー名', type: 'varchar', length: '100', idx1: '1', idx2: '1' },
+      { colName: 'email', colNameJP: 'メール', type: 'varchar', length: '255', constraint: 'NN, U', default: "''" },
+      { colName: 'status', colNameJP: '状態', type: 'integer', constraint: 'NN', default: '0' },
+      { colName: 'public_id', colNameJP: '公開ID', type: 'uuid', constraint: 'NN', default: 'gen_random_uuid()' }
+    ]
+  },
+  {
+    tableName: 'groups',
+    tableNameJP: 'グループ',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' }
+    ]
+  }
+];
+
+const findFile = (files, name) => files.find(f => f.path === `evolutions/${name}`).content;
+
+describe('generateMigration', () => {
+  const files = generateMigration(previousTables, currentTables, {}, {}, 2);
+
+  it('should split the diff into numbered stages starting at the given revision', () => {
+    expect(files.map(f => f.path)).toEqual([
+      'evolutions/2.sql', 'evolutions/3.sql', 'evolutions/4.sql', 'evolutions/5.sql', 'evolutions/6.sql'
+    ]);
+    expect(findFile(files, '2.sql')).toContain("SET lock_timeout = '5s';");
+  });
+
+  it('should add columns without rewriting the table and backfill volatile defaults in batches', () => {
+    const expand = findFile(files, '2.sql');
+    const backfill = findFile(files, '3.sql');
+
+    expect(expand).toContain('CREATE TABLE groups (');
+    expect(expand).toContain('ALTER TABLE users ALTER COLUMN user_name TYPE VARCHAR(100);');
+    expect(expand).toContain('ALTER TABLE users ADD COLUMN status INTEGER NOT NULL DEFAULT 0;');
+    expect(expand).toContain('ALTER TABLE users ADD COLUMN public_id UUID;\nALTER TABLE users ALTER COLUMN public_id SET DEFAULT gen_random_uuid();');
+    expect(expand).toContain('ADD CONSTRAINT users_email_not_null CHECK (email IS NOT NULL) NOT VALID;');
+    expect(backfill).toContain("UPDATE users SET email = COALESCE(email, ''), public_id = COALESCE(public_id, gen_random_uuid())");
+    expect(backfill).toContain('WHERE id > last_id AND id <= last_id + batch_size');
+    expect(backfill).toContain('        COMMIT;;\n');
+  });
+
+  it('should only bypass row level security in the backfill for native RLS', () => {
+    const nativeFiles = generateMigration(previousTables, currentTables, { enabled: true, mode: 'native' }, {}, 2);
+    const backfill = findFile(nativeFiles, '3.sql');
+
+    expect(backfill).toContain("BEGIN\n    PERFORM set_config('app.bypass_rls', 'on', false);;\n    SELECT coalesce(min(id), 0) - 1");
+    expect(findFile(files, '3.sql')).not.toContain('app.bypass_rls');
+  });
+
+  it('should build indexes concurrently and validate constraints afterwards', () => {
+    const index = findFile(files, '4.sql');
+    const validate = findFile(files, '5.sql');
+
+    expect(index).toContain('CREATE INDEX CONCURRENTLY users_idx2 ON users (user_name);');
+    expect(index).toContain('CREATE UNIQUE INDEX CONCURRENTLY users_email_key_new ON users (email);');
+    expect(index).not.toContain('lock_timeout');
+    expect(validate).toContain('ALTER TABLE users VALIDATE CONSTRAINT users_email_not_null;\nALTER TABLE users ALTER COLUMN email SET NOT NULL;');
+    expect(validate).toContain('ALTER TABLE users ADD CONSTRAINT users_email_key UNIQUE USING INDEX users_email_key_new;');
+  });
+
+  it('should drop removed columns last', () => {
+    const contract = findFile(files, '6.sql');
+
+    expect(contract).toContain('ALTER TABLE users DROP COLUMN IF EXISTS fax;');
+    expect(contract).toContain('ADD COLUMN IF NOT EXISTS fax VARCHAR(20);');
+  });
+
+  it('should only warn about changes that rewrite the table', () => {
+    const changed = JSON.parse(JSON.stringify(previousTables));
+    changed[0].columns[0].type = 'uuid';
+    const expand = findFile(generateMigration(previousTables, changed, {}, {}, 2), '2.sql');
+
+    expect(expand).toContain('-- [要確認] users.id の型が BIGSERIAL から UUID に変わりました。');
+    expect(expand).not.toContain('ALTER COLUMN id TYPE');
+  });
+});
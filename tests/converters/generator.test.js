@@ -0,0 +1,111 @@
+import { describe, it, expect, beforeEach } from 'vitest';
+import fs from 'fs';
+import path from 'path';
+
+// Converters register helpers on window, and read them back as bare globals.
+global.window = global;
+global.App = global.App || {};
+
+const loadScript = (relativePath) => {
+  const code = fs.readFileSync(path.resolve(__dirname, '../../js/', relativePath), 'utf8');
+  const vm = require('vm');
+  vm.runInThisContext(code);
+};
+
+loadScript('utils/common.js');
+loadScript('utils/type_mapper.js');
+loadScript('utils/table_features.js');
+loadScript('converters/ddl.js');
+loadScript('converters/java_model.js');
+loadScript('converters/java_repo.js');
+loadScript('core/generator.js');
+
+App.State = { config: null, migration: null };
+
+const createTables = () => [
+  {
+    tableName: 'users',
+    tableNameJP: 'ユーザー',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'user_name', colNameJP: 'ユーザー名', type: 'varchar', length: '50' }
+    ]
+  },
+  {
+    tableName: 'groups',
+    tableNameJP: 'グループ',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'group_name', colNameJP: 'グループ名', type: 'varchar', length: '50' }
+    ]
+  }
+];
+
+const rls = { enabled: false };
+const Generator = App.Core.Generator;
+
+describe('App.Core.Generator', () => {
+  beforeEach(() => {
+    Generator.cache.clear();
+  });
+
+  it('should produce the same output as running the converters on the whole schema', async () => {
+    const tables = createTables();
+    const features = { warmUp: true };
+    const results = await Generator.generate(tables, ['ddl', 'java-model', 'java-repo'], rls, features);
+
+    expect(results['ddl']).toEqual(App.Converters.Ddl.generateDDL(tables, rls, features));
+    expect(results['java-model']).toEqual(App.Converters.JavaModel.generateJavaModel(tables, rls, features));
+    expect(results['java-repo']).toEqual(App.Converters.JavaRepo.generateJavaRepo(tables, rls, features));
+  });
+
+  it('should regenerate only the tables that changed', async () => {
+    const tables = createTables();
+    await Generator.generate(tables, ['java-model'], rls, {});
+
+    let calls = 0;
+    const original = Generator.runUnit;
+    Generator.runUnit = function (unit, ctx) {
+      calls++;
+      return original.call(this, unit, ctx);
+    };
+    try {
+      tables[1].columns[1].length = '100';
+      const results = await Generator.generate(tables, ['java-model'], rls, {});
+
+      expect(calls).toBe(1);
+      expect(results['java-model']).toEqual(App.Converters.JavaModel.generateJavaModel(tables, rls, {}));
+    } finally {
+      Generator.runUnit = original;
+    }
+  });
+
+  it('should keep per-table units cached when only files listing all tables change', async () => {
+    const tables = createTables();
+    const features = { warmUp: true };
+    await Generator.generate(tables, ['java-repo'], rls, features);
+
+    const units = [];
+    const original = Generator.runUnit;
+    Generator.runUnit = function (unit, ctx) {
+      units.push(unit.aggregate ? 'aggregate' : unit.tables[0].tableName);
+      return original.call(this, unit, ctx);
+    };
+    try {
+      tables[1].tableNameJP = 'グループ一覧';
+      const results = await Generator.generate(tables, ['java-repo'], rls, features);
+
+      expect(units.sort()).toEqual(['aggregate', 'groups']);
+      expect(results['java-repo']).toEqual(App.Converters.JavaRepo.generateJavaRepo(tables, rls, features));
+    } finally {
+      Generator.runUnit = original;
+    }
+  });
+
+  it('should report each format as soon as it is generated', async () => {
+    const reported = [];
+    await Generator.generate(createTables(), ['ddl', 'java-model'], rls, {}, (format) => reported.push(format));
+
+    expect(reported.sort()).toEqual(['ddl', 'java-model']);
+  });
+});
@@ -0,0 +1,146 @@
+import { describe, it, expect } from 'vitest';
+import fs from 'fs';
+import path from 'path';
+
+// Converters register helpers on window, and read them back as bare globals.
+global.window = global;
+global.App = global.App || {};
+
+const loadScript = (relativePath) => {
+  const code = fs.readFileSync(path.resolve(__dirname, '../../js/', relativePath), 'utf8');
+  const vm = require('vm');
+  vm.runInThisContext(code);
+};
+
+loadScript('utils/common.js');
+loadScript('utils/type_mapper.js');
+loadScript('utils/table_features.js');
+loadScript('converters/java_controller.js');
+
+App.State = App.State || { config: null };
+
+const tables = [
+  {
+    tableName: 'todos',
+    tableNameJP: 'TODO',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'title', colNameJP: 'タイトル', type: 'varchar', length: '200', constraint: 'NN' },
+      { colName: 'updated_at', colNameJP: '更新日時', type: 'timestamp', constraint: 'NN', default: 'now()' },
+      { colName: 'is_deleted', colNameJP: '削除フラグ', type: 'boolean', constraint: 'NN', default: 'false' }
+    ]
+  }
+];
+
+const generate = (features) => App.Converters.JavaController.generateJavaController(tables, { enabled: false }, features);
+const findFile = (files, suffix) => {
+  const file = files.find(f => f.path.endsWith(suffix));
+  return file ? file.content : undefined;
+};
+
+describe('generateJavaController', () => {
+  describe('conditionalGet', () => {
+    it('should not emit conditional request handling unless the feature is enabled', () => {
+      const files = generate({});
+
+      expect(findFile(files, 'ConditionalRequests.java')).toBeUndefined();
+      expect(findFile(files, 'TodosController.java')).not.toContain('ConditionalRequests');
+    });
+
+    it('should answer list and findById requests with 304 when the ETag matches', () => {
+      const files = generate({ conditionalGet: true });
+      const controller = findFile(files, 'TodosController.java');
+
+      expect(findFile(files, 'ConditionalRequests.java')).toContain('public static String listTag(JsonNode page, String idField, String updatedAtField) {');
+      expect(controller).toContain('import libraries.ConditionalRequests;');
+      expect(controller).toContain('String etag = ConditionalRequests.listTag(result, "id", "updatedAt");');
+      expect(controller).toContain('String etag = ConditionalRequests.entityTag(id, m.getUpdatedAt());');
+      expect(controller).toContain('return ConditionalRequests.notModified(etag, m.getUpdatedAt());');
+    });
+  });
+
+  describe('streaming', () => {
+    it('should add chunked JSON and NDJSON list actions only when streaming is enabled', () => {
+      const plain = findFile(generate({}), 'TodosController.java');
+      const streaming = findFile(generate({ streaming: true }), 'TodosController.java');
+
+      expect(plain).not.toContain('findStream');
+      expect(plain).not.toContain('import libraries.JsonStreams;');
+      expect(streaming).toContain('public Result findStream(Http.Request request) {');
+      expect(streaming).toContain('return ok().chunked(JsonStreams.source(out -> todosService.writeNdjson(filter, offset, limit, out)))');
+      expect(streaming).toContain('.as("application/x-ndjson");');
+    });
+  });
+
+  describe('readReplica', () => {
+    it('should return the write position token only when reads go to the replica', () => {
+      const files = generate({ readReplica: true });
+      const native = App.Converters.JavaController.generateJavaController(tables, { enabled: true, mode: 'native', tenantIdColumn: 'tenant_id' }, { readReplica: true });
+
+      expect(findFile(files, 'ReadYourWritesAction.java')).toBeDefined();
+      expect(findFile(files, 'TodosController.java')).toContain('import controllers.actions.ReadYourWrites;');
+      expect(findFile(files, 'TodosController.java')).toContain('@ReadYourWrites\n');
+      expect(findFile(generate({}), 'TodosController.java')).not.toContain('ReadYourWrites');
+      expect(findFile(native, 'TodosController.java')).not.toContain('ReadYourWrites');
+    });
+  });
+
+  describe('admissionControl', () => {
+    it('should mark CRUD actions and heavy CSV actions for admission control only when enabled', () => {
+      const files = generate({ admissionControl: true });
+      const controller = findFile(files, 'TodosController.java');
+
+      expect(findFile(files, 'AdaptiveLimiter.java')).toBeDefined();
+      expect(findFile(files, 'AdmissionControlAction.java')).toBeDefined();
+      expect(controller).toContain('import controllers.actions.AdmissionControlled;');
+      expect(controller).toContain('    @AdmissionControlled\n    public CompletionStage<Result> find(Http.Request request) {');
+      expect(controller).toContain('    @AdmissionControlled(AdmissionControlled.HEAVY)\n    public CompletionStage<Result> exportCsv(Http.Request request) {');
+      expect(findFile(generate({}), 'TodosController.java')).not.toContain('AdmissionControlled');
+      expect(findFile(generate({}), 'AdaptiveLimiter.java')).toBeUndefined();
+    });
+  });
+
+  describe('warmUp', () => {
+    it('should add a readiness endpoint only when warm-up is enabled', () => {
+      expect(findFile(generate({ warmUp: true }), 'ReadinessController.java')).toContain('public ReadinessController(WarmUp warmUp) {');
+      expect(findFile(generate({}), 'ReadinessController.java')).toBeUndefined();
+    });
+  });
+
+  describe('binaryFormat', () => {
+    it('should negotiate Smile / CBOR responses and keep ETags distinct per format', () => {
+      const files = generate({ binaryFormat: true, conditionalGet: true });
+      const controller = findFile(files, 'TodosController.java');
+
+      expect(findFile(files, 'ContentNegotiation.java')).toContain('public static final String SMILE = "application/x-jackson-smile";');
+      expect(controller).toContain('import libraries.ContentNegotiation;');
+      expect(controller).toContain('return ConditionalRequests.withValidators(ContentNegotiation.ok(request, m), etag, m.getUpdatedAt());');
+      expect(controller).toContain('String etag = ContentNegotiation.negotiate(request).tag(ConditionalRequests.listTag(result, "id", "updatedAt"));');
+    });
+
+    it('should always answer JSON unless enabled', () => {
+      const files = generate({});
+
+      expect(findFile(files, 'ContentNegotiation.java')).toBeUndefined();
+      expect(findFile(files, 'TodosController.java')).not.toContain('ContentNegotiation');
+    });
+  });
+
+  describe('parallelExport', () => {
+    it('should add a parallel CSV export action', () => {
+      const controller = findFile(generate({ parallelExport: true }), 'TodosController.java');
+
+      expect(controller).toContain('import libraries.ParallelExport;');
+      expect(controller).toContain('public CompletionStage<Result> exportCsvParallel(Http.Request request) {');
+      expect(controller).toContain('ParallelExport.Options options = new ParallelExport.Options(parts != null ? Integer.parseInt(parts) : 0, gzip, archive);');
+      expect(controller).toContain('.withHeader(Http.HeaderNames.CONTENT_DISPOSITION, "attachment; filename=\\"" + output.getFileName() + "\\"")');
+    });
+
+    it('should omit the parallel export action unless enabled', () => {
+      const controller = findFile(generate({}), 'TodosController.java');
+
+      expect(controller).not.toContain('exportCsvParallel');
+      expect(controller).not.toContain('import libraries.ParallelExport;');
+    });
+  });
+});
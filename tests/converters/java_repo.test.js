@@ -0,0 +1,177 @@
+import { describe, it, expect } from 'vitest';
+import fs from 'fs';
+import path from 'path';
+
+// Converters register helpers on window, and read them back as bare globals.
+global.window = global;
+global.App = global.App || {};
+
+const loadScript = (relativePath) => {
+  const code = fs.readFileSync(path.resolve(__dirname, '../../js/', relativePath), 'utf8');
+  const vm = require('vm');
+  vm.runInThisContext(code);
+};
+
+loadScript('utils/common.js');
+loadScript('utils/type_mapper.js');
+loadScript('utils/table_features.js');
+loadScript('converters/java_repo.js');
+
+App.State = App.State || { config: null };
+
+const tables = [
+  {
+    tableName: 'todos',
+    tableNameJP: 'TODO',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'title', colNameJP: 'タイトル', type: 'varchar', length: '200', constraint: 'NN' },
+      { colName: 'updated_at', colNameJP: '更新日時', type: 'timestamp', constraint: 'NN', default: 'now()' },
+      { colName: 'is_deleted', colNameJP: '削除フラグ', type: 'boolean', constraint: 'NN', default: 'false' }
+    ]
+  }
+];
+
+const generate = (features, rlsOptions = { enabled: false }) => App.Converters.JavaRepo.generateJavaRepo(tables, rlsOptions, features);
+const findFile = (files, suffix) => {
+  const file = files.find(f => f.path.endsWith(suffix));
+  return file ? file.content : undefined;
+};
+
+describe('generateJavaRepo', () => {
+  describe('streaming', () => {
+    it('should only emit findEach when streaming is enabled', () => {
+      const plain = findFile(generate({}), 'TodosRepository.java');
+      const streaming = findFile(generate({ streaming: true }), 'TodosRepository.java');
+
+      expect(plain).not.toContain('findEach');
+      expect(plain).not.toContain('import java.util.function.Consumer;');
+      expect(streaming).toContain('public CompletionStage<Void> findEach(Todos filter, int offset, int limit, Consumer<Todos> consumer) {');
+      expect(streaming).toContain('.setBufferFetchSizeHint(500)');
+    });
+  });
+
+  describe('readReplica', () => {
+    it('should read from the router and write to the primary when enabled', () => {
+      const files = generate({ readReplica: true });
+      const repo = findFile(files, 'TodosRepository.java');
+
+      expect(findFile(files, 'DatabaseRouter.java')).toContain('public long currentWritePosition() {');
+      expect(findFile(files, 'ReadConsistency.java')).toBeDefined();
+      expect(repo).toContain('public TodosRepository(DatabaseExecutionContext executionContext, DatabaseRouter databaseRouter) {');
+      expect(repo).toContain('databaseRouter.primary().insert(todos);\n            databaseRouter.markWritten();');
+      expect(repo).toContain('}, ReadConsistency.propagating(executionContext));');
+    });
+
+    it('should keep using the default database when disabled or in native RLS mode', () => {
+      const plain = findFile(generate({}), 'TodosRepository.java');
+      const native = findFile(generate({ readReplica: true }, { enabled: true, mode: 'native', tenantIdColumn: 'tenant_id' }), 'TodosRepository.java');
+
+      expect(findFile(generate({}), 'DatabaseRouter.java')).toBeUndefined();
+      expect(plain).not.toContain('DatabaseRouter');
+      expect(plain).not.toContain('ReadConsistency');
+      expect(native).not.toContain('DatabaseRouter');
+      expect(native).not.toContain('markWritten');
+    });
+  });
+
+  describe('insertCoalescing', () => {
+    it('should submit single-row inserts to the shared coalescer with a retry copy', () => {
+      const files = generate({ insertCoalescing: true });
+      const repo = findFile(files, 'TodosRepository.java');
+
+      expect(findFile(files, 'InsertCoalescer.java')).toContain('} else if (!queue.offer(pending)) {');
+      expect(findFile(files, 'InsertCoalescerTest.java')).toContain('void retriesFailedBatchRowByRowWithFreshInstances() {');
+      expect(findFile(files, 'InsertCoalescing.java')).toContain('DB.getDefault(),');
+      expect(repo).toContain('this.insertCoalescer = insertCoalescing.forTable(TABLE_NAME, TodosRepository::copyForRetry);');
+      expect(repo).toContain('        return insertCoalescer.submit(todos);\n');
+      expect(repo).toContain('private static Todos copyForRetry(Todos source) {');
+      expect(repo).toContain('copy.setTitle(source.getTitle());');
+      expect(repo).not.toContain('copy.setId(');
+    });
+
+    it('should record the write position once per batch when the read replica is enabled', () => {
+      const files = generate({ insertCoalescing: true, readReplica: true });
+      const repo = findFile(files, 'TodosRepository.java');
+
+      expect(findFile(files, 'InsertCoalescing.java')).toContain('databaseRouter::currentWritePosition');
+      expect(repo).toContain('return insertCoalescer.submit(todos, consistency != null ? consistency::recordWrite : null);');
+      expect(repo).not.toContain('insertCoalescer.submit(todos).thenApplyAsync');
+    });
+
+    it('should insert directly when disabled or in native RLS mode', () => {
+      const plain = generate({});
+      const native = generate({ insertCoalescing: true }, { enabled: true, mode: 'native', tenantIdColumn: 'tenant_id' });
+
+      expect(findFile(plain, 'InsertCoalescer.java')).toBeUndefined();
+      expect(findFile(plain, 'TodosRepository.java')).not.toContain('insertCoalescer');
+      expect(findFile(native, 'TodosRepository.java')).not.toContain('insertCoalescer');
+      expect(findFile(native, 'InsertCoalescing.java')).not.toContain('DatabaseRouter');
+    });
+  });
+
+  describe('warmUp', () => {
+    it('should make each repository a warm-up target that exercises its read paths', () => {
+      const files = generate({ warmUp: true });
+      const repo = findFile(files, 'TodosRepository.java');
+
+      expect(findFile(files, 'WarmUpTarget.java')).toBeDefined();
+      expect(findFile(files, 'WarmUpModule.java')).toContain('bind(WarmUp.class).asEagerSingleton();');
+      expect(repo).toContain('public class TodosRepository implements WarmUpTarget {');
+      expect(repo).toContain('CompletionStage<?> stage = findById(0L)\n            .thenCompose(r -> find(filter, 0, 20))\n            .thenCompose(r -> count(filter));');
+    });
+
+    it('should not emit warm-up hooks unless enabled', () => {
+      const files = generate({});
+
+      expect(findFile(files, 'WarmUp.java')).toBeUndefined();
+      expect(findFile(files, 'TodosRepository.java')).not.toContain('WarmUpTarget');
+    });
+  });
+
+  describe('parallelExport', () => {
+    it('should add ID range boundary and range cursor methods bound to the snapshot transaction', () => {
+      const repo = findFile(generate({ parallelExport: true }), 'TodosRepository.java');
+
+      expect(repo).toContain('import io.ebean.Transaction;');
+      expect(repo).toContain('import libraries.ParallelExport;');
+      expect(repo).toContain('import java.util.function.Consumer;');
+      expect(repo).toContain('public List<Long> findIdBoundaries(Todos filter, int parts, double samplePercent, Transaction transaction) {');
+      expect(repo).toContain('TABLESAMPLE SYSTEM (CAST(:percent AS real))');
+      expect(repo).toContain('return ParallelExport.boundaries(minId, maxId, sample, parts);');
+      expect(repo).toContain('public void findRangeEach(Todos filter, long fromId, long toId, int fetchSize, Transaction transaction, Consumer<Todos> consumer) {');
+      expect(repo).not.toContain('TenantSession.apply(transaction, sessionInfo);');
+    });
+
+    it('should apply the tenant session to the snapshot transaction under native RLS', () => {
+      const repo = findFile(generate({ parallelExport: true }, { enabled: true, mode: 'native', tenantIdColumn: 'tenant_id' }), 'TodosRepository.java');
+
+      expect(repo).toContain('TenantSession.apply(transaction, sessionInfo);');
+    });
+
+    it('should omit the range methods unless enabled', () => {
+      const repo = findFile(generate({}), 'TodosRepository.java');
+
+      expect(repo).not.toContain('findIdBoundaries');
+      expect(repo).not.toContain('findRangeEach');
+      expect(repo).not.toContain('import libraries.ParallelExport;');
+      expect(repo).not.toContain('import io.ebean.Transaction;');
+    });
+  });
+
+  describe('readOnlyList', () => {
+    it('should load list results as unmodifiable beans and say so in the javadoc', () => {
+      const repo = findFile(generate({ readOnlyList: true, streaming: true }), 'TodosRepository.java');
+
+      expect(repo.match(/\.setUnmodifiable\(true\)/g)).toHaveLength(3);
+      expect(repo).toContain('返却するモデルは読み取り専用です (変更検知・遅延ロードを行わないため、更新には findById を使用してください)。');
+    });
+
+    it('should keep list results modifiable unless enabled', () => {
+      const repo = findFile(generate({ streaming: true }), 'TodosRepository.java');
+
+      expect(repo).not.toContain('.setUnmodifiable(true)');
+      expect(repo).not.toContain('返却するモデルは読み取り専用です');
+    });
+  });
+});
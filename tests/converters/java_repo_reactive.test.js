@@ -0,0 +1,59 @@
+import { describe, it, expect } from 'vitest';
+import fs from 'fs';
+import path from 'path';
+
+// Converters register helpers on window, and read them back as bare globals.
+global.window = global;
+global.App = global.App || {};
+
+const loadScript = (relativePath) => {
+  const code = fs.readFileSync(path.resolve(__dirname, '../../js/', relativePath), 'utf8');
+  const vm = require('vm');
+  vm.runInThisContext(code);
+};
+
+loadScript('utils/common.js');
+loadScript('utils/type_mapper.js');
+loadScript('utils/table_features.js');
+loadScript('converters/java_repo_reactive.js');
+
+App.State = App.State || { config: null };
+
+const todos = {
+  tableName: 'todos',
+  tableNameJP: 'TODO',
+  columns: [
+    { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+    { colName: 'title', colNameJP: 'タイトル', type: 'varchar', length: '200', constraint: 'NN' },
+    { colName: 'tenant_id', colNameJP: 'テナントID', type: 'varchar', length: '36', constraint: 'NN' }
+  ]
+};
+
+const findFile = (files, suffix) => files.find(f => f.path.endsWith(suffix)).content;
+
+describe('generateJavaRepoReactive', () => {
+  it('should generate a non-blocking repository per table with a shared base class and test', () => {
+    const files = generateJavaRepoReactive([todos], { enabled: false });
+    const repo = findFile(files, 'TodosReactiveRepository.java');
+
+    expect(files.map(f => f.path)).toEqual([
+      'repository/reactive/ReactiveBaseRepository.java',
+      'repository/reactive/TodosReactiveRepository.java',
+      'test/repository/reactive/TodosReactiveRepositoryTest.java'
+    ]);
+    expect(repo).toContain('public class TodosReactiveRepository extends ReactiveBaseRepository {');
+    expect(repo).toContain('public Publisher<Todos> find(Todos filter, int offset, int limit) {');
+    expect(repo).toContain('public CompletionStage<Optional<Todos>> findById(Long id) {');
+    expect(repo).not.toContain('import io.ebean');
+    expect(repo).not.toContain('SessionInfo');
+  });
+
+  it('should only set the tenant on the connection in native RLS mode', () => {
+    const javaMode = generateJavaRepoReactive([todos], { enabled: true, mode: 'java', tenantIdColumn: 'tenant_id' });
+    const nativeMode = generateJavaRepoReactive([todos], { enabled: true, mode: 'native', tenantIdColumn: 'tenant_id' });
+
+    expect(findFile(javaMode, 'TodosReactiveRepository.java')).toContain('public TodosReactiveRepository(ConnectionFactory connectionFactory, SessionInfo sessionInfo) {');
+    expect(findFile(javaMode, 'ReactiveBaseRepository.java')).not.toContain('set_config');
+    expect(findFile(nativeMode, 'ReactiveBaseRepository.java')).toContain("set_config('app.tenant_id', $1, true), set_config('app.bypass_rls', $2, true)");
+  });
+});
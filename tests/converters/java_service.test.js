@@ -0,0 +1,108 @@
+import { describe, it, expect } from 'vitest';
+import fs from 'fs';
+import path from 'path';
+
+// Converters register helpers on window, and read them back as bare globals.
+global.window = global;
+global.App = global.App || {};
+
+const loadScript = (relativePath) => {
+  const code = fs.readFileSync(path.resolve(__dirname, '../../js/', relativePath), 'utf8');
+  const vm = require('vm');
+  vm.runInThisContext(code);
+};
+
+loadScript('utils/common.js');
+loadScript('utils/type_mapper.js');
+loadScript('utils/table_features.js');
+loadScript('converters/java_service.js');
+
+App.State = App.State || { config: null };
+
+const tables = [
+  {
+    tableName: 'todos',
+    tableNameJP: 'TODO',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', pkfk: 'PK', type: 'bigserial', constraint: 'NN' },
+      { colName: 'title', colNameJP: 'タイトル', type: 'varchar', length: '200', constraint: 'NN' },
+      { colName: 'updated_at', colNameJP: '更新日時', type: 'timestamp', constraint: 'NN', default: 'now()' },
+      { colName: 'is_deleted', colNameJP: '削除フラグ', type: 'boolean', constraint: 'NN', default: 'false' }
+    ]
+  }
+];
+
+const generate = (features, rlsOptions = { enabled: false }) => App.Converters.JavaService.generateJavaService(tables, rlsOptions, features);
+const findFile = (files, suffix) => {
+  const file = files.find(f => f.path.endsWith(suffix));
+  return file ? file.content : undefined;
+};
+
+describe('generateJavaService', () => {
+  describe('streaming', () => {
+    it('should not emit stream writers unless the feature is enabled', () => {
+      const files = generate({});
+      const service = findFile(files, 'TodosService.java');
+
+      expect(findFile(files, 'JsonStreams.java')).toBeUndefined();
+      expect(service).not.toContain('import libraries.JsonStreams;');
+      expect(service).not.toContain('writeNdjson');
+    });
+
+    it('should write list pages and NDJSON straight to the output stream', () => {
+      const files = generate({ streaming: true });
+      const service = findFile(files, 'TodosService.java');
+
+      expect(findFile(files, 'JsonStreams.java')).toBeDefined();
+      expect(service).toContain('import java.io.OutputStream;');
+      expect(service).toContain('public CompletionStage<Void> writeJson(Todos filter, int offset, int limit, OutputStream out) {');
+      expect(service).toContain('return JsonStreams.<Todos>writeNdjson(out, consumer -> todosRepository.findEach(filter, offset, limit, consumer));');
+    });
+  });
+
+  describe('admissionControl', () => {
+    it('should run CSV work on the heavy execution context only when enabled', () => {
+      const files = generate({ admissionControl: true });
+      const service = findFile(files, 'TodosService.java');
+
+      expect(findFile(files, 'HeavyExecutionContext.java')).toBeDefined();
+      expect(service).toContain('public TodosService(TodosRepository todosRepository, HeavyExecutionContext heavyExecutionContext) {');
+      expect(service).toContain('}, heavyExecutionContext);');
+      expect(findFile(generate({}), 'TodosService.java')).not.toContain('HeavyExecutionContext');
+    });
+  });
+
+  describe('binaryFormat', () => {
+    it('should stream list pages with the negotiated mapper when combined with streaming', () => {
+      const service = findFile(generate({ binaryFormat: true, streaming: true }), 'TodosService.java');
+      const jsonOnly = findFile(generate({ streaming: true }), 'TodosService.java');
+
+      expect(service).toContain('import com.fasterxml.jackson.databind.ObjectMapper;');
+      expect(service).toContain('public CompletionStage<Void> writePage(Todos filter, int offset, int limit, ObjectMapper mapper, OutputStream out) {');
+      expect(service).toContain('return writePage(filter, offset, limit, Json.mapper(), out);');
+      expect(jsonOnly).not.toContain('writePage(Todos filter');
+      expect(jsonOnly).not.toContain('import com.fasterxml.jackson.databind.ObjectMapper;');
+    });
+  });
+
+  describe('parallelExport', () => {
+    it('should generate ParallelExport and export CSV through the repository range methods', () => {
+      const files = generate({ parallelExport: true });
+      const service = findFile(files, 'TodosService.java');
+
+      expect(findFile(files, 'libraries/ParallelExport.java')).toBeDefined();
+      expect(service).toContain('import libraries.ParallelExport;');
+      expect(service).toContain('public CompletionStage<ParallelExport.Output> exportCsvParallel(Todos filter, ParallelExport.Options options) {');
+      expect(service).toContain('return parallelExport.export("todos", options, header,');
+      expect(service).toContain('todosRepository.findIdBoundaries(filter, parts, samplePercent, transaction)');
+      expect(service).toContain('todosRepository.findRangeEach(filter, fromId, toId, fetchSize, transaction, m ->');
+    });
+
+    it('should omit ParallelExport unless enabled', () => {
+      const files = generate({});
+
+      expect(findFile(files, 'libraries/ParallelExport.java')).toBeUndefined();
+      expect(findFile(files, 'TodosService.java')).not.toContain('ParallelExport');
+    });
+  });
+});
@@ -0,0 +1,181 @@
+import { describe, it, expect, beforeEach } from 'vitest';
+import fs from 'fs';
+import path from 'path';
+
+// Converters register helpers on window, and read them back as bare globals.
+global.window = global;
+global.App = global.App || {};
+
+const loadScript = (relativePath) => {
+  const code = fs.readFileSync(path.resolve(__dirname, '../../js/', relativePath), 'utf8');
+  const vm = require('vm');
+  vm.runInThisContext(code);
+};
+
+loadScript('utils/common.js');
+loadScript('utils/type_mapper.js');
+loadScript('converters/java_sql.js');
+
+const parsedTables = [
+  {
+    tableName: 'users',
+    columns: [
+      { colName: 'id', colNameJP: 'ID', type: 'bigserial' },
+      { colName: 'user_name', colNameJP: 'ユーザー名', type: 'varchar', length: '255' },
+      { colName: 'dept_code', colNameJP: '部署コード', type: 'char', length: '3' },
+      { colName: 'joined_on', colNameJP: '入社日', type: 'date' }
+    ]
+  }
+];
+
+const defaultSelect = 't0.id as t0_id,\nt0.user_name as t0_user_name,\nt0.dept_code as t0_dept_code';
+
+const createState = (overrides = {}) => ({
+  selectedTables: [{ tableName: 'users', alias: 't0' }],
+  joins: [],
+  filters: [],
+  sorts: [],
+  limit: '',
+  offset: '',
+  includeCountMethod: false,
+  useArrayParams: false,
+  ...overrides
+});
+
+const findFile = (files, suffix) => files.find(f => f.path.endsWith(suffix)).content;
+
+describe('generateJavaSql', () => {
+  let sqlState;
+
+  beforeEach(() => {
+    sqlState = createState({
+      filters: ['(:idsSize = 0 OR t0.id IN (:ids))', 't0.dept_code NOT IN (:codes)'],
+      includeCountMethod: true
+    });
+  });
+
+  it('should bind IN lists as expanded list parameters by default', () => {
+    const repo = findFile(generateJavaSql(sqlState, parsedTables, defaultSelect, false), 'SqlRepository.java');
+
+    expect(repo).toContain('search(List<Long> ids, List<String> codes)');
+    expect(repo).toContain('(:idsSize = 0 OR t0.id IN (:ids))');
+    expect(repo).toContain('query.setParameter("idsSize", ids != null ? ids.size() : 0);');
+    expect(repo).not.toContain('setArrayParameter');
+  });
+
+  it('should rewrite IN lists to ANY with a typed array parameter in array mode', () => {
+    sqlState.useArrayParams = true;
+    const files = generateJavaSql(sqlState, parsedTables, defaultSelect, false);
+    const repo = findFile(files, 'SqlRepository.java');
+    const controller = findFile(files, 'SqlController.java');
+
+    expect(repo).toContain('search(List<Long> ids, List<String> codes)');
+    expect(repo).toContain('t0.id = ANY(CAST(:ids AS bigint[]))');
+    expect(repo).toContain('t0.dept_code <> ALL(CAST(:codes AS bpchar[]))');
+    expect(repo).toContain('cardinality(CAST(:ids AS bigint[])) = 0');
+    expect(repo).toContain('.setArrayParameter("ids", ids != null ? ids : List.of())');
+    expect(repo).not.toContain('IN (:ids)');
+    expect(repo).not.toContain('"idsSize"');
+    expect(controller).toContain('.map(Long::valueOf)');
+  });
+
+  it('should infer parameter types from the compared columns', () => {
+    sqlState = createState({
+      filters: ['t0.id >= :minId', 't0.user_name LIKE :name', ':code = t0.dept_code'],
+      limit: ':limit'
+    });
+    const files = generateJavaSql(sqlState, parsedTables, defaultSelect, false);
+    const repo = findFile(files, 'SqlRepository.java');
+    const controller = findFile(files, 'SqlController.java');
+
+    expect(repo).toContain('search(Long minId, String name, String code, Integer limit)');
+    expect(controller).toContain('minId = request.queryString("minId").map(Long::valueOf).orElse(null);');
+    expect(controller).toContain('limit = request.queryString("limit").map(Integer::valueOf).orElse(null);');
+    expect(controller).toContain('String name = request.queryString("name").orElse(null);');
+  });
+
+  it('should answer 400 for query parameters that cannot be converted, and read date columns as dates', () => {
+    sqlState = createState({
+      filters: ['t0.id >= :minId', 't0.joined_on >= :joinedFrom']
+    });
+    const controller = findFile(generateJavaSql(sqlState, parsedTables, defaultSelect, false), 'SqlController.java');
+
+    expect(controller).toContain('        Long minId;\n        java.time.Instant joinedFrom;\n        try {\n');
+    expect(controller).toContain('joinedFrom = request.queryString("joinedFrom").map(value -> java.time.LocalDate.parse(value).atStartOfDay(java.time.ZoneOffset.UTC).toInstant()).orElse(null);');
+    expect(controller).toContain('} catch (IllegalArgumentException | DateTimeParseException e) {\n            return CompletableFuture.completedFuture(badRequest(e.getMessage()));');
+    expect(controller).toContain('import java.time.format.DateTimeParseException;');
+  });
+
+  it('should require filter parameters by default and reject null arguments', () => {
+    sqlState = createState({
+      filters: ['t0.id >= :minId', 't0.dept_code IN (:codes)', 't0.id NOT IN (:ids)']
+    });
+    const files = generateJavaSql(sqlState, parsedTables, defaultSelect, false);
+    const repo = findFile(files, 'SqlRepository.java');
+    const controller = findFile(files, 'SqlController.java');
+
+    expect(repo).toContain('Objects.requireNonNull(minId, "minId");');
+    expect(repo).toContain('conditions.add("t0.id >= :minId");');
+    expect(repo).toContain('conditions.add(codes != null && !codes.isEmpty() ? "t0.dept_code IN (:codes)" : "FALSE");');
+    expect(repo).toContain('conditions.add(ids != null && !ids.isEmpty() ? "t0.id NOT IN (:ids)" : "TRUE");');
+    expect(repo).not.toContain('if (minId != null)');
+    expect(controller).toContain('if (minId == null) {\n            return CompletableFuture.completedFuture(badRequest("minId is required"));');
+  });
+
+  it('should apply filters marked optional only when their parameters are given, without sentinel values', () => {
+    sqlState = createState({
+      filters: ['t0.id >= :minId', 't0.user_name IS NOT NULL'],
+      optionalFilters: [true, false],
+      limit: ':limit'
+    });
+    const repo = findFile(generateJavaSql(sqlState, parsedTables, defaultSelect, false), 'SqlRepository.java');
+
+    expect(repo).toContain('conditions.add("t0.user_name IS NOT NULL");');
+    expect(repo).toContain('if (minId != null) {\n                conditions.add("t0.id >= :minId");');
+    expect(repo).toContain('query.setParameter("limit", limit);');
+    expect(repo).not.toContain(': "")');
+  });
+
+  it('should read through the DatabaseRouter when read replica routing is enabled', () => {
+    sqlState.useReadReplica = true;
+    const files = generateJavaSql(sqlState, parsedTables, defaultSelect, false);
+    const repo = findFile(files, 'SqlRepository.java');
+
+    expect(repo).toContain('DatabaseRouter databaseRouter) {');
+    expect(repo).toContain('databaseRouter.forRead().findNative(Users.class, sql)');
+    expect(repo).toContain('databaseRouter.forRead().findNative(Long.class, sql)');
+    expect(repo).toContain('}, ReadConsistency.propagating(executionContext));');
+    expect(repo).not.toContain('DB.findNative(');
+    expect(findFile(files, 'SqlController.java')).toContain('@Authenticated\n@ReadYourWrites\n');
+  });
+
+  it('should run queries inside a tenant-scoped transaction for native RLS', () => {
+    sqlState.useTenantSession = true;
+    const repo = findFile(generateJavaSql(sqlState, parsedTables, defaultSelect, false), 'SqlRepository.java');
+
+    expect(repo).toContain('public UsersSqlRepository(DatabaseExecutionContext executionContext, SessionInfo sessionInfo) {');
+    expect(repo).toContain('return supplyAsync(() -> TenantSession.inTransaction(sessionInfo, () -> {');
+    expect(repo).toContain('        }), executionContext);');
+  });
+
+  it('should implement WarmUpTarget with synthetic parameters when warm-up is enabled', () => {
+    sqlState = createState({
+      filters: ['t0.id >= :minId', 't0.user_name LIKE :name', '(:idsSize = 0 OR t0.id IN (:ids))'],
+      limit: ':limit',
+      includeCountMethod: true,
+      useWarmUp: true
+    });
+    const repo = findFile(generateJavaSql(sqlState, parsedTables, defaultSelect, false), 'SqlRepository.java');
+
+    expect(repo).toContain('public class UsersSqlRepository implements WarmUpTarget {');
+    expect(repo).toContain('return search(0L, "", null, 0)\n            .thenCompose(r -> count(0L, "", null))');
+  });
+
+  it('should fetch unmodifiable models only when read-only mode is enabled', () => {
+    sqlState.useReadOnly = true;
+    const repo = findFile(generateJavaSql(sqlState, parsedTables, defaultSelect, false), 'SqlRepository.java');
+
+    expect(repo).toContain('Query<Users> query = DB.findNative(Users.class, sql).setUnmodifiable(true);');
+    expect(repo).toContain('Query<Long> query = DB.findNative(Long.class, sql);');
+  });
+});
@@ -52,7 +52,9 @@ const javaModelCode = fs.readFileSync(path.join(convertersDir, 'java_model.js'),
 const javaRepoCode = fs.readFileSync(path.join(convertersDir, 'java_repo.js'), 'utf8');
 const javaServiceCode = fs.readFileSync(path.join(convertersDir, 'java_service.js'), 'utf8');
 const ddlCode = fs.readFileSync(path.join(convertersDir, 'ddl.js'), 'utf8');
+const tableFeaturesCode = fs.readFileSync(path.join(__dirname, '../js/utils/table_features.js'), 'utf8');
 
+eval(tableFeaturesCode);
 eval(javaModelCode);
 eval(javaRepoCode);
 eval(javaServiceCode);